@@ -16,6 +16,17 @@
 
 package yaphyre.app;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.inject.Guice;
@@ -32,10 +43,20 @@ import org.slf4j.LoggerFactory;
 
 import yaphyre.app.dependencies.DefaultBindingModule;
 import yaphyre.app.dependencies.SolverBindingModule;
+import yaphyre.app.farm.RenderCoordinator;
+import yaphyre.core.accelerators.Accelerators;
+import yaphyre.core.animation.Animation;
+import yaphyre.core.animation.Keyframe;
+import yaphyre.core.animation.KeyframedTransformation;
 import yaphyre.core.api.Camera;
 import yaphyre.core.api.Sampler;
 import yaphyre.core.api.Scene;
+import yaphyre.core.cameras.AbstractCamera;
+import yaphyre.core.cameras.AdaptiveRenderer;
+import yaphyre.core.cameras.CheckpointRenderer;
 import yaphyre.core.cameras.PerspectiveCamera;
+import yaphyre.core.cameras.ProgressiveRenderer;
+import yaphyre.core.cameras.TileScheduler;
 import yaphyre.core.films.ImageFile;
 import yaphyre.core.lights.AmbientLight;
 import yaphyre.core.lights.PointLight;
@@ -43,12 +64,16 @@ import yaphyre.core.math.Color;
 import yaphyre.core.math.FovCalculator;
 import yaphyre.core.math.Normal3D;
 import yaphyre.core.math.Point3D;
+import yaphyre.core.math.RayPacket;
 import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
 import yaphyre.core.samplers.HaltonSampler;
 import yaphyre.core.samplers.RegularSampler;
 import yaphyre.core.samplers.SingleValueSampler;
 import yaphyre.core.samplers.StratifiedSampler;
 import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.statistics.RenderStatistics;
+import yaphyre.core.statistics.StatisticsReport;
 import yaphyre.core.shapes.Plane;
 import yaphyre.core.shapes.SimpleSphere;
 import yaphyre.core.tracers.RayCaster;
@@ -70,8 +95,31 @@ public class YaPhyRe {
     private static final String COMMANDLINE_OPTION_CAMERA_SAMPLER = "cameraSampler";
     private static final String COMMANDLINE_OPTION_GAMMA = "gamma";
     private static final String COMMANDLINE_OPTION_SCENE_FILE = "scene";
+    private static final String COMMANDLINE_OPTION_THREADS = "threads";
+    private static final String COMMANDLINE_OPTION_TILE_SIZE = "tileSize";
+    private static final String COMMANDLINE_OPTION_TIME_BUDGET = "timeBudget";
+    private static final String COMMANDLINE_OPTION_NOISE_THRESHOLD = "noiseThreshold";
+    private static final String COMMANDLINE_OPTION_PREVIEW_INTERVAL = "previewInterval";
+    private static final String COMMANDLINE_OPTION_ADAPTIVE = "adaptive";
+    private static final String COMMANDLINE_OPTION_PACKET_SIZE = "packetSize";
+    private static final String COMMANDLINE_OPTION_FARM = "farm";
+    private static final String COMMANDLINE_OPTION_FRAMES = "frames";
+    private static final String COMMANDLINE_OPTION_CHECKPOINT = "checkpoint";
+    private static final String COMMANDLINE_OPTION_RESUME = "resume";
+    private static final String COMMANDLINE_OPTION_STATISTICS = "statistics";
+    private static final String COMMANDLINE_OPTION_IMAGE_FORMAT = "imageFormat";
+    private static final String COMMANDLINE_OPTION_ACCELERATOR = "accelerator";
 
     private static final double DEFAULT_GAMMA = 1d;
+    private static final int DEFAULT_TIME_BUDGET = 60 * 60;
+    private static final int DEFAULT_PREVIEW_INTERVAL = 10;
+    private static final int MAX_PROGRESSIVE_PASSES = 1 << 16;
+    private static final int ADAPTIVE_BASE_PASSES = 2;
+    private static final int DEFAULT_ADAPTIVE_MAX_PASSES = 16;
+    private static final int FRAMES_PER_TURN = 96;
+
+    private static final String IMAGE_FILE_NAME = "color_%d";
+    private static final String DEFAULT_STATISTICS_FILE_NAME = "statistics.json";
 
     public static void main(String... arguments) {
 
@@ -85,26 +133,81 @@ public class YaPhyRe {
         LOGGER.info("Reading CommandLine");
         final CommandLine commandLine = parseCommandLine(arguments);
         gamma = evaluateGamma(commandLine);
-
-        // Setup the injector
-        LOGGER.info("Setting up Injector");
-        final Injector injector = setupInjector(commandLine);
+        enableStatistics(commandLine);
 
         // Preparing the scene
-        LOGGER.info("Setting up Scene");
-        final Scene scene = setupScene(injector);
+        final Animation animation = new Animation();
+        final Scene scene = createScene(commandLine, animation);
+
+        final boolean checkpoints = commandLine.hasOption(COMMANDLINE_OPTION_CHECKPOINT)
+                || commandLine.hasOption(COMMANDLINE_OPTION_RESUME);
+        if (checkpoints && (commandLine.hasOption(COMMANDLINE_OPTION_FRAMES)
+                || commandLine.hasOption(COMMANDLINE_OPTION_FARM) || commandLine.hasOption(COMMANDLINE_OPTION_ADAPTIVE))) {
+            LOGGER.warn("Checkpoints are not supported for sequences, adaptive rendering and the render farm.");
+        }
+
+        if (commandLine.hasOption(COMMANDLINE_OPTION_FRAMES)) {
+            renderSequence(scene, animation, commandLine, gamma);
+            reportStatistics(commandLine);
+            LOGGER.info("Finished");
+            return;
+        }
 
         // Render the scene
         LOGGER.info("Render Scene");
-        renderScene(scene);
+        List<CheckpointRenderer> checkpointRenderers = new ArrayList<>();
+        if (commandLine.hasOption(COMMANDLINE_OPTION_FARM)) {
+            renderSceneOnFarm(scene, commandLine, arguments);
+        } else if (commandLine.hasOption(COMMANDLINE_OPTION_ADAPTIVE)) {
+            renderSceneAdaptively(scene, createAdaptiveRenderer(commandLine));
+        } else if (checkpoints) {
+            checkpointRenderers = renderSceneWithCheckpoints(scene, commandLine);
+        } else {
+            renderScene(scene, createProgressiveRenderer(commandLine), gamma);
+        }
 
         // Save the result
         LOGGER.info("Save Result");
-        saveImages(scene, gamma);
+        saveImages(scene, gamma, IMAGE_FILE_NAME, evaluateImageFormats(commandLine));
+        checkpointRenderers.forEach(CheckpointRenderer::deleteCheckpoint);
+        reportStatistics(commandLine);
 
         LOGGER.info("Finished");
     }
 
+    /**
+     * Sets up the scene described by the command line, without rendering it. The workers of the render farm use this
+     * to set up the same scene as the coordinator.
+     *
+     * @param arguments The command line.
+     * @return The scene, not yet frozen.
+     */
+    public static Scene createScene(String... arguments) {
+        return createScene(parseCommandLine(arguments), new Animation());
+    }
+
+    private static Scene createScene(CommandLine commandLine, Animation animation) {
+        // Setup the injector
+        LOGGER.info("Setting up Injector");
+        final Injector injector = setupInjector(commandLine);
+
+        LOGGER.info("Setting up Scene");
+        final Scene scene = setupScene(injector, evaluatePacketSize(commandLine), animation);
+        scene.setAcceleratorType(evaluateAccelerator(commandLine));
+        return scene;
+    }
+
+    private static Accelerators evaluateAccelerator(CommandLine commandLine) {
+        if (commandLine.hasOption(COMMANDLINE_OPTION_ACCELERATOR)) {
+            try {
+                return Accelerators.forName(commandLine.getOptionValue(COMMANDLINE_OPTION_ACCELERATOR));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Unknown accelerator '{}'.", commandLine.getOptionValue(COMMANDLINE_OPTION_ACCELERATOR));
+            }
+        }
+        return Accelerators.Automatic;
+    }
+
     private static double evaluateGamma(CommandLine commandLine) {
         double gamma;
         try {
@@ -119,11 +222,86 @@ public class YaPhyRe {
         return gamma;
     }
 
-    private static Scene setupScene(Injector injector) {
+    /**
+     * Switches the {@link RenderStatistics} on if requested. This has to happen before the statistics are used for the
+     * first time, since they read the switch only once.
+     */
+    private static void enableStatistics(CommandLine commandLine) {
+        if (commandLine.hasOption(COMMANDLINE_OPTION_STATISTICS)) {
+            System.setProperty(RenderStatistics.ENABLED_PROPERTY, Boolean.TRUE.toString());
+        }
+        if (RenderStatistics.ENABLED) {
+            RenderStatistics.registerMBean();
+        }
+    }
+
+    private static void reportStatistics(CommandLine commandLine) {
+        if (!RenderStatistics.ENABLED) {
+            return;
+        }
+        final StatisticsReport report = RenderStatistics.snapshot();
+        LOGGER.info(report.format());
+
+        final Path statisticsFile = Paths.get(
+                commandLine.getOptionValue(COMMANDLINE_OPTION_STATISTICS, DEFAULT_STATISTICS_FILE_NAME));
+        try {
+            Files.write(statisticsFile, report.toJson().getBytes(StandardCharsets.UTF_8));
+            LOGGER.info("Saved render statistics to {}", statisticsFile);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to save render statistics to " + statisticsFile, e);
+        }
+    }
+
+    private static TileScheduler createTileScheduler(CommandLine commandLine) {
+        final int numberOfThreads = evaluatePositiveInteger(commandLine, COMMANDLINE_OPTION_THREADS,
+                Runtime.getRuntime().availableProcessors());
+        final int tileSize = evaluatePositiveInteger(commandLine, COMMANDLINE_OPTION_TILE_SIZE,
+                TileScheduler.DEFAULT_TILE_SIZE);
+        LOGGER.info("Rendering with {} threads and a tile size of {} pixels", numberOfThreads, tileSize);
+        return new TileScheduler(numberOfThreads, tileSize);
+    }
+
+    private static int evaluatePositiveInteger(CommandLine commandLine, String optionName, int defaultValue) {
+        if (!commandLine.hasOption(optionName)) {
+            return defaultValue;
+        }
+        try {
+            final int value = Integer.parseInt(commandLine.getOptionValue(optionName));
+            if (value > 0) {
+                return value;
+            }
+            LOGGER.warn("Value for '{}' must be positive.", optionName);
+        } catch (NumberFormatException exception) {
+            LOGGER.warn("Unable to parse value for '{}'.", optionName);
+        }
+        LOGGER.info("Using default value for '{}': {}", optionName, defaultValue);
+        return defaultValue;
+    }
+
+    private static int evaluatePacketSize(CommandLine commandLine) {
+        final int packetSize = evaluatePositiveInteger(commandLine, COMMANDLINE_OPTION_PACKET_SIZE, 1);
+        if (packetSize > RayPacket.MAX_SIZE) {
+            LOGGER.warn("Packet size is limited to {}.", RayPacket.MAX_SIZE);
+            return RayPacket.MAX_SIZE;
+        }
+        return packetSize;
+    }
+
+    /**
+     * Sets up the scene. The sphere bounces once while the camera turns around the scene within
+     * {@link #FRAMES_PER_TURN} frames, which form a turntable. Only the first frame is rendered unless a sequence of
+     * frames is requested.
+     */
+    private static Scene setupScene(Injector injector, int packetSize, Animation animation) {
         Scene scene = injector.getInstance(Scene.class);
 
         // add primitives
-        scene.addShape(new SimpleSphere(Transformation.translate(0, 2, 0), new ColorShader(new Color(.95d, .95d, .95d))));
+        final ColorShader sphereShader = new ColorShader(new Color(.95d, .95d, .95d));
+        animation.addShape(scene, new KeyframedTransformation(
+                        new Keyframe(0, new Vector3D(0, 2, 0)),
+                        new Keyframe(FRAMES_PER_TURN / 2, new Vector3D(0, 3, 0)),
+                        new Keyframe(FRAMES_PER_TURN, new Vector3D(0, 2, 0))),
+                objectToWorld -> new SimpleSphere(objectToWorld, sphereShader));
         scene.addShape(new Plane(Transformation.IDENTITY, new ColorShader(new Color(.95d, .95d, .95d))));
 
         // add lights
@@ -139,18 +317,19 @@ public class YaPhyRe {
 
         // add perspective camera
         final double hFov = FovCalculator.FullFrame35mm.calculateHorizontalFov(50d);
-        ImageFile film = new ImageFile(xResolution, yResolution);
-        Camera camera = new PerspectiveCamera(
-                film,
-                skyColor,
-                new Point3D(0, 2, -10),
-                new Point3D(0, 0, 0),
-                Normal3D.NORMAL_Y,
-                hFov,
-                aspectRatio,
-                EPSILON,
-                1d / EPSILON);
-        scene.addCamera(camera);
+        animation.addCamera(scene, new KeyframedTransformation(
+                        new Keyframe(0, Vector3D.NULL),
+                        new Keyframe(FRAMES_PER_TURN, Vector3D.NULL, new Vector3D(0, 360, 0), Keyframe.NO_SCALING)),
+                cameraToWorld -> new PerspectiveCamera(
+                        new ImageFile(xResolution, yResolution),
+                        skyColor,
+                        cameraToWorld.transform(new Point3D(0, 2, -10)),
+                        new Point3D(0, 0, 0),
+                        Normal3D.NORMAL_Y,
+                        hFov,
+                        aspectRatio,
+                        EPSILON,
+                        1d / EPSILON));
 
         // add orthographic camera
 //        film = new ImageFile(xResolution, yResolution);
@@ -159,9 +338,56 @@ public class YaPhyRe {
 //        camera = new OrthographicCamera(film, skyColor, uDimension, vDimension, 100d);
 //        scene.addCamera(camera);
 
+        setPacketSize(scene, packetSize);
+
         return scene;
     }
 
+    private static void setPacketSize(Scene scene, int packetSize) {
+        scene.getCameras().forEach(cam -> {
+            if (cam instanceof AbstractCamera) {
+                ((AbstractCamera) cam).setPacketSize(packetSize);
+            }
+        });
+    }
+
+    /**
+     * Renders a sequence of frames of the animation in this process. The scene is set up only once and reused for all
+     * the frames: only the moved shapes and the cameras are replaced, and the acceleration structure is refit to them.
+     * Progressive rendering and the render farm are not supported for sequences.
+     */
+    private static void renderSequence(Scene scene, Animation animation, CommandLine commandLine, double gamma) {
+        final String[] values = commandLine.getOptionValues(COMMANDLINE_OPTION_FRAMES);
+        int firstFrame = 0;
+        int lastFrame = 0;
+        try {
+            firstFrame = Integer.parseInt(values[0]);
+            lastFrame = values.length > 1 ? Integer.parseInt(values[1]) : firstFrame;
+        } catch (NumberFormatException exception) {
+            LOGGER.warn("Unable to parse values for '{}'.", COMMANDLINE_OPTION_FRAMES);
+        }
+        if (commandLine.hasOption(COMMANDLINE_OPTION_FARM) || createProgressiveRenderer(commandLine).isPresent()) {
+            LOGGER.warn("Progressive rendering and the render farm are not supported for sequences.");
+        }
+        final Optional<AdaptiveRenderer> adaptiveRenderer = commandLine.hasOption(COMMANDLINE_OPTION_ADAPTIVE)
+                ? Optional.of(createAdaptiveRenderer(commandLine))
+                : Optional.empty();
+        final int packetSize = evaluatePacketSize(commandLine);
+        final List<ImageFile.ImageFormat> imageFormats = evaluateImageFormats(commandLine);
+
+        LOGGER.info("Render frames {} to {} of {}", firstFrame, lastFrame, animation);
+        for (int frame = firstFrame; frame <= lastFrame; frame++) {
+            animation.applyFrame(scene, frame);
+            setPacketSize(scene, packetSize);
+            if (adaptiveRenderer.isPresent()) {
+                renderSceneAdaptively(scene, adaptiveRenderer.get());
+            } else {
+                renderScene(scene, Optional.empty(), gamma);
+            }
+            saveImages(scene, gamma, String.format("%s_%04d", IMAGE_FILE_NAME, frame), imageFormats);
+        }
+    }
+
     private static Injector setupInjector(CommandLine commandLine) {
         Sampler cameraSampler = createSampler(commandLine.getOptionValues(COMMANDLINE_OPTION_CAMERA_SAMPLER));
         Sampler lightSampler = new SingleValueSampler();
@@ -171,28 +397,195 @@ public class YaPhyRe {
                         () -> lightSampler,
                         () -> defaultSampler,
                         //            new DebuggingRayCaster(false)
-                        new RayCaster()
+                        new RayCaster(),
+                        createTileScheduler(commandLine)
                 ),
                 new SolverBindingModule());
     }
 
-    private static void renderScene(Scene scene) {
-        scene.getCameras().forEach(cam -> cam.renderScene(scene));
+    /**
+     * Progressive rendering is used as soon as a time budget or a noise threshold is given.
+     */
+    private static Optional<ProgressiveRenderer> createProgressiveRenderer(CommandLine commandLine) {
+        if (!commandLine.hasOption(COMMANDLINE_OPTION_TIME_BUDGET)
+                && !commandLine.hasOption(COMMANDLINE_OPTION_NOISE_THRESHOLD)) {
+            return Optional.empty();
+        }
+        final int timeBudget = evaluatePositiveInteger(commandLine, COMMANDLINE_OPTION_TIME_BUDGET,
+                DEFAULT_TIME_BUDGET);
+        final int previewInterval = evaluatePositiveInteger(commandLine, COMMANDLINE_OPTION_PREVIEW_INTERVAL,
+                DEFAULT_PREVIEW_INTERVAL);
+        double noiseThreshold = 0d;
+        if (commandLine.hasOption(COMMANDLINE_OPTION_NOISE_THRESHOLD)) {
+            try {
+                noiseThreshold = Math.max(0d,
+                        Double.parseDouble(commandLine.getOptionValue(COMMANDLINE_OPTION_NOISE_THRESHOLD)));
+            } catch (NumberFormatException exception) {
+                LOGGER.warn("Unable to parse value for '{}'.", COMMANDLINE_OPTION_NOISE_THRESHOLD);
+            }
+        }
+        final ProgressiveRenderer progressiveRenderer = new ProgressiveRenderer(Duration.ofSeconds(timeBudget),
+                noiseThreshold, Duration.ofSeconds(previewInterval), MAX_PROGRESSIVE_PASSES);
+        LOGGER.info("Rendering progressively: {}", progressiveRenderer);
+        return Optional.of(progressiveRenderer);
+    }
+
+    private static AdaptiveRenderer createAdaptiveRenderer(CommandLine commandLine) {
+        final String[] values = commandLine.getOptionValues(COMMANDLINE_OPTION_ADAPTIVE);
+        double errorThreshold = 0d;
+        int maxPasses = DEFAULT_ADAPTIVE_MAX_PASSES;
+        try {
+            errorThreshold = Math.max(0d, Double.parseDouble(values[0]));
+            if (values.length > 1) {
+                maxPasses = Math.max(ADAPTIVE_BASE_PASSES, Integer.parseInt(values[1]));
+            }
+        } catch (NumberFormatException exception) {
+            LOGGER.warn("Unable to parse values for '{}'.", COMMANDLINE_OPTION_ADAPTIVE);
+        }
+        final AdaptiveRenderer adaptiveRenderer = new AdaptiveRenderer(ADAPTIVE_BASE_PASSES, errorThreshold, maxPasses);
+        LOGGER.info("Rendering adaptively: {}", adaptiveRenderer);
+        return adaptiveRenderer;
+    }
+
+    private static void renderSceneAdaptively(Scene scene, AdaptiveRenderer adaptiveRenderer) {
+        scene.freeze();
+        scene.getCameras().forEach(cam -> {
+            if (cam instanceof AbstractCamera && cam.getFilm() instanceof ImageFile) {
+                adaptiveRenderer.render((AbstractCamera) cam, scene);
+            } else {
+                cam.renderScene(scene);
+            }
+        });
     }
 
-    private static void saveImages(Scene scene, double gamma) {
+    private static void renderScene(Scene scene, Optional<ProgressiveRenderer> progressiveRenderer, double gamma) {
+        scene.freeze();
+        if (!progressiveRenderer.isPresent()) {
+            scene.getCameras().forEach(cam -> cam.renderScene(scene));
+            return;
+        }
+
+        // the previews use the same file names as the final images
+        final AtomicInteger cameraIndex = new AtomicInteger(0);
+        scene.getCameras().forEach(cam -> {
+            if (cam instanceof AbstractCamera && cam.getFilm() instanceof ImageFile) {
+                final int cameraNumber = cameraIndex.getAndIncrement();
+                progressiveRenderer.get().render((AbstractCamera) cam, scene,
+                        preview -> saveFilmToFile(gamma, String.format(IMAGE_FILE_NAME, cameraNumber), preview,
+                                ImageFile.ImageFormat.PNG));
+            } else {
+                cam.renderScene(scene);
+            }
+        });
+    }
+
+    /**
+     * Renders the scene while saving checkpoints, one file per camera, named like the images. The checkpoints are
+     * deleted once the images are saved. Progressive rendering is not supported with checkpoints.
+     *
+     * @return The renderers used, one for each camera with an image file.
+     */
+    private static List<CheckpointRenderer> renderSceneWithCheckpoints(Scene scene, CommandLine commandLine) {
+        final int defaultInterval = (int) CheckpointRenderer.DEFAULT_INTERVAL.getSeconds();
+        final int interval = commandLine.getOptionValue(COMMANDLINE_OPTION_CHECKPOINT) != null
+                ? evaluatePositiveInteger(commandLine, COMMANDLINE_OPTION_CHECKPOINT, defaultInterval)
+                : defaultInterval;
+        final boolean resume = commandLine.hasOption(COMMANDLINE_OPTION_RESUME);
+        if (createProgressiveRenderer(commandLine).isPresent()) {
+            LOGGER.warn("Progressive rendering is not supported with checkpoints.");
+        }
+
+        scene.freeze();
+        final List<CheckpointRenderer> checkpointRenderers = new ArrayList<>();
+        final AtomicInteger cameraIndex = new AtomicInteger(0);
+        scene.getCameras().forEach(cam -> {
+            if (cam instanceof AbstractCamera && cam.getFilm() instanceof ImageFile) {
+                final CheckpointRenderer checkpointRenderer = new CheckpointRenderer(
+                        Paths.get(String.format(IMAGE_FILE_NAME, cameraIndex.getAndIncrement()) + ".checkpoint"),
+                        Duration.ofSeconds(interval));
+                checkpointRenderer.render((AbstractCamera) cam, scene, resume);
+                checkpointRenderers.add(checkpointRenderer);
+            } else {
+                cam.renderScene(scene);
+            }
+        });
+        return checkpointRenderers;
+    }
+
+    /**
+     * Renders the scene on the workers connected to a {@link RenderCoordinator}. Progressive and adaptive rendering
+     * are not supported on the render farm.
+     */
+    private static void renderSceneOnFarm(Scene scene, CommandLine commandLine, String[] arguments) {
+        final String[] values = commandLine.getOptionValues(COMMANDLINE_OPTION_FARM);
+        int port = 0;
+        int localWorkers = 0;
+        try {
+            port = Integer.parseInt(values[0]);
+            if (values.length > 1) {
+                localWorkers = Math.max(0, Integer.parseInt(values[1]));
+            }
+        } catch (NumberFormatException exception) {
+            LOGGER.warn("Unable to parse values for '{}'.", COMMANDLINE_OPTION_FARM);
+        }
+        if (commandLine.hasOption(COMMANDLINE_OPTION_ADAPTIVE) || createProgressiveRenderer(commandLine).isPresent()) {
+            LOGGER.warn("Progressive and adaptive rendering are not supported on the render farm.");
+        }
+
+        scene.freeze();
+        try (RenderCoordinator coordinator = new RenderCoordinator(port, Arrays.asList(arguments))) {
+            LOGGER.info("Waiting for render farm workers on port {}", coordinator.getPort());
+            for (int i = 0; i < localWorkers; i++) {
+                coordinator.startLocalWorker();
+            }
+            coordinator.render(scene);
+        } catch (IOException e) {
+            LOGGER.error("Unable to set up render farm", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return The formats to save the images in, PNG if none are given.
+     */
+    private static List<ImageFile.ImageFormat> evaluateImageFormats(CommandLine commandLine) {
+        final List<ImageFile.ImageFormat> imageFormats = new ArrayList<>();
+        if (commandLine.hasOption(COMMANDLINE_OPTION_IMAGE_FORMAT)) {
+            for (String value : commandLine.getOptionValues(COMMANDLINE_OPTION_IMAGE_FORMAT)) {
+                try {
+                    imageFormats.add(ImageFile.ImageFormat.valueOf(value.toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warn("Unknown image format '{}'.", value);
+                }
+            }
+        }
+        if (imageFormats.isEmpty()) {
+            imageFormats.add(ImageFile.ImageFormat.PNG);
+        }
+        return imageFormats;
+    }
+
+    /**
+     * @param fileNameFormat The name of the image files without extension, formatted with the number of the camera.
+     * @param imageFormats   The formats to save each image in.
+     */
+    private static void saveImages(Scene scene, double gamma, String fileNameFormat,
+                                   List<ImageFile.ImageFormat> imageFormats) {
         final AtomicInteger cameraIndex = new AtomicInteger(0);
 
         scene.getCameras().stream()
                 .map(Camera::getFilm)
                 .filter(film -> ImageFile.class.isAssignableFrom(film.getClass()))
                 .map(ImageFile.class::cast)
-                .forEach(imageFileFilm -> saveFilmToFile(gamma, cameraIndex.getAndIncrement(), imageFileFilm, ImageFile.ImageFormat.PNG));
+                .forEach(imageFileFilm -> {
+                    final String baseName = String.format(fileNameFormat, cameraIndex.getAndIncrement());
+                    imageFormats.forEach(imageFormat -> saveFilmToFile(gamma, baseName, imageFileFilm, imageFormat));
+                });
     }
 
-    private static void saveFilmToFile(double gamma, int cameraNumber, ImageFile imageFileFilm, ImageFile.ImageFormat imageFormat) {
+    private static void saveFilmToFile(double gamma, String baseName, ImageFile imageFileFilm, ImageFile.ImageFormat imageFormat) {
         final String imageFileExtension = imageFormat.getDefaultFileExtension();
-        final String fileName = String.format("color_%d.%s", cameraNumber, imageFileExtension);
+        final String fileName = String.format("%s.%s", baseName, imageFileExtension);
         imageFileFilm.safeAsImage(fileName, imageFormat, gamma);
     }
 
@@ -255,6 +648,99 @@ public class YaPhyRe {
         OptionBuilder.isRequired(false);
         options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_GAMMA));
 
+        OptionBuilder.withArgName("number of threads");
+        OptionBuilder.withDescription("Optional number of render threads (default: number of available processors)");
+        OptionBuilder.hasArg();
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_THREADS));
+
+        OptionBuilder.withArgName("tile size");
+        OptionBuilder.withDescription("Optional edge length in pixels of the tiles rendered in parallel (default: "
+                + TileScheduler.DEFAULT_TILE_SIZE + ")");
+        OptionBuilder.hasArg();
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_TILE_SIZE));
+
+        OptionBuilder.withArgName("seconds");
+        OptionBuilder.withDescription("Optional time budget for progressive rendering (default: "
+                + DEFAULT_TIME_BUDGET + " if a noise threshold is given)");
+        OptionBuilder.hasArg();
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_TIME_BUDGET));
+
+        OptionBuilder.withArgName("noise");
+        OptionBuilder.withDescription("Optional relative noise at which progressive rendering stops (e.g. 0.01)");
+        OptionBuilder.hasArg();
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_NOISE_THRESHOLD));
+
+        OptionBuilder.withArgName("seconds");
+        OptionBuilder.withDescription("Optional interval between intermediate images of progressive rendering "
+                + "(default: " + DEFAULT_PREVIEW_INTERVAL + ")");
+        OptionBuilder.hasArg();
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_PREVIEW_INTERVAL));
+
+        OptionBuilder.withArgName("rays");
+        OptionBuilder.withDescription("Optional number of camera rays traced together as packet (default: 1, at most "
+                + RayPacket.MAX_SIZE + ")");
+        OptionBuilder.hasArg();
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_PACKET_SIZE));
+
+        OptionBuilder.withArgName("<error threshold> [max passes]");
+        OptionBuilder.withDescription("Optional adaptive sampling: pixels with a relative error above the threshold get "
+                + "more passes of camera samples, up to the maximum (default: " + DEFAULT_ADAPTIVE_MAX_PASSES + ")");
+        OptionBuilder.hasArgs(2);
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_ADAPTIVE));
+
+        OptionBuilder.withArgName("<port> [local workers]");
+        OptionBuilder.withDescription("Optional render farm: the image is rendered by workers connecting to the port "
+                + "(0: any free port), optionally started on this machine");
+        OptionBuilder.hasArgs(2);
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_FARM));
+
+        OptionBuilder.withArgName("<first frame> [last frame]");
+        OptionBuilder.withDescription("Optional sequence of animation frames to render, saved as color_<camera>_<frame>");
+        OptionBuilder.hasArgs(2);
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_FRAMES));
+
+        OptionBuilder.withArgName("seconds");
+        OptionBuilder.withDescription("Optional checkpoints of the rendered tiles, saved as color_<camera>.checkpoint "
+                + "at the given interval (default: " + CheckpointRenderer.DEFAULT_INTERVAL.getSeconds() + ")");
+        OptionBuilder.hasOptionalArg();
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_CHECKPOINT));
+
+        OptionBuilder.withDescription("Optional: resume an interrupted rendering from its checkpoints, saving new "
+                + "checkpoints while rendering the remaining tiles");
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_RESUME));
+
+        OptionBuilder.withArgName("json file");
+        OptionBuilder.withDescription("Optional render statistics, printed at the end, saved as JSON (default: "
+                + DEFAULT_STATISTICS_FILE_NAME + ") and available via JMX while rendering");
+        OptionBuilder.hasOptionalArg();
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_STATISTICS));
+
+        OptionBuilder.withArgName("formats");
+        OptionBuilder.withDescription("Optional formats of the saved images (default: png). The high dynamic range "
+                + "formats pfm, hdr and exr contain the linear colors, without gamma correction");
+        OptionBuilder.hasArgs();
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_IMAGE_FORMAT));
+
+        OptionBuilder.withArgName("accelerator");
+        OptionBuilder.withDescription("Optional acceleration structure (automatic, linear, bvh, compiled, grid, "
+                + "quantizedbvh; default: automatic)");
+        OptionBuilder.hasArg();
+        OptionBuilder.isRequired(false);
+        options.addOption(OptionBuilder.create(COMMANDLINE_OPTION_ACCELERATOR));
+
         return options;
     }
 
@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import yaphyre.core.api.Sampler;
 import yaphyre.core.api.Tracer;
+import yaphyre.core.cameras.TileScheduler;
 
 import javax.annotation.Nonnull;
 
@@ -46,15 +47,25 @@ public class DefaultBindingModule extends PrivateModule {
     private final Supplier<Sampler> lightSamplerSupplier;
     private final Supplier<Sampler> defaultSamplerSupplier;
     private final Tracer tracer;
+    private final TileScheduler tileScheduler;
 
     public DefaultBindingModule(@Nonnull Supplier<Sampler> cameraSamplerSupplier,
                                 @Nonnull Supplier<Sampler> lightSamplerSupplier,
                                 @Nonnull Supplier<Sampler> defaultSamplerSupplier,
                                 @Nonnull Tracer tracer) {
+        this(cameraSamplerSupplier, lightSamplerSupplier, defaultSamplerSupplier, tracer, new TileScheduler());
+    }
+
+    public DefaultBindingModule(@Nonnull Supplier<Sampler> cameraSamplerSupplier,
+                                @Nonnull Supplier<Sampler> lightSamplerSupplier,
+                                @Nonnull Supplier<Sampler> defaultSamplerSupplier,
+                                @Nonnull Tracer tracer,
+                                @Nonnull TileScheduler tileScheduler) {
         this.cameraSamplerSupplier = cameraSamplerSupplier;
         this.lightSamplerSupplier = lightSamplerSupplier;
         this.defaultSamplerSupplier = defaultSamplerSupplier;
         this.tracer = tracer;
+        this.tileScheduler = tileScheduler;
     }
 
     @Override
@@ -96,4 +107,13 @@ public class DefaultBindingModule extends PrivateModule {
         return tracer;
     }
 
+    @Nonnull
+    @Exposed
+    @Provides
+    @Singleton
+    public TileScheduler providesTileScheduler() {
+        LOGGER.debug("Creating instance for Tile Scheduler: {}", tileScheduler);
+        return tileScheduler;
+    }
+
 }
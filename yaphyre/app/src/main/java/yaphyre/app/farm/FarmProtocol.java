@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.app.farm;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+import yaphyre.core.api.Tile;
+
+/**
+ * The messages exchanged between the {@link RenderCoordinator} and its {@link RenderWorker}s. All values are written
+ * with {@link DataOutput}, so they are in network byte order.
+ * <ol>
+ * <li>The worker connects and sends {@link #MAGIC} and {@link #VERSION}.</li>
+ * <li>The coordinator answers with the same and the command line describing the scene to render.</li>
+ * <li>The coordinator sends a {@link #REGION} message: the index of the camera and the region of its film to render.
+ * The worker renders the region and answers with a {@link #RESULT} message: the index of the camera and of the region
+ * followed by the recorded data of the region (see {@link yaphyre.core.films.ImageFile#writeRegion(Tile,
+ * DataOutput)}). This is repeated until all the regions are rendered.</li>
+ * <li>The coordinator sends {@link #SHUTDOWN} and closes the connection.</li>
+ * </ol>
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+final class FarmProtocol {
+
+    /**
+     * "YPRF": identifies the connections of the render farm.
+     */
+    static final int MAGIC = 0x59505246;
+    static final int VERSION = 1;
+
+    static final byte REGION = 1;
+    static final byte RESULT = 2;
+    static final byte SHUTDOWN = 3;
+
+    private FarmProtocol() {
+    }
+
+    static void writeHello(@Nonnull DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    /**
+     * Reads the greeting of the other side.
+     *
+     * @throws IOException If the other side does not speak this protocol.
+     */
+    static void readHello(@Nonnull DataInput input) throws IOException {
+        final int magic = input.readInt();
+        if (magic != MAGIC) {
+            throw new IOException(String.format("Not a render farm connection (magic: %08x)", magic));
+        }
+        final int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported protocol version %d (expected %d)", version, VERSION));
+        }
+    }
+
+    static void writeArguments(@Nonnull DataOutput output, @Nonnull List<String> arguments) throws IOException {
+        output.writeInt(arguments.size());
+        for (String argument : arguments) {
+            output.writeUTF(argument);
+        }
+    }
+
+    @Nonnull
+    static List<String> readArguments(@Nonnull DataInput input) throws IOException {
+        final int count = input.readInt();
+        final List<String> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            arguments.add(input.readUTF());
+        }
+        return arguments;
+    }
+
+    static void writeRegion(@Nonnull DataOutput output, int camera, @Nonnull Tile region) throws IOException {
+        output.writeByte(REGION);
+        output.writeInt(camera);
+        writeTile(output, region);
+    }
+
+    static void writeTile(@Nonnull DataOutput output, @Nonnull Tile tile) throws IOException {
+        output.writeInt(tile.getIndex());
+        output.writeInt(tile.getXStart());
+        output.writeInt(tile.getYStart());
+        output.writeInt(tile.getXEnd());
+        output.writeInt(tile.getYEnd());
+    }
+
+    @Nonnull
+    static Tile readTile(@Nonnull DataInput input) throws IOException {
+        final int index = input.readInt();
+        final int xStart = input.readInt();
+        final int yStart = input.readInt();
+        final int xEnd = input.readInt();
+        final int yEnd = input.readInt();
+        try {
+            return new Tile(index, xStart, yStart, xEnd, yEnd);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid region: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the type of the next message and checks that it is one of the expected types.
+     */
+    static byte readMessageType(@Nonnull DataInput input, byte... expectedTypes) throws IOException {
+        final byte type = input.readByte();
+        for (byte expectedType : expectedTypes) {
+            if (type == expectedType) {
+                return type;
+            }
+        }
+        throw new IOException("Unexpected message type: " + type);
+    }
+
+}
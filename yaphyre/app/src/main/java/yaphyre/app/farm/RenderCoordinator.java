@@ -0,0 +1,419 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.app.farm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.api.Camera;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Tile;
+import yaphyre.core.cameras.AbstractCamera;
+import yaphyre.core.cameras.TileScheduler;
+import yaphyre.core.films.ImageFile;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Coordinator of the render farm. It splits the films of a scene into regions and hands them out to the
+ * {@link RenderWorker}s connected to it, one region per worker at a time, so faster workers get more regions. The
+ * recorded data of the rendered regions is merged into the films of the coordinator, which can then be saved as
+ * usual.<br/>
+ * The workers set up the scene from the command line of the coordinator, so they render exactly the same scene. They
+ * may connect at any time during the rendering. If the connection to a worker is lost, or a worker does not deliver a
+ * region within the region timeout, the worker is dropped and the region it was rendering is handed out again. The
+ * rendering fails if a region is lost too many times, or if no worker is connected for a while.
+ * <br/>
+ * The data of a region is received completely before it is merged, so a lost worker never leaves partial data on the
+ * films.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class RenderCoordinator implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderCoordinator.class);
+
+    /**
+     * Default edge length of the regions handed out to the workers. Workers split them further into tiles rendered in
+     * parallel.
+     */
+    public static final int DEFAULT_REGION_SIZE = 2 * TileScheduler.DEFAULT_TILE_SIZE;
+
+    public static final Duration DEFAULT_WORKER_TIMEOUT = Duration.ofMinutes(1);
+
+    public static final Duration DEFAULT_REGION_TIMEOUT = Duration.ofMinutes(10);
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /**
+     * Interval in which waiting threads check if the rendering is finished.
+     */
+    private static final int POLL_INTERVAL_MILLIS = 100;
+
+    private final ServerSocket serverSocket;
+    private final List<String> arguments;
+    private final int regionSize;
+    private final Duration workerTimeout;
+    private final Duration regionTimeout;
+    private final int maxAttempts;
+
+    private final List<Process> localWorkers = new CopyOnWriteArrayList<>();
+    private final ExecutorService connectionPool = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("render-farm-%d").setDaemon(true).build());
+
+    /**
+     * Creates a coordinator with the default region size, timeouts and maximum number of attempts.
+     *
+     * @see #RenderCoordinator(int, List, int, Duration, Duration, int)
+     */
+    public RenderCoordinator(int port, @Nonnull List<String> arguments) throws IOException {
+        this(port, arguments, DEFAULT_REGION_SIZE, DEFAULT_WORKER_TIMEOUT, DEFAULT_REGION_TIMEOUT,
+                DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Creates a coordinator listening for workers on the given port.
+     *
+     * @param port          The port to listen on. 0 selects a free port (see {@link #getPort()}).
+     * @param arguments     The command line describing the scene, which is sent to the workers.
+     * @param regionSize    The edge length of the regions handed out to the workers.
+     * @param workerTimeout The time after which the rendering fails if no worker is connected.
+     * @param regionTimeout The time a worker may stay silent, i.e. the time it has to render a region. A worker
+     *                      exceeding it is dropped and its region is handed out again.
+     * @param maxAttempts   The number of times a region is handed out before the rendering fails.
+     * @throws IOException If the port can not be opened.
+     */
+    public RenderCoordinator(int port, @Nonnull List<String> arguments, int regionSize,
+                             @Nonnull Duration workerTimeout, @Nonnull Duration regionTimeout, int maxAttempts)
+            throws IOException {
+        checkArgument(regionSize > 0, "the region size must be positive");
+        checkArgument(!regionTimeout.isNegative() && !regionTimeout.isZero(), "the region timeout must be positive");
+        checkArgument(maxAttempts > 0, "the number of attempts must be positive");
+        this.arguments = Collections.unmodifiableList(new ArrayList<>(arguments));
+        this.regionSize = regionSize;
+        this.workerTimeout = workerTimeout;
+        this.regionTimeout = regionTimeout;
+        this.maxAttempts = maxAttempts;
+        serverSocket = new ServerSocket(port);
+        serverSocket.setSoTimeout(POLL_INTERVAL_MILLIS);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Starts a worker in a new process on this machine. It uses the same Java installation and class path as this
+     * process and connects over the loopback interface. The output of the worker is written to a log file of its own
+     * in the temporary directory, so it does not interleave with the output of this process. The process is destroyed
+     * when the coordinator is closed.
+     *
+     * @return The worker process.
+     * @throws IOException If the process can not be started.
+     */
+    @Nonnull
+    public Process startLocalWorker() throws IOException {
+        final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        final Path logFile = Files.createTempFile("yaphyre-worker-", ".log");
+        final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                RenderWorker.class.getName(), InetAddress.getLoopbackAddress().getHostAddress(),
+                String.valueOf(getPort()))
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        localWorkers.add(process);
+        LOGGER.info("Started local worker, logging to {}", logFile);
+        return process;
+    }
+
+    /**
+     * Renders the films of all the cameras of the scene on the workers. Only cameras derived from
+     * {@link AbstractCamera} recording to an {@link ImageFile} are supported, the others are skipped. This method
+     * blocks until every region is rendered and merged into its film.
+     *
+     * @param scene The scene to render. It has to be set up from the same command line as the workers.
+     * @throws RuntimeException If the rendering fails, see {@link RenderCoordinator}.
+     */
+    public void render(@Nonnull Scene scene) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final TileScheduler regionScheduler = new TileScheduler(1, regionSize);
+        final List<Region> regions = new ArrayList<>();
+        final List<Camera> cameras = scene.getCameras();
+        for (int cameraIndex = 0; cameraIndex < cameras.size(); cameraIndex++) {
+            final Camera camera = cameras.get(cameraIndex);
+            if (!(camera instanceof AbstractCamera) || !(camera.getFilm() instanceof ImageFile)) {
+                LOGGER.warn("Camera {} can not be rendered by the render farm", cameraIndex);
+                continue;
+            }
+            final ImageFile film = (ImageFile) camera.getFilm();
+            for (Tile tile : regionScheduler.createTiles(film.getNativeResolution().getFirst(),
+                    film.getNativeResolution().getSecond())) {
+                regions.add(new Region(cameraIndex, tile, film));
+            }
+        }
+
+        final RenderJob job = new RenderJob(regions);
+        connectionPool.submit(() -> acceptWorkers(job));
+        try {
+            job.await();
+        } finally {
+            job.finish();
+        }
+        LOGGER.info("Rendered {} regions on the render farm in {}", regions.size(), stopwatch);
+    }
+
+    private void acceptWorkers(RenderJob job) {
+        while (!job.isFinished()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connectionPool.submit(() -> serveWorker(socket, job));
+            } catch (SocketTimeoutException e) {
+                // check if the job is finished
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    job.fail(new RuntimeException("Unable to accept workers", e));
+                }
+                return;
+            }
+        }
+    }
+
+    private void serveWorker(Socket socket, RenderJob job) {
+        final String worker = String.valueOf(socket.getRemoteSocketAddress());
+        boolean connected = false;
+        Region region = null;
+        try (Socket ignored = socket) {
+            socket.setTcpNoDelay(true);
+            // a worker sends nothing while rendering a region, so the read timeout limits the time per region
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, regionTimeout.toMillis()));
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            FarmProtocol.readHello(input);
+            FarmProtocol.writeHello(output);
+            FarmProtocol.writeArguments(output, arguments);
+            output.flush();
+            job.workerConnected();
+            connected = true;
+            LOGGER.info("Worker {} connected", worker);
+
+            while ((region = job.nextRegion()) != null) {
+                FarmProtocol.writeRegion(output, region.camera, region.tile);
+                output.flush();
+
+                FarmProtocol.readMessageType(input, FarmProtocol.RESULT);
+                if (input.readInt() != region.camera || input.readInt() != region.tile.getIndex()) {
+                    throw new IOException("Received the result of another region");
+                }
+                final byte[] data = new byte[region.tile.getPixelCount() * ImageFile.BYTES_PER_PIXEL];
+                input.readFully(data);
+                region.film.addRegion(region.tile, new DataInputStream(new ByteArrayInputStream(data)));
+                job.completed(region);
+                region = null;
+            }
+
+            output.writeByte(FarmProtocol.SHUTDOWN);
+            output.flush();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Lost worker {}: {}", worker, e.toString());
+            if (region != null) {
+                job.retry(region);
+            }
+        } finally {
+            if (connected) {
+                job.workerDisconnected();
+            }
+        }
+    }
+
+    /**
+     * Destroys the local workers and stops listening for workers.
+     */
+    @Override
+    public void close() throws IOException {
+        connectionPool.shutdownNow();
+        for (Process process : localWorkers) {
+            process.destroy();
+        }
+        serverSocket.close();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("port", getPort())
+                .add("regionSize", regionSize)
+                .add("workerTimeout", workerTimeout)
+                .add("regionTimeout", regionTimeout)
+                .add("maxAttempts", maxAttempts).toString();
+    }
+
+    /**
+     * A region of the film of a camera, which is rendered by one worker.
+     */
+    private static class Region {
+
+        private final int camera;
+        private final Tile tile;
+        private final ImageFile film;
+        private int attempts;
+
+        private Region(int camera, Tile tile, ImageFile film) {
+            this.camera = camera;
+            this.tile = tile;
+            this.film = film;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("camera", camera)
+                    .add("tile", tile).toString();
+        }
+    }
+
+    /**
+     * The state of one call of {@link #render(Scene)}, shared by the threads serving the workers.
+     */
+    private class RenderJob {
+
+        private final BlockingDeque<Region> pendingRegions;
+        private final CountDownLatch remainingRegions;
+        private final AtomicInteger connectedWorkers = new AtomicInteger();
+        private volatile long lastWorkerSeen = System.nanoTime();
+        private volatile RuntimeException failure;
+        private volatile boolean finished;
+
+        private RenderJob(List<Region> regions) {
+            pendingRegions = new LinkedBlockingDeque<>(regions);
+            remainingRegions = new CountDownLatch(regions.size());
+        }
+
+        /**
+         * @return The next region to render or <code>null</code> if the job is finished.
+         */
+        private Region nextRegion() {
+            try {
+                while (!isFinished()) {
+                    final Region region = pendingRegions.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (region != null) {
+                        return region;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+
+        private void completed(Region region) {
+            LOGGER.debug("Rendered {}", region);
+            remainingRegions.countDown();
+        }
+
+        /**
+         * Hands out a region again, which was lost with its worker.
+         */
+        private void retry(Region region) {
+            region.attempts++;
+            if (region.attempts >= maxAttempts) {
+                fail(new RuntimeException("Rendering " + region + " failed " + region.attempts + " times"));
+            } else {
+                LOGGER.info("Handing out {} again", region);
+                pendingRegions.addFirst(region);
+            }
+        }
+
+        private void fail(RuntimeException exception) {
+            failure = exception;
+            finished = true;
+        }
+
+        private void workerConnected() {
+            connectedWorkers.incrementAndGet();
+        }
+
+        private void workerDisconnected() {
+            connectedWorkers.decrementAndGet();
+            lastWorkerSeen = System.nanoTime();
+        }
+
+        private boolean isFinished() {
+            return finished || remainingRegions.getCount() == 0;
+        }
+
+        private void finish() {
+            finished = true;
+        }
+
+        /**
+         * Waits until every region is rendered.
+         *
+         * @throws RuntimeException If the rendering failed.
+         */
+        private void await() {
+            try {
+                while (!remainingRegions.await(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (failure == null && connectedWorkers.get() == 0
+                            && System.nanoTime() - lastWorkerSeen > workerTimeout.toNanos()) {
+                        fail(new RuntimeException("No worker connected within " + workerTimeout));
+                    }
+                    if (failure != null) {
+                        LOGGER.error("Render farm failed", failure);
+                        throw failure;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the workers", e);
+            }
+        }
+    }
+
+}
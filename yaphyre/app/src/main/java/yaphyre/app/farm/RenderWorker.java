@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.app.farm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.app.YaPhyRe;
+import yaphyre.core.api.Camera;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Tile;
+import yaphyre.core.cameras.AbstractCamera;
+import yaphyre.core.films.ImageFile;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A worker of the render farm. It connects to a {@link RenderCoordinator}, sets up the scene from the command line
+ * sent by the coordinator and renders the regions of the films it gets, one after the other, until the coordinator
+ * shuts it down. Each region is rendered with all the render threads of the worker (see
+ * {@link AbstractCamera#renderRegion(Scene, Tile)}).<br/>
+ * Workers are started as separate processes, either by the coordinator on the same machine or by hand on other
+ * machines:
+ * <pre>
+ * java -cp yaphyre-app.jar yaphyre.app.farm.RenderWorker &lt;coordinator host&gt; &lt;port&gt;
+ * </pre>
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class RenderWorker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderWorker.class);
+
+    private final String host;
+    private final int port;
+
+    public RenderWorker(@Nonnull String host, int port) {
+        checkArgument(port > 0 && port <= 0xffff, "invalid port: %s", port);
+        this.host = host;
+        this.port = port;
+    }
+
+    public static void main(String... arguments) {
+        if (arguments.length != 2) {
+            LOGGER.error("Usage: RenderWorker <coordinator host> <port>");
+            System.exit(1);
+        }
+        new RenderWorker(arguments[0], Integer.parseInt(arguments[1])).run();
+    }
+
+    /**
+     * Connects to the coordinator and renders regions until the coordinator shuts this worker down.
+     *
+     * @return The number of regions rendered.
+     */
+    public int run() {
+        LOGGER.info("Connecting to render farm coordinator at {}:{}", host, port);
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            FarmProtocol.writeHello(output);
+            output.flush();
+            FarmProtocol.readHello(input);
+            final List<String> arguments = FarmProtocol.readArguments(input);
+
+            final Scene scene = YaPhyRe.createScene(arguments.toArray(new String[arguments.size()]));
+            scene.freeze();
+
+            int regions = 0;
+            while (FarmProtocol.readMessageType(input, FarmProtocol.REGION, FarmProtocol.SHUTDOWN)
+                    == FarmProtocol.REGION) {
+                final int cameraIndex = input.readInt();
+                final Tile region = FarmProtocol.readTile(input);
+                final ImageFile film = renderRegion(scene, cameraIndex, region);
+
+                output.writeByte(FarmProtocol.RESULT);
+                output.writeInt(cameraIndex);
+                output.writeInt(region.getIndex());
+                film.writeRegion(region, output);
+                output.flush();
+                regions++;
+            }
+            LOGGER.info("Shut down by coordinator after rendering {} regions", regions);
+            return regions;
+        } catch (IOException e) {
+            LOGGER.error("Lost connection to render farm coordinator at " + host + ":" + port, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ImageFile renderRegion(Scene scene, int cameraIndex, Tile region) throws IOException {
+        final List<Camera> cameras = scene.getCameras();
+        if (cameraIndex < 0 || cameraIndex >= cameras.size()
+                || !(cameras.get(cameraIndex) instanceof AbstractCamera)
+                || !(cameras.get(cameraIndex).getFilm() instanceof ImageFile)) {
+            throw new IOException("Camera " + cameraIndex + " can not be rendered by a worker");
+        }
+
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final AbstractCamera camera = (AbstractCamera) cameras.get(cameraIndex);
+        camera.renderRegion(scene, region);
+        LOGGER.debug("Rendered {} of camera {} in {}", region, cameraIndex, stopwatch);
+        return (ImageFile) camera.getFilm();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("host", host)
+                .add("port", port).toString();
+    }
+
+}
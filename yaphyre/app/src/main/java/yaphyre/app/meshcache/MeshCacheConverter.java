@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.app.meshcache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.TriangleMesh;
+import yaphyre.core.shapes.TriangleMeshFile;
+
+/**
+ * Command line tool converting a Wavefront OBJ file into a mesh cache file (see {@link TriangleMeshFile}). The
+ * conversion parses the text and builds the hierarchy once, so scenes referring to the cache file can map it at
+ * startup instead.<br/>
+ * Usage: <code>MeshCacheConverter &lt;input.obj&gt; &lt;output.mesh&gt;</code>
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class MeshCacheConverter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MeshCacheConverter.class);
+
+    public static void main(String... arguments) throws IOException {
+        if (arguments.length != 2) {
+            LOGGER.error("Usage: MeshCacheConverter <input.obj> <output.mesh>");
+            System.exit(1);
+        }
+        convert(Paths.get(arguments[0]), Paths.get(arguments[1]));
+    }
+
+    /**
+     * Convert the OBJ file into a mesh cache file.
+     *
+     * @param objFile   The OBJ file to read.
+     * @param cacheFile The mesh cache file to write. An existing file is overwritten.
+     * @throws IOException If one of the files cannot be read or written.
+     */
+    public static void convert(Path objFile, Path cacheFile) throws IOException {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final TriangleMesh mesh = WavefrontObjReader.read(objFile, Transformation.IDENTITY,
+                new ColorShader(Color.WHITE));
+        LOGGER.info("Read {} from '{}' in {}", mesh, objFile, stopwatch);
+
+        stopwatch.reset().start();
+        TriangleMeshFile.write(mesh, cacheFile);
+        LOGGER.info("Wrote '{}' in {}", cacheFile, stopwatch);
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.app.meshcache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.api.Shader;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.shapes.TriangleMesh;
+
+/**
+ * Minimal reader for Wavefront OBJ files. Only the geometry is read: the vertex positions (<code>v</code>), texture
+ * coordinates (<code>vt</code>), normals (<code>vn</code>) and the faces (<code>f</code>). Polygons are split into
+ * triangle fans. Everything else (groups, materials, ...) is ignored.<br/>
+ * Since a {@link TriangleMesh} has a single index per vertex, every distinct combination of position, texture
+ * coordinate and normal indices becomes a vertex of the mesh. Normals and texture coordinates are only used if every
+ * corner of every face refers to one.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class WavefrontObjReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WavefrontObjReader.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final FloatList objPositions = new FloatList();
+    private final FloatList objUVs = new FloatList();
+    private final FloatList objNormals = new FloatList();
+
+    private final Map<String, Integer> vertices = new HashMap<>();
+    private final FloatList positions = new FloatList();
+    private final FloatList uvs = new FloatList();
+    private final FloatList normals = new FloatList();
+    private final IntList indices = new IntList();
+    private boolean allCornersHaveUVs = true;
+    private boolean allCornersHaveNormals = true;
+
+    private int lineNumber;
+
+    private WavefrontObjReader() {
+    }
+
+    /**
+     * Read the OBJ file and create a mesh of it.
+     *
+     * @param objFile       The file to read.
+     * @param objectToWorld The {@link Transformation} of the mesh.
+     * @param shader        The {@link Shader} of the mesh.
+     * @return The mesh with all the faces of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    @Nonnull
+    public static TriangleMesh read(@Nonnull Path objFile, @Nonnull Transformation objectToWorld,
+                                    @Nonnull Shader shader) throws IOException {
+        final WavefrontObjReader reader = new WavefrontObjReader();
+        try (BufferedReader lines = Files.newBufferedReader(objFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                reader.lineNumber++;
+                reader.parseLine(line.trim());
+            }
+        }
+        return reader.createMesh(objectToWorld, shader);
+    }
+
+    private void parseLine(@Nonnull String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        final String[] tokens = WHITESPACE.split(line);
+        switch (tokens[0]) {
+            case "v":
+                addFloats(objPositions, tokens, 3);
+                break;
+            case "vt":
+                addFloats(objUVs, tokens, 2);
+                break;
+            case "vn":
+                addFloats(objNormals, tokens, 3);
+                break;
+            case "f":
+                parseFace(tokens);
+                break;
+            default:
+                // everything else does not describe the geometry
+        }
+    }
+
+    private void addFloats(@Nonnull FloatList target, @Nonnull String[] tokens, int count) {
+        if (tokens.length <= count) {
+            throw parseError("expected " + count + " values");
+        }
+        for (int i = 1; i <= count; i++) {
+            target.add(Float.parseFloat(tokens[i]));
+        }
+    }
+
+    private void parseFace(@Nonnull String[] tokens) {
+        if (tokens.length < 4) {
+            throw parseError("a face needs at least three corners");
+        }
+        final int first = addVertex(tokens[1]);
+        int previous = addVertex(tokens[2]);
+        for (int i = 3; i < tokens.length; i++) {
+            final int current = addVertex(tokens[i]);
+            indices.add(first);
+            indices.add(previous);
+            indices.add(current);
+            previous = current;
+        }
+    }
+
+    /**
+     * Add the vertex of a face corner (<code>v</code>, <code>v/vt</code>, <code>v//vn</code> or
+     * <code>v/vt/vn</code>) unless the same combination was used before.
+     */
+    private int addVertex(@Nonnull String corner) {
+        final String[] parts = corner.split("/", -1);
+        final int position = resolveIndex(parts[0], objPositions.size() / 3);
+        final int uv = parts.length > 1 && !parts[1].isEmpty() ? resolveIndex(parts[1], objUVs.size() / 2) : -1;
+        final int normal = parts.length > 2 && !parts[2].isEmpty() ? resolveIndex(parts[2], objNormals.size() / 3) : -1;
+        allCornersHaveUVs &= uv >= 0;
+        allCornersHaveNormals &= normal >= 0;
+
+        final String key = position + "/" + uv + "/" + normal;
+        final Integer existing = vertices.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        final int vertex = positions.size() / 3;
+        positions.addAll(objPositions, position * 3, 3);
+        if (uv >= 0) {
+            uvs.addAll(objUVs, uv * 2, 2);
+        } else {
+            uvs.add(0f);
+            uvs.add(0f);
+        }
+        if (normal >= 0) {
+            normals.addAll(objNormals, normal * 3, 3);
+        } else {
+            normals.add(0f);
+            normals.add(0f);
+            normals.add(0f);
+        }
+        vertices.put(key, vertex);
+        return vertex;
+    }
+
+    /**
+     * OBJ indices start with 1, negative indices are relative to the end of the list read so far.
+     */
+    private int resolveIndex(@Nonnull String token, int count) {
+        final int index = Integer.parseInt(token);
+        final int resolved = index < 0 ? count + index : index - 1;
+        if (resolved < 0 || resolved >= count) {
+            throw parseError("index out of range: " + token);
+        }
+        return resolved;
+    }
+
+    @Nonnull
+    private TriangleMesh createMesh(@Nonnull Transformation objectToWorld, @Nonnull Shader shader) {
+        LOGGER.debug("Read {} vertices and {} triangles", positions.size() / 3, indices.size() / 3);
+        return new TriangleMesh(objectToWorld, shader,
+                positions.toArray(),
+                allCornersHaveNormals ? normals.toArray() : null,
+                allCornersHaveUVs ? uvs.toArray() : null,
+                indices.toArray());
+    }
+
+    @Nonnull
+    private RuntimeException parseError(@Nonnull String message) {
+        final String errorMessage = "Invalid OBJ file at line " + lineNumber + ": " + message;
+        LOGGER.error(errorMessage);
+        return new RuntimeException(errorMessage);
+    }
+
+    /**
+     * Growable list of primitive floats, so huge files do not end up as boxed values.
+     */
+    private static class FloatList {
+
+        private float[] values = new float[1024];
+        private int size;
+
+        void add(float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(@Nonnull FloatList source, int offset, int count) {
+            for (int i = offset; i < offset + count; i++) {
+                add(source.values[i]);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        @Nonnull
+        float[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static class IntList {
+
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        @Nonnull
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+}
@@ -17,10 +17,14 @@
 package yaphyre.app.scenereader.simple;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Supplier;
 import javax.annotation.Nonnull;
@@ -46,6 +50,7 @@ import yaphyre.app.scenereader.simple.jaxb.Camera;
 import yaphyre.app.scenereader.simple.jaxb.GeometryBase;
 import yaphyre.app.scenereader.simple.jaxb.GlobalSettings;
 import yaphyre.app.scenereader.simple.jaxb.LightBase;
+import yaphyre.app.scenereader.simple.jaxb.MeshFile;
 import yaphyre.app.scenereader.simple.jaxb.NamedType;
 import yaphyre.app.scenereader.simple.jaxb.OrthographicCamera;
 import yaphyre.app.scenereader.simple.jaxb.PerspectiveCamera;
@@ -55,6 +60,7 @@ import yaphyre.app.scenereader.simple.jaxb.Scale;
 import yaphyre.app.scenereader.simple.jaxb.SimpleScene;
 import yaphyre.app.scenereader.simple.jaxb.TransformationBase;
 import yaphyre.app.scenereader.simple.jaxb.Translate;
+import yaphyre.core.accelerators.Accelerators;
 import yaphyre.core.api.Film;
 import yaphyre.core.api.Light;
 import yaphyre.core.api.Scene;
@@ -75,8 +81,11 @@ import yaphyre.core.samplers.RegularSampler;
 import yaphyre.core.samplers.SingleValueSampler;
 import yaphyre.core.samplers.StratifiedSampler;
 import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.Instance;
 import yaphyre.core.shapes.Plane;
 import yaphyre.core.shapes.SimpleSphere;
+import yaphyre.core.shapes.TriangleMesh;
+import yaphyre.core.shapes.TriangleMeshFile;
 import yaphyre.core.tracers.DebuggingRayCaster;
 import yaphyre.core.tracers.RayCaster;
 
@@ -100,6 +109,11 @@ public class SimpleSceneFileReader implements SceneReader {
 
     private final File sceneFile;
 
+    /**
+     * Each mesh file is mapped once. All the geometry elements referring to it become {@link Instance}s of this mesh.
+     */
+    private final Map<Path, TriangleMesh> meshes = new HashMap<>();
+
     public SimpleSceneFileReader(@Nonnull File sceneFile) {
         checkArgument(sceneFile.exists());
         checkArgument(sceneFile.canRead());
@@ -142,7 +156,7 @@ public class SimpleSceneFileReader implements SceneReader {
                 .map(this::mapCamera)
                 .forEach(result::addCamera);
 
-        simpleScene.getGeometry().getSimpleSphereOrPlane().stream()
+        simpleScene.getGeometry().getSimpleSphereOrPlaneOrMeshFile().stream()
                 .map(this::mapGeometry)
                 .forEach(result::addShape);
 
@@ -153,6 +167,22 @@ public class SimpleSceneFileReader implements SceneReader {
         return result;
     }
 
+    @Nonnull
+    private TriangleMesh mapMesh(@Nonnull Path meshFile, @Nonnull Shader shader) {
+        TriangleMesh mesh = meshes.get(meshFile);
+        if (mesh == null) {
+            try {
+                mesh = TriangleMeshFile.map(meshFile, Transformation.IDENTITY, shader);
+            } catch (IOException e) {
+                final String errorMessage = "Unable to read mesh file '" + meshFile + "'";
+                LOGGER.error(errorMessage, e);
+                throw new RuntimeException(errorMessage, e);
+            }
+            meshes.put(meshFile, mesh);
+        }
+        return mesh;
+    }
+
     @Nonnull
     private Light mapLight(@Nonnull LightBase lightBase) {
         final double power = lightBase.getPower();
@@ -201,6 +231,10 @@ public class SimpleSceneFileReader implements SceneReader {
 
             case "Plane":
                 return new Plane(transformation, shader);
+
+            case "MeshFile":
+                final Path meshFile = sceneFile.toPath().resolveSibling(((MeshFile) geometryBase).getFile().trim());
+                return new Instance(transformation, shader, mapMesh(meshFile, shader));
         }
 
         final String errorMessage = "Unknown geometry type: '" + geometryTypeName + "'";
@@ -273,7 +307,11 @@ public class SimpleSceneFileReader implements SceneReader {
                         createTracer(globalSettings)
                 ),
                 new SolverBindingModule());
-        return injector.getInstance(Scene.class);
+        final Scene scene = injector.getInstance(Scene.class);
+        Optional.ofNullable(globalSettings.getAccelerator())
+                .map(accelerator -> Accelerators.forName(accelerator.value()))
+                .ifPresent(scene::setAcceleratorType);
+        return scene;
     }
 
     @Nonnull
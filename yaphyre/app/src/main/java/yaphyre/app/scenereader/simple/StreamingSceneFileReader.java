@@ -0,0 +1,793 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.app.scenereader.simple;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+
+import com.google.common.base.Stopwatch;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import yaphyre.app.dependencies.DefaultBindingModule;
+import yaphyre.app.dependencies.SolverBindingModule;
+import yaphyre.app.scenereader.SceneReader;
+import yaphyre.core.accelerators.Accelerators;
+import yaphyre.core.api.Camera;
+import yaphyre.core.api.Light;
+import yaphyre.core.api.Sampler;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Shader;
+import yaphyre.core.api.Shape;
+import yaphyre.core.api.Tracer;
+import yaphyre.core.cameras.OrthographicCamera;
+import yaphyre.core.cameras.PerspectiveCamera;
+import yaphyre.core.films.ImageFile;
+import yaphyre.core.lights.AmbientLight;
+import yaphyre.core.lights.PointLight;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.MathUtils;
+import yaphyre.core.math.Normal3D;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.samplers.HaltonSampler;
+import yaphyre.core.samplers.RegularSampler;
+import yaphyre.core.samplers.SingleValueSampler;
+import yaphyre.core.samplers.StratifiedSampler;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.Instance;
+import yaphyre.core.shapes.Plane;
+import yaphyre.core.shapes.SimpleSphere;
+import yaphyre.core.shapes.TriangleMesh;
+import yaphyre.core.shapes.TriangleMeshFile;
+import yaphyre.core.tracers.DebuggingRayCaster;
+import yaphyre.core.tracers.RayCaster;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Scene reader for the same simple scene description files as {@link SimpleSceneFileReader}, but without building a
+ * document tree in memory. The file is validated against the schema in a first streaming pass. The second pass reads
+ * it with StAX and creates the cameras, lights and shapes element by element. Named shaders and transformations are
+ * kept in a symbol table. Since the sections of the file may come in any order, geometry referring to a shader or
+ * transformation which is not yet known is kept as (small) pending description until the end of the file.<br/>
+ * So the load time grows linearly with the size of the file and the memory needed on top of the scene itself only
+ * grows with the number of named elements and forward references.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class StreamingSceneFileReader implements SceneReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingSceneFileReader.class);
+
+    private static final String SCHEMA_RESOURCE = "yaphyre/app/scenereader/simple/SimepleFileReaderSceneDescription.xsd";
+
+    private static final Normal3D CAMERA_DEFAULT_UP = Normal3D.NORMAL_Y;
+    private static final Color CAMERA_DEFAULT_SKY_COLOR = Color.BLACK;
+    private static final double CAMERA_DEFAULT_NEAR = MathUtils.EPSILON;
+    private static final double CAMERA_DEFAULT_FAR = 1d / MathUtils.EPSILON;
+    private static final Color LIGHT_DEFAULT_COLOR = Color.WHITE;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private final File sceneFile;
+
+    public StreamingSceneFileReader(@Nonnull File sceneFile) {
+        checkArgument(sceneFile.exists());
+        checkArgument(sceneFile.canRead());
+        this.sceneFile = sceneFile;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    @Override
+    @Nonnull
+    public Optional<Scene> readScene() {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        if (!validateFile()) {
+            return Optional.empty();
+        }
+        LOGGER.debug("Validated scene file '{}' in {}", sceneFile, stopwatch);
+
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(sceneFile))) {
+            final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+            try {
+                final Scene scene = new SceneParser(reader, sceneFile.toPath()).parse();
+                LOGGER.debug("Read {} from '{}' in {}", scene, sceneFile, stopwatch);
+                return Optional.of(scene);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            LOGGER.error("Error reading simple scene file");
+            LOGGER.debug("StreamingSceneFileReader error: " + e.getMessage(), e);
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Validate the scene file against the schema. The validator works on a SAX stream, so this does not build a
+     * document tree either.
+     */
+    private boolean validateFile() {
+        try {
+            final SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schemaFactory.newSchema(ClassLoader.getSystemResource(SCHEMA_RESOURCE))
+                    .newValidator()
+                    .validate(new StreamSource(sceneFile));
+            return true;
+        } catch (SAXException | IOException e) {
+            LOGGER.error("Error validating simple scene file");
+            LOGGER.debug("StreamingSceneFileReader error: " + e.getMessage(), e);
+        }
+        return false;
+    }
+
+    /**
+     * Holds the state of a single parse run: the symbol table and the objects which cannot be added to the scene yet.
+     * The reader is always positioned on the start tag of the element to be read, and the read methods leave it on the
+     * matching end tag.
+     */
+    private static class SceneParser {
+
+        private final XMLStreamReader reader;
+        private final Path sceneFile;
+
+        private final Map<String, Shader> shaders = new HashMap<>();
+        private final Map<String, Transformation> transformations = new HashMap<>();
+        private final List<PendingShape> pendingShapes = new ArrayList<>();
+
+        /**
+         * Each mesh file is mapped once. All the geometry elements referring to it become {@link Instance}s of this
+         * mesh.
+         */
+        private final Map<Path, TriangleMesh> meshes = new HashMap<>();
+
+        /**
+         * The scene can only be created once the global settings are known. Everything read before is buffered in
+         * these lists.
+         */
+        private Scene scene;
+        private final List<Camera> bufferedCameras = new ArrayList<>();
+        private final List<Light> bufferedLights = new ArrayList<>();
+        private final List<Shape> bufferedShapes = new ArrayList<>();
+
+        SceneParser(@Nonnull XMLStreamReader reader, @Nonnull Path sceneFile) {
+            this.reader = reader;
+            this.sceneFile = sceneFile;
+        }
+
+        @Nonnull
+        Scene parse() throws XMLStreamException {
+            reader.nextTag();
+            requireElement("simpleScene");
+
+            while (reader.nextTag() == START_ELEMENT) {
+                final String elementName = reader.getLocalName();
+                switch (elementName) {
+                    case "globalSettings":
+                        setupScene();
+                        break;
+                    case "cameras":
+                        while (reader.nextTag() == START_ELEMENT) {
+                            addCamera(readCamera());
+                        }
+                        break;
+                    case "lights":
+                        while (reader.nextTag() == START_ELEMENT) {
+                            addLight(readLight());
+                        }
+                        break;
+                    case "geometry":
+                        while (reader.nextTag() == START_ELEMENT) {
+                            readGeometry();
+                        }
+                        break;
+                    case "shaders":
+                        while (reader.nextTag() == START_ELEMENT) {
+                            final String id = readId();
+                            final Shader shader = readShader();
+                            if (id != null) {
+                                shaders.put(id, shader);
+                            }
+                        }
+                        break;
+                    case "transformations":
+                        while (reader.nextTag() == START_ELEMENT) {
+                            final String id = readId();
+                            final Transformation transformation = readTransformation();
+                            if (id != null) {
+                                transformations.put(id, transformation);
+                            }
+                        }
+                        break;
+                    default:
+                        throw unknownElement("scene section", elementName);
+                }
+            }
+
+            if (scene == null) {
+                final String errorMessage = "No global settings found";
+                LOGGER.error(errorMessage);
+                throw new RuntimeException(errorMessage);
+            }
+
+            pendingShapes.forEach(pendingShape -> scene.addShape(pendingShape.resolve(shaders, transformations, meshes)));
+            LOGGER.debug("Resolved {} forward references", pendingShapes.size());
+            pendingShapes.clear();
+
+            return scene;
+        }
+
+        private void addCamera(@Nonnull Camera camera) {
+            if (scene != null) {
+                scene.addCamera(camera);
+            } else {
+                bufferedCameras.add(camera);
+            }
+        }
+
+        private void addLight(@Nonnull Light light) {
+            if (scene != null) {
+                scene.addLight(light);
+            } else {
+                bufferedLights.add(light);
+            }
+        }
+
+        private void addShape(@Nonnull Shape shape) {
+            if (scene != null) {
+                scene.addShape(shape);
+            } else {
+                bufferedShapes.add(shape);
+            }
+        }
+
+        private void setupScene() throws XMLStreamException {
+            Tracer tracer = null;
+            Supplier<Sampler> cameraSampler = null;
+            Supplier<Sampler> lightSampler = null;
+            Supplier<Sampler> defaultSampler = null;
+            Accelerators accelerator = Accelerators.Automatic;
+
+            while (reader.nextTag() == START_ELEMENT) {
+                final String elementName = reader.getLocalName();
+                switch (elementName) {
+                    case "surfaceIntegrator":
+                        tracer = createTracer(reader.getElementText().trim());
+                        break;
+                    case "cameraSampler":
+                        cameraSampler = readSamplerSupplier();
+                        break;
+                    case "lightSampler":
+                        lightSampler = readSamplerSupplier();
+                        break;
+                    case "defaultSampler":
+                        defaultSampler = readSamplerSupplier();
+                        break;
+                    case "accelerator":
+                        accelerator = Accelerators.forName(reader.getElementText().trim());
+                        break;
+                    default:
+                        throw unknownElement("global setting", elementName);
+                }
+            }
+
+            final Injector injector = Guice.createInjector(
+                    new DefaultBindingModule(cameraSampler, lightSampler, defaultSampler, tracer),
+                    new SolverBindingModule());
+            scene = injector.getInstance(Scene.class);
+            scene.setAcceleratorType(accelerator);
+
+            bufferedCameras.forEach(scene::addCamera);
+            bufferedLights.forEach(scene::addLight);
+            bufferedShapes.forEach(scene::addShape);
+            bufferedCameras.clear();
+            bufferedLights.clear();
+            bufferedShapes.clear();
+        }
+
+        @Nonnull
+        private Supplier<Sampler> readSamplerSupplier() throws XMLStreamException {
+            final boolean singleInstance = Boolean.parseBoolean(reader.getAttributeValue(null, "singleInstance"));
+            String method = null;
+            int numberOfSamples = Integer.MIN_VALUE;
+
+            while (reader.nextTag() == START_ELEMENT) {
+                final String elementName = reader.getLocalName();
+                switch (elementName) {
+                    case "method":
+                        method = reader.getElementText().trim();
+                        break;
+                    case "samples":
+                        numberOfSamples = Integer.parseInt(reader.getElementText().trim());
+                        break;
+                    default:
+                        throw unknownElement("sampler setting", elementName);
+                }
+            }
+
+            final int samples = numberOfSamples;
+            switch (String.valueOf(method)) {
+                case "single":
+                    final SingleValueSampler singleValueSampler = new SingleValueSampler();
+                    return () -> singleValueSampler;
+
+                case "regular":
+                    if (singleInstance) {
+                        final RegularSampler regularSampler = new RegularSampler(samples);
+                        return () -> regularSampler;
+                    }
+                    return () -> new RegularSampler(samples);
+
+                case "stratified":
+                    if (singleInstance) {
+                        final StratifiedSampler stratifiedSampler = new StratifiedSampler(samples);
+                        return () -> stratifiedSampler;
+                    }
+                    return () -> new StratifiedSampler(samples);
+
+                case "halton":
+                    if (singleInstance) {
+                        final HaltonSampler haltonSampler = new HaltonSampler(samples);
+                        return () -> haltonSampler;
+                    }
+                    return () -> new HaltonSampler(samples);
+            }
+            throw unknownElement("sampling method", method);
+        }
+
+        @Nonnull
+        private Tracer createTracer(@Nonnull String surfaceIntegrator) {
+            switch (surfaceIntegrator) {
+                case "DebuggingRayCaster":
+                    return new DebuggingRayCaster(false);
+
+                case "RayCaster":
+                    return new RayCaster();
+            }
+            throw unknownElement("surface integrator", surfaceIntegrator);
+        }
+
+        @Nonnull
+        private Camera readCamera() throws XMLStreamException {
+            final String cameraType = reader.getLocalName();
+
+            int[] resolution = null;
+            Point3D position = null;
+            Point3D lookAt = null;
+            Normal3D up = CAMERA_DEFAULT_UP;
+            Color skyColor = CAMERA_DEFAULT_SKY_COLOR;
+            double uDimension = 0d;
+            double vDimension = 0d;
+            double zPosition = 0d;
+            double fov = 0d;
+            double aspectRatio = 0d;
+            double near = CAMERA_DEFAULT_NEAR;
+            double far = CAMERA_DEFAULT_FAR;
+
+            while (reader.nextTag() == START_ELEMENT) {
+                final String elementName = reader.getLocalName();
+                switch (elementName) {
+                    case "filetype":
+                        reader.getElementText();
+                        break;
+                    case "resolution":
+                        resolution = readInts();
+                        break;
+                    case "position":
+                        position = createPoint3D(readDoubles());
+                        break;
+                    case "lookAt":
+                        lookAt = createPoint3D(readDoubles());
+                        break;
+                    case "up":
+                        final double[] upComponents = readDoubles();
+                        up = new Normal3D(upComponents[0], upComponents[1], upComponents[2]);
+                        break;
+                    case "skycolor":
+                        skyColor = createColor(readDoubles());
+                        break;
+                    case "uDimension":
+                        uDimension = readDouble();
+                        break;
+                    case "vDimension":
+                        vDimension = readDouble();
+                        break;
+                    case "zPosition":
+                        zPosition = readDouble();
+                        break;
+                    case "fov":
+                        fov = readDouble();
+                        break;
+                    case "aspectRatio":
+                        aspectRatio = readDouble();
+                        break;
+                    case "near":
+                        near = readDouble();
+                        break;
+                    case "far":
+                        far = readDouble();
+                        break;
+                    default:
+                        throw unknownElement("camera setting", elementName);
+                }
+            }
+
+            checkArgument(resolution != null && resolution.length == 2, "camera resolution missing");
+            final ImageFile film = new ImageFile(resolution[0], resolution[1]);
+            switch (cameraType) {
+                case "orthographicCamera":
+                    return new OrthographicCamera(film, skyColor, uDimension, vDimension, zPosition);
+
+                case "perspectiveCamera":
+                    return new PerspectiveCamera(film, skyColor, position, lookAt, up, fov, aspectRatio, near, far);
+            }
+            throw unknownElement("camera type", cameraType);
+        }
+
+        @Nonnull
+        private Light readLight() throws XMLStreamException {
+            final String lightType = reader.getLocalName();
+
+            double power = 0d;
+            Color color = LIGHT_DEFAULT_COLOR;
+            Point3D position = null;
+
+            while (reader.nextTag() == START_ELEMENT) {
+                final String elementName = reader.getLocalName();
+                switch (elementName) {
+                    case "power":
+                        power = readDouble();
+                        break;
+                    case "color":
+                        color = createColor(readDoubles());
+                        break;
+                    case "position":
+                        position = createPoint3D(readDoubles());
+                        break;
+                    default:
+                        throw unknownElement("light setting", elementName);
+                }
+            }
+
+            switch (lightType) {
+                case "pointLight":
+                    return new PointLight(power, color, position);
+
+                case "ambientLight":
+                    return new AmbientLight(power);
+            }
+            throw unknownElement("light type", lightType);
+        }
+
+        /**
+         * Read one geometry element. The shape is created right away if its shader and transformation are known,
+         * otherwise it is kept as {@link PendingShape} until the end of the file.
+         */
+        private void readGeometry() throws XMLStreamException {
+            final String geometryType = reader.getLocalName();
+
+            Transformation transformation = null;
+            String transformationRef = null;
+            Shader shader = null;
+            String shaderRef = null;
+            Path meshFile = null;
+
+            while (reader.nextTag() == START_ELEMENT) {
+                final String elementName = reader.getLocalName();
+                switch (elementName) {
+                    case "transformationRef":
+                        transformationRef = reader.getElementText().trim();
+                        transformation = transformations.get(transformationRef);
+                        break;
+                    case "transformation":
+                        // the transformations are applied in the order of their appearance
+                        transformation = Transformation.IDENTITY;
+                        while (reader.nextTag() == START_ELEMENT) {
+                            transformation = readTransformation().mul(transformation);
+                        }
+                        break;
+                    case "shaderRef":
+                        shaderRef = reader.getElementText().trim();
+                        shader = shaders.get(shaderRef);
+                        break;
+                    case "shader":
+                        reader.nextTag();
+                        shader = readShader();
+                        reader.nextTag();
+                        break;
+                    case "file":
+                        meshFile = sceneFile.resolveSibling(reader.getElementText().trim());
+                        break;
+                    default:
+                        throw unknownElement("geometry setting", elementName);
+                }
+            }
+
+            if (transformation != null && shader != null) {
+                addShape(createShape(geometryType, transformation, shader, meshFile, meshes));
+            } else {
+                pendingShapes.add(new PendingShape(geometryType, transformation, transformationRef, shader, shaderRef,
+                        meshFile));
+            }
+        }
+
+        @Nonnull
+        private Shader readShader() throws XMLStreamException {
+            final String shaderType = reader.getLocalName();
+
+            Color color = null;
+            while (reader.nextTag() == START_ELEMENT) {
+                final String elementName = reader.getLocalName();
+                switch (elementName) {
+                    case "color":
+                        color = createColor(readDoubles());
+                        break;
+                    default:
+                        throw unknownElement("shader setting", elementName);
+                }
+            }
+
+            switch (shaderType) {
+                case "colorShader":
+                    return new ColorShader(color);
+            }
+            throw unknownElement("shader type", shaderType);
+        }
+
+        @Nonnull
+        private Transformation readTransformation() throws XMLStreamException {
+            final String transformationType = reader.getLocalName();
+
+            Transformation result = null;
+            while (reader.nextTag() == START_ELEMENT) {
+                final String elementName = reader.getLocalName();
+                switch (elementName) {
+                    case "offsets":
+                        final double[] offsets = readDoubles();
+                        result = Transformation.translate(offsets[0], offsets[1], offsets[2]);
+                        break;
+                    case "factors":
+                        final double[] factors = readDoubles();
+                        result = Transformation.scale(factors[0], factors[1], factors[2]);
+                        break;
+                    case "axis":
+                    case "free":
+                        result = readRotation(elementName);
+                        break;
+                    default:
+                        throw unknownElement("transformation setting", elementName);
+                }
+            }
+
+            if ("identity".equals(transformationType)) {
+                return Transformation.IDENTITY;
+            }
+            if (result == null) {
+                throw unknownElement("transformation type", transformationType);
+            }
+            return result;
+        }
+
+        @Nonnull
+        private Transformation readRotation(@Nonnull String rotationType) throws XMLStreamException {
+            String axisName = null;
+            double[] axis = null;
+            double amount = 0d;
+
+            while (reader.nextTag() == START_ELEMENT) {
+                final String elementName = reader.getLocalName();
+                switch (elementName) {
+                    case "axis":
+                        if ("axis".equals(rotationType)) {
+                            axisName = reader.getElementText().trim();
+                        } else {
+                            axis = readDoubles();
+                        }
+                        break;
+                    case "amount":
+                        amount = readDouble();
+                        break;
+                    default:
+                        throw unknownElement("rotation setting", elementName);
+                }
+            }
+
+            if (axis != null) {
+                return Transformation.rotate(amount, new Vector3D(axis[0], axis[1], axis[2]));
+            }
+            switch (String.valueOf(axisName)) {
+                case "X":
+                    return Transformation.rotateX(amount);
+                case "Y":
+                    return Transformation.rotateY(amount);
+                case "Z":
+                    return Transformation.rotateZ(amount);
+            }
+            throw unknownElement("rotation axis", axisName);
+        }
+
+        @Nullable
+        private String readId() {
+            return reader.getAttributeValue(null, "id");
+        }
+
+        private double readDouble() throws XMLStreamException {
+            return Double.parseDouble(reader.getElementText().trim());
+        }
+
+        @Nonnull
+        private double[] readDoubles() throws XMLStreamException {
+            final String[] values = WHITESPACE.split(reader.getElementText().trim());
+            final double[] result = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = Double.parseDouble(values[i]);
+            }
+            return result;
+        }
+
+        @Nonnull
+        private int[] readInts() throws XMLStreamException {
+            final String[] values = WHITESPACE.split(reader.getElementText().trim());
+            final int[] result = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = Integer.parseInt(values[i]);
+            }
+            return result;
+        }
+
+        private void requireElement(@Nonnull String elementName) {
+            if (!elementName.equals(reader.getLocalName())) {
+                throw unknownElement("root element", reader.getLocalName());
+            }
+        }
+
+        @Nonnull
+        private RuntimeException unknownElement(@Nonnull String kind, @Nullable String name) {
+            final String errorMessage = "Unknown " + kind + ": '" + name + "' at line "
+                    + reader.getLocation().getLineNumber();
+            LOGGER.error(errorMessage);
+            return new RuntimeException(errorMessage);
+        }
+
+    }
+
+    @Nonnull
+    private static Shape createShape(@Nonnull String geometryType, @Nonnull Transformation transformation,
+                                     @Nonnull Shader shader, @Nullable Path meshFile,
+                                     @Nonnull Map<Path, TriangleMesh> meshes) {
+        switch (geometryType) {
+            case "simpleSphere":
+                return new SimpleSphere(transformation, shader);
+
+            case "plane":
+                return new Plane(transformation, shader);
+
+            case "meshFile":
+                TriangleMesh mesh = meshes.get(meshFile);
+                if (mesh == null) {
+                    try {
+                        mesh = TriangleMeshFile.map(meshFile, Transformation.IDENTITY, shader);
+                    } catch (IOException e) {
+                        final String errorMessage = "Unable to read mesh file '" + meshFile + "'";
+                        LOGGER.error(errorMessage, e);
+                        throw new RuntimeException(errorMessage, e);
+                    }
+                    meshes.put(meshFile, mesh);
+                }
+                return new Instance(transformation, shader, mesh);
+        }
+
+        final String errorMessage = "Unknown geometry type: '" + geometryType + "'";
+        LOGGER.error(errorMessage);
+        throw new RuntimeException(errorMessage);
+    }
+
+    @Nonnull
+    private static Point3D createPoint3D(@Nonnull double[] components) {
+        checkArgument(components.length == 3);
+        return new Point3D(components[0], components[1], components[2]);
+    }
+
+    @Nonnull
+    private static Color createColor(@Nonnull double[] components) {
+        checkArgument(components.length == 3);
+        return new Color(components[0], components[1], components[2]);
+    }
+
+    /**
+     * A geometry element referring to a shader or transformation defined further down in the file. Only the names of
+     * the references are kept, the shape is created once all the symbols are known.
+     */
+    private static class PendingShape {
+
+        private final String geometryType;
+        private final Transformation transformation;
+        private final String transformationRef;
+        private final Shader shader;
+        private final String shaderRef;
+        private final Path meshFile;
+
+        PendingShape(@Nonnull String geometryType,
+                     @Nullable Transformation transformation, @Nullable String transformationRef,
+                     @Nullable Shader shader, @Nullable String shaderRef, @Nullable Path meshFile) {
+            this.geometryType = geometryType;
+            this.transformation = transformation;
+            this.transformationRef = transformationRef;
+            this.shader = shader;
+            this.shaderRef = shaderRef;
+            this.meshFile = meshFile;
+        }
+
+        @Nonnull
+        Shape resolve(@Nonnull Map<String, Shader> shaders, @Nonnull Map<String, Transformation> transformations,
+                      @Nonnull Map<Path, TriangleMesh> meshes) {
+            final Transformation resolvedTransformation = transformation != null
+                    ? transformation
+                    : lookup(transformations, transformationRef, "transformation");
+            final Shader resolvedShader = shader != null ? shader : lookup(shaders, shaderRef, "shader");
+            return createShape(geometryType, resolvedTransformation, resolvedShader, meshFile, meshes);
+        }
+
+        @Nonnull
+        private static <T> T lookup(@Nonnull Map<String, T> symbols, @Nullable String ref, @Nonnull String kind) {
+            final T result = symbols.get(ref);
+            if (result == null) {
+                final String errorMessage = "Unresolved " + kind + " reference: '" + ref + "'";
+                LOGGER.error(errorMessage);
+                throw new RuntimeException(errorMessage);
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.app.farm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import yaphyre.app.YaPhyRe;
+import yaphyre.core.api.Scene;
+import yaphyre.core.films.ImageFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders a scene with workers running as separate processes on this machine and compares the result with the scene
+ * rendered in this process.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class RenderFarmTest {
+
+    private static final List<String> ARGUMENTS = Arrays.asList("-scene", "x", "-cameraSampler", "regular", "2",
+            "-threads", "2");
+
+    private static final int REGION_SIZE = 48;
+
+    @Test
+    public void testRenderWithLocalWorkers() throws IOException {
+        final Scene scene = createScene();
+        try (RenderCoordinator coordinator = createCoordinator(Duration.ofMinutes(1))) {
+            coordinator.startLocalWorker();
+            coordinator.startLocalWorker();
+            coordinator.render(scene);
+        }
+
+        assertSameImage(renderLocally(), scene);
+    }
+
+    @Test
+    public void testLostRegionIsRenderedAgain() throws Exception {
+        final Scene scene = createScene();
+        try (RenderCoordinator coordinator = createCoordinator(Duration.ofMinutes(1))) {
+            final CountDownLatch regionTaken = new CountDownLatch(1);
+            final Thread lostWorker = new Thread(() -> takeRegionAndDisconnect(coordinator.getPort(), regionTaken));
+            lostWorker.start();
+            final Thread renderer = new Thread(() -> coordinator.render(scene));
+            renderer.start();
+
+            assertTrue(regionTaken.await(1, TimeUnit.MINUTES));
+            lostWorker.join();
+            coordinator.startLocalWorker();
+            renderer.join();
+        }
+
+        assertSameImage(renderLocally(), scene);
+    }
+
+    @Test
+    public void testRegionOfStalledWorkerIsRenderedAgain() throws Exception {
+        final Scene scene = createScene();
+        final CountDownLatch released = new CountDownLatch(1);
+        try (RenderCoordinator coordinator = createCoordinator(Duration.ofMinutes(1), Duration.ofSeconds(5))) {
+            final CountDownLatch regionTaken = new CountDownLatch(1);
+            final Thread stalledWorker = new Thread(() -> takeRegionAndStall(coordinator.getPort(), regionTaken,
+                    released));
+            stalledWorker.start();
+            final Thread renderer = new Thread(() -> coordinator.render(scene));
+            renderer.start();
+
+            assertTrue(regionTaken.await(1, TimeUnit.MINUTES));
+            coordinator.startLocalWorker();
+            renderer.join();
+            released.countDown();
+            stalledWorker.join();
+        }
+
+        assertSameImage(renderLocally(), scene);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRenderFailsWithoutWorkers() throws IOException {
+        final Scene scene = createScene();
+        try (RenderCoordinator coordinator = createCoordinator(Duration.ofMillis(200))) {
+            coordinator.render(scene);
+        }
+    }
+
+    private RenderCoordinator createCoordinator(Duration workerTimeout) throws IOException {
+        return createCoordinator(workerTimeout, RenderCoordinator.DEFAULT_REGION_TIMEOUT);
+    }
+
+    private RenderCoordinator createCoordinator(Duration workerTimeout, Duration regionTimeout) throws IOException {
+        return new RenderCoordinator(0, ARGUMENTS, REGION_SIZE, workerTimeout, regionTimeout,
+                RenderCoordinator.DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Acts as a worker which is lost after it got its first region.
+     */
+    private static void takeRegionAndDisconnect(int port, CountDownLatch regionTaken) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            takeRegion(socket);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            regionTaken.countDown();
+        }
+    }
+
+    /**
+     * Acts as a worker which hangs after it got its first region, keeping the connection open until it is released.
+     */
+    private static void takeRegionAndStall(int port, CountDownLatch regionTaken, CountDownLatch released) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            takeRegion(socket);
+            regionTaken.countDown();
+            released.await();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            regionTaken.countDown();
+        }
+    }
+
+    private static void takeRegion(Socket socket) throws IOException {
+        final DataInputStream input = new DataInputStream(socket.getInputStream());
+        final DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+        FarmProtocol.writeHello(output);
+        FarmProtocol.readHello(input);
+        FarmProtocol.readArguments(input);
+        FarmProtocol.readMessageType(input, FarmProtocol.REGION);
+        input.readInt();
+        FarmProtocol.readTile(input);
+    }
+
+    private static Scene createScene() {
+        final Scene scene = YaPhyRe.createScene(ARGUMENTS.toArray(new String[ARGUMENTS.size()]));
+        scene.freeze();
+        return scene;
+    }
+
+    private static Scene renderLocally() {
+        final Scene scene = createScene();
+        scene.getCameras().forEach(camera -> camera.renderScene(scene));
+        return scene;
+    }
+
+    private static void assertSameImage(Scene expectedScene, Scene actualScene) {
+        final ImageFile expected = (ImageFile) expectedScene.getCameras().get(0).getFilm();
+        final ImageFile actual = (ImageFile) actualScene.getCameras().get(0).getFilm();
+        final int xResolution = expected.getNativeResolution().getFirst();
+        final int yResolution = expected.getNativeResolution().getSecond();
+        for (int y = 0; y < yResolution; y++) {
+            for (int x = 0; x < xResolution; x++) {
+                assertEquals(expected.getSampleCount(x, y), actual.getSampleCount(x, y));
+                assertEquals(expected.getColor(x, y), actual.getColor(x, y));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.app.meshcache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Shader;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point2D;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.TriangleMesh;
+import yaphyre.core.shapes.TriangleMeshFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static yaphyre.core.math.MathUtils.EPSILON;
+
+public class MeshCacheConverterTest {
+
+    private static final Shader SHADER = new ColorShader(Color.WHITE);
+
+    /**
+     * The unit square as a single quad with texture coordinates, a comment and a group.
+     */
+    private static final String QUAD = "# unit square\n"
+            + "g square\n"
+            + "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n"
+            + "vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n"
+            + "f 1/1 2/2 3/3 4/4\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadObj() throws IOException {
+        final TriangleMesh mesh = WavefrontObjReader.read(writeObj(QUAD), Transformation.IDENTITY, SHADER);
+
+        assertEquals(2, mesh.getTriangleCount());
+        assertEquals(4, mesh.getVertexCount());
+        assertNull(mesh.getNormals());
+        assertNotNull(mesh.getUVs());
+
+        final CollisionInformation collision = mesh.intersect(
+                new Ray(new Point3D(0.25, 0.75, -1), Vector3D.Z)).get();
+        assertEquals(1d, collision.getDistance(), EPSILON);
+        assertEquals(new Point2D(0.25, 0.75), collision.getUVCoordinate());
+    }
+
+    @Test
+    public void testReadObjWithNegativeIndicesAndNormals() throws IOException {
+        final TriangleMesh mesh = WavefrontObjReader.read(writeObj(
+                "v 0 0 0\nv 1 0 0\nv 0 1 0\nvn 0 0 -1\nf -3//1 -2//1 -1//1\nf 1//1 3//1 2//1\n"),
+                Transformation.IDENTITY, SHADER);
+
+        assertEquals(2, mesh.getTriangleCount());
+        assertEquals(3, mesh.getVertexCount());
+        assertNotNull(mesh.getNormals());
+        assertNull(mesh.getUVs());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testReadObjWithInvalidIndex() throws IOException {
+        WavefrontObjReader.read(writeObj("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 4\n"), Transformation.IDENTITY, SHADER);
+    }
+
+    @Test
+    public void testConvert() throws IOException {
+        final Path cacheFile = temporaryFolder.getRoot().toPath().resolve("square.mesh");
+
+        MeshCacheConverter.convert(writeObj(QUAD), cacheFile);
+        final TriangleMesh mesh = TriangleMeshFile.map(cacheFile, Transformation.translate(0, 0, 1), SHADER);
+
+        assertEquals(2, mesh.getTriangleCount());
+        final CollisionInformation collision = mesh.intersect(
+                new Ray(new Point3D(0.25, 0.75, -1), Vector3D.Z)).get();
+        assertEquals(2d, collision.getDistance(), EPSILON);
+        assertEquals(new Point2D(0.25, 0.75), collision.getUVCoordinate());
+        assertFalse(mesh.intersect(new Ray(new Point3D(1.25, 0.75, -1), Vector3D.Z)).isPresent());
+    }
+
+    private Path writeObj(String content) throws IOException {
+        final Path objFile = temporaryFolder.newFile().toPath();
+        Files.write(objFile, Arrays.asList(content.split("\n")), StandardCharsets.UTF_8);
+        return objFile;
+    }
+
+}
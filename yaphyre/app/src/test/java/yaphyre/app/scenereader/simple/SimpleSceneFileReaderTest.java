@@ -21,6 +21,7 @@ import java.net.URL;
 import java.util.Optional;
 
 import org.junit.Test;
+import yaphyre.core.accelerators.Accelerators;
 import yaphyre.core.api.Scene;
 
 import static org.junit.Assert.assertEquals;
@@ -39,5 +40,6 @@ public class SimpleSceneFileReaderTest {
         assertTrue(sceneOptional.isPresent());
         final Scene scene = sceneOptional.get();
         assertEquals(1, scene.getCameras().size());
+        assertEquals(Accelerators.Grid, scene.getAcceleratorType());
     }
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.app.scenereader.simple;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import yaphyre.core.accelerators.Accelerators;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Shape;
+import yaphyre.app.meshcache.MeshCacheConverter;
+import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.shapes.Instance;
+import yaphyre.core.shapes.Plane;
+import yaphyre.core.shapes.SimpleSphere;
+import yaphyre.core.shapes.TriangleMesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingSceneFileReaderTest {
+
+    private static final int NUMBER_OF_SPHERES = 10000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadScene() throws Exception {
+        final Scene scene = readScene(getValidFile()).get();
+
+        assertEquals(1, scene.getCameras().size());
+        assertEquals(3, scene.getLights().size());
+        assertEquals(2, scene.getShapes().size());
+        assertTrue(scene.getShapes().get(0) instanceof SimpleSphere);
+        assertTrue(scene.getShapes().get(1) instanceof Plane);
+        assertEquals(Accelerators.Grid, scene.getAcceleratorType());
+    }
+
+    @Test
+    public void testReadSceneLikeSimpleSceneFileReader() throws Exception {
+        final Scene expectedScene = new SimpleSceneFileReader(getValidFile()).readScene().get();
+        final Scene scene = readScene(getValidFile()).get();
+
+        final List<Shape> expectedShapes = expectedScene.getShapes();
+        final List<Shape> shapes = scene.getShapes();
+        assertEquals(expectedShapes.size(), shapes.size());
+        assertEquals(expectedScene.getAcceleratorType(), scene.getAcceleratorType());
+        for (int i = 0; i < expectedShapes.size(); i++) {
+            assertEquals(expectedShapes.get(i).getClass(), shapes.get(i).getClass());
+            assertEquals(expectedShapes.get(i).getBoundingBox(), shapes.get(i).getBoundingBox());
+        }
+    }
+
+    @Test
+    public void testReadLargeSceneWithForwardReferences() throws Exception {
+        final File sceneFile = temporaryFolder.newFile("large_scene.xml");
+        try (PrintWriter writer = new PrintWriter(sceneFile, StandardCharsets.UTF_8.name())) {
+            writer.println("<simpleScene xmlns=\"http://www.zweivelo.ch/yaphyre/simple\">");
+            writeGlobalSettings(writer);
+            writer.println("<cameras><orthographicCamera name=\"ortho\"><filetype>PNG</filetype><resolution>4 3</resolution>"
+                    + "<position>0 0 -10</position><lookAt>0 0 0</lookAt>"
+                    + "<uDimension>4</uDimension><vDimension>3</vDimension><zPosition>-10</zPosition>"
+                    + "</orthographicCamera></cameras>");
+            writer.println("<lights><ambientLight><power>1</power></ambientLight></lights>");
+            writer.println("<geometry>");
+            for (int i = 0; i < NUMBER_OF_SPHERES; i++) {
+                // every other sphere refers to the shader defined at the end of the file
+                writer.println("<simpleSphere name=\"sphere" + i + "\">"
+                        + "<transformation><translate><offsets>" + i + " 0 0</offsets></translate></transformation>"
+                        + (i % 2 == 0
+                        ? "<shaderRef>red</shaderRef>"
+                        : "<shader><colorShader><color>0 1 0</color></colorShader></shader>")
+                        + "</simpleSphere>");
+            }
+            writer.println("</geometry>");
+            writer.println("<shaders><colorShader id=\"red\"><color>1 0 0</color></colorShader></shaders>");
+            writer.println("</simpleScene>");
+        }
+
+        final Scene scene = readScene(sceneFile).get();
+
+        assertEquals(NUMBER_OF_SPHERES, scene.getShapes().size());
+        assertEquals(Accelerators.Automatic, scene.getAcceleratorType());
+        final BoundingBox expectedBoundingBox = new BoundingBox(new Point3D(0, -1, -1), new Point3D(2, 1, 1));
+        assertTrue(scene.getShapes().stream()
+                .anyMatch(shape -> expectedBoundingBox.equals(shape.getBoundingBox())));
+    }
+
+    @Test
+    public void testReadSceneWithMeshFile() throws Exception {
+        final File objFile = temporaryFolder.newFile("triangle.obj");
+        Files.write(objFile.toPath(), Arrays.asList("v 0 0 0", "v 1 0 0", "v 0 1 0", "f 1 2 3"),
+                StandardCharsets.UTF_8);
+        MeshCacheConverter.convert(objFile.toPath(), temporaryFolder.getRoot().toPath().resolve("triangle.mesh"));
+
+        final File sceneFile = temporaryFolder.newFile("mesh_scene.xml");
+        try (PrintWriter writer = new PrintWriter(sceneFile, StandardCharsets.UTF_8.name())) {
+            writer.println("<simpleScene xmlns=\"http://www.zweivelo.ch/yaphyre/simple\">");
+            writeGlobalSettings(writer);
+            writer.println("<cameras><orthographicCamera name=\"ortho\"><filetype>PNG</filetype><resolution>4 3</resolution>"
+                    + "<position>0 0 -10</position><lookAt>0 0 0</lookAt>"
+                    + "<uDimension>4</uDimension><vDimension>3</vDimension><zPosition>-10</zPosition>"
+                    + "</orthographicCamera></cameras>");
+            writer.println("<lights><ambientLight><power>1</power></ambientLight></lights>");
+            writer.println("<geometry><meshFile name=\"triangle\">"
+                    + "<transformation><translate><offsets>0 0 5</offsets></translate></transformation>"
+                    + "<shader><colorShader><color>1 1 1</color></colorShader></shader>"
+                    + "<file>triangle.mesh</file></meshFile>"
+                    + "<meshFile name=\"copy\">"
+                    + "<transformation><translate><offsets>3 0 5</offsets></translate></transformation>"
+                    + "<shader><colorShader><color>1 0 0</color></colorShader></shader>"
+                    + "<file>triangle.mesh</file></meshFile></geometry>");
+            writer.println("</simpleScene>");
+        }
+
+        final Scene scene = readScene(sceneFile).get();
+        final Scene expectedScene = new SimpleSceneFileReader(sceneFile).readScene().get();
+
+        assertEquals(2, scene.getShapes().size());
+        assertTrue(scene.getShapes().get(0) instanceof Instance);
+        assertTrue(scene.getShapes().get(1) instanceof Instance);
+        final Shape mesh = ((Instance) scene.getShapes().get(0)).getBaseShape();
+        assertTrue(mesh instanceof TriangleMesh);
+        assertSame("the mesh file is mapped only once", mesh, ((Instance) scene.getShapes().get(1)).getBaseShape());
+        assertSame(((Instance) expectedScene.getShapes().get(0)).getBaseShape(),
+                ((Instance) expectedScene.getShapes().get(1)).getBaseShape());
+        final BoundingBox expectedBoundingBox = new BoundingBox(new Point3D(0, 0, 5), new Point3D(1, 1, 5));
+        assertEquals(expectedBoundingBox, scene.getShapes().get(0).getBoundingBox());
+        assertEquals(expectedBoundingBox, expectedScene.getShapes().get(0).getBoundingBox());
+        final BoundingBox expectedCopyBoundingBox = new BoundingBox(new Point3D(3, 0, 5), new Point3D(4, 1, 5));
+        assertEquals(expectedCopyBoundingBox, scene.getShapes().get(1).getBoundingBox());
+        assertEquals(expectedCopyBoundingBox, expectedScene.getShapes().get(1).getBoundingBox());
+    }
+
+    @Test
+    public void testReadInvalidScene() throws Exception {
+        final File sceneFile = temporaryFolder.newFile("invalid_scene.xml");
+        try (PrintWriter writer = new PrintWriter(sceneFile, StandardCharsets.UTF_8.name())) {
+            writer.println("<simpleScene xmlns=\"http://www.zweivelo.ch/yaphyre/simple\">");
+            writeGlobalSettings(writer);
+            writer.println("<geometry><plane><transformationRef>unknown</transformationRef>"
+                    + "<shader><colorShader><color>1 1 1</color></colorShader></shader></plane></geometry>");
+            writer.println("</simpleScene>");
+        }
+
+        assertFalse(readScene(sceneFile).isPresent());
+    }
+
+    private static void writeGlobalSettings(PrintWriter writer) {
+        writer.println("<globalSettings><surfaceIntegrator>RayCaster</surfaceIntegrator>"
+                + "<cameraSampler><method>single</method></cameraSampler>"
+                + "<lightSampler><method>single</method></lightSampler>"
+                + "<defaultSampler><method>single</method></defaultSampler></globalSettings>");
+    }
+
+    private static File getValidFile() {
+        final URL validFileURL = ClassLoader.getSystemResource("yaphyre/app/scenereader/simple/valid_scene_file.xml");
+        return new File(validFileURL.getFile());
+    }
+
+    private static Optional<Scene> readScene(File sceneFile) {
+        return new StreamingSceneFileReader(sceneFile).readScene();
+    }
+
+}
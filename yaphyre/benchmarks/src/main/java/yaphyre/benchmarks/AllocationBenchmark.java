@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.benchmarks;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.ColorAccumulator;
+import yaphyre.core.math.MutableRay;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.Plane;
+import yaphyre.core.shapes.SimpleSphere;
+import yaphyre.core.shapes.Sphere;
+
+/**
+ * Measures the garbage created on the hot path of the renderer. Run with the GC profiler to see the allocation rate
+ * per operation (<code>gc.alloc.rate.norm</code>):
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar AllocationBenchmark -prof gc
+ * </pre>
+ * Each pair of benchmarks compares the immutable API with its allocation free counterpart. Missed intersections, which
+ * are by far the most common case, must not allocate at all.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+
+    private static final int NUMBER_OF_LIGHTS = 8;
+
+    private Transformation transformation;
+    private Ray ray;
+    private Ray missingRay;
+    private MutableRay mutableRay;
+    private SimpleSphere simpleSphere;
+    private Sphere sphere;
+    private Plane plane;
+    private Color[] lightColors;
+    private ColorAccumulator accumulator;
+
+    @Setup
+    public void setUp() {
+        final ColorShader shader = new ColorShader(Color.WHITE);
+        transformation = Transformation.translate(1, 2, 3).mul(Transformation.rotateY(30));
+        ray = new Ray(new Point3D(0, 0, -10), new Vector3D(0, 0, 1));
+        missingRay = new Ray(new Point3D(0, 5, -10), new Vector3D(0, 0, 1));
+        mutableRay = new MutableRay();
+
+        simpleSphere = new SimpleSphere(Transformation.IDENTITY, shader);
+        simpleSphere.setSolver(Solvers.Quadratic);
+        sphere = Sphere.createSphere(Point3D.ORIGIN, 1, shader);
+        plane = new Plane(Transformation.translate(0, -1, 0), shader);
+
+        lightColors = new Color[NUMBER_OF_LIGHTS];
+        for (int i = 0; i < NUMBER_OF_LIGHTS; i++) {
+            lightColors[i] = new Color(0.1 * i, 0.05 * i, 0.01 * i);
+        }
+        accumulator = new ColorAccumulator();
+    }
+
+    @Benchmark
+    public Ray transformRay() {
+        return transformation.transform(ray);
+    }
+
+    @Benchmark
+    public MutableRay transformRayInPlace() {
+        return transformation.transform(ray, mutableRay);
+    }
+
+    @Benchmark
+    public Optional<CollisionInformation> simpleSphereHit() {
+        return simpleSphere.intersect(ray);
+    }
+
+    @Benchmark
+    public Optional<CollisionInformation> simpleSphereMiss() {
+        return simpleSphere.intersect(missingRay);
+    }
+
+    @Benchmark
+    public Optional<CollisionInformation> sphereMiss() {
+        return sphere.intersect(missingRay);
+    }
+
+    @Benchmark
+    public Optional<CollisionInformation> planeMiss() {
+        return plane.intersect(missingRay);
+    }
+
+    @Benchmark
+    public Color accumulateLightsWithColor() {
+        Color result = Color.BLACK;
+        for (Color lightColor : lightColors) {
+            result = result.add(lightColor.multiply(0.5));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public double accumulateLightsWithAccumulator() {
+        accumulator.reset();
+        for (Color lightColor : lightColors) {
+            accumulator.addScaled(lightColor, 0.5);
+        }
+        return accumulator.getRed();
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package yaphyre.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yaphyre.core.accelerators.BoundingVolumeHierarchy;
+
+/**
+ * Measures the time to build a {@link BoundingVolumeHierarchy} over millions of randomly placed spheres, which are
+ * only known by their bounds. The number of threads building the hierarchy is varied to show how the build scales;
+ * the hierarchy itself is the same for any number of threads.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class BvhBuildBenchmark {
+
+    private static final double SCENE_SIZE = 1000;
+
+    @Param({"1000000", "4000000"})
+    public int numberOfSpheres;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private double[] bounds;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(4711);
+        final double radius = SCENE_SIZE / (2 * Math.cbrt(numberOfSpheres));
+        bounds = new double[numberOfSpheres * 6];
+        for (int sphere = 0; sphere < numberOfSpheres; sphere++) {
+            final double sphereRadius = radius * (0.2 + 0.8 * random.nextDouble());
+            for (int axis = 0; axis < 3; axis++) {
+                final double center = (random.nextDouble() - 0.5) * SCENE_SIZE;
+                bounds[sphere * 6 + axis] = center - sphereRadius;
+                bounds[sphere * 6 + axis + 3] = center + sphereRadius;
+            }
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public BoundingVolumeHierarchy build() {
+        return new BoundingVolumeHierarchy(bounds, BoundingVolumeHierarchy.DEFAULT_MAX_LEAF_SIZE, pool);
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package yaphyre.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.accelerators.BoundingVolumeHierarchy;
+import yaphyre.core.accelerators.QuantizedBoundingVolumeHierarchy;
+
+import static java.lang.Double.POSITIVE_INFINITY;
+
+/**
+ * Compares the traversal of the {@link BoundingVolumeHierarchy} with the one of the
+ * {@link QuantizedBoundingVolumeHierarchy} created from it, for scenes of randomly placed spheres. The spheres are
+ * intersected directly from their centers and radii, so the costs are dominated by the traversal. Each invocation
+ * traces a fixed batch of rays, so the reported operations per second are rays per second.<br/>
+ * The memory occupied by both hierarchies is logged during the setup.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class QuantizedBvhBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuantizedBvhBenchmark.class);
+
+    private static final int NUMBER_OF_RAYS = 1024;
+
+    private static final double SCENE_SIZE = 100;
+
+    @Param({"10000", "1000000"})
+    public int numberOfSpheres;
+
+    private double[] spheres;
+    private BoundingVolumeHierarchy binaryHierarchy;
+    private QuantizedBoundingVolumeHierarchy quantizedHierarchy;
+    private double[] rays;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(4711);
+        final double radius = SCENE_SIZE / (2 * Math.cbrt(numberOfSpheres));
+
+        spheres = new double[numberOfSpheres * 4];
+        final double[] bounds = new double[numberOfSpheres * 6];
+        for (int sphere = 0; sphere < numberOfSpheres; sphere++) {
+            final double sphereRadius = radius * (0.2 + 0.8 * random.nextDouble());
+            spheres[sphere * 4 + 3] = sphereRadius;
+            for (int axis = 0; axis < 3; axis++) {
+                spheres[sphere * 4 + axis] = (random.nextDouble() - 0.5) * SCENE_SIZE;
+                bounds[sphere * 6 + axis] = spheres[sphere * 4 + axis] - sphereRadius;
+                bounds[sphere * 6 + axis + 3] = spheres[sphere * 4 + axis] + sphereRadius;
+            }
+        }
+        binaryHierarchy = new BoundingVolumeHierarchy(bounds);
+        quantizedHierarchy = new QuantizedBoundingVolumeHierarchy(binaryHierarchy);
+        LOGGER.info("Binary hierarchy: {} bytes, quantized hierarchy: {} bytes",
+                binaryHierarchy.getMemorySize(), quantizedHierarchy.getMemorySize());
+
+        // rays from a camera outside of the scene towards random points within the scene
+        rays = new double[NUMBER_OF_RAYS * 3];
+        for (int ray = 0; ray < NUMBER_OF_RAYS; ray++) {
+            final double dx = (random.nextDouble() - 0.5) * SCENE_SIZE;
+            final double dy = (random.nextDouble() - 0.5) * SCENE_SIZE;
+            final double dz = 2 * SCENE_SIZE;
+            final double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            rays[ray * 3] = dx / length;
+            rays[ray * 3 + 1] = dy / length;
+            rays[ray * 3 + 2] = dz / length;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void binary(Blackhole blackhole) {
+        for (int ray = 0; ray < NUMBER_OF_RAYS; ray++) {
+            final double dx = rays[ray * 3];
+            final double dy = rays[ray * 3 + 1];
+            final double dz = rays[ray * 3 + 2];
+            blackhole.consume(binaryHierarchy.traverse(0, 0, -2 * SCENE_SIZE, dx, dy, dz, 0, POSITIVE_INFINITY,
+                    (primitive, tMax) -> intersect(primitive, dx, dy, dz), false));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void quantized(Blackhole blackhole) {
+        for (int ray = 0; ray < NUMBER_OF_RAYS; ray++) {
+            final double dx = rays[ray * 3];
+            final double dy = rays[ray * 3 + 1];
+            final double dz = rays[ray * 3 + 2];
+            blackhole.consume(quantizedHierarchy.traverse(0, 0, -2 * SCENE_SIZE, dx, dy, dz, 0, POSITIVE_INFINITY,
+                    (primitive, tMax) -> intersect(primitive, dx, dy, dz), false));
+        }
+    }
+
+    /**
+     * Intersect a sphere with a ray starting at the camera.
+     */
+    private double intersect(int sphere, double dx, double dy, double dz) {
+        final double cx = -spheres[sphere * 4];
+        final double cy = -spheres[sphere * 4 + 1];
+        final double cz = -2 * SCENE_SIZE - spheres[sphere * 4 + 2];
+        final double radius = spheres[sphere * 4 + 3];
+        final double b = cx * dx + cy * dy + cz * dz;
+        final double discriminant = b * b - (cx * cx + cy * cy + cz * cz - radius * radius);
+        return discriminant < 0 ? POSITIVE_INFINITY : -b - Math.sqrt(discriminant);
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yaphyre.core.api.Camera;
+import yaphyre.core.api.Sampler;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Tracer;
+import yaphyre.core.cameras.AbstractCamera;
+import yaphyre.core.cameras.PerspectiveCamera;
+import yaphyre.core.cameras.TileScheduler;
+import yaphyre.core.films.ImageFile;
+import yaphyre.core.lights.AmbientLight;
+import yaphyre.core.lights.PointLight;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.FovCalculator;
+import yaphyre.core.math.Normal3D;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Solver;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.samplers.HaltonSampler;
+import yaphyre.core.samplers.SingleValueSampler;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.Plane;
+import yaphyre.core.shapes.SimpleSphere;
+import yaphyre.core.tracers.RayCaster;
+
+import static yaphyre.core.api.Camera.CameraSampler;
+import static yaphyre.core.api.Light.LightSampler;
+import static yaphyre.core.math.MathUtils.EPSILON;
+
+/**
+ * End to end benchmark rendering the standard scene of the application (a sphere on a plane, lit by an ambient and a
+ * point light) through a perspective camera. Every invocation renders the complete film. Besides the frames per
+ * second, the number of camera rays per second is reported as secondary result <code>rays</code>. The number of render
+ * threads defaults to one, so the numbers are comparable between machines. Use <code>-p threads=8</code> to measure
+ * the scaling instead, and <code>-p packetSize=16</code> to trace the camera rays in packets.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+    private static final int Y_RESOLUTION = 120;
+
+    @Param({"1", "16"})
+    public int samplesPerPixel;
+
+    @Param({"1"})
+    public int threads;
+
+    /**
+     * Number of camera rays traced together, see {@link AbstractCamera#setPacketSize(int)}.
+     */
+    @Param({"1"})
+    public int packetSize;
+
+    private TileScheduler tileScheduler;
+    private Scene scene;
+    private Camera camera;
+    private long raysPerFrame;
+
+    @Setup
+    public void setUp() {
+        final Sampler cameraSampler = samplesPerPixel == 1
+                ? new SingleValueSampler()
+                : new HaltonSampler(samplesPerPixel);
+        tileScheduler = new TileScheduler(threads, TileScheduler.DEFAULT_TILE_SIZE);
+        final Injector injector = Guice.createInjector(new BenchmarkModule(cameraSampler, tileScheduler));
+
+        scene = injector.getInstance(Scene.class);
+        scene.addShape(new SimpleSphere(Transformation.translate(0, 2, 0), new ColorShader(new Color(.95d, .95d, .95d))));
+        scene.addShape(new Plane(Transformation.IDENTITY, new ColorShader(new Color(.95d, .95d, .95d))));
+        scene.addLight(new AmbientLight(.25d));
+        scene.addLight(new PointLight(25d, Color.WHITE, new Point3D(0, 5, 0)));
+
+        final double aspectRatio = FovCalculator.FullFrame35mm.getAspectRatio();
+        final int xResolution = (int) (Y_RESOLUTION * aspectRatio);
+        final PerspectiveCamera perspectiveCamera = new PerspectiveCamera(
+                new ImageFile(xResolution, Y_RESOLUTION),
+                new Color(0d, 0d, .25d),
+                new Point3D(0, 2, -10),
+                new Point3D(0, 0, 0),
+                Normal3D.NORMAL_Y,
+                FovCalculator.FullFrame35mm.calculateHorizontalFov(50d),
+                aspectRatio,
+                EPSILON,
+                1d / EPSILON);
+        perspectiveCamera.setPacketSize(packetSize);
+        camera = perspectiveCamera;
+        scene.addCamera(camera);
+        scene.freeze();
+
+        raysPerFrame = (long) xResolution * Y_RESOLUTION * samplesPerPixel;
+    }
+
+    @TearDown
+    public void tearDown() {
+        tileScheduler.close();
+    }
+
+    /**
+     * Renders the whole film once. The number of camera rays is not a compile time constant, so it cannot be expressed
+     * with {@link org.openjdk.jmh.annotations.OperationsPerInvocation}. It is counted in {@link RayCounter} instead.
+     */
+    @Benchmark
+    public void renderScene(RayCounter counter) {
+        camera.renderScene(scene);
+        counter.rays += raysPerFrame;
+    }
+
+    /**
+     * Secondary result of the benchmark: JMH reports the counted rays per second next to the frames per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RayCounter {
+
+        public long rays;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rays = 0;
+        }
+    }
+
+    /**
+     * Binds everything the scene members need, much like the binding modules of the application do.
+     */
+    private static class BenchmarkModule extends AbstractModule {
+
+        private final Sampler cameraSampler;
+        private final TileScheduler tileScheduler;
+
+        BenchmarkModule(Sampler cameraSampler, TileScheduler tileScheduler) {
+            this.cameraSampler = cameraSampler;
+            this.tileScheduler = tileScheduler;
+        }
+
+        @Override
+        protected void configure() {
+            bind(Solver.class).annotatedWith(Solver.Quadratic.class).toInstance(Solvers.Quadratic);
+            bind(Sampler.class).annotatedWith(CameraSampler.class).toInstance(cameraSampler);
+            bind(Sampler.class).annotatedWith(LightSampler.class).toInstance(new SingleValueSampler());
+            bind(Sampler.class).toInstance(new SingleValueSampler());
+            bind(Tracer.class).toInstance(new RayCaster());
+            bind(TileScheduler.class).toInstance(tileScheduler);
+            // the lights need the very scene they belong to for their shadow rays
+            bind(Scene.class).in(Singleton.class);
+        }
+    }
+
+}
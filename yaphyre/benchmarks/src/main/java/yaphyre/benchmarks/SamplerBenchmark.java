@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import yaphyre.core.api.Sampler;
+import yaphyre.core.samplers.HaltonSampler;
+import yaphyre.core.samplers.RegularSampler;
+import yaphyre.core.samplers.SingleValueSampler;
+import yaphyre.core.samplers.StratifiedSampler;
+
+/**
+ * Measures how long it takes to draw a full set of samples from each of the {@link Sampler} implementations. This is
+ * what a camera does for every single pixel, so the reported time is the sampling overhead per pixel.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SamplerBenchmark {
+
+    @Param({"single", "regular", "stratified", "halton"})
+    public String samplerType;
+
+    @Param({"16"})
+    public int numberOfSamples;
+
+    private Sampler sampler;
+
+    @Setup
+    public void setUp() {
+        switch (samplerType) {
+            case "single":
+                sampler = new SingleValueSampler();
+                break;
+            case "regular":
+                sampler = new RegularSampler(numberOfSamples);
+                break;
+            case "stratified":
+                sampler = new StratifiedSampler(numberOfSamples);
+                break;
+            case "halton":
+                sampler = new HaltonSampler(numberOfSamples);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown sampler type: " + samplerType);
+        }
+    }
+
+    @Benchmark
+    public void unitSquareSamples(Blackhole blackhole) {
+        sampler.getUnitSquareSamples().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void unitCircleSamples(Blackhole blackhole) {
+        sampler.getUnitCircleSamples().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void unitSphereSamples(Blackhole blackhole) {
+        sampler.getUnitSphereSamples().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void unitHemisphereSamples(Blackhole blackhole) {
+        sampler.getUnitHemisphereSamples(1d).forEach(blackhole::consume);
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import yaphyre.core.accelerators.BvhAccelerator;
+import yaphyre.core.accelerators.CompiledAccelerator;
+import yaphyre.core.accelerators.GridAccelerator;
+import yaphyre.core.accelerators.LinearAccelerator;
+import yaphyre.core.accelerators.PartitionedAccelerator;
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.Plane;
+import yaphyre.core.shapes.SimpleSphere;
+
+/**
+ * Compares the throughput of the linear scan with the one of the bounding volume hierarchy for scenes of randomly
+ * placed spheres. Each invocation traces a fixed batch of rays, so the reported operations per second are rays per
+ * second.<br/>
+ * Packet tracing is measured with coherent rays through a regular grid, like camera rays, which are traced one by one
+ * and in packets of {@link RayPacket#MAX_SIZE} neighbouring rays (blocks of four by four rays).<br/>
+ * The {@link CompiledAccelerator} uses the same hierarchy as the {@link BvhAccelerator}, so the difference between the
+ * two shows the gain of intersecting the flattened shapes. The {@link GridAccelerator} shows how a uniform grid compares
+ * to the hierarchy for the evenly distributed spheres.<br/>
+ * With an infinite ground plane below the spheres, the hierarchy containing the plane is compared to the
+ * {@link PartitionedAccelerator}, which tests the plane separately and clips the rays before traversing the hierarchy.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SceneIntersectionBenchmark {
+
+    private static final int NUMBER_OF_RAYS = 1024;
+
+    private static final double SCENE_SIZE = 100;
+
+    @Param({"16", "256", "4096"})
+    public int numberOfShapes;
+
+    private Accelerator linearAccelerator;
+    private Accelerator bvhAccelerator;
+    private Accelerator compiledAccelerator;
+    private Accelerator gridAccelerator;
+    private Accelerator groundPlaneBvhAccelerator;
+    private Accelerator groundPlanePartitionedAccelerator;
+    private Ray[] rays;
+    private Ray[] coherentRays;
+    private final RayPacket packet = new RayPacket();
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(4711);
+        final ColorShader shader = new ColorShader(new Color(1, 1, 1));
+        final double radius = SCENE_SIZE / (2 * Math.cbrt(numberOfShapes));
+
+        final List<Shape> shapes = new ArrayList<>(numberOfShapes);
+        for (int i = 0; i < numberOfShapes; i++) {
+            final double sphereRadius = radius * (0.2 + 0.8 * random.nextDouble());
+            final SimpleSphere sphere = new SimpleSphere(
+                    Transformation.translate(randomCoordinate(random), randomCoordinate(random), randomCoordinate(random))
+                            .mul(Transformation.scale(sphereRadius, sphereRadius, sphereRadius)), shader);
+            sphere.setSolver(Solvers.Quadratic);
+            shapes.add(sphere);
+        }
+        linearAccelerator = new LinearAccelerator(shapes);
+        bvhAccelerator = new BvhAccelerator(shapes);
+        compiledAccelerator = new CompiledAccelerator(shapes);
+        gridAccelerator = new GridAccelerator(shapes);
+
+        final List<Shape> groundPlaneShapes = new ArrayList<>(shapes);
+        groundPlaneShapes.add(new Plane(Transformation.translate(0, -SCENE_SIZE / 4, 0), shader));
+        groundPlaneBvhAccelerator = new BvhAccelerator(groundPlaneShapes);
+        groundPlanePartitionedAccelerator = new PartitionedAccelerator(groundPlaneShapes, BvhAccelerator::new);
+
+        // rays from a camera outside of the scene towards random points within the scene
+        final Point3D eye = new Point3D(0, 0, -2 * SCENE_SIZE);
+        rays = new Ray[NUMBER_OF_RAYS];
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            final Point3D target = new Point3D(randomCoordinate(random), randomCoordinate(random), 0);
+            final Vector3D direction = target.sub(eye).normalize();
+            rays[i] = new Ray(eye, direction);
+        }
+
+        // rays through a regular grid, in blocks of four by four rays
+        final int gridSize = (int) Math.sqrt(NUMBER_OF_RAYS);
+        final int blocksPerRow = gridSize / 4;
+        coherentRays = new Ray[NUMBER_OF_RAYS];
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            final int block = i / RayPacket.MAX_SIZE;
+            final int x = (block % blocksPerRow) * 4 + i % 4;
+            final int y = (block / blocksPerRow) * 4 + (i % RayPacket.MAX_SIZE) / 4;
+            final Point3D target = new Point3D(
+                    ((x + 0.5) / gridSize - 0.5) * SCENE_SIZE,
+                    ((y + 0.5) / gridSize - 0.5) * SCENE_SIZE, 0);
+            coherentRays[i] = new Ray(eye, target.sub(eye).normalize());
+        }
+    }
+
+    private static double randomCoordinate(Random random) {
+        return (random.nextDouble() - 0.5) * SCENE_SIZE;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void linearScan(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(linearAccelerator.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void boundingVolumeHierarchy(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(bvhAccelerator.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void compiled(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(compiledAccelerator.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void grid(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(gridAccelerator.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void boundingVolumeHierarchyWithGroundPlane(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(groundPlaneBvhAccelerator.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void partitionedWithGroundPlane(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(groundPlanePartitionedAccelerator.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void boundingVolumeHierarchyCoherentRays(Blackhole blackhole) {
+        for (Ray ray : coherentRays) {
+            blackhole.consume(bvhAccelerator.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void boundingVolumeHierarchyPackets(Blackhole blackhole) {
+        for (int i = 0; i < NUMBER_OF_RAYS; i += RayPacket.MAX_SIZE) {
+            packet.clear();
+            for (int lane = 0; lane < RayPacket.MAX_SIZE; lane++) {
+                packet.add(coherentRays[i + lane]);
+            }
+            final CollisionInformation[] collisions = new CollisionInformation[RayPacket.MAX_SIZE];
+            bvhAccelerator.intersect(packet, collisions);
+            blackhole.consume(collisions);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void linearScanShadowRays(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(linearAccelerator.intersectAny(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void boundingVolumeHierarchyShadowRays(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(bvhAccelerator.intersectAny(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void linearScanOcclusion(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(linearAccelerator.findOccluder(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void boundingVolumeHierarchyOcclusion(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(bvhAccelerator.findOccluder(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void compiledOcclusion(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(compiledAccelerator.findOccluder(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void gridOcclusion(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(gridAccelerator.findOccluder(ray));
+        }
+    }
+
+}
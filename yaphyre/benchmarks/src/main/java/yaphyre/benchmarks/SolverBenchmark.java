@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import yaphyre.core.math.Solvers;
+
+/**
+ * Measures each of the {@link Solvers}. The equations are built from random coefficients in [-1, 1), so there is a
+ * realistic mix of equations with and without real roots. The reported time is the time per solved equation.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+    private static final int NUMBER_OF_EQUATIONS = 256;
+
+    @Param({"Linear", "Quadratic", "Cubic", "Quartic"})
+    public Solvers solver;
+
+    private double[][] coefficients;
+
+    @Setup
+    public void setUp() {
+        final int numberOfCoefficients = solver.ordinal() + 2;
+        final Random random = new Random(4711);
+        coefficients = new double[NUMBER_OF_EQUATIONS][numberOfCoefficients];
+        for (double[] equation : coefficients) {
+            for (int i = 0; i < numberOfCoefficients; i++) {
+                equation[i] = random.nextDouble() * 2 - 1;
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_EQUATIONS)
+    public void solve(Blackhole blackhole) {
+        for (double[] equation : coefficients) {
+            blackhole.consume(solver.solve(equation));
+        }
+    }
+
+}
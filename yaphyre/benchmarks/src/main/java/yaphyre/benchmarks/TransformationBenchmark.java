@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.Matrix;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+
+/**
+ * Measures the basic building blocks of the geometry: the ray/box slab test, the transformation of rays into object
+ * space and the matrix operations used when composing transformations.<br/>
+ * Since {@link Matrix} caches its inverse, the inversion benchmark creates a new matrix for every call. It therefore
+ * includes the (small) cost of copying the coefficients.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformationBenchmark {
+
+    private static final int NUMBER_OF_RAYS = 1024;
+
+    private BoundingBox boundingBox;
+    private Transformation transformation;
+    private Matrix matrix;
+    private Matrix otherMatrix;
+    private double[] matrixCoefficients;
+    private Ray[] rays;
+
+    @Setup
+    public void setUp() {
+        boundingBox = new BoundingBox(new Point3D(-1, -1, -1), new Point3D(1, 1, 1));
+        transformation = Transformation.translate(1, 2, 3)
+                .mul(Transformation.rotate(30, new Vector3D(1, 1, 0).normalize()))
+                .mul(Transformation.scale(2, 1, 0.5));
+        matrix = Transformation.rotateX(45).mul(Transformation.translate(1, 2, 3)).getMatrix();
+        otherMatrix = Transformation.rotateY(30).mul(Transformation.scale(2, 2, 2)).getMatrix();
+
+        matrixCoefficients = new double[16];
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                matrixCoefficients[row * 4 + col] = matrix.get(row, col);
+            }
+        }
+
+        // about a third of the rays hit the box
+        final Random random = new Random(4711);
+        final Point3D eye = new Point3D(0, 0, -5);
+        rays = new Ray[NUMBER_OF_RAYS];
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            final Point3D target = new Point3D((random.nextDouble() - 0.5) * 4, (random.nextDouble() - 0.5) * 4, 0);
+            rays[i] = new Ray(eye, target.sub(eye).normalize());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void boundingBoxIsHitBy(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(boundingBox.isHitBy(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void transformRay(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(transformation.transform(ray));
+        }
+    }
+
+    @Benchmark
+    public Matrix matrixMul() {
+        return matrix.mul(otherMatrix);
+    }
+
+    @Benchmark
+    public Matrix matrixInverse() {
+        return new Matrix(matrixCoefficients).inverse();
+    }
+
+}
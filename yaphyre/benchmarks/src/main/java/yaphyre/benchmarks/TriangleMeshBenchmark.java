@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.TriangleMesh;
+import yaphyre.core.shapes.TriangleMeshFile;
+
+/**
+ * Measures the intersection throughput of a tessellated unit sphere for different numbers of triangles. With the
+ * hierarchy of the mesh, the costs per ray should only grow logarithmically with the number of triangles.<br/>
+ * The startup costs are measured by creating the mesh from its arrays (which builds the hierarchy) and by mapping it
+ * from a mesh cache file.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TriangleMeshBenchmark {
+
+    private static final int NUMBER_OF_RAYS = 1024;
+
+    /**
+     * Number of segments around and along the sphere. The mesh has twice its square in triangles.
+     */
+    @Param({"16", "128", "512"})
+    public int segments;
+
+    private TriangleMesh mesh;
+    private Ray[] rays;
+    private Path meshFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        mesh = createSphere(segments);
+        meshFile = Files.createTempFile("sphere", ".mesh");
+        TriangleMeshFile.write(mesh, meshFile);
+
+        // rays from outside towards random points in a square a bit larger than the sphere
+        final Random random = new Random(4711);
+        final Point3D eye = new Point3D(0, 0, -5);
+        rays = new Ray[NUMBER_OF_RAYS];
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            final Point3D target = new Point3D((random.nextDouble() - 0.5) * 3, (random.nextDouble() - 0.5) * 3, 0);
+            rays[i] = new Ray(eye, target.sub(eye).normalize());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(meshFile);
+    }
+
+    private static TriangleMesh createSphere(int segments) {
+        final int verticesPerRing = segments + 1;
+        final float[] positions = new float[verticesPerRing * verticesPerRing * 3];
+        for (int ring = 0; ring <= segments; ring++) {
+            final double theta = Math.PI * ring / segments;
+            for (int segment = 0; segment <= segments; segment++) {
+                final double phi = 2 * Math.PI * segment / segments;
+                final int vertex = (ring * verticesPerRing + segment) * 3;
+                positions[vertex] = (float) (Math.sin(theta) * Math.cos(phi));
+                positions[vertex + 1] = (float) Math.cos(theta);
+                positions[vertex + 2] = (float) (Math.sin(theta) * Math.sin(phi));
+            }
+        }
+        final int[] indices = new int[segments * segments * 6];
+        int index = 0;
+        for (int ring = 0; ring < segments; ring++) {
+            for (int segment = 0; segment < segments; segment++) {
+                final int v0 = ring * verticesPerRing + segment;
+                final int v1 = v0 + 1;
+                final int v2 = v1 + verticesPerRing;
+                final int v3 = v0 + verticesPerRing;
+                indices[index++] = v0;
+                indices[index++] = v1;
+                indices[index++] = v2;
+                indices[index++] = v0;
+                indices[index++] = v2;
+                indices[index++] = v3;
+            }
+        }
+        return new TriangleMesh(Transformation.IDENTITY, new ColorShader(new Color(1, 1, 1)), positions, indices);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void intersect(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(mesh.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    public TriangleMesh build() {
+        return createSphere(segments);
+    }
+
+    @Benchmark
+    public TriangleMesh map() throws IOException {
+        return TriangleMeshFile.map(meshFile, Transformation.IDENTITY, new ColorShader(new Color(1, 1, 1)));
+    }
+
+}
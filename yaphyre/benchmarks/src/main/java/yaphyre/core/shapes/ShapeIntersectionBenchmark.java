@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.shapes;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+
+/**
+ * Measures the intersection throughput of the individual shapes. Each invocation tests a fixed batch of rays shot from
+ * a common eye point towards random targets around the shape, so roughly a third of them hit the spheres and half of
+ * them the plane. The reported operations per second are intersection tests per second.<br/>
+ * This benchmark lives in the package of the shapes, since {@link Sphere#getIntersectDistance(Ray)} is not part of
+ * the public API.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShapeIntersectionBenchmark {
+
+    private static final int NUMBER_OF_RAYS = 1024;
+
+    private static final double TARGET_SIZE = 3;
+
+    private SimpleSphere simpleSphere;
+    private Sphere sphere;
+    private Sphere partialSphere;
+    private Plane plane;
+    private Ray[] rays;
+
+    @Setup
+    public void setUp() {
+        final ColorShader shader = new ColorShader(new Color(1, 1, 1));
+
+        simpleSphere = new SimpleSphere(Transformation.IDENTITY, shader);
+        simpleSphere.setSolver(Solvers.Quadratic);
+        sphere = Sphere.createSphere(Point3D.ORIGIN, 1d, shader);
+        partialSphere = Sphere.createSphere(Point3D.ORIGIN, 1d, 0d, 270d, 0d, 135d, shader);
+        plane = new Plane(Transformation.IDENTITY, shader);
+
+        final Random random = new Random(4711);
+        final Point3D eye = new Point3D(0, 0, -5);
+        rays = new Ray[NUMBER_OF_RAYS];
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            final Point3D target = new Point3D(randomCoordinate(random), randomCoordinate(random), 0);
+            final Vector3D direction = target.sub(eye).normalize();
+            rays[i] = new Ray(eye, direction);
+        }
+    }
+
+    private static double randomCoordinate(Random random) {
+        return (random.nextDouble() - 0.5) * TARGET_SIZE;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void simpleSphereIntersect(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(simpleSphere.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void sphereIntersectDistance(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(sphere.getIntersectDistance(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void partialSphereIntersectDistance(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(partialSphere.getIntersectDistance(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void sphereIntersect(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(sphere.intersect(ray));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_RAYS)
+    public void planeIntersect(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(plane.intersect(ray));
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package yaphyre.core.accelerators;
+
+import java.util.List;
+import javax.annotation.Nonnull;
+
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.Shape;
+
+/**
+ * The {@link Accelerator}s a scene can be rendered with.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public enum Accelerators {
+
+    /**
+     * A {@link LinearAccelerator} for a handful of shapes, a {@link CompiledAccelerator} otherwise.
+     */
+    Automatic {
+        @Nonnull
+        @Override
+        public Accelerator create(@Nonnull List<Shape> shapes) {
+            return shapes.size() <= LINEAR_SCAN_THRESHOLD ? Linear.create(shapes) : Compiled.create(shapes);
+        }
+    },
+
+    Linear {
+        @Nonnull
+        @Override
+        public Accelerator create(@Nonnull List<Shape> shapes) {
+            return new LinearAccelerator(shapes);
+        }
+    },
+
+    Bvh {
+        @Nonnull
+        @Override
+        public Accelerator create(@Nonnull List<Shape> shapes) {
+            return new BvhAccelerator(shapes);
+        }
+    },
+
+    Compiled {
+        @Nonnull
+        @Override
+        public Accelerator create(@Nonnull List<Shape> shapes) {
+            return new CompiledAccelerator(shapes);
+        }
+    },
+
+    Grid {
+        @Nonnull
+        @Override
+        public Accelerator create(@Nonnull List<Shape> shapes) {
+            return new GridAccelerator(shapes);
+        }
+    },
+
+    /**
+     * A {@link QuantizedBvhAccelerator} for scenes whose hierarchy would not fit into the heap otherwise.
+     */
+    QuantizedBvh {
+        @Nonnull
+        @Override
+        public Accelerator create(@Nonnull List<Shape> shapes) {
+            return new QuantizedBvhAccelerator(shapes);
+        }
+    };
+
+    /**
+     * Scenes with at most this many shapes are not worth building a hierarchy for: it would consist of a single leaf.
+     */
+    private static final int LINEAR_SCAN_THRESHOLD = BoundingVolumeHierarchy.DEFAULT_MAX_LEAF_SIZE;
+
+    /**
+     * Build a new accelerator over the given shapes.
+     */
+    @Nonnull
+    public abstract Accelerator create(@Nonnull List<Shape> shapes);
+
+    /**
+     * Find an accelerator by its name, ignoring the case.
+     *
+     * @throws IllegalArgumentException If there is no accelerator with the given name.
+     */
+    @Nonnull
+    public static Accelerators forName(@Nonnull String name) {
+        for (Accelerators accelerator : values()) {
+            if (accelerator.name().equalsIgnoreCase(name)) {
+                return accelerator;
+            }
+        }
+        throw new IllegalArgumentException("Unknown accelerator: " + name);
+    }
+
+}
@@ -0,0 +1,1241 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.accelerators;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.statistics.RenderStatistics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Double.NEGATIVE_INFINITY;
+import static java.lang.Double.POSITIVE_INFINITY;
+
+/**
+ * A bounding volume hierarchy (BVH) over an arbitrary set of primitives. The primitives are only known by their index
+ * and their axis aligned bounds, so the same hierarchy can be used for shapes in a scene as well as for the triangles
+ * of a mesh.<br/>
+ * The hierarchy is built top down, using the surface area heuristic (SAH) evaluated on a fixed number of bins along
+ * the axis with the largest extent. Subtrees and the binning of large nodes are built in parallel on a
+ * {@link ForkJoinPool}, the result does not depend on the number of threads. Once built, the tree is flattened into
+ * plain arrays in depth first order: the first child of an inner node directly follows its parent, so only the index
+ * of the second child has to be stored. This keeps the whole structure in a few contiguous blocks of memory and avoids
+ * chasing object references during the traversal.<br/>
+ * The blocks are held in NIO buffers. A freshly built hierarchy wraps plain arrays, but a prebuilt one may as well be
+ * read directly from a memory mapped file (see {@link #fromBuffers(DoubleBuffer, IntBuffer, IntBuffer, DoubleBuffer,
+ * int)}).<br/>
+ * Instances are immutable and may be traversed by many threads concurrently. Each thread reuses its own traversal
+ * stacks, so tracing a ray does not create any garbage.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class BoundingVolumeHierarchy {
+
+    /**
+     * Default maximum number of primitives in a leaf node.
+     */
+    public static final int DEFAULT_MAX_LEAF_SIZE = 4;
+
+    /**
+     * Number of bins used to evaluate the surface area heuristic along the split axis.
+     */
+    private static final int BIN_COUNT = 16;
+
+    /**
+     * Cost of traversing an inner node relative to the costs of intersecting a primitive.
+     */
+    private static final double TRAVERSAL_COST = 0.125;
+
+    /**
+     * Below this depth the surface area heuristic is replaced by median splits. This guarantees a logarithmic depth
+     * even for pathological distributions of primitives.
+     */
+    private static final int MAX_SAH_DEPTH = 48;
+
+    /**
+     * The far distance of a node is slightly enlarged to compensate rounding errors in the slab test.
+     */
+    static final double ROBUSTNESS_FACTOR = 1d + 4 * Math.ulp(1d);
+
+    /**
+     * Subtrees with fewer primitives are built by the task building their parent.
+     */
+    private static final int PARALLEL_BUILD_THRESHOLD = 4096;
+
+    /**
+     * The primitives of nodes with at least this many primitives are binned and partitioned in parallel chunks.
+     */
+    private static final int PARALLEL_SCAN_THRESHOLD = 65536;
+
+    private static final int CHUNK_SIZE = 16384;
+
+    private static final int BOUNDS_STRIDE = 6;
+    private static final int NODE_STRIDE = 2;
+
+    /**
+     * The bounds of each node: minX, minY, minZ, maxX, maxY, maxZ.
+     */
+    private final DoubleBuffer nodeBounds;
+
+    /**
+     * Two values per node. For a leaf: the offset of the first primitive and the (positive) number of primitives. For
+     * an inner node: the index of the second child and the negative split axis minus one.
+     */
+    private final IntBuffer nodes;
+
+    /**
+     * The indices of the primitives in the order in which they are referenced by the leaves.
+     */
+    private final IntBuffer primitiveIndices;
+
+    /**
+     * The bounds of the primitives in the same order as {@link #primitiveIndices}.
+     */
+    private final DoubleBuffer primitiveBounds;
+
+    private final int nodeCount;
+    private final int depth;
+
+    /**
+     * The stacks of the traversal, reused by all the rays traced by a thread.
+     */
+    private final ThreadLocal<TraversalState> traversalStates =
+            ThreadLocal.withInitial(() -> new TraversalState(getDepth()));
+
+    /**
+     * Callback used during the traversal to intersect a single primitive.
+     */
+    @FunctionalInterface
+    public interface PrimitiveIntersector {
+
+        /**
+         * Intersect the primitive with the given index.
+         *
+         * @param primitive The index of the primitive as used when building the hierarchy.
+         * @param tMax      The distance of the nearest intersection found so far. Intersections further away are of no
+         *                  interest.
+         * @return The distance of the intersection or {@link Double#POSITIVE_INFINITY} if the primitive is missed.
+         */
+        double intersect(int primitive, double tMax);
+
+    }
+
+    /**
+     * Callback used during an occlusion traversal to test if a single primitive blocks the ray.
+     */
+    @FunctionalInterface
+    public interface PrimitiveOccluder {
+
+        /**
+         * Check if the primitive with the given index is hit by the ray within its range.
+         *
+         * @param primitive The index of the primitive as used when building the hierarchy.
+         * @return <code>true</code> if the primitive blocks the ray.
+         */
+        boolean occludes(int primitive);
+
+    }
+
+    /**
+     * Callback used during the traversal with a {@link RayPacket} to intersect a single primitive with the active rays
+     * of the packet. The callback is expected to shorten the ranges of the lanes it finds intersections for.
+     */
+    @FunctionalInterface
+    public interface PacketIntersector {
+
+        /**
+         * Intersect the primitive with the given index with the active rays of the packet being traversed. Only the
+         * lanes hitting the bounds of the primitive are active.
+         *
+         * @param primitive The index of the primitive as used when building the hierarchy.
+         */
+        void intersect(int primitive);
+
+    }
+
+    /**
+     * Build a new hierarchy using the {@link #DEFAULT_MAX_LEAF_SIZE}.
+     *
+     * @param primitiveBounds The bounds of the primitives, six values per primitive: minX, minY, minZ, maxX, maxY,
+     *                        maxZ.
+     */
+    public BoundingVolumeHierarchy(@Nonnull double[] primitiveBounds) {
+        this(primitiveBounds, DEFAULT_MAX_LEAF_SIZE);
+    }
+
+    /**
+     * Build a new hierarchy.
+     *
+     * @param primitiveBounds The bounds of the primitives, six values per primitive: minX, minY, minZ, maxX, maxY,
+     *                        maxZ.
+     * @param maxLeafSize     The maximum number of primitives in a leaf (unless they cannot be separated at all).
+     */
+    public BoundingVolumeHierarchy(@Nonnull double[] primitiveBounds, @Nonnegative int maxLeafSize) {
+        this(primitiveBounds, maxLeafSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Build a new hierarchy with the threads of the given pool. The hierarchy is the same for any number of threads.
+     *
+     * @param primitiveBounds The bounds of the primitives, six values per primitive: minX, minY, minZ, maxX, maxY,
+     *                        maxZ.
+     * @param maxLeafSize     The maximum number of primitives in a leaf (unless they cannot be separated at all).
+     * @param pool            The pool to build the hierarchy on.
+     */
+    public BoundingVolumeHierarchy(@Nonnull double[] primitiveBounds, @Nonnegative int maxLeafSize,
+                                   @Nonnull ForkJoinPool pool) {
+        checkArgument(primitiveBounds.length % BOUNDS_STRIDE == 0, "six values per primitive expected");
+        checkArgument(maxLeafSize > 0, "the maximum leaf size must be positive");
+
+        final int primitiveCount = primitiveBounds.length / BOUNDS_STRIDE;
+        final Builder builder = new Builder(primitiveBounds, primitiveCount, maxLeafSize);
+        builder.build(pool);
+
+        nodeCount = builder.nodeCount;
+        depth = builder.depth;
+        nodeBounds = DoubleBuffer.wrap(builder.nodeBounds);
+        nodes = IntBuffer.wrap(builder.nodes);
+        primitiveIndices = IntBuffer.wrap(builder.indices);
+        final double[] sortedBounds = new double[primitiveBounds.length];
+        for (int i = 0; i < primitiveCount; i++) {
+            System.arraycopy(primitiveBounds, builder.indices[i] * BOUNDS_STRIDE,
+                    sortedBounds, i * BOUNDS_STRIDE, BOUNDS_STRIDE);
+        }
+        this.primitiveBounds = DoubleBuffer.wrap(sortedBounds);
+    }
+
+    private BoundingVolumeHierarchy(DoubleBuffer nodeBounds, IntBuffer nodes, IntBuffer primitiveIndices,
+                                    DoubleBuffer primitiveBounds, int depth) {
+        this.nodeBounds = nodeBounds;
+        this.nodes = nodes;
+        this.primitiveIndices = primitiveIndices;
+        this.primitiveBounds = primitiveBounds;
+        this.nodeCount = nodes.capacity() / NODE_STRIDE;
+        this.depth = depth;
+    }
+
+    /**
+     * Recreate a hierarchy from the buffers of a hierarchy built before (see {@link #getNodeBounds()},
+     * {@link #getNodes()}, {@link #getPrimitiveIndices()} and {@link #getPrimitiveBounds()}). The buffers are used as
+     * they are, so they may be views on a memory mapped file. Since they might come from a corrupt file, the structure
+     * of the tree is validated: every child and primitive reference must lie within the buffers and the depth must
+     * match the tree.
+     *
+     * @param nodeBounds       The bounds of the nodes, six values per node.
+     * @param nodes            The flattened nodes, two values per node.
+     * @param primitiveIndices The indices of the primitives referenced by the leaves.
+     * @param primitiveBounds  The bounds of the primitives in the order of the leaves, six values per primitive.
+     * @param depth            The depth of the tree.
+     * @return The hierarchy using the given buffers.
+     * @throws IllegalArgumentException If the buffers do not describe a valid hierarchy.
+     */
+    @Nonnull
+    public static BoundingVolumeHierarchy fromBuffers(@Nonnull DoubleBuffer nodeBounds, @Nonnull IntBuffer nodes,
+                                                      @Nonnull IntBuffer primitiveIndices,
+                                                      @Nonnull DoubleBuffer primitiveBounds,
+                                                      @Nonnegative int depth) {
+        final int nodeCount = nodes.capacity() / NODE_STRIDE;
+        final int primitiveCount = primitiveIndices.capacity();
+        checkArgument(nodes.capacity() == nodeCount * NODE_STRIDE, "two values per node expected");
+        checkArgument(nodeBounds.capacity() == nodeCount * BOUNDS_STRIDE, "six bounds per node expected");
+        checkArgument(primitiveBounds.capacity() == primitiveCount * BOUNDS_STRIDE, "six bounds per primitive expected");
+
+        // children are always stored after their parent, so the levels of all nodes are known in a single pass
+        final int[] levels = new int[nodeCount];
+        int actualDepth = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            final int offset = nodes.get(node * NODE_STRIDE);
+            final int count = nodes.get(node * NODE_STRIDE + 1);
+            final int level = levels[node] + 1;
+            if (count > 0) {
+                checkArgument(offset >= 0 && offset <= primitiveCount - count, "invalid leaf: %s", node);
+            } else {
+                checkArgument(count >= -3 && offset > node + 1 && offset < nodeCount, "invalid inner node: %s", node);
+                levels[node + 1] = Math.max(levels[node + 1], level);
+                levels[offset] = Math.max(levels[offset], level);
+            }
+            actualDepth = Math.max(actualDepth, level);
+        }
+        checkArgument(depth == actualDepth, "invalid depth: %s", depth);
+        for (int i = 0; i < primitiveCount; i++) {
+            checkArgument(primitiveIndices.get(i) >= 0, "invalid primitive index: %s", i);
+        }
+
+        return new BoundingVolumeHierarchy(nodeBounds, nodes, primitiveIndices, primitiveBounds, depth);
+    }
+
+    /**
+     * Create a hierarchy with the same tree over moved primitives. Only the bounds of the nodes are recalculated, bottom
+     * up, so this takes linear time and is much cheaper than building a new hierarchy. The quality of the tree degrades
+     * with the distance the primitives moved since the hierarchy was built, but the traversal stays correct.<br/>
+     * This is used to update the hierarchy between the frames of an animation.
+     *
+     * @param primitiveBounds The new bounds of the same primitives, six values per primitive.
+     * @return A new hierarchy sharing the tree of this one.
+     */
+    @Nonnull
+    public BoundingVolumeHierarchy refit(@Nonnull double[] primitiveBounds) {
+        final int primitiveCount = getPrimitiveCount();
+        checkArgument(primitiveBounds.length == primitiveCount * BOUNDS_STRIDE,
+                "six values for each of the %s primitives expected", primitiveCount);
+
+        final double[] sortedBounds = new double[primitiveBounds.length];
+        for (int i = 0; i < primitiveCount; i++) {
+            System.arraycopy(primitiveBounds, primitiveIndices.get(i) * BOUNDS_STRIDE,
+                    sortedBounds, i * BOUNDS_STRIDE, BOUNDS_STRIDE);
+        }
+
+        // children are always stored after their parent, so they are refit before their parent
+        final double[] refitBounds = new double[nodeCount * BOUNDS_STRIDE];
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            final int boundsOffset = node * BOUNDS_STRIDE;
+            final int offset = nodes.get(node * NODE_STRIDE);
+            final int count = nodes.get(node * NODE_STRIDE + 1);
+            Builder.empty(refitBounds, boundsOffset);
+            if (count > 0) {
+                for (int i = offset; i < offset + count; i++) {
+                    Builder.include(refitBounds, boundsOffset, sortedBounds, i * BOUNDS_STRIDE);
+                }
+            } else {
+                Builder.include(refitBounds, boundsOffset, refitBounds, (node + 1) * BOUNDS_STRIDE);
+                Builder.include(refitBounds, boundsOffset, refitBounds, offset * BOUNDS_STRIDE);
+            }
+        }
+
+        return new BoundingVolumeHierarchy(DoubleBuffer.wrap(refitBounds), nodes, primitiveIndices,
+                DoubleBuffer.wrap(sortedBounds), depth);
+    }
+
+    /**
+     * Copy the corners of the given {@link BoundingBox} into the given array in the layout expected by the hierarchy.
+     *
+     * @param boundingBox The {@link BoundingBox} to copy.
+     * @param target      The array of primitive bounds.
+     * @param primitive   The index of the primitive.
+     */
+    public static void copyBounds(@Nonnull BoundingBox boundingBox, @Nonnull double[] target, int primitive) {
+        final Point3D pointMin = boundingBox.getPointMin();
+        final Point3D pointMax = boundingBox.getPointMax();
+        final int offset = primitive * BOUNDS_STRIDE;
+        target[offset] = pointMin.getX();
+        target[offset + 1] = pointMin.getY();
+        target[offset + 2] = pointMin.getZ();
+        target[offset + 3] = pointMax.getX();
+        target[offset + 4] = pointMax.getY();
+        target[offset + 5] = pointMax.getZ();
+    }
+
+    public int getPrimitiveCount() {
+        return primitiveIndices.capacity();
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return A read only view on the bounds of the nodes, six values per node.
+     */
+    @Nonnull
+    public DoubleBuffer getNodeBounds() {
+        return nodeBounds.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return A read only view on the flattened nodes, two values per node.
+     */
+    @Nonnull
+    public IntBuffer getNodes() {
+        return nodes.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return A read only view on the indices of the primitives in the order they are referenced by the leaves.
+     */
+    @Nonnull
+    public IntBuffer getPrimitiveIndices() {
+        return primitiveIndices.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return A read only view on the bounds of the primitives in the order of {@link #getPrimitiveIndices()}.
+     */
+    @Nonnull
+    public DoubleBuffer getPrimitiveBounds() {
+        return primitiveBounds.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return The number of bytes occupied by the buffers of the hierarchy.
+     */
+    public long getMemorySize() {
+        return (long) nodeBounds.capacity() * Double.BYTES + (long) nodes.capacity() * Integer.BYTES
+                + (long) primitiveIndices.capacity() * Integer.BYTES
+                + (long) primitiveBounds.capacity() * Double.BYTES;
+    }
+
+    /**
+     * Traverse the hierarchy with the given {@link Ray}. The children of each node are visited front to back, so that
+     * far away nodes can be skipped once an intersection closer than the node is found.
+     *
+     * @param ray         The {@link Ray} to trace.
+     * @param intersector The callback intersecting the primitives in the leaves hit by the ray.
+     * @param anyHit      If <code>true</code> the traversal stops at the first intersection found, which is not
+     *                    necessarily the nearest one.
+     * @return The distance of the nearest intersection found or {@link Double#POSITIVE_INFINITY} if nothing was hit.
+     */
+    public double traverse(@Nonnull Ray ray, @Nonnull PrimitiveIntersector intersector, boolean anyHit) {
+        final Point3D origin = ray.getOrigin();
+        final Vector3D direction = ray.getDirection();
+        return traverse(origin.getX(), origin.getY(), origin.getZ(),
+                direction.getX(), direction.getY(), direction.getZ(), ray.getTMin(), ray.getTMax(),
+                intersector, anyHit);
+    }
+
+    /**
+     * Traverse the hierarchy with a ray given by its components.
+     *
+     * @see #traverse(Ray, PrimitiveIntersector, boolean)
+     */
+    public double traverse(double ox, double oy, double oz, double dx, double dy, double dz, double tMin, double tMax,
+                           @Nonnull PrimitiveIntersector intersector, boolean anyHit) {
+        if (nodeCount == 0) {
+            return POSITIVE_INFINITY;
+        }
+
+        final double ix = 1d / dx;
+        final double iy = 1d / dy;
+        final double iz = 1d / dz;
+
+        final int[] stack = traversalStates.get().stack;
+        int stackSize = 0;
+        int node = 0;
+        double nearest = POSITIVE_INFINITY;
+        int nodeVisits = 0;
+
+        while (true) {
+            nodeVisits++;
+            if (isHit(nodeBounds, node * BOUNDS_STRIDE, ox, oy, oz, ix, iy, iz, tMin, tMax)) {
+                final int offset = nodes.get(node * NODE_STRIDE);
+                final int count = nodes.get(node * NODE_STRIDE + 1);
+                if (count > 0) {
+                    for (int i = offset; i < offset + count; i++) {
+                        if (count == 1
+                                || isHit(primitiveBounds, i * BOUNDS_STRIDE, ox, oy, oz, ix, iy, iz, tMin, tMax)) {
+                            final double distance = intersector.intersect(primitiveIndices.get(i), tMax);
+                            if (distance < tMax) {
+                                tMax = distance;
+                                nearest = distance;
+                                if (anyHit) {
+                                    RenderStatistics.countTraversal(nodeVisits);
+                                    return nearest;
+                                }
+                            }
+                        }
+                    }
+                } else {
+                    final int axis = -count - 1;
+                    final boolean directionIsNegative = (axis == 0 ? dx : axis == 1 ? dy : dz) < 0;
+                    if (directionIsNegative) {
+                        stack[stackSize++] = node + 1;
+                        node = offset;
+                    } else {
+                        stack[stackSize++] = offset;
+                        node = node + 1;
+                    }
+                    continue;
+                }
+            }
+            if (stackSize == 0) {
+                break;
+            }
+            node = stack[--stackSize];
+        }
+
+        RenderStatistics.countTraversal(nodeVisits);
+        return nearest;
+    }
+
+    /**
+     * Traverse the hierarchy with the given {@link Ray} until any primitive blocking it is found. Unlike
+     * {@link #traverse(Ray, PrimitiveIntersector, boolean)} the range of the ray is never shortened, as the occlusion
+     * test does not tell the distance of the hit.
+     *
+     * @param ray      The {@link Ray} to trace.
+     * @param occluder The callback testing the primitives in the leaves hit by the ray.
+     * @return The index of the first primitive found blocking the ray or <code>-1</code> if there is none.
+     */
+    public int findOccluder(@Nonnull Ray ray, @Nonnull PrimitiveOccluder occluder) {
+        if (nodeCount == 0) {
+            return -1;
+        }
+
+        final Point3D origin = ray.getOrigin();
+        final Vector3D direction = ray.getDirection();
+        final double ox = origin.getX();
+        final double oy = origin.getY();
+        final double oz = origin.getZ();
+        final double ix = 1d / direction.getX();
+        final double iy = 1d / direction.getY();
+        final double iz = 1d / direction.getZ();
+        final double tMin = ray.getTMin();
+        final double tMax = ray.getTMax();
+
+        final int[] stack = traversalStates.get().stack;
+        int stackSize = 0;
+        int node = 0;
+        int nodeVisits = 0;
+
+        while (true) {
+            nodeVisits++;
+            if (isHit(nodeBounds, node * BOUNDS_STRIDE, ox, oy, oz, ix, iy, iz, tMin, tMax)) {
+                final int offset = nodes.get(node * NODE_STRIDE);
+                final int count = nodes.get(node * NODE_STRIDE + 1);
+                if (count > 0) {
+                    for (int i = offset; i < offset + count; i++) {
+                        if ((count == 1
+                                || isHit(primitiveBounds, i * BOUNDS_STRIDE, ox, oy, oz, ix, iy, iz, tMin, tMax))
+                                && occluder.occludes(primitiveIndices.get(i))) {
+                            RenderStatistics.countTraversal(nodeVisits);
+                            return primitiveIndices.get(i);
+                        }
+                    }
+                } else {
+                    stack[stackSize++] = offset;
+                    node = node + 1;
+                    continue;
+                }
+            }
+            if (stackSize == 0) {
+                break;
+            }
+            node = stack[--stackSize];
+        }
+
+        RenderStatistics.countTraversal(nodeVisits);
+        return -1;
+    }
+
+    /**
+     * Traverse the hierarchy with the active rays of a {@link RayPacket} at once. A node is visited as soon as any of
+     * the rays hits its bounds, so the nodes are loaded only once for all the rays of the packet. This pays off for
+     * coherent rays like the camera rays of neighbouring pixels, which mostly visit the same nodes. The lanes hitting a
+     * node are passed on to its children, and the children are visited in the order given by the direction of the
+     * first of these lanes. Before a primitive is intersected, only the lanes hitting its bounds are activated. The
+     * intersector has to shorten the ranges of the lanes hit. The active lanes are restored after the traversal.
+     *
+     * @param packet      The {@link RayPacket} to trace.
+     * @param intersector The callback intersecting the primitives in the leaves hit by any of the rays.
+     */
+    public void traverse(@Nonnull RayPacket packet, @Nonnull PacketIntersector intersector) {
+        final int size = packet.size();
+        final int activeLanes = packet.getActiveLanes();
+        if (nodeCount == 0 || activeLanes == 0) {
+            return;
+        }
+
+        final TraversalState state = traversalStates.get();
+        state.ensureLaneCapacity(size);
+        final double[] ix = state.ix;
+        final double[] iy = state.iy;
+        final double[] iz = state.iz;
+        for (int lane = 0; lane < size; lane++) {
+            ix[lane] = 1d / packet.getDirectionX(lane);
+            iy[lane] = 1d / packet.getDirectionY(lane);
+            iz[lane] = 1d / packet.getDirectionZ(lane);
+        }
+
+        // the lanes tested against a node are the ones which hit its parent
+        final int[] stack = state.stack;
+        final int[] laneStack = state.laneStack;
+        int stackSize = 0;
+        int node = 0;
+        int lanes = activeLanes;
+        int nodeVisits = 0;
+
+        while (true) {
+            nodeVisits++;
+            lanes = hitLanes(nodeBounds, node * BOUNDS_STRIDE, packet, lanes, ix, iy, iz);
+            if (lanes != 0) {
+                final int offset = nodes.get(node * NODE_STRIDE);
+                final int count = nodes.get(node * NODE_STRIDE + 1);
+                if (count > 0) {
+                    for (int i = offset; i < offset + count; i++) {
+                        final int primitiveLanes = count == 1
+                                ? lanes
+                                : hitLanes(primitiveBounds, i * BOUNDS_STRIDE, packet, lanes, ix, iy, iz);
+                        if (primitiveLanes != 0) {
+                            packet.setActiveLanes(primitiveLanes);
+                            intersector.intersect(primitiveIndices.get(i));
+                        }
+                    }
+                } else {
+                    final int axis = -count - 1;
+                    final int lane = Integer.numberOfTrailingZeros(lanes);
+                    final boolean directionIsNegative = (axis == 0 ? packet.getDirectionX(lane)
+                            : axis == 1 ? packet.getDirectionY(lane) : packet.getDirectionZ(lane)) < 0;
+                    laneStack[stackSize] = lanes;
+                    if (directionIsNegative) {
+                        stack[stackSize++] = node + 1;
+                        node = offset;
+                    } else {
+                        stack[stackSize++] = offset;
+                        node = node + 1;
+                    }
+                    continue;
+                }
+            }
+            if (stackSize == 0) {
+                break;
+            }
+            node = stack[--stackSize];
+            lanes = laneStack[stackSize];
+        }
+
+        RenderStatistics.countTraversal(nodeVisits);
+        packet.setActiveLanes(activeLanes);
+    }
+
+    /**
+     * Slab test of the given lanes of a packet against the bounds stored at the given offset.
+     *
+     * @return The bit mask of the lanes hitting the bounds.
+     */
+    private static int hitLanes(DoubleBuffer bounds, int offset, RayPacket packet, int lanes,
+                                double[] ix, double[] iy, double[] iz) {
+        int result = 0;
+        for (int remaining = lanes; remaining != 0; remaining &= remaining - 1) {
+            final int lane = Integer.numberOfTrailingZeros(remaining);
+            if (isHit(bounds, offset, packet.getOriginX(lane), packet.getOriginY(lane), packet.getOriginZ(lane),
+                    ix[lane], iy[lane], iz[lane], packet.getTMin(lane), packet.getTMax(lane))) {
+                result |= 1 << lane;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Slab test of a ray against the bounds stored at the given offset. Divisions by zero are intended: the resulting
+     * infinities (or NaNs) are ignored by the comparisons.
+     */
+    private static boolean isHit(DoubleBuffer bounds, int offset, double ox, double oy, double oz,
+                                 double ix, double iy, double iz, double tMin, double tMax) {
+        double tNear = tMin;
+        double tFar = tMax;
+
+        double t0 = (bounds.get(offset) - ox) * ix;
+        double t1 = (bounds.get(offset + 3) - ox) * ix;
+        if (t0 > t1) {
+            final double swap = t0;
+            t0 = t1;
+            t1 = swap;
+        }
+        if (t0 > tNear) {
+            tNear = t0;
+        }
+        if (t1 * ROBUSTNESS_FACTOR < tFar) {
+            tFar = t1 * ROBUSTNESS_FACTOR;
+        }
+
+        t0 = (bounds.get(offset + 1) - oy) * iy;
+        t1 = (bounds.get(offset + 4) - oy) * iy;
+        if (t0 > t1) {
+            final double swap = t0;
+            t0 = t1;
+            t1 = swap;
+        }
+        if (t0 > tNear) {
+            tNear = t0;
+        }
+        if (t1 * ROBUSTNESS_FACTOR < tFar) {
+            tFar = t1 * ROBUSTNESS_FACTOR;
+        }
+
+        t0 = (bounds.get(offset + 2) - oz) * iz;
+        t1 = (bounds.get(offset + 5) - oz) * iz;
+        if (t0 > t1) {
+            final double swap = t0;
+            t0 = t1;
+            t1 = swap;
+        }
+        if (t0 > tNear) {
+            tNear = t0;
+        }
+        if (t1 * ROBUSTNESS_FACTOR < tFar) {
+            tFar = t1 * ROBUSTNESS_FACTOR;
+        }
+
+        return tNear <= tFar;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("primitives", getPrimitiveCount())
+                .add("nodes", nodeCount)
+                .add("depth", depth).toString();
+    }
+
+    /**
+     * The scratch state of the traversal of a single thread: the stacks of the nodes still to be visited and of the
+     * lanes hitting them, and the inverse directions of the rays of a packet.
+     */
+    private static final class TraversalState {
+
+        private final int[] stack;
+        private final int[] laneStack;
+        private double[] ix = new double[RayPacket.MAX_SIZE];
+        private double[] iy = new double[RayPacket.MAX_SIZE];
+        private double[] iz = new double[RayPacket.MAX_SIZE];
+
+        private TraversalState(int depth) {
+            stack = new int[depth];
+            laneStack = new int[depth];
+        }
+
+        private void ensureLaneCapacity(int size) {
+            if (ix.length < size) {
+                ix = new double[size];
+                iy = new double[size];
+                iz = new double[size];
+            }
+        }
+
+    }
+
+    /**
+     * Builds the tree using the binned surface area heuristic. The subtrees are built by {@link BuildTask}s on a
+     * {@link ForkJoinPool}, the primitives of large nodes are binned and partitioned in parallel as well.<br/>
+     * Each subtree over <em>n</em> primitives reserves the <em>2n - 1</em> node slots following the slot of its root,
+     * which is the maximal number of nodes it can have. So the slots of the subtrees are known before they are built,
+     * and the tasks never have to synchronize. The tasks count the leaves they create, which gives the exact number of
+     * nodes of the tree, so the used slots are packed in depth first order into arrays of the final size by
+     * {@link #flatten()} afterwards.<br/>
+     * Large ranges are always split into chunks of the same size, so neither the tree nor the order of the primitives
+     * depend on the number of threads.
+     */
+    private static final class Builder {
+
+        private final double[] bounds;
+        private final double[] centroids;
+        private final int[] indices;
+        private final int maxLeafSize;
+
+        /**
+         * The nodes in the reserved slots. The first child of an inner node always follows its parent, the slot of the
+         * second child is stored like in the flattened tree.
+         */
+        private final double[] slotBounds;
+        private final int[] slots;
+
+        private double[] nodeBounds;
+        private int[] nodes;
+        private int nodeCount;
+        private int depth;
+
+        private Builder(double[] bounds, int primitiveCount, int maxLeafSize) {
+            this.bounds = bounds;
+            this.maxLeafSize = maxLeafSize;
+
+            indices = new int[primitiveCount];
+            centroids = new double[primitiveCount * 3];
+            for (int primitive = 0; primitive < primitiveCount; primitive++) {
+                indices[primitive] = primitive;
+                for (int axis = 0; axis < 3; axis++) {
+                    final double centroid = 0.5 * (bounds[primitive * BOUNDS_STRIDE + axis]
+                            + bounds[primitive * BOUNDS_STRIDE + axis + 3]);
+                    // unbounded primitives have no meaningful centroid
+                    centroids[primitive * 3 + axis] = Double.isFinite(centroid) ? centroid : 0d;
+                }
+            }
+
+            final int maxNodeCount = Math.max(2 * primitiveCount - 1, 0);
+            slotBounds = new double[maxNodeCount * BOUNDS_STRIDE];
+            slots = new int[maxNodeCount * NODE_STRIDE];
+        }
+
+        /**
+         * Build the tree and flatten it.
+         *
+         * @param pool The pool to build large trees on.
+         */
+        private void build(ForkJoinPool pool) {
+            final int primitiveCount = indices.length;
+            if (primitiveCount > 0) {
+                final BuildTask task = new BuildTask(0, primitiveCount, 0, 0);
+                depth = primitiveCount >= PARALLEL_BUILD_THRESHOLD ? pool.invoke(task) : task.invoke();
+                // each inner node has exactly two children
+                nodeCount = 2 * task.leafCount - 1;
+            }
+            flatten();
+        }
+
+        /**
+         * Copy the used slots in depth first order: each node is followed by the subtree of its first child and then
+         * by the subtree of its second child.
+         */
+        private void flatten() {
+            nodeBounds = new double[nodeCount * BOUNDS_STRIDE];
+            nodes = new int[nodeCount * NODE_STRIDE];
+            final int[] slotStack = new int[depth];
+            final int[] parentStack = new int[depth];
+            int stackSize = 0;
+            int slot = 0;
+            int parent = -1;
+            int count = 0;
+            while (nodeCount > 0) {
+                final int node = count++;
+                if (parent >= 0) {
+                    nodes[parent * NODE_STRIDE] = node;
+                }
+                System.arraycopy(slotBounds, slot * BOUNDS_STRIDE, nodeBounds, node * BOUNDS_STRIDE, BOUNDS_STRIDE);
+                nodes[node * NODE_STRIDE + 1] = slots[slot * NODE_STRIDE + 1];
+                if (slots[slot * NODE_STRIDE + 1] > 0) {
+                    nodes[node * NODE_STRIDE] = slots[slot * NODE_STRIDE];
+                    if (stackSize == 0) {
+                        break;
+                    }
+                    slot = slotStack[--stackSize];
+                    parent = parentStack[stackSize];
+                } else {
+                    slotStack[stackSize] = slots[slot * NODE_STRIDE];
+                    parentStack[stackSize++] = node;
+                    slot = slot + 1;
+                    parent = -1;
+                }
+            }
+        }
+
+        /**
+         * Builds the subtree over a range of primitives. Subtrees large enough are built by tasks of their own, the
+         * smaller ones recursively by the same task.
+         */
+        private final class BuildTask extends RecursiveTask<Integer> {
+
+            private final int start;
+            private final int end;
+            private final int slot;
+            private final int level;
+
+            private final Bins bins = new Bins();
+            private final double[] centroidBounds = new double[BOUNDS_STRIDE];
+            private final double[] sweepBounds = new double[BOUNDS_STRIDE];
+            private final double[] rightAreas = new double[BIN_COUNT];
+            private final int[] rightCounts = new int[BIN_COUNT];
+
+            /**
+             * The number of leaves created by this task, including the ones of the tasks it forked.
+             */
+            private int leafCount;
+
+            private BuildTask(int start, int end, int slot, int level) {
+                this.start = start;
+                this.end = end;
+                this.slot = slot;
+                this.level = level;
+            }
+
+            @Override
+            protected Integer compute() {
+                return build(start, end, slot, level);
+            }
+
+            /**
+             * @return The depth of the whole tree below the given subtree.
+             */
+            private int build(int start, int end, int slot, int level) {
+                final int boundsOffset = slot * BOUNDS_STRIDE;
+                measure(start, end, boundsOffset);
+
+                final int count = end - start;
+                if (count == 1) {
+                    return makeLeaf(slot, start, count, level);
+                }
+
+                int axis = 0;
+                double extent = NEGATIVE_INFINITY;
+                for (int a = 0; a < 3; a++) {
+                    if (centroidBounds[a + 3] - centroidBounds[a] > extent) {
+                        axis = a;
+                        extent = centroidBounds[a + 3] - centroidBounds[a];
+                    }
+                }
+                final double centroidMin = centroidBounds[axis];
+
+                if (!(extent > 0)) {
+                    // all centroids are identical, so the primitives cannot be separated in a meaningful way
+                    if (count <= maxLeafSize) {
+                        return makeLeaf(slot, start, count, level);
+                    }
+                    return makeInnerNode(slot, start, (start + end) >>> 1, end, axis, level);
+                }
+
+                if (level >= MAX_SAH_DEPTH) {
+                    return makeInnerNode(slot, start, selectMedian(start, end, axis), end, axis, level);
+                }
+
+                final double binScale = BIN_COUNT / extent;
+                final int bestSplit = findBestSplit(start, end, axis, centroidMin, binScale,
+                        area(slotBounds, boundsOffset));
+
+                if (bestSplit < 0) {
+                    if (count <= maxLeafSize) {
+                        return makeLeaf(slot, start, count, level);
+                    }
+                    return makeInnerNode(slot, start, selectMedian(start, end, axis), end, axis, level);
+                }
+
+                int middle = partition(start, end, axis, centroidMin, binScale, bestSplit);
+                if (middle == start || middle == end) {
+                    middle = selectMedian(start, end, axis);
+                }
+                return makeInnerNode(slot, start, middle, end, axis, level);
+            }
+
+            /**
+             * Calculate the bounds of the node and the bounds of the centroids of its primitives.
+             */
+            private void measure(int start, int end, int boundsOffset) {
+                empty(slotBounds, boundsOffset);
+                empty(centroidBounds, 0);
+                if (end - start < PARALLEL_SCAN_THRESHOLD) {
+                    measure(start, end, slotBounds, boundsOffset, centroidBounds, 0);
+                    return;
+                }
+                final double[] chunkBounds = new double[chunkCount(start, end) * 2 * BOUNDS_STRIDE];
+                forEachChunk(start, end, (chunk, chunkStart, chunkEnd) -> {
+                    final int offset = chunk * 2 * BOUNDS_STRIDE;
+                    empty(chunkBounds, offset);
+                    empty(chunkBounds, offset + BOUNDS_STRIDE);
+                    measure(chunkStart, chunkEnd, chunkBounds, offset, chunkBounds, offset + BOUNDS_STRIDE);
+                });
+                for (int offset = 0; offset < chunkBounds.length; offset += 2 * BOUNDS_STRIDE) {
+                    include(slotBounds, boundsOffset, chunkBounds, offset);
+                    include(centroidBounds, 0, chunkBounds, offset + BOUNDS_STRIDE);
+                }
+            }
+
+            private void measure(int start, int end, double[] target, int targetOffset,
+                                 double[] centroidTarget, int centroidOffset) {
+                for (int i = start; i < end; i++) {
+                    include(target, targetOffset, bounds, indices[i] * BOUNDS_STRIDE);
+                    for (int axis = 0; axis < 3; axis++) {
+                        final double centroid = centroids[indices[i] * 3 + axis];
+                        centroidTarget[centroidOffset + axis] =
+                                Math.min(centroidTarget[centroidOffset + axis], centroid);
+                        centroidTarget[centroidOffset + axis + 3] =
+                                Math.max(centroidTarget[centroidOffset + axis + 3], centroid);
+                    }
+                }
+            }
+
+            /**
+             * Evaluate the surface area heuristic between each pair of adjacent bins.
+             *
+             * @return The index of the last bin of the left child or -1 if creating a leaf is cheaper than any split
+             * (or if the costs cannot be evaluated, e.g. for unbounded primitives).
+             */
+            private int findBestSplit(int start, int end, int axis, double centroidMin, double binScale,
+                                      double nodeArea) {
+                bins.clear();
+                if (end - start < PARALLEL_SCAN_THRESHOLD) {
+                    fillBins(start, end, axis, centroidMin, binScale, bins);
+                } else {
+                    final Bins[] chunkBins = new Bins[chunkCount(start, end)];
+                    forEachChunk(start, end, (chunk, chunkStart, chunkEnd) -> {
+                        chunkBins[chunk] = new Bins();
+                        fillBins(chunkStart, chunkEnd, axis, centroidMin, binScale, chunkBins[chunk]);
+                    });
+                    for (Bins chunk : chunkBins) {
+                        bins.add(chunk);
+                    }
+                }
+
+                empty(sweepBounds, 0);
+                int count = 0;
+                for (int bin = BIN_COUNT - 1; bin > 0; bin--) {
+                    include(sweepBounds, 0, bins.bounds, bin * BOUNDS_STRIDE);
+                    count += bins.counts[bin];
+                    rightCounts[bin] = count;
+                    rightAreas[bin] = area(sweepBounds, 0);
+                }
+
+                final double leafCost = end - start;
+                double bestCost = end - start <= maxLeafSize ? leafCost : POSITIVE_INFINITY;
+                int bestSplit = -1;
+
+                empty(sweepBounds, 0);
+                count = 0;
+                for (int bin = 0; bin < BIN_COUNT - 1; bin++) {
+                    include(sweepBounds, 0, bins.bounds, bin * BOUNDS_STRIDE);
+                    count += bins.counts[bin];
+                    if (count == 0 || rightCounts[bin + 1] == 0) {
+                        continue;
+                    }
+                    final double cost = TRAVERSAL_COST
+                            + (count * area(sweepBounds, 0) + rightCounts[bin + 1] * rightAreas[bin + 1]) / nodeArea;
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestSplit = bin;
+                    }
+                }
+                return bestSplit;
+            }
+
+            private int makeLeaf(int slot, int start, int count, int level) {
+                slots[slot * NODE_STRIDE] = start;
+                slots[slot * NODE_STRIDE + 1] = count;
+                leafCount++;
+                return level + 1;
+            }
+
+            /**
+             * The first child takes the slots following the node, the second child the ones following the slots
+             * reserved for the first child.
+             */
+            private int makeInnerNode(int slot, int start, int middle, int end, int axis, int level) {
+                final int secondSlot = slot + 2 * (middle - start);
+                slots[slot * NODE_STRIDE] = secondSlot;
+                slots[slot * NODE_STRIDE + 1] = -(axis + 1);
+                if (end - middle >= PARALLEL_BUILD_THRESHOLD && middle - start >= PARALLEL_BUILD_THRESHOLD) {
+                    final BuildTask second = new BuildTask(middle, end, secondSlot, level + 1);
+                    second.fork();
+                    final int firstDepth = build(start, middle, slot + 1, level + 1);
+                    final int secondDepth = second.join();
+                    leafCount += second.leafCount;
+                    return Math.max(firstDepth, secondDepth);
+                }
+                return Math.max(build(start, middle, slot + 1, level + 1), build(middle, end, secondSlot, level + 1));
+            }
+        }
+
+        private void fillBins(int start, int end, int axis, double centroidMin, double binScale, Bins target) {
+            for (int i = start; i < end; i++) {
+                final int bin = binIndex(indices[i], axis, centroidMin, binScale);
+                target.counts[bin]++;
+                include(target.bounds, bin * BOUNDS_STRIDE, bounds, indices[i] * BOUNDS_STRIDE);
+            }
+        }
+
+        private int binIndex(int primitive, int axis, double centroidMin, double binScale) {
+            final int bin = (int) ((centroids[primitive * 3 + axis] - centroidMin) * binScale);
+            return Math.min(bin, BIN_COUNT - 1);
+        }
+
+        private int partition(int start, int end, int axis, double centroidMin, double binScale, int split) {
+            if (end - start >= PARALLEL_SCAN_THRESHOLD) {
+                return partitionChunks(start, end, axis, centroidMin, binScale, split);
+            }
+            int left = start;
+            int right = end - 1;
+            while (left <= right) {
+                if (binIndex(indices[left], axis, centroidMin, binScale) <= split) {
+                    left++;
+                } else {
+                    swap(left, right--);
+                }
+            }
+            return left;
+        }
+
+        /**
+         * Stable partition of a large range: the primitives of the left side are counted for each chunk, then each
+         * chunk copies its primitives to their final positions.
+         */
+        private int partitionChunks(int start, int end, int axis, double centroidMin, double binScale, int split) {
+            final int chunkCount = chunkCount(start, end);
+            final int[] leftCounts = new int[chunkCount];
+            forEachChunk(start, end, (chunk, chunkStart, chunkEnd) -> {
+                int count = 0;
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    if (binIndex(indices[i], axis, centroidMin, binScale) <= split) {
+                        count++;
+                    }
+                }
+                leftCounts[chunk] = count;
+            });
+
+            final int[] leftOffsets = new int[chunkCount];
+            final int[] rightOffsets = new int[chunkCount];
+            int leftCount = 0;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                leftOffsets[chunk] = leftCount;
+                leftCount += leftCounts[chunk];
+            }
+            int rightCount = leftCount;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                rightOffsets[chunk] = rightCount;
+                rightCount += Math.min(CHUNK_SIZE, end - start - chunk * CHUNK_SIZE) - leftCounts[chunk];
+            }
+
+            final int[] partitioned = new int[end - start];
+            forEachChunk(start, end, (chunk, chunkStart, chunkEnd) -> {
+                int left = leftOffsets[chunk];
+                int right = rightOffsets[chunk];
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    if (binIndex(indices[i], axis, centroidMin, binScale) <= split) {
+                        partitioned[left++] = indices[i];
+                    } else {
+                        partitioned[right++] = indices[i];
+                    }
+                }
+            });
+            System.arraycopy(partitioned, 0, indices, start, partitioned.length);
+            return start + leftCount;
+        }
+
+        /**
+         * Partially sort the primitives so that the median (by centroid) ends up in the middle of the range.
+         *
+         * @return The index of the middle of the range.
+         */
+        private int selectMedian(int start, int end, int axis) {
+            final int middle = (start + end) >>> 1;
+            int low = start;
+            int high = end - 1;
+            while (high > low) {
+                final double pivot = centroids[indices[(low + high) >>> 1] * 3 + axis];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (centroids[indices[i] * 3 + axis] < pivot) {
+                        i++;
+                    }
+                    while (centroids[indices[j] * 3 + axis] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                if (middle <= j) {
+                    high = j;
+                } else if (middle >= i) {
+                    low = i;
+                } else {
+                    break;
+                }
+            }
+            return middle;
+        }
+
+        private void swap(int i, int j) {
+            final int swap = indices[i];
+            indices[i] = indices[j];
+            indices[j] = swap;
+        }
+
+        private static int chunkCount(int start, int end) {
+            return (end - start + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        }
+
+        /**
+         * Run the given action on the chunks of the range in parallel and wait for all of them to complete.
+         */
+        private static void forEachChunk(int start, int end, ChunkAction action) {
+            final List<RecursiveAction> tasks = new ArrayList<>(chunkCount(start, end));
+            for (int chunk = 0; chunk < chunkCount(start, end); chunk++) {
+                final int index = chunk;
+                final int chunkStart = start + chunk * CHUNK_SIZE;
+                final int chunkEnd = Math.min(end, chunkStart + CHUNK_SIZE);
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        action.apply(index, chunkStart, chunkEnd);
+                    }
+                });
+            }
+            ForkJoinTask.invokeAll(tasks);
+        }
+
+        private static void empty(double[] target, int offset) {
+            for (int axis = 0; axis < 3; axis++) {
+                target[offset + axis] = POSITIVE_INFINITY;
+                target[offset + axis + 3] = NEGATIVE_INFINITY;
+            }
+        }
+
+        private static void include(double[] target, int targetOffset, double[] source, int sourceOffset) {
+            for (int axis = 0; axis < 3; axis++) {
+                target[targetOffset + axis] = Math.min(target[targetOffset + axis], source[sourceOffset + axis]);
+                target[targetOffset + axis + 3] = Math.max(target[targetOffset + axis + 3],
+                        source[sourceOffset + axis + 3]);
+            }
+        }
+
+        private static double area(double[] bounds, int offset) {
+            final double dx = bounds[offset + 3] - bounds[offset];
+            final double dy = bounds[offset + 4] - bounds[offset + 1];
+            final double dz = bounds[offset + 5] - bounds[offset + 2];
+            if (dx < 0 || dy < 0 || dz < 0) {
+                return 0d;
+            }
+            return 2d * (dx * dy + dy * dz + dz * dx);
+        }
+
+        @FunctionalInterface
+        private interface ChunkAction {
+
+            void apply(int chunk, int start, int end);
+
+        }
+
+        /**
+         * The number of primitives and their bounds for each bin along the split axis.
+         */
+        private static final class Bins {
+
+            private final int[] counts = new int[BIN_COUNT];
+            private final double[] bounds = new double[BIN_COUNT * BOUNDS_STRIDE];
+
+            private void clear() {
+                for (int bin = 0; bin < BIN_COUNT; bin++) {
+                    counts[bin] = 0;
+                    empty(bounds, bin * BOUNDS_STRIDE);
+                }
+            }
+
+            private void add(Bins other) {
+                for (int bin = 0; bin < BIN_COUNT; bin++) {
+                    counts[bin] += other.counts[bin];
+                    include(bounds, bin * BOUNDS_STRIDE, other.bounds, bin * BOUNDS_STRIDE);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.accelerators;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionCache;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.NearestHit;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
+import yaphyre.core.statistics.RenderStatistics;
+
+/**
+ * {@link Accelerator} using a {@link BoundingVolumeHierarchy} built over the bounding boxes of the shapes. Instead of
+ * testing every shape, only the shapes in the leaves hit by a ray are intersected, which reduces the costs per ray
+ * from linear to roughly logarithmic in the number of shapes.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class BvhAccelerator implements Accelerator {
+
+    private final Shape[] shapes;
+    private final BoundingVolumeHierarchy hierarchy;
+
+    public BvhAccelerator(@Nonnull Collection<Shape> shapes) {
+        this(shapes, BoundingVolumeHierarchy.DEFAULT_MAX_LEAF_SIZE);
+    }
+
+    public BvhAccelerator(@Nonnull Collection<Shape> shapes, int maxLeafSize) {
+        this.shapes = shapes.toArray(new Shape[shapes.size()]);
+        final double[] bounds = new double[this.shapes.length * 6];
+        for (int i = 0; i < this.shapes.length; i++) {
+            BoundingVolumeHierarchy.copyBounds(this.shapes[i].getBoundingBox(), bounds, i);
+        }
+        hierarchy = new BoundingVolumeHierarchy(bounds, maxLeafSize);
+    }
+
+    private BvhAccelerator(Shape[] shapes, BoundingVolumeHierarchy hierarchy) {
+        this.shapes = shapes;
+        this.hierarchy = hierarchy;
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+        return traverse(ray, false);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersectAny(@Nonnull Ray ray) {
+        return traverse(ray, true);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<Shape> findOccluder(@Nonnull Ray ray) {
+        final int occluder = hierarchy.findOccluder(ray,
+                primitive -> RenderStatistics.countIntersection(shapes[primitive], shapes[primitive].occluded(ray)));
+        return occluder < 0 ? Optional.empty() : Optional.of(shapes[occluder]);
+    }
+
+    @Override
+    public void intersect(@Nonnull RayPacket packet, @Nonnull CollisionInformation[] collisions) {
+        hierarchy.traverse(packet, primitive -> shapes[primitive].intersect(packet, collisions));
+    }
+
+    /**
+     * Keeps the tree of the hierarchy and only recalculates its bounds (see
+     * {@link BoundingVolumeHierarchy#refit(double[])}).
+     */
+    @Nonnull
+    @Override
+    public Optional<Accelerator> refit(@Nonnull List<Shape> shapes) {
+        if (shapes.size() != this.shapes.length) {
+            return Optional.empty();
+        }
+        final Shape[] refitShapes = shapes.toArray(new Shape[shapes.size()]);
+        final double[] bounds = new double[refitShapes.length * 6];
+        for (int i = 0; i < refitShapes.length; i++) {
+            BoundingVolumeHierarchy.copyBounds(refitShapes[i].getBoundingBox(), bounds, i);
+        }
+        return Optional.of(new BvhAccelerator(refitShapes, hierarchy.refit(bounds)));
+    }
+
+    /**
+     * Only the distances are calculated while traversing the hierarchy (see
+     * {@link Shape#intersectDistance(Ray, CollisionCache)}). The shading data is created once, for the nearest
+     * intersection.
+     */
+    private Optional<CollisionInformation> traverse(Ray ray, boolean anyHit) {
+        final NearestHit hit = new NearestHit(ray);
+        hierarchy.traverse(ray, (primitive, tMax) -> {
+            final double result = hit.intersect(shapes[primitive], primitive, tMax);
+            RenderStatistics.countIntersection(shapes[primitive], result < tMax);
+            return result;
+        }, anyHit);
+        return hit.createCollisionInformation();
+    }
+
+    public BoundingVolumeHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("hierarchy", hierarchy).toString();
+    }
+
+}
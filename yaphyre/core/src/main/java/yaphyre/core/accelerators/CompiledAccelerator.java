@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.accelerators;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.NearestHit;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
+import yaphyre.core.shapes.CompiledShapes;
+import yaphyre.core.statistics.RenderStatistics;
+
+
+/**
+ * {@link Accelerator} combining a {@link BoundingVolumeHierarchy} with the {@link CompiledShapes} of a scene. Like the
+ * {@link BvhAccelerator} only the shapes in the leaves hit by a ray are intersected, but the common shapes are tested
+ * on flat arrays instead of calling the shapes, and the shading data is only created for the nearest intersection.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class CompiledAccelerator implements Accelerator {
+
+    private final CompiledShapes shapes;
+    private final BoundingVolumeHierarchy hierarchy;
+
+    public CompiledAccelerator(@Nonnull Collection<Shape> shapes) {
+        this(shapes, BoundingVolumeHierarchy.DEFAULT_MAX_LEAF_SIZE);
+    }
+
+    public CompiledAccelerator(@Nonnull Collection<Shape> shapes, int maxLeafSize) {
+        this.shapes = new CompiledShapes(shapes);
+        final double[] bounds = new double[this.shapes.size() * 6];
+        for (int i = 0; i < this.shapes.size(); i++) {
+            BoundingVolumeHierarchy.copyBounds(this.shapes.getShape(i).getBoundingBox(), bounds, i);
+        }
+        hierarchy = new BoundingVolumeHierarchy(bounds, maxLeafSize);
+    }
+
+    private CompiledAccelerator(CompiledShapes shapes, BoundingVolumeHierarchy hierarchy) {
+        this.shapes = shapes;
+        this.hierarchy = hierarchy;
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+        return traverse(ray, false);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersectAny(@Nonnull Ray ray) {
+        return traverse(ray, true);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<Shape> findOccluder(@Nonnull Ray ray) {
+        final int occluder = hierarchy.findOccluder(ray, primitive ->
+                RenderStatistics.countIntersection(shapes.getShape(primitive), shapes.occluded(primitive, ray)));
+        return occluder < 0 ? Optional.empty() : Optional.of(shapes.getShape(occluder));
+    }
+
+    /**
+     * Packets are intersected by the shapes themselves, which already share the work between the lanes.
+     */
+    @Override
+    public void intersect(@Nonnull RayPacket packet, @Nonnull CollisionInformation[] collisions) {
+        hierarchy.traverse(packet, primitive -> shapes.getShape(primitive).intersect(packet, collisions));
+    }
+
+    /**
+     * Compiles the shapes again, which takes linear time, but keeps the tree of the hierarchy and only recalculates
+     * its bounds (see {@link BoundingVolumeHierarchy#refit(double[])}).
+     */
+    @Nonnull
+    @Override
+    public Optional<Accelerator> refit(@Nonnull List<Shape> shapes) {
+        if (shapes.size() != this.shapes.size()) {
+            return Optional.empty();
+        }
+        final CompiledShapes refitShapes = new CompiledShapes(shapes);
+        final double[] bounds = new double[refitShapes.size() * 6];
+        for (int i = 0; i < refitShapes.size(); i++) {
+            BoundingVolumeHierarchy.copyBounds(refitShapes.getShape(i).getBoundingBox(), bounds, i);
+        }
+        return Optional.of(new CompiledAccelerator(refitShapes, hierarchy.refit(bounds)));
+    }
+
+    private Optional<CollisionInformation> traverse(Ray ray, boolean anyHit) {
+        final NearestHit hit = new NearestHit(ray);
+        hierarchy.traverse(ray, (primitive, tMax) -> {
+            final double result = shapes.intersect(primitive, hit, tMax);
+            RenderStatistics.countIntersection(shapes.getShape(primitive), result < tMax);
+            return result;
+        }, anyHit);
+        return hit.createCollisionInformation();
+    }
+
+    public BoundingVolumeHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("shapes", shapes)
+                .add("hierarchy", hierarchy).toString();
+    }
+
+}
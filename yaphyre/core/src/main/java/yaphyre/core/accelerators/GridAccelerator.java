@@ -0,0 +1,482 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package yaphyre.core.accelerators;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.NearestHit;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shapes.CompiledShapes;
+import yaphyre.core.statistics.RenderStatistics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Double.NEGATIVE_INFINITY;
+import static java.lang.Double.POSITIVE_INFINITY;
+import static yaphyre.core.accelerators.BoundingVolumeHierarchy.ROBUSTNESS_FACTOR;
+
+/**
+ * {@link Accelerator} dividing the bounds of the scene into a uniform grid of cells. Each cell refers to the shapes
+ * whose bounding boxes overlap it, and a ray only intersects the shapes of the cells it passes, which are visited
+ * front to back by a 3D digital differential analyzer (3D-DDA). The traversal stops as soon as the nearest intersection
+ * found lies within the cells visited so far.<br/>
+ * For dense and evenly distributed shapes, like particle fields, this beats a {@link BoundingVolumeHierarchy} in build
+ * time (two linear passes over the shapes) and often in traversal as well. Unevenly distributed shapes end up in a few
+ * crowded cells, though, so the hierarchy remains the better choice in general.<br/>
+ * The resolution is chosen automatically, so that there are about {@link #DEFAULT_CELLS_PER_SHAPE} cells per shape,
+ * with cells as close to cubes as possible. The cells are stored in compressed sparse row (CSR) layout: the shapes of
+ * cell <em>i</em> are found in one array between the offsets <em>i</em> and <em>i + 1</em> of a second array.<br/>
+ * A shape overlapping several cells would be intersected once per cell. This is prevented by mailboxing: each render
+ * thread has a mailbox recording the last ray each shape was intersected with. Shapes without finite bounds (e.g.
+ * planes) are not put into the grid but intersected with every ray. The shapes themselves are intersected as
+ * {@link CompiledShapes}.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class GridAccelerator implements Accelerator {
+
+    /**
+     * Default number of cells per shape used to choose the resolution of the grid.
+     */
+    public static final double DEFAULT_CELLS_PER_SHAPE = 2d;
+
+    /**
+     * Upper limit for the number of cells along each axis.
+     */
+    public static final int MAX_RESOLUTION = 512;
+
+    /**
+     * The bounds of the shapes are enlarged by this fraction of a cell, so shapes touching the border of a cell are
+     * never lost to rounding errors.
+     */
+    private static final double CELL_EPSILON = 1e-6;
+
+    private final CompiledShapes shapes;
+
+    /**
+     * The indices of the shapes without finite bounds.
+     */
+    private final int[] unboundedShapes;
+
+    private final double[] gridMin = new double[3];
+    private final double[] gridMax = new double[3];
+    private final int[] resolution = new int[3];
+
+    /**
+     * Cells per unit of length along each axis.
+     */
+    private final double[] cellsPerUnit = new double[3];
+    private final double[] cellSize = new double[3];
+
+    private final int[] cellOffsets;
+    private final int[] cellShapes;
+
+    private final ThreadLocal<TraversalState> traversalStates;
+
+    public GridAccelerator(@Nonnull Collection<Shape> shapes) {
+        this(shapes, DEFAULT_CELLS_PER_SHAPE);
+    }
+
+    /**
+     * Build a new grid.
+     *
+     * @param shapes        The shapes to put into the grid.
+     * @param cellsPerShape The number of cells per shape used to choose the resolution.
+     */
+    public GridAccelerator(@Nonnull Collection<Shape> shapes, double cellsPerShape) {
+        checkArgument(cellsPerShape > 0, "the number of cells per shape must be positive");
+        this.shapes = new CompiledShapes(shapes);
+        traversalStates = ThreadLocal.withInitial(() -> new TraversalState(this.shapes.size()));
+
+        final double[] bounds = new double[this.shapes.size() * 6];
+        final boolean[] bounded = new boolean[this.shapes.size()];
+        int boundedCount = 0;
+        Arrays.fill(gridMin, POSITIVE_INFINITY);
+        Arrays.fill(gridMax, NEGATIVE_INFINITY);
+        for (int i = 0; i < this.shapes.size(); i++) {
+            BoundingVolumeHierarchy.copyBounds(this.shapes.getShape(i).getBoundingBox(), bounds, i);
+            bounded[i] = true;
+            for (int axis = 0; axis < 6; axis++) {
+                bounded[i] &= Double.isFinite(bounds[i * 6 + axis]);
+            }
+            if (bounded[i]) {
+                boundedCount++;
+                for (int axis = 0; axis < 3; axis++) {
+                    gridMin[axis] = Math.min(gridMin[axis], bounds[i * 6 + axis]);
+                    gridMax[axis] = Math.max(gridMax[axis], bounds[i * 6 + axis + 3]);
+                }
+            }
+        }
+
+        unboundedShapes = new int[this.shapes.size() - boundedCount];
+        for (int i = 0, unbounded = 0; i < this.shapes.size(); i++) {
+            if (!bounded[i]) {
+                unboundedShapes[unbounded++] = i;
+            }
+        }
+
+        chooseResolution(boundedCount, cellsPerShape);
+        final int cellCount = resolution[0] * resolution[1] * resolution[2];
+
+        // first pass: count the shapes per cell, second pass: put them into the cells
+        final int[] cellRanges = new int[6];
+        cellOffsets = new int[cellCount + 1];
+        for (int i = 0; i < this.shapes.size(); i++) {
+            if (bounded[i]) {
+                findCells(bounds, i, cellRanges);
+                forEachCell(cellRanges, cell -> cellOffsets[cell + 1]++);
+            }
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellOffsets[cell + 1] += cellOffsets[cell];
+        }
+        cellShapes = new int[cellOffsets[cellCount]];
+        final int[] cursors = Arrays.copyOf(cellOffsets, cellCount);
+        for (int i = 0; i < this.shapes.size(); i++) {
+            if (bounded[i]) {
+                final int shape = i;
+                findCells(bounds, i, cellRanges);
+                forEachCell(cellRanges, cell -> cellShapes[cursors[cell]++] = shape);
+            }
+        }
+    }
+
+    /**
+     * Choose the number of cells along each axis, so that the cells are about cubes and there are about the requested
+     * number of cells per shape. Flat scenes are treated as if they had a small thickness.
+     */
+    private void chooseResolution(int boundedCount, double cellsPerShape) {
+        if (boundedCount == 0) {
+            Arrays.fill(gridMin, 0d);
+            Arrays.fill(gridMax, 0d);
+        }
+        double maxExtent = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            maxExtent = Math.max(maxExtent, gridMax[axis] - gridMin[axis]);
+        }
+        double volume = 1;
+        for (int axis = 0; axis < 3; axis++) {
+            volume *= Math.max(gridMax[axis] - gridMin[axis], maxExtent * 1e-3);
+        }
+        final double cellsPerLength = maxExtent > 0 ? Math.cbrt(cellsPerShape * boundedCount / volume) : 0;
+        for (int axis = 0; axis < 3; axis++) {
+            final double extent = gridMax[axis] - gridMin[axis];
+            resolution[axis] = (int) Math.max(1, Math.min(MAX_RESOLUTION, Math.round(extent * cellsPerLength)));
+            cellSize[axis] = extent > 0 ? extent / resolution[axis] : 1d;
+            cellsPerUnit[axis] = 1d / cellSize[axis];
+        }
+    }
+
+    /**
+     * Find the first and last cell along each axis overlapped by the bounds of a shape.
+     */
+    private void findCells(double[] bounds, int shape, int[] cellRanges) {
+        for (int axis = 0; axis < 3; axis++) {
+            cellRanges[axis] = cellOf(axis, (bounds[shape * 6 + axis] - gridMin[axis]) * cellsPerUnit[axis]
+                    - CELL_EPSILON);
+            cellRanges[axis + 3] = cellOf(axis, (bounds[shape * 6 + axis + 3] - gridMin[axis]) * cellsPerUnit[axis]
+                    + CELL_EPSILON);
+        }
+    }
+
+    private int cellOf(int axis, double position) {
+        return (int) Math.max(0, Math.min(resolution[axis] - 1, Math.floor(position)));
+    }
+
+    private void forEachCell(int[] cellRanges, CellAction action) {
+        for (int z = cellRanges[2]; z <= cellRanges[5]; z++) {
+            for (int y = cellRanges[1]; y <= cellRanges[4]; y++) {
+                for (int x = cellRanges[0]; x <= cellRanges[3]; x++) {
+                    action.apply((z * resolution[1] + y) * resolution[0] + x);
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+        return traverse(ray, false);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersectAny(@Nonnull Ray ray) {
+        return traverse(ray, true);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<Shape> findOccluder(@Nonnull Ray ray) {
+        for (int shape : unboundedShapes) {
+            if (RenderStatistics.countIntersection(shapes.getShape(shape), shapes.occluded(shape, ray))) {
+                return Optional.of(shapes.getShape(shape));
+            }
+        }
+
+        final TraversalState state = traversalStates.get();
+        if (cellShapes.length == 0 || !startWalk(ray, ray.getTMax(), state)) {
+            return Optional.empty();
+        }
+        final int rayId = state.nextRay();
+        do {
+            final int index = state.cellIndex(resolution);
+            for (int i = cellOffsets[index]; i < cellOffsets[index + 1]; i++) {
+                final int shape = cellShapes[i];
+                if (state.rayIds[shape] == rayId) {
+                    continue;
+                }
+                state.rayIds[shape] = rayId;
+                if (RenderStatistics.countIntersection(shapes.getShape(shape), shapes.occluded(shape, ray))) {
+                    RenderStatistics.countTraversal(state.cellVisits);
+                    return Optional.of(shapes.getShape(shape));
+                }
+            }
+        } while (state.advance(ray.getTMax()));
+
+        RenderStatistics.countTraversal(state.cellVisits);
+        return Optional.empty();
+    }
+
+    private Optional<CollisionInformation> traverse(Ray ray, boolean anyHit) {
+        final NearestHit hit = new NearestHit(ray);
+        traverse(ray, (shape, tMax) -> {
+            final double result = shapes.intersect(shape, hit, tMax);
+            RenderStatistics.countIntersection(shapes.getShape(shape), result < tMax);
+            return result;
+        }, anyHit);
+        return hit.createCollisionInformation();
+    }
+
+    /**
+     * Walk through the cells hit by the ray, front to back, and intersect the shapes referred to by the cells, each
+     * shape at most once.
+     *
+     * @return The distance of the nearest intersection found or {@link Double#POSITIVE_INFINITY} if nothing was hit.
+     */
+    private double traverse(Ray ray, BoundingVolumeHierarchy.PrimitiveIntersector intersector, boolean anyHit) {
+        double tMax = ray.getTMax();
+        double nearest = POSITIVE_INFINITY;
+        for (int shape : unboundedShapes) {
+            final double distance = intersector.intersect(shape, tMax);
+            if (distance < tMax) {
+                tMax = distance;
+                nearest = distance;
+                if (anyHit) {
+                    return nearest;
+                }
+            }
+        }
+
+        final TraversalState state = traversalStates.get();
+        if (cellShapes.length == 0 || !startWalk(ray, tMax, state)) {
+            return nearest;
+        }
+        final int rayId = state.nextRay();
+        do {
+            final int index = state.cellIndex(resolution);
+            for (int i = cellOffsets[index]; i < cellOffsets[index + 1]; i++) {
+                final int shape = cellShapes[i];
+                if (state.rayIds[shape] == rayId) {
+                    continue;
+                }
+                state.rayIds[shape] = rayId;
+                final double distance = intersector.intersect(shape, tMax);
+                if (distance < tMax) {
+                    tMax = distance;
+                    nearest = distance;
+                    if (anyHit) {
+                        RenderStatistics.countTraversal(state.cellVisits);
+                        return nearest;
+                    }
+                }
+            }
+        } while (state.advance(tMax));
+
+        RenderStatistics.countTraversal(state.cellVisits);
+        return nearest;
+    }
+
+    /**
+     * Clip the ray against the bounds of the grid and set up the 3D-DDA: the first cell hit by the ray, the distance
+     * to its next border and the distance between two borders along each axis.
+     *
+     * @return <code>false</code> if the ray misses the grid.
+     */
+    private boolean startWalk(Ray ray, double tMax, TraversalState state) {
+        final Point3D origin = ray.getOrigin();
+        final Vector3D direction = ray.getDirection();
+        final double[] o = state.origin;
+        final double[] d = state.direction;
+        o[0] = origin.getX();
+        o[1] = origin.getY();
+        o[2] = origin.getZ();
+        d[0] = direction.getX();
+        d[1] = direction.getY();
+        d[2] = direction.getZ();
+
+        double tEnter = ray.getTMin();
+        double tExit = tMax;
+        for (int axis = 0; axis < 3; axis++) {
+            final double inverse = 1d / d[axis];
+            double t0 = (gridMin[axis] - o[axis]) * inverse;
+            double t1 = (gridMax[axis] - o[axis]) * inverse;
+            if (t0 > t1) {
+                final double swap = t0;
+                t0 = t1;
+                t1 = swap;
+            }
+            if (t0 > tEnter) {
+                tEnter = t0;
+            }
+            if (t1 * ROBUSTNESS_FACTOR < tExit) {
+                tExit = t1 * ROBUSTNESS_FACTOR;
+            }
+        }
+        if (!(tEnter <= tExit)) {
+            return false;
+        }
+
+        state.tExit = tExit;
+        state.cellVisits = 1;
+        for (int axis = 0; axis < 3; axis++) {
+            state.cell[axis] = cellOf(axis, (o[axis] + tEnter * d[axis] - gridMin[axis]) * cellsPerUnit[axis]);
+            if (d[axis] > 0) {
+                state.step[axis] = 1;
+                state.end[axis] = resolution[axis];
+                state.next[axis] = (gridMin[axis] + (state.cell[axis] + 1) * cellSize[axis] - o[axis]) / d[axis];
+                state.delta[axis] = cellSize[axis] / d[axis];
+            } else if (d[axis] < 0) {
+                state.step[axis] = -1;
+                state.end[axis] = -1;
+                state.next[axis] = (gridMin[axis] + state.cell[axis] * cellSize[axis] - o[axis]) / d[axis];
+                state.delta[axis] = -cellSize[axis] / d[axis];
+            } else {
+                state.step[axis] = 0;
+                state.end[axis] = -1;
+                state.next[axis] = POSITIVE_INFINITY;
+                state.delta[axis] = POSITIVE_INFINITY;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of cells along the x, y and z axis.
+     */
+    @Nonnull
+    public int[] getResolution() {
+        return resolution.clone();
+    }
+
+    /**
+     * @return The number of references from the cells to the shapes.
+     */
+    public int getReferenceCount() {
+        return cellShapes.length;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("shapes", shapes)
+                .add("unbounded", unboundedShapes.length)
+                .add("resolution", Arrays.toString(resolution))
+                .add("references", cellShapes.length).toString();
+    }
+
+    @FunctionalInterface
+    private interface CellAction {
+
+        void apply(int cell);
+
+    }
+
+    /**
+     * The state of the traversal, reused by all the rays traced by a thread: the mailbox recording the last ray each
+     * shape was intersected with and the current position of the 3D-DDA.
+     */
+    private static final class TraversalState {
+
+        private final int[] rayIds;
+        private int rayId;
+
+        private final double[] origin = new double[3];
+        private final double[] direction = new double[3];
+        private final int[] cell = new int[3];
+        private final int[] step = new int[3];
+        private final int[] end = new int[3];
+        private final double[] next = new double[3];
+        private final double[] delta = new double[3];
+        private double tExit;
+        private int cellVisits;
+
+        private TraversalState(int shapeCount) {
+            rayIds = new int[shapeCount];
+        }
+
+        private int nextRay() {
+            rayId++;
+            if (rayId == 0) {
+                // the ids wrapped around, so old entries could be mistaken for the new ray
+                Arrays.fill(rayIds, 0);
+                rayId = 1;
+            }
+            return rayId;
+        }
+
+        private int cellIndex(int[] resolution) {
+            return (cell[2] * resolution[1] + cell[1]) * resolution[0] + cell[0];
+        }
+
+        /**
+         * Move on to the next cell along the ray.
+         *
+         * @param tMax The distance of the nearest intersection found so far.
+         * @return <code>false</code> if the walk ended, because the ray left the grid or the nearest intersection lies
+         * within the cells visited so far.
+         */
+        private boolean advance(double tMax) {
+            final int axis = next[0] < next[1]
+                    ? (next[0] < next[2] ? 0 : 2)
+                    : (next[1] < next[2] ? 1 : 2);
+            // intersections found beyond this cell are kept, so the traversal ends once the nearest one is within it
+            if (tMax <= next[axis] || tExit <= next[axis]) {
+                return false;
+            }
+            cell[axis] += step[axis];
+            if (cell[axis] == end[axis]) {
+                return false;
+            }
+            next[axis] += delta[axis];
+            cellVisits++;
+            return true;
+        }
+    }
+
+}
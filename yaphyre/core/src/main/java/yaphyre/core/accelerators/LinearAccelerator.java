@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.accelerators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionCache;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.NearestHit;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
+import yaphyre.core.statistics.RenderStatistics;
+
+/**
+ * The most simple {@link Accelerator}: each ray is tested against the bounding box of every shape. If the bounding box
+ * is hit, the shape itself is intersected. This is fine for a handful of shapes but becomes very slow for larger
+ * scenes, since the costs per ray grow linearly with the number of shapes.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class LinearAccelerator implements Accelerator {
+
+    private final List<Shape> shapes;
+
+    public LinearAccelerator(@Nonnull Collection<Shape> shapes) {
+        this.shapes = new ArrayList<>(shapes);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+        return findNearestIntersection(ray, false);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersectAny(@Nonnull Ray ray) {
+        return findNearestIntersection(ray, true);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<Shape> findOccluder(@Nonnull Ray ray) {
+        return shapes.stream()
+                .filter(shape -> shape.getBoundingBox().isHitBy(ray))
+                .filter(shape -> RenderStatistics.countIntersection(shape, shape.occluded(ray)))
+                .findFirst();
+    }
+
+    /**
+     * Only the distances are calculated while testing the shapes (see
+     * {@link Shape#intersectDistance(Ray, CollisionCache)}). The shading data is created once, for the nearest
+     * intersection.
+     */
+    private Optional<CollisionInformation> findNearestIntersection(Ray ray, boolean anyHit) {
+        final NearestHit hit = new NearestHit(ray);
+        for (int i = 0; i < shapes.size(); i++) {
+            final Shape shape = shapes.get(i);
+            if (!shape.getBoundingBox().isHitBy(ray)) {
+                continue;
+            }
+            final double tMax = hit.getDistance();
+            if (RenderStatistics.countIntersection(shape, hit.intersect(shape, i, tMax) < tMax) && anyHit) {
+                break;
+            }
+        }
+        return hit.createCollisionInformation();
+    }
+
+    /**
+     * Each shape is intersected with the active lanes whose rays hit its bounding box.
+     */
+    @Override
+    public void intersect(@Nonnull RayPacket packet, @Nonnull CollisionInformation[] collisions) {
+        final int activeLanes = packet.getActiveLanes();
+        for (Shape shape : shapes) {
+            int shapeLanes = 0;
+            for (int lane = 0; lane < packet.size(); lane++) {
+                if (packet.isActive(lane) && shape.getBoundingBox().isHitBy(packet.getRay(lane))) {
+                    shapeLanes |= 1 << lane;
+                }
+            }
+            if (shapeLanes != 0) {
+                packet.setActiveLanes(shapeLanes);
+                shape.intersect(packet, collisions);
+                packet.setActiveLanes(activeLanes);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("shapes", shapes.size()).toString();
+    }
+
+}
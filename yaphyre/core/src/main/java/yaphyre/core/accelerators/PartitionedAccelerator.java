@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.accelerators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.NearestHit;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
+import yaphyre.core.statistics.RenderStatistics;
+
+/**
+ * An {@link Accelerator} which keeps the unbounded shapes (see {@link yaphyre.core.math.BoundingBox#isBounded()}), like
+ * infinite planes, out of the spatial index. A single infinite bounding box would enclose the whole index and disable
+ * any culling, so only the bounded shapes are put into the accelerator created by the given factory. The unbounded
+ * shapes are tested one by one for each ray before the index is traversed. The ray passed to the index is clipped to
+ * the nearest of these intersections, so e.g. everything below a ground plane is culled.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class PartitionedAccelerator implements Accelerator {
+
+    private final boolean[] bounded;
+    private final List<Shape> unboundedShapes;
+    private final Accelerator boundedAccelerator;
+
+    /**
+     * Partition the given shapes and build the accelerator over the bounded ones.
+     *
+     * @param shapes  All the shapes.
+     * @param factory Creates the accelerator for the bounded shapes. It may be called with an empty list.
+     */
+    public PartitionedAccelerator(@Nonnull List<Shape> shapes,
+                                  @Nonnull Function<List<Shape>, Accelerator> factory) {
+        bounded = new boolean[shapes.size()];
+        unboundedShapes = new ArrayList<>();
+        final List<Shape> boundedShapes = new ArrayList<>(shapes.size());
+        for (int i = 0; i < shapes.size(); i++) {
+            bounded[i] = isBounded(shapes.get(i));
+            (bounded[i] ? boundedShapes : unboundedShapes).add(shapes.get(i));
+        }
+        boundedAccelerator = factory.apply(boundedShapes);
+    }
+
+    private PartitionedAccelerator(boolean[] bounded, List<Shape> unboundedShapes, Accelerator boundedAccelerator) {
+        this.bounded = bounded;
+        this.unboundedShapes = unboundedShapes;
+        this.boundedAccelerator = boundedAccelerator;
+    }
+
+    /**
+     * Checks if the given shape can be put into a spatial index.
+     *
+     * @param shape The shape to check.
+     * @return <code>true</code> if the bounding box of the shape is finite.
+     */
+    public static boolean isBounded(@Nonnull Shape shape) {
+        return shape.getBoundingBox().isBounded();
+    }
+
+    public int getUnboundedShapeCount() {
+        return unboundedShapes.size();
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+        final NearestHit hit = new NearestHit(ray);
+        for (int i = 0; i < unboundedShapes.size(); i++) {
+            final Shape shape = unboundedShapes.get(i);
+            if (shape.getBoundingBox().isHitBy(ray)) {
+                final double tMax = hit.getDistance();
+                RenderStatistics.countIntersection(shape, hit.intersect(shape, i, tMax) < tMax);
+            }
+        }
+        if (!hit.isPresent()) {
+            return boundedAccelerator.intersect(ray);
+        }
+
+        final Optional<CollisionInformation> boundedCollision =
+                boundedAccelerator.intersect(clip(ray, hit.getDistance()));
+        if (boundedCollision.isPresent() && boundedCollision.get().getDistance() < hit.getDistance()) {
+            return boundedCollision;
+        }
+        return hit.createCollisionInformation();
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersectAny(@Nonnull Ray ray) {
+        for (Shape shape : unboundedShapes) {
+            if (shape.getBoundingBox().isHitBy(ray)) {
+                final Optional<CollisionInformation> collision = shape.intersect(ray);
+                if (RenderStatistics.countIntersection(shape, collision.isPresent())) {
+                    return collision;
+                }
+            }
+        }
+        return boundedAccelerator.intersectAny(ray);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<Shape> findOccluder(@Nonnull Ray ray) {
+        for (Shape shape : unboundedShapes) {
+            if (shape.getBoundingBox().isHitBy(ray)
+                    && RenderStatistics.countIntersection(shape, shape.occluded(ray))) {
+                return Optional.of(shape);
+            }
+        }
+        return boundedAccelerator.findOccluder(ray);
+    }
+
+    /**
+     * The unbounded shapes shorten the ranges of the lanes they hit, so the bounded accelerator only looks for nearer
+     * intersections.
+     */
+    @Override
+    public void intersect(@Nonnull RayPacket packet, @Nonnull CollisionInformation[] collisions) {
+        for (Shape shape : unboundedShapes) {
+            shape.intersect(packet, collisions);
+        }
+        boundedAccelerator.intersect(packet, collisions);
+    }
+
+    /**
+     * The bounded accelerator is refit to the replaced bounded shapes, the unbounded ones are simply exchanged. This
+     * fails if a shape moved from one partition to the other.
+     */
+    @Nonnull
+    @Override
+    public Optional<Accelerator> refit(@Nonnull List<Shape> shapes) {
+        if (shapes.size() != bounded.length) {
+            return Optional.empty();
+        }
+        final List<Shape> boundedShapes = new ArrayList<>(shapes.size());
+        final List<Shape> refitUnboundedShapes = new ArrayList<>(unboundedShapes.size());
+        for (int i = 0; i < shapes.size(); i++) {
+            if (isBounded(shapes.get(i)) != bounded[i]) {
+                return Optional.empty();
+            }
+            (bounded[i] ? boundedShapes : refitUnboundedShapes).add(shapes.get(i));
+        }
+        return boundedAccelerator.refit(boundedShapes)
+                .map(accelerator -> new PartitionedAccelerator(bounded, refitUnboundedShapes, accelerator));
+    }
+
+    private static Ray clip(Ray ray, double tMax) {
+        return new Ray(ray.getOrigin(), ray.getDirection(), ray.getTMin(), Math.max(ray.getTMin(), tMax));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("unbounded", unboundedShapes.size())
+                .add("bounded", boundedAccelerator).toString();
+    }
+
+}
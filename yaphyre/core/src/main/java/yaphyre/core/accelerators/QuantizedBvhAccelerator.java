@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.accelerators;
+
+import java.util.Collection;
+import java.util.Optional;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionCache;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.NearestHit;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Ray;
+import yaphyre.core.statistics.RenderStatistics;
+
+import static java.lang.Double.NEGATIVE_INFINITY;
+import static java.lang.Double.POSITIVE_INFINITY;
+
+/**
+ * {@link Accelerator} for huge scenes, using a {@link QuantizedBoundingVolumeHierarchy}. The binary
+ * {@link BoundingVolumeHierarchy} is only built to be compressed and is released right afterwards, so only the much
+ * smaller quantized hierarchy stays in the heap. The traversal is somewhat slower than the one of the
+ * {@link BvhAccelerator}, and packets of rays are traced one ray after the other.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class QuantizedBvhAccelerator implements Accelerator {
+
+    private final Shape[] shapes;
+    private final QuantizedBoundingVolumeHierarchy hierarchy;
+
+    public QuantizedBvhAccelerator(@Nonnull Collection<Shape> shapes) {
+        this(shapes, BoundingVolumeHierarchy.DEFAULT_MAX_LEAF_SIZE);
+    }
+
+    public QuantizedBvhAccelerator(@Nonnull Collection<Shape> shapes, int maxLeafSize) {
+        this.shapes = shapes.toArray(new Shape[shapes.size()]);
+        final double[] bounds = new double[this.shapes.length * 6];
+        for (int i = 0; i < this.shapes.length; i++) {
+            BoundingVolumeHierarchy.copyBounds(this.shapes[i].getBoundingBox(), bounds, i);
+        }
+        hierarchy = new QuantizedBoundingVolumeHierarchy(new BoundingVolumeHierarchy(bounds, maxLeafSize));
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+        return traverse(ray, false);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersectAny(@Nonnull Ray ray) {
+        return traverse(ray, true);
+    }
+
+    /**
+     * The traversal stops at the first primitive reporting a distance below the range of the ray, which an occluding
+     * shape does without calculating the distance of its intersection.
+     */
+    @Nonnull
+    @Override
+    public Optional<Shape> findOccluder(@Nonnull Ray ray) {
+        final int[] occluder = {-1};
+        hierarchy.traverse(ray, (primitive, tMax) -> {
+            if (RenderStatistics.countIntersection(shapes[primitive], shapes[primitive].occluded(ray))) {
+                occluder[0] = primitive;
+                return NEGATIVE_INFINITY;
+            }
+            return POSITIVE_INFINITY;
+        }, true);
+        return occluder[0] < 0 ? Optional.empty() : Optional.of(shapes[occluder[0]]);
+    }
+
+    /**
+     * Only the distances are calculated while traversing the hierarchy (see
+     * {@link Shape#intersectDistance(Ray, CollisionCache)}). The shading data is created once, for the nearest
+     * intersection.
+     */
+    private Optional<CollisionInformation> traverse(Ray ray, boolean anyHit) {
+        final NearestHit hit = new NearestHit(ray);
+        hierarchy.traverse(ray, (primitive, tMax) -> {
+            final double result = hit.intersect(shapes[primitive], primitive, tMax);
+            RenderStatistics.countIntersection(shapes[primitive], result < tMax);
+            return result;
+        }, anyHit);
+        return hit.createCollisionInformation();
+    }
+
+    public QuantizedBoundingVolumeHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("hierarchy", hierarchy).toString();
+    }
+
+}
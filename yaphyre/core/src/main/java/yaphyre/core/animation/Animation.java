@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.animation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.api.Camera;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Transformation;
+
+/**
+ * The animated objects of a {@link Scene}. Shapes and cameras are immutable, so an animated object is given by its
+ * {@link KeyframedTransformation} and a factory creating the object for the transformation at a certain frame. Moving
+ * to another frame replaces the animated objects of the scene with the ones created for the frame (see
+ * {@link #applyFrame(Scene, double)}). Everything else in the scene is reused from frame to frame: the static shapes,
+ * the lights and the acceleration structure, which is only refit to the moved shapes.<br/>
+ * This class is not thread safe. Frames are applied between the renderings of a scene.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class Animation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Animation.class);
+
+    private final List<AnimatedObject<Shape>> shapes = new ArrayList<>();
+    private final List<AnimatedObject<Camera>> cameras = new ArrayList<>();
+
+    /**
+     * Add an animated shape to the scene, in its state at the first keyframe of its transformation.
+     *
+     * @param scene          The scene to add the shape to.
+     * @param transformation The object to world transformation of the shape.
+     * @param shapeFactory   Creates the shape for the transformation at a frame.
+     * @return The shape added.
+     */
+    @Nonnull
+    public Shape addShape(@Nonnull Scene scene, @Nonnull KeyframedTransformation transformation,
+                          @Nonnull Function<Transformation, Shape> shapeFactory) {
+        final AnimatedObject<Shape> animatedShape =
+                new AnimatedObject<>(scene.getShapes().size(), transformation, shapeFactory);
+        final Shape shape = animatedShape.create(transformation.getFirstFrame());
+        scene.addShape(shape);
+        shapes.add(animatedShape);
+        return shape;
+    }
+
+    /**
+     * Add an animated camera to the scene, in its state at the first keyframe of its transformation. Since a camera
+     * records the image to its film, a new camera with a new film is created for every frame, even if the camera does
+     * not move.
+     *
+     * @param scene          The scene to add the camera to.
+     * @param transformation The movement of the camera.
+     * @param cameraFactory  Creates the camera for the transformation at a frame.
+     * @return The camera added.
+     */
+    @Nonnull
+    public Camera addCamera(@Nonnull Scene scene, @Nonnull KeyframedTransformation transformation,
+                            @Nonnull Function<Transformation, Camera> cameraFactory) {
+        final AnimatedObject<Camera> animatedCamera =
+                new AnimatedObject<>(scene.getCameras().size(), transformation, cameraFactory);
+        final Camera camera = animatedCamera.create(transformation.getFirstFrame());
+        scene.addCamera(camera);
+        cameras.add(animatedCamera);
+        return camera;
+    }
+
+    /**
+     * Move the animated objects of the scene to the given frame and freeze the scene again. Only the shapes whose
+     * transformation changed are replaced.
+     *
+     * @param scene The scene the animated objects were added to.
+     * @param frame The frame to move to.
+     */
+    public void applyFrame(@Nonnull Scene scene, double frame) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        int movedShapes = 0;
+        for (AnimatedObject<Shape> shape : shapes) {
+            final Transformation transformation = shape.transformation.at(frame);
+            if (!transformation.equals(shape.lastTransformation)) {
+                scene.replaceShape(shape.index, shape.create(transformation));
+                movedShapes++;
+            }
+        }
+        for (AnimatedObject<Camera> camera : cameras) {
+            scene.replaceCamera(camera.index, camera.create(camera.transformation.at(frame)));
+        }
+        scene.freeze();
+        LOGGER.debug("Moved {} shapes and {} cameras to frame {} in {}", movedShapes, cameras.size(), frame,
+                stopwatch);
+    }
+
+    /**
+     * @return The first frame of all the animated objects.
+     */
+    public double getFirstFrame() {
+        return allObjects().stream().mapToDouble(o -> o.transformation.getFirstFrame()).min().orElse(0d);
+    }
+
+    /**
+     * @return The last frame of all the animated objects.
+     */
+    public double getLastFrame() {
+        return allObjects().stream().mapToDouble(o -> o.transformation.getLastFrame()).max().orElse(0d);
+    }
+
+    private List<AnimatedObject<?>> allObjects() {
+        final List<AnimatedObject<?>> result = new ArrayList<>(shapes);
+        result.addAll(cameras);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("shapes", shapes.size())
+                .add("cameras", cameras.size()).toString();
+    }
+
+    private static class AnimatedObject<T> {
+
+        private final int index;
+        private final KeyframedTransformation transformation;
+        private final Function<Transformation, T> factory;
+        private Transformation lastTransformation;
+
+        private AnimatedObject(int index, KeyframedTransformation transformation, Function<Transformation, T> factory) {
+            this.index = index;
+            this.transformation = transformation;
+            this.factory = factory;
+        }
+
+        private T create(double frame) {
+            return create(transformation.at(frame));
+        }
+
+        private T create(Transformation transformation) {
+            lastTransformation = transformation;
+            return factory.apply(transformation);
+        }
+    }
+
+}
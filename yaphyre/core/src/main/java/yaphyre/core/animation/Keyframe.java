@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.animation;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.math.Vector3D;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The state of an animated object at a certain frame, given by its translation, rotation and scaling. Between two
+ * keyframes the values are interpolated linearly (see {@link KeyframedTransformation}).
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class Keyframe {
+
+    public static final Vector3D NO_ROTATION = new Vector3D(0, 0, 0);
+    public static final Vector3D NO_SCALING = new Vector3D(1, 1, 1);
+
+    private final double frame;
+    private final Vector3D translation;
+    private final Vector3D rotation;
+    private final Vector3D scaling;
+
+    /**
+     * Create a keyframe with translation only.
+     *
+     * @see #Keyframe(double, Vector3D, Vector3D, Vector3D)
+     */
+    public Keyframe(double frame, @Nonnull Vector3D translation) {
+        this(frame, translation, NO_ROTATION, NO_SCALING);
+    }
+
+    /**
+     * Create a keyframe. The transformation is applied in the order: scaling, rotation around the x, the y and the z
+     * axis, translation.
+     *
+     * @param frame       The frame number.
+     * @param translation The translation.
+     * @param rotation    The angles (in degrees) to rotate around the x, the y and the z axis.
+     * @param scaling     The scaling factors along the x, the y and the z axis.
+     */
+    public Keyframe(double frame, @Nonnull Vector3D translation, @Nonnull Vector3D rotation,
+                    @Nonnull Vector3D scaling) {
+        checkArgument(Double.isFinite(frame), "the frame must be finite");
+        this.frame = frame;
+        this.translation = checkNotNull(translation);
+        this.rotation = checkNotNull(rotation);
+        this.scaling = checkNotNull(scaling);
+    }
+
+    public double getFrame() {
+        return frame;
+    }
+
+    @Nonnull
+    public Vector3D getTranslation() {
+        return translation;
+    }
+
+    @Nonnull
+    public Vector3D getRotation() {
+        return rotation;
+    }
+
+    @Nonnull
+    public Vector3D getScaling() {
+        return scaling;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("frame", frame)
+                .add("translation", translation)
+                .add("rotation", rotation)
+                .add("scaling", scaling).toString();
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.animation;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.math.Matrix;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link Transformation} changing over time, defined by a sequence of {@link Keyframe}s. Between two keyframes the
+ * translation, the rotation angles and the scaling factors are interpolated linearly. Before the first and after the
+ * last keyframe the transformation stays constant.<br/>
+ * The inverse of the transformation is composed from the inverses of its parts, so no matrix has to be inverted for a
+ * frame.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class KeyframedTransformation {
+
+    private final Keyframe[] keyframes;
+
+    /**
+     * Create a transformation from the given keyframes.
+     *
+     * @param keyframes The keyframes, at least one. Their order does not matter, but no two of them may be at the same
+     *                  frame.
+     */
+    public KeyframedTransformation(@Nonnull Keyframe... keyframes) {
+        checkArgument(keyframes.length > 0, "at least one keyframe expected");
+        this.keyframes = keyframes.clone();
+        Arrays.sort(this.keyframes, Comparator.comparingDouble(Keyframe::getFrame));
+        for (int i = 1; i < this.keyframes.length; i++) {
+            checkArgument(this.keyframes[i - 1].getFrame() < this.keyframes[i].getFrame(),
+                    "more than one keyframe at frame %s", this.keyframes[i].getFrame());
+        }
+    }
+
+    /**
+     * Create a transformation which does not change at all.
+     *
+     * @param translation The translation.
+     * @param rotation    The angles (in degrees) to rotate around the x, the y and the z axis.
+     * @param scaling     The scaling factors along the x, the y and the z axis.
+     */
+    @Nonnull
+    public static KeyframedTransformation constant(@Nonnull Vector3D translation, @Nonnull Vector3D rotation,
+                                                   @Nonnull Vector3D scaling) {
+        return new KeyframedTransformation(new Keyframe(0, translation, rotation, scaling));
+    }
+
+    /**
+     * @return <code>true</code> if the transformation is the same at every frame.
+     */
+    public boolean isConstant() {
+        return keyframes.length == 1;
+    }
+
+    public double getFirstFrame() {
+        return keyframes[0].getFrame();
+    }
+
+    public double getLastFrame() {
+        return keyframes[keyframes.length - 1].getFrame();
+    }
+
+    /**
+     * Calculate the transformation at the given frame.
+     *
+     * @param frame The frame, which may lie between two frame numbers (e.g. for motion blur).
+     * @return The interpolated transformation.
+     */
+    @Nonnull
+    public Transformation at(double frame) {
+        if (frame <= getFirstFrame()) {
+            return compose(keyframes[0].getTranslation(), keyframes[0].getRotation(), keyframes[0].getScaling());
+        }
+        if (frame >= getLastFrame()) {
+            final Keyframe last = keyframes[keyframes.length - 1];
+            return compose(last.getTranslation(), last.getRotation(), last.getScaling());
+        }
+
+        int next = 1;
+        while (keyframes[next].getFrame() < frame) {
+            next++;
+        }
+        final Keyframe start = keyframes[next - 1];
+        final Keyframe end = keyframes[next];
+        final double t = (frame - start.getFrame()) / (end.getFrame() - start.getFrame());
+        return compose(interpolate(start.getTranslation(), end.getTranslation(), t),
+                interpolate(start.getRotation(), end.getRotation(), t),
+                interpolate(start.getScaling(), end.getScaling(), t));
+    }
+
+    private static Vector3D interpolate(Vector3D start, Vector3D end, double t) {
+        if (isSame(start, end)) {
+            return start;
+        }
+        return new Vector3D(start.getX() + (end.getX() - start.getX()) * t,
+                start.getY() + (end.getY() - start.getY()) * t,
+                start.getZ() + (end.getZ() - start.getZ()) * t);
+    }
+
+    /**
+     * {@link Vector3D#equals(Object)} has a tolerance, but any difference changes the transformation.
+     */
+    private static boolean isSame(Vector3D a, Vector3D b) {
+        return a.getX() == b.getX() && a.getY() == b.getY() && a.getZ() == b.getZ();
+    }
+
+    /**
+     * Compose translation * rotation z * rotation y * rotation x * scaling, and its inverse in the opposite order. Parts
+     * without any effect are left out, so a pure translation is exactly the same as {@link
+     * Transformation#translate(double, double, double)}.
+     */
+    private static Transformation compose(Vector3D translation, Vector3D rotation, Vector3D scaling) {
+        final Transformation[] parts = {
+                Transformation.translate(translation.getX(), translation.getY(), translation.getZ()),
+                Transformation.rotateZ(rotation.getZ()),
+                Transformation.rotateY(rotation.getY()),
+                Transformation.rotateX(rotation.getX()),
+                isSame(scaling, Keyframe.NO_SCALING)
+                        ? Transformation.IDENTITY
+                        : Transformation.scale(scaling.getX(), scaling.getY(), scaling.getZ())
+        };
+
+        Matrix matrix = null;
+        Matrix inverse = null;
+        for (Transformation part : parts) {
+            if (part == Transformation.IDENTITY) {
+                continue;
+            }
+            matrix = matrix == null ? part.getMatrix() : matrix.mul(part.getMatrix());
+            inverse = inverse == null ? part.getInverseMatrix() : part.getInverseMatrix().mul(inverse);
+        }
+        return matrix == null ? Transformation.IDENTITY : new Transformation(matrix, inverse);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("keyframes", keyframes.length)
+                .add("firstFrame", getFirstFrame())
+                .add("lastFrame", getLastFrame()).toString();
+    }
+
+}
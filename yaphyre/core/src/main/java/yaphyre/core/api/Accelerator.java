@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.api;
+
+import java.util.List;
+import java.util.Optional;
+import javax.annotation.Nonnull;
+
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
+
+/**
+ * Acceleration structures speed up the search for the {@link Shape}s hit by a {@link Ray}. They are built once over
+ * all the shapes of a {@link Scene} and are queried concurrently by all the render threads, so implementations must
+ * be immutable after construction.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public interface Accelerator {
+
+    /**
+     * Find the nearest intersection of the given {@link Ray} with any of the shapes managed by this accelerator.
+     *
+     * @param ray The {@link Ray} to intersect.
+     * @return The {@link CollisionInformation} of the nearest intersection or {@link Optional#empty()} if the ray misses
+     * all the shapes.
+     */
+    @Nonnull
+    Optional<CollisionInformation> intersect(@Nonnull Ray ray);
+
+    /**
+     * Find any intersection of the given {@link Ray} with the shapes managed by this accelerator. This is used for
+     * shadow rays, where it does not matter which shape blocks the ray. The search stops with the first hit found.
+     *
+     * @param ray The {@link Ray} to intersect.
+     * @return The {@link CollisionInformation} of an arbitrary intersection or {@link Optional#empty()} if the ray
+     * misses all the shapes.
+     */
+    @Nonnull
+    Optional<CollisionInformation> intersectAny(@Nonnull Ray ray);
+
+    /**
+     * Find a shape blocking the given {@link Ray} within its range. Like {@link #intersectAny(Ray)} the search stops
+     * with the first shape hit, but the shapes are only asked if they are hit (see {@link Shape#occluded(Ray)}), so no
+     * {@link CollisionInformation} is created at all.<br/>
+     * The default implementation falls back to {@link #intersectAny(Ray)}.
+     *
+     * @param ray The {@link Ray} to check.
+     * @return An arbitrary {@link Shape} hit by the ray or {@link Optional#empty()} if the ray misses all the shapes.
+     */
+    @Nonnull
+    default Optional<Shape> findOccluder(@Nonnull Ray ray) {
+        return intersectAny(ray).map(CollisionInformation::getShape);
+    }
+
+    /**
+     * Find the nearest intersections of the active rays of a {@link RayPacket}. The results are recorded like in
+     * {@link Shape#intersect(RayPacket, CollisionInformation[])}: lanes without an intersection nearer than the upper
+     * limit of their range are left unchanged.<br/>
+     * The default implementation traces the rays one by one. Implementations should share the work between the rays
+     * of the packet, e.g. by visiting each node of a hierarchy only once for all the rays.
+     *
+     * @param packet     The {@link RayPacket} to intersect.
+     * @param collisions The nearest {@link CollisionInformation} found so far for each lane of the packet.
+     */
+    default void intersect(@Nonnull RayPacket packet, @Nonnull CollisionInformation[] collisions) {
+        for (int lane = 0; lane < packet.size(); lane++) {
+            if (!packet.isActive(lane)) {
+                continue;
+            }
+            final Optional<CollisionInformation> collision = intersect(packet.getRay(lane));
+            if (collision.isPresent() && collision.get().getDistance() < packet.getTMax(lane)) {
+                packet.setTMax(lane, collision.get().getDistance());
+                collisions[lane] = collision.get();
+            }
+        }
+    }
+
+    /**
+     * Create an accelerator for the given shapes by updating this one instead of building a new one. This is used
+     * between the frames of an animation, where some of the shapes are replaced by moved copies. The shapes must be in
+     * the same order as the ones this accelerator was built for, and their number must not change.<br/>
+     * The default implementation does not support this, the caller has to build a new accelerator.
+     *
+     * @param shapes The shapes, some of which may have moved.
+     * @return The updated accelerator or {@link Optional#empty()} if this accelerator can not be updated.
+     */
+    @Nonnull
+    default Optional<Accelerator> refit(@Nonnull List<Shape> shapes) {
+        return Optional.empty();
+    }
+
+}
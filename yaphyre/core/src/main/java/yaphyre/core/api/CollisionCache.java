@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.api;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Keeps the data a {@link Shape} creates in the first phase of the two phase intersection (see
+ * {@link Shape#intersectDistance(yaphyre.core.math.Ray, CollisionCache)}) for the second phase, so it does not have to
+ * be calculated again. Shapes which calculate the distance only leave it empty.<br/>
+ * Instances are reused for many intersections and must not be shared between threads.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public final class CollisionCache {
+
+    @Nullable
+    private CollisionInformation collision;
+
+    /**
+     * @return The {@link CollisionInformation} stored by the first phase or <code>null</code> if nothing was stored.
+     */
+    @Nullable
+    public CollisionInformation get() {
+        return collision;
+    }
+
+    public void set(@Nullable CollisionInformation collision) {
+        this.collision = collision;
+    }
+
+    public void clear() {
+        collision = null;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("collision", collision).toString();
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.api;
+
+import java.util.Optional;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.math.Ray;
+
+import static java.lang.Double.POSITIVE_INFINITY;
+
+/**
+ * The nearest intersection of a {@link Ray} found so far while the shapes are intersected one after the other with
+ * the two phase intersection (see {@link Shape#intersectDistance(Ray, CollisionCache)}). It keeps the
+ * {@link CollisionCache} filled by the nearest shape, so the shading data can be created for the nearest intersection
+ * once all the shapes are tested. Each shape fills a second cache, which only takes the place of the nearest one if
+ * the shape is hit nearer.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public final class NearestHit {
+
+    private final Ray ray;
+    private CollisionCache nearestCache = new CollisionCache();
+    private CollisionCache cache = new CollisionCache();
+    private Shape shape;
+    private int index = -1;
+    private double distance = POSITIVE_INFINITY;
+
+    public NearestHit(@Nonnull Ray ray) {
+        this.ray = ray;
+    }
+
+    /**
+     * Calculate the distance of the intersection of the ray with the given shape and keep it if it is nearer than
+     * <code>tMax</code>.
+     *
+     * @param shape The shape to intersect.
+     * @param index The index of the shape, as known to the caller.
+     * @param tMax  The distance of the nearest intersection found so far.
+     * @return The distance of the intersection if it is nearer than <code>tMax</code>,
+     * {@link Double#POSITIVE_INFINITY} otherwise.
+     */
+    public double intersect(@Nonnull Shape shape, int index, double tMax) {
+        cache.clear();
+        final double result = shape.intersectDistance(ray, cache);
+        if (result < tMax) {
+            final CollisionCache swap = nearestCache;
+            nearestCache = cache;
+            cache = swap;
+            return update(shape, index, result);
+        }
+        return POSITIVE_INFINITY;
+    }
+
+    /**
+     * Keep an intersection whose distance was calculated by the caller, if it is nearer than <code>tMax</code>. The
+     * shape has to create its shading data from an empty {@link CollisionCache}.
+     *
+     * @param shape  The shape hit.
+     * @param index  The index of the shape, as known to the caller.
+     * @param result The distance of the intersection or {@link Double#POSITIVE_INFINITY} if the shape is missed.
+     * @param tMax   The distance of the nearest intersection found so far.
+     * @return The distance of the intersection if it is nearer than <code>tMax</code>,
+     * {@link Double#POSITIVE_INFINITY} otherwise.
+     */
+    public double offer(@Nonnull Shape shape, int index, double result, double tMax) {
+        if (result < tMax) {
+            nearestCache.clear();
+            return update(shape, index, result);
+        }
+        return POSITIVE_INFINITY;
+    }
+
+    private double update(Shape shape, int index, double result) {
+        this.shape = shape;
+        this.index = index;
+        this.distance = result;
+        return result;
+    }
+
+    @Nonnull
+    public Ray getRay() {
+        return ray;
+    }
+
+    public boolean isPresent() {
+        return shape != null;
+    }
+
+    /**
+     * @return The index of the nearest shape hit or <code>-1</code> if nothing was hit.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The distance of the nearest intersection or {@link Double#POSITIVE_INFINITY} if nothing was hit.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Second phase of the two phase intersection: create the shading data of the nearest intersection.
+     *
+     * @return The {@link CollisionInformation} of the nearest intersection or {@link Optional#empty()} if nothing was
+     * hit.
+     * @see Shape#createCollisionInformation(Ray, double, CollisionCache)
+     */
+    @Nonnull
+    public Optional<CollisionInformation> createCollisionInformation() {
+        if (shape == null) {
+            return Optional.empty();
+        }
+        return Optional.of(shape.createCollisionInformation(ray, distance, nearestCache));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("shape", shape)
+                .add("index", index)
+                .add("distance", distance).toString();
+    }
+
+}
@@ -20,19 +20,33 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Stream;
+import javax.annotation.Nonnull;
 import javax.inject.Inject;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
 import com.google.inject.Injector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import yaphyre.core.accelerators.Accelerators;
+import yaphyre.core.accelerators.CompiledAccelerator;
+import yaphyre.core.accelerators.PartitionedAccelerator;
 import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
 
-import static java.util.Comparator.comparingDouble;
+import static com.google.common.base.Preconditions.checkState;
 
 /**
  * Scene holding all the relevant objects. This is also responsible for intersection a ray with the objects
- * contained within the scene.
+ * contained within the scene.<br/>
+ * The intersection tests are delegated to an {@link Accelerator} which is built when the scene is frozen. This happens
+ * with the first intersection test at the latest. Once frozen, no more shapes can be added to the scene. Unless another
+ * accelerator is chosen (see {@link #setAcceleratorType(Accelerators)}), larger scenes are compiled into a
+ * {@link CompiledAccelerator}, which keeps the intersection data of the shapes in flat arrays. Unbounded shapes, like
+ * infinite planes, are kept out of the accelerator and tested separately (see {@link PartitionedAccelerator}).<br/>
+ * Shapes and cameras of a frozen scene may still be replaced, e.g. between the frames of an animation. The accelerator
+ * is then refit to the replaced shapes when the scene is frozen again (see {@link Accelerator#refit(List)}).
  *
  * @author Michael Bieri
  * @author $LastChangedBy: $
@@ -40,10 +54,22 @@ import static java.util.Comparator.comparingDouble;
  */
 public class Scene {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Scene.class);
+
     private final List<Shape> shapes;
     private final List<Light> lights;
     private final List<Camera> cameras;
     private final Injector injector;
+    private volatile Accelerator accelerator;
+
+    /**
+     * The accelerator of a frozen scene, whose shapes were replaced since.
+     */
+    private volatile Accelerator outdatedAccelerator;
+
+    private volatile int revision;
+
+    private Accelerators acceleratorType = Accelerators.Automatic;
 
     @Inject
     public Scene(Injector injector) {
@@ -58,15 +84,53 @@ public class Scene {
         cameras.add(camera);
     }
 
+    /**
+     * Replace the camera at the given index.
+     *
+     * @param index  The index of the camera in {@link #getCameras()}.
+     * @param camera The new camera.
+     */
+    public void replaceCamera(int index, Camera camera) {
+        injector.injectMembers(camera);
+        cameras.set(index, camera);
+    }
+
     public List<Camera> getCameras() {
         return Collections.unmodifiableList(cameras);
     }
 
     public void addShape(Shape shape) {
+        checkState(!isFrozen(), "no shapes can be added to a frozen scene");
         injector.injectMembers(shape);
         shapes.add(shape);
     }
 
+    /**
+     * Replace the shape at the given index, e.g. with a moved copy. This is possible even if the scene is frozen: the
+     * accelerator is then refit when the scene is frozen again, with the next intersection test at the latest. Since
+     * the accelerator is shared by all the render threads, shapes must not be replaced during the rendering.
+     *
+     * @param index The index of the shape in {@link #getShapes()}.
+     * @param shape The new shape.
+     */
+    public synchronized void replaceShape(int index, Shape shape) {
+        injector.injectMembers(shape);
+        shapes.set(index, shape);
+        revision++;
+        if (accelerator != null) {
+            outdatedAccelerator = accelerator;
+            accelerator = null;
+        }
+    }
+
+    /**
+     * @return A number which changes whenever a shape is replaced. Anything cached about the shapes of the scene is
+     * outdated once this number changes.
+     */
+    public int getRevision() {
+        return revision;
+    }
+
     public List<Shape> getShapes() {
         return Collections.unmodifiableList(shapes);
     }
@@ -89,18 +153,97 @@ public class Scene {
     }
 
     public Optional<CollisionInformation> hitObject(Ray ray) {
-        return prepareCollisionInformationStream(ray).min(comparingDouble(CollisionInformation::getDistance));
+        return getAccelerator().intersect(ray);
     }
 
     public Optional<CollisionInformation> hitObjectForShadowRay(Ray ray) {
-        return prepareCollisionInformationStream(ray).findFirst();
+        return getAccelerator().intersectAny(ray);
+    }
+
+    /**
+     * Check if any shape blocks the given shadow ray within its range.
+     *
+     * @see Accelerator#findOccluder(Ray)
+     */
+    public boolean occluded(Ray ray) {
+        return findOccluder(ray).isPresent();
+    }
+
+    /**
+     * Find a shape blocking the given shadow ray within its range.
+     *
+     * @see Accelerator#findOccluder(Ray)
+     */
+    public Optional<Shape> findOccluder(Ray ray) {
+        return getAccelerator().findOccluder(ray);
+    }
+
+    /**
+     * Find the nearest intersections of the active rays of a packet.
+     *
+     * @see Accelerator#intersect(RayPacket, CollisionInformation[])
+     */
+    public void hitObjects(RayPacket packet, CollisionInformation[] collisions) {
+        getAccelerator().intersect(packet, collisions);
+    }
+
+    /**
+     * Build the {@link Accelerator} over all the shapes of this scene. Calling this method is optional, the scene is
+     * frozen with the first intersection test otherwise. But this allows to build the acceleration structure before
+     * the rendering starts. Calling it more than once has no effect, unless shapes were replaced in between.
+     */
+    public void freeze() {
+        getAccelerator();
+    }
+
+    public boolean isFrozen() {
+        return accelerator != null || outdatedAccelerator != null;
+    }
+
+    /**
+     * Choose the {@link Accelerator} to build when the scene is frozen.
+     *
+     * @param acceleratorType The type of accelerator, {@link Accelerators#Automatic} by default.
+     */
+    public void setAcceleratorType(@Nonnull Accelerators acceleratorType) {
+        checkState(!isFrozen(), "the accelerator of a frozen scene can not be changed");
+        this.acceleratorType = acceleratorType;
+    }
+
+    @Nonnull
+    public Accelerators getAcceleratorType() {
+        return acceleratorType;
+    }
+
+    private Accelerator getAccelerator() {
+        Accelerator result = accelerator;
+        if (result == null) {
+            synchronized (this) {
+                result = accelerator;
+                if (result == null) {
+                    result = createAccelerator();
+                    accelerator = result;
+                }
+            }
+        }
+        return result;
     }
 
-    private Stream<CollisionInformation> prepareCollisionInformationStream(Ray ray) {
-        return shapes.stream()
-                .filter(shape -> shape.getBoundingBox().isHitBy(ray))
-                .map(shape -> shape.intersect(ray))
-                .flatMap(optional -> optional.map(Stream::of).orElseGet(Stream::empty));
+    private Accelerator createAccelerator() {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        if (outdatedAccelerator != null) {
+            final Optional<Accelerator> refitAccelerator = outdatedAccelerator.refit(getShapes());
+            outdatedAccelerator = null;
+            if (refitAccelerator.isPresent()) {
+                LOGGER.debug("Refit {} in {}", refitAccelerator.get(), stopwatch);
+                return refitAccelerator.get();
+            }
+        }
+        final Accelerator result = shapes.stream().allMatch(PartitionedAccelerator::isBounded)
+                ? acceleratorType.create(shapes)
+                : new PartitionedAccelerator(shapes, acceleratorType::create);
+        LOGGER.debug("Created {} in {}", result, stopwatch);
+        return result;
     }
 
 }
@@ -18,10 +18,13 @@ package yaphyre.core.api;
 
 import yaphyre.core.math.BoundingBox;
 import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
 
 import javax.annotation.Nonnull;
 import java.util.Optional;
 
+import static com.google.common.base.Preconditions.checkState;
+
 /**
  * Interface implemented by all {@link Shape} of the rendering system.
  *
@@ -53,6 +56,83 @@ public interface Shape {
     @Nonnull
     Optional<CollisionInformation> intersect(@Nonnull Ray ray);
 
+    /**
+     * First phase of the two phase intersection used by the {@link Accelerator}s: calculate only the distance of the
+     * nearest intersection of the given {@link Ray} with this shape. Most of the intersections found while searching
+     * the nearest one are discarded, so the shading data (the intersection point, normal and uv coordinates) is only
+     * created for the nearest intersection, with {@link #createCollisionInformation(Ray, double, CollisionCache)}.
+     * <br/>
+     * The default implementation falls back to the full {@link #intersect(Ray)} and stores its result in the
+     * <code>cache</code>, so it does not have to be calculated again.
+     *
+     * @param ray   The {@link Ray} to intersect.
+     * @param cache Receives the data created while calculating the distance, if any. It has to be passed to
+     *              {@link #createCollisionInformation(Ray, double, CollisionCache)}.
+     * @return The distance of the nearest intersection or {@link Double#POSITIVE_INFINITY} if the ray misses this shape.
+     */
+    default double intersectDistance(@Nonnull Ray ray, @Nonnull CollisionCache cache) {
+        final Optional<CollisionInformation> result = intersect(ray);
+        if (result.isPresent()) {
+            cache.set(result.get());
+            return result.get().getDistance();
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Second phase of the two phase intersection: create the shading data of an intersection found by
+     * {@link #intersectDistance(Ray, CollisionCache)}.
+     *
+     * @param ray      The {@link Ray} hitting this shape.
+     * @param distance The distance of the intersection.
+     * @param cache    The data stored by {@link #intersectDistance(Ray, CollisionCache)}.
+     * @return The {@link CollisionInformation} of the intersection.
+     */
+    @Nonnull
+    default CollisionInformation createCollisionInformation(@Nonnull Ray ray, double distance,
+                                                            @Nonnull CollisionCache cache) {
+        final CollisionInformation collision = cache.get();
+        checkState(collision != null, "no collision information stored for %s", this);
+        return collision;
+    }
+
+    /**
+     * Check if the given {@link Ray} hits this shape anywhere within its range. This is the query used for shadow rays:
+     * it only answers whether the ray is blocked, so implementations should skip everything needed for shading (the
+     * intersection point, normal and uv coordinates) and stop with the first intersection found.<br/>
+     * The default implementation falls back to the full {@link #intersect(Ray)}.
+     *
+     * @param ray The {@link Ray} to check.
+     * @return <code>true</code> if the ray hits this shape within its range.
+     */
+    default boolean occluded(@Nonnull Ray ray) {
+        return intersect(ray).isPresent();
+    }
+
+    /**
+     * Intersect the active rays of a {@link RayPacket} with this shape. For each active lane with an intersection nearer
+     * than the current upper limit of its range, the collision information is stored at the index of the lane and the
+     * range is shortened to the distance of the intersection. All the other lanes are left unchanged, so a packet can
+     * be intersected with one shape after the other to find the nearest intersection of each ray.<br/>
+     * The default implementation intersects the rays one by one. Shapes with a cheap intersection test should override
+     * it with a loop over the lanes.
+     *
+     * @param packet     The {@link RayPacket} to intersect.
+     * @param collisions The nearest {@link CollisionInformation} found so far for each lane of the packet.
+     */
+    default void intersect(@Nonnull RayPacket packet, @Nonnull CollisionInformation[] collisions) {
+        for (int lane = 0; lane < packet.size(); lane++) {
+            if (!packet.isActive(lane)) {
+                continue;
+            }
+            final Optional<CollisionInformation> collision = intersect(packet.getRay(lane));
+            if (collision.isPresent() && collision.get().getDistance() < packet.getTMax(lane)) {
+                packet.setTMax(lane, collision.get().getDistance());
+                collisions[lane] = collision.get();
+            }
+        }
+    }
+
     @Nonnull
     BoundingBox getBoundingBox();
 
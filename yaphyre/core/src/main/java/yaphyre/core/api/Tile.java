@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package yaphyre.core.api;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.MoreObjects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A rectangular region of a {@link Film}. Tiles are the unit of work when a camera renders a scene in parallel. Each
+ * tile is rendered by exactly one thread, so every pixel of the film has exactly one writer. The start coordinates are
+ * inclusive, the end coordinates exclusive.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@Immutable
+public class Tile {
+
+    private final int index;
+    private final int xStart;
+    private final int yStart;
+    private final int xEnd;
+    private final int yEnd;
+
+    public Tile(@Nonnegative int index, @Nonnegative int xStart, @Nonnegative int yStart, int xEnd, int yEnd) {
+        checkArgument(index >= 0);
+        checkArgument(0 <= xStart && xStart < xEnd);
+        checkArgument(0 <= yStart && yStart < yEnd);
+        this.index = index;
+        this.xStart = xStart;
+        this.yStart = yStart;
+        this.xEnd = xEnd;
+        this.yEnd = yEnd;
+    }
+
+    /**
+     * @return The position of this tile within the list of tiles covering the film.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public int getXStart() {
+        return xStart;
+    }
+
+    public int getYStart() {
+        return yStart;
+    }
+
+    public int getXEnd() {
+        return xEnd;
+    }
+
+    public int getYEnd() {
+        return yEnd;
+    }
+
+    public int getWidth() {
+        return xEnd - xStart;
+    }
+
+    public int getHeight() {
+        return yEnd - yStart;
+    }
+
+    public int getPixelCount() {
+        return getWidth() * getHeight();
+    }
+
+    public boolean contains(int x, int y) {
+        return xStart <= x && x < xEnd && yStart <= y && y < yEnd;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("index", index)
+                .add("x", xStart + "-" + xEnd)
+                .add("y", yStart + "-" + yEnd).toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final Tile other = (Tile) obj;
+        return index == other.index
+                && xStart == other.xStart && yStart == other.yStart
+                && xEnd == other.xEnd && yEnd == other.yEnd;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = index;
+        result = 31 * result + xStart;
+        result = 31 * result + yStart;
+        result = 31 * result + xEnd;
+        result = 31 * result + yEnd;
+        return result;
+    }
+}
@@ -16,11 +16,14 @@
 
 package yaphyre.core.api;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import javax.annotation.Nonnull;
 
 import yaphyre.core.math.Color;
 import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
 
 /**
  * YaPhyRe
@@ -33,4 +36,20 @@ public interface Tracer {
     @Nonnull
     Optional<Color> traceRay(@Nonnull final Ray ray, @Nonnull final Scene scene);
 
+    /**
+     * Trace the active rays of a {@link RayPacket}. The default implementation traces the rays one by one.
+     *
+     * @param packet The rays to trace. The ranges of the lanes may be changed while tracing.
+     * @param scene  The scene to trace the rays through.
+     * @return The colors of the rays in the order of the lanes. Inactive lanes have no color.
+     */
+    @Nonnull
+    default List<Optional<Color>> traceRays(@Nonnull final RayPacket packet, @Nonnull final Scene scene) {
+        final List<Optional<Color>> result = new ArrayList<>(packet.size());
+        for (int lane = 0; lane < packet.size(); lane++) {
+            result.add(packet.isActive(lane) ? traceRay(packet.getRay(lane), scene) : Optional.empty());
+        }
+        return result;
+    }
+
 }
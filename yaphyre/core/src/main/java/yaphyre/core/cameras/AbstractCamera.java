@@ -16,7 +16,10 @@
 
 package yaphyre.core.cameras;
 
-import java.util.stream.IntStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 
@@ -25,16 +28,27 @@ import yaphyre.core.api.CameraSample;
 import yaphyre.core.api.Film;
 import yaphyre.core.api.Sampler;
 import yaphyre.core.api.Scene;
+import yaphyre.core.api.Tile;
 import yaphyre.core.api.Tracer;
 import yaphyre.core.math.Color;
 import yaphyre.core.math.Point2D;
 import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
+import yaphyre.core.statistics.RenderStatistics;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 /**
  * A generic camera base class. Most of the implemented cameras will use this base class. It contains a
  * {@link yaphyre.core.api.Sampler} for use in Montecarlo sampling as well as a {@link yaphyre.core.api.Tracer} for integrating
  * a camera ray.
- * Both instance cannot be null.
+ * Both instance cannot be null. The film is rendered tile by tile, using the {@link TileScheduler} to distribute
+ * the tiles onto multiple threads.<br/>
+ * Besides rendering the whole scene at once, the camera can render single passes with shifted samples, which is used
+ * by the {@link ProgressiveRenderer}, optionally restricted to some of the pixels, which is used by the
+ * {@link AdaptiveRenderer}.<br/>
+ * With a packet size larger than one, the camera rays of a tile are traced in packets of neighbouring rays (see
+ * {@link Tracer#traceRays(RayPacket, Scene)}) instead of one by one.
  *
  * @author Michael Bieri
  * @since 08.09.13
@@ -54,6 +68,14 @@ public abstract class AbstractCamera implements Camera {
      * Camera sampler
      */
     private Sampler sampler;
+    /**
+     * Scheduler distributing the tiles of the film onto the render threads.
+     */
+    private TileScheduler tileScheduler = new TileScheduler();
+    /**
+     * Number of camera rays traced together. One traces every ray on its own.
+     */
+    private int packetSize = 1;
 
     public AbstractCamera(@Nonnull Film film, @Nonnull Color skyColor) {
         this.film = film;
@@ -80,6 +102,29 @@ public abstract class AbstractCamera implements Camera {
         this.tracer = tracer;
     }
 
+    @Nonnull
+    public TileScheduler getTileScheduler() {
+        return tileScheduler;
+    }
+
+    @Inject
+    public void setTileScheduler(@Nonnull TileScheduler tileScheduler) {
+        this.tileScheduler = tileScheduler;
+    }
+
+    public int getPacketSize() {
+        return packetSize;
+    }
+
+    /**
+     * @param packetSize The number of camera rays to trace together, within [1, {@link RayPacket#MAX_SIZE}].
+     */
+    public void setPacketSize(int packetSize) {
+        checkArgument(packetSize > 0 && packetSize <= RayPacket.MAX_SIZE,
+                "the packet size must be within [1, %s]", RayPacket.MAX_SIZE);
+        this.packetSize = packetSize;
+    }
+
     @Nonnull
     public Color getSkyColor() {
         return skyColor;
@@ -102,27 +147,186 @@ public abstract class AbstractCamera implements Camera {
 
     @Override
     public void renderScene(@Nonnull Scene scene) {
+        renderPass(scene, Point2D.ZERO);
+    }
+
+    /**
+     * Render one pass over the whole film: the samples of the camera sampler are shifted by the given offset (wrapping
+     * around at the pixel borders) and recorded on the film in addition to the samples already recorded. Successive
+     * passes with different offsets refine the image, even for samplers which always return the same samples.
+     *
+     * @param scene        The {@link Scene} to render.
+     * @param sampleOffset The offset of the samples within the pixels. Both coordinates must be within [0, 1).
+     */
+    public void renderPass(@Nonnull Scene scene, @Nonnull Point2D sampleOffset) {
+        renderPass(scene, sampleOffset, (x, y) -> true);
+    }
+
+    /**
+     * Render one pass over the selected pixels of the film (see {@link #renderPass(Scene, Point2D)}).
+     *
+     * @param scene        The {@link Scene} to render.
+     * @param sampleOffset The offset of the samples within the pixels. Both coordinates must be within [0, 1).
+     * @param pixelFilter  Selects the pixels to render. It is called concurrently for pixels of different tiles.
+     */
+    public void renderPass(@Nonnull Scene scene, @Nonnull Point2D sampleOffset, @Nonnull PixelFilter pixelFilter) {
         final int xResolution = getFilm().getNativeResolution().getFirst();
         final int yResolution = getFilm().getNativeResolution().getSecond();
 
         final double xStep = 1d / xResolution;
         final double yStep = 1d / yResolution;
 
-        IntStream.range(0, yResolution)
-                .forEach(y -> IntStream.range(0, xResolution)
-                        .mapToObj(x -> new Point2D(x, y))
-                        .forEach(p -> getSampler().getUnitSquareSamples()
-                                .forEach(s -> renderPoint(scene, xStep, yStep, p, s))));
+        final List<Tile> tiles = tileScheduler.createTiles(xResolution, yResolution);
+        tileScheduler.renderTiles(tiles, tile -> renderTile(scene, xStep, yStep, sampleOffset, pixelFilter, tile));
+    }
 
+    /**
+     * Render all the pixels of a region of the film. The region is split into tiles which are rendered in parallel
+     * like a pass over the whole film. This is used to distribute the rendering of a film onto several processes,
+     * each rendering some of the regions.
+     *
+     * @param scene  The {@link Scene} to render.
+     * @param region The region of the film to render, in film coordinates.
+     */
+    public void renderRegion(@Nonnull Scene scene, @Nonnull Tile region) {
+        renderTiles(scene, tileScheduler.createTiles(region), tile -> { });
+    }
+
+    /**
+     * Render all the pixels of the given tiles of the film in parallel, like a pass over the whole film. This allows to
+     * render only some of the tiles of a film, e.g. the ones missing in a checkpoint.
+     *
+     * @param scene         The {@link Scene} to render.
+     * @param tiles         The tiles to render, in film coordinates.
+     * @param tileCompleted Called by the render thread once all the samples of a tile are recorded on the film.
+     */
+    public void renderTiles(@Nonnull Scene scene, @Nonnull List<Tile> tiles, @Nonnull Consumer<Tile> tileCompleted) {
+        final double xStep = 1d / getFilm().getNativeResolution().getFirst();
+        final double yStep = 1d / getFilm().getNativeResolution().getSecond();
+
+        tileScheduler.renderTiles(tiles, tile -> {
+            renderTile(scene, xStep, yStep, Point2D.ZERO, (x, y) -> true, tile);
+            tileCompleted.accept(tile);
+        });
+    }
+
+    /**
+     * Render all the pixels of one tile. This is called concurrently for different tiles, so it must not change the
+     * state of the camera.
+     */
+    protected void renderTile(@Nonnull Scene scene, double xStep, double yStep, @Nonnull Point2D sampleOffset,
+                              @Nonnull PixelFilter pixelFilter, @Nonnull Tile tile) {
+        if (!RenderStatistics.ENABLED) {
+            renderTileSamples(scene, xStep, yStep, sampleOffset, pixelFilter, tile);
+            return;
+        }
+        final long start = System.nanoTime();
+        final int[] pixels = {0};
+        final long samples = renderTileSamples(scene, xStep, yStep, sampleOffset, (x, y) -> {
+            final boolean accepted = pixelFilter.accept(x, y);
+            if (accepted) {
+                pixels[0]++;
+            }
+            return accepted;
+        }, tile);
+        RenderStatistics.countTile(pixels[0], samples, System.nanoTime() - start);
+    }
+
+    /**
+     * @return The number of samples recorded.
+     */
+    private long renderTileSamples(Scene scene, double xStep, double yStep, Point2D sampleOffset,
+                                   PixelFilter pixelFilter, Tile tile) {
+        if (packetSize > 1) {
+            return renderTileInPackets(scene, xStep, yStep, sampleOffset, pixelFilter, tile);
+        }
+        long sampleCount = 0;
+        for (int y = tile.getYStart(); y < tile.getYEnd(); y++) {
+            for (int x = tile.getXStart(); x < tile.getXEnd(); x++) {
+                if (!pixelFilter.accept(x, y)) {
+                    continue;
+                }
+                final Point2D filmPoint = new Point2D(x, y);
+                final Iterator<Point2D> samples = getSampler().getUnitSquareSamples().iterator();
+                while (samples.hasNext()) {
+                    renderPoint(scene, xStep, yStep, filmPoint, shift(samples.next(), sampleOffset));
+                    sampleCount++;
+                }
+            }
+        }
+        return sampleCount;
+    }
+
+    /**
+     * Render the pixels of one tile, tracing the camera rays in packets. The rays are collected row by row, so each
+     * packet covers neighbouring pixels and its rays hit mostly the same nodes of the acceleration structure.
+     */
+    private long renderTileInPackets(Scene scene, double xStep, double yStep, Point2D sampleOffset,
+                                     PixelFilter pixelFilter, Tile tile) {
+        final RayPacket packet = new RayPacket(packetSize);
+        final Point2D[] filmPoints = new Point2D[packetSize];
+        long sampleCount = 0;
+        for (int y = tile.getYStart(); y < tile.getYEnd(); y++) {
+            for (int x = tile.getXStart(); x < tile.getXEnd(); x++) {
+                if (!pixelFilter.accept(x, y)) {
+                    continue;
+                }
+                final Point2D filmPoint = new Point2D(x, y);
+                final Iterator<Point2D> samples = getSampler().getUnitSquareSamples().iterator();
+                while (samples.hasNext()) {
+                    final Point2D sample = shift(samples.next(), sampleOffset);
+                    filmPoints[packet.add(createCameraRay(xStep, yStep, filmPoint, sample))] = filmPoint;
+                    sampleCount++;
+                    if (packet.isFull()) {
+                        renderPacket(scene, packet, filmPoints);
+                    }
+                }
+            }
+        }
+        if (packet.size() > 0) {
+            renderPacket(scene, packet, filmPoints);
+        }
+        return sampleCount;
+    }
+
+    private void renderPacket(Scene scene, RayPacket packet, Point2D[] filmPoints) {
+        final List<Optional<Color>> colors = getTracer().traceRays(packet, scene);
+        for (int lane = 0; lane < packet.size(); lane++) {
+            getFilm().addCameraSample(new CameraSample(filmPoints[lane], colors.get(lane).orElse(skyColor)));
+        }
+        packet.clear();
+    }
+
+    private static Point2D shift(Point2D sample, Point2D offset) {
+        if (offset == Point2D.ZERO) {
+            return sample;
+        }
+        final double u = sample.getU() + offset.getU();
+        final double v = sample.getV() + offset.getV();
+        return new Point2D(u - Math.floor(u), v - Math.floor(v));
     }
 
     private void renderPoint(Scene scene, double xStep, double yStep, Point2D filmPoint, Point2D sample) {
-        final Point2D sampledFilmPoint = filmPoint.add(sample);
-        final Point2D filmSamplePoint = new Point2D(sampledFilmPoint.getU() * xStep, sampledFilmPoint.getV() * yStep);
-        final Ray cameraRay = createCameraRay(filmSamplePoint);
+        final Ray cameraRay = createCameraRay(xStep, yStep, filmPoint, sample);
 
         final Color sampledColor = getTracer().traceRay(cameraRay, scene).orElse(skyColor);
 
         getFilm().addCameraSample(new CameraSample(filmPoint, sampledColor));
     }
+
+    private Ray createCameraRay(double xStep, double yStep, Point2D filmPoint, Point2D sample) {
+        final Point2D sampledFilmPoint = filmPoint.add(sample);
+        final Point2D filmSamplePoint = new Point2D(sampledFilmPoint.getU() * xStep, sampledFilmPoint.getV() * yStep);
+        return createCameraRay(filmSamplePoint);
+    }
+
+    /**
+     * Selects the pixels to render in a pass.
+     */
+    @FunctionalInterface
+    public interface PixelFilter {
+
+        boolean accept(int x, int y);
+
+    }
 }
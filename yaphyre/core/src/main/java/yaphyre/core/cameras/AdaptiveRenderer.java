@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.cameras;
+
+import java.util.Arrays;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.api.Scene;
+import yaphyre.core.films.ImageFile;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Renders a camera with adaptive sampling: every pixel gets a small number of base passes, further passes are only
+ * rendered for the pixels which are still noisy. Each pass adds the samples of the camera sampler (shifted like the
+ * passes of the {@link ProgressiveRenderer}) to the selected pixels.<br/>
+ * After each pass, a pixel is considered noisy if its relative error (see {@link ImageFile#getRelativeError(int, int)})
+ * is above the threshold. Since a few samples may all miss a small feature, the direct neighbors of noisy pixels are
+ * refined as well. No pixel gets more than the maximum number of passes.<br/>
+ * Flat regions like the sky stop after the base passes, so most of the rays are spent on edges and shadows.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class AdaptiveRenderer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveRenderer.class);
+
+    /**
+     * The variance of a pixel cannot be estimated with less passes.
+     */
+    private static final int MIN_BASE_PASSES = 2;
+
+    private final int basePasses;
+    private final double errorThreshold;
+    private final int maxPasses;
+
+    /**
+     * Create an adaptive renderer.
+     *
+     * @param basePasses     The number of passes rendered for every pixel. Must be at least 2.
+     * @param errorThreshold The relative error above which a pixel gets more samples.
+     * @param maxPasses      The maximum number of passes for a single pixel.
+     */
+    public AdaptiveRenderer(@Nonnegative int basePasses, @Nonnegative double errorThreshold,
+                            @Nonnegative int maxPasses) {
+        checkArgument(basePasses >= MIN_BASE_PASSES, "at least %s base passes are needed", MIN_BASE_PASSES);
+        checkArgument(errorThreshold >= 0d, "the error threshold must not be negative");
+        checkArgument(maxPasses >= basePasses, "the maximum number of passes must not be less than the base passes");
+        this.basePasses = basePasses;
+        this.errorThreshold = errorThreshold;
+        this.maxPasses = maxPasses;
+    }
+
+    /**
+     * Render the scene adaptively.
+     *
+     * @param camera The camera to render. Its film must be an {@link ImageFile}.
+     * @param scene  The {@link Scene} to render.
+     * @return The total number of pixel passes rendered, i.e. the number of times the samples of the camera sampler
+     * were rendered for a pixel.
+     */
+    public long render(@Nonnull AbstractCamera camera, @Nonnull Scene scene) {
+        checkArgument(camera.getFilm() instanceof ImageFile, "adaptive sampling needs an image file as film");
+        final ImageFile imageFile = (ImageFile) camera.getFilm();
+        final int xResolution = imageFile.getNativeResolution().getFirst();
+        final int yResolution = imageFile.getNativeResolution().getSecond();
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        int pass = 0;
+        for (; pass < basePasses; pass++) {
+            camera.renderPass(scene, ProgressiveRenderer.getSampleOffset(pass));
+        }
+        long pixelPasses = (long) basePasses * xResolution * yResolution;
+
+        final boolean[] refine = new boolean[xResolution * yResolution];
+        final int[] passesPerPixel = new int[xResolution * yResolution];
+        Arrays.fill(passesPerPixel, basePasses);
+        for (; pass < maxPasses; pass++) {
+            final int selected = selectPixels(imageFile, xResolution, yResolution, passesPerPixel, refine);
+            LOGGER.debug("Pass {}: refining {} pixels", pass, selected);
+            if (selected == 0) {
+                break;
+            }
+            camera.renderPass(scene, ProgressiveRenderer.getSampleOffset(pass),
+                    (x, y) -> refine[y * xResolution + x]);
+            for (int pixel = 0; pixel < refine.length; pixel++) {
+                if (refine[pixel]) {
+                    passesPerPixel[pixel]++;
+                }
+            }
+            pixelPasses += selected;
+        }
+
+        LOGGER.info("Rendered {} pixel passes in {} ({} of a full render with {} passes)", pixelPasses, stopwatch,
+                String.format("%.1f%%", 100d * pixelPasses / ((double) maxPasses * xResolution * yResolution)),
+                maxPasses);
+        return pixelPasses;
+    }
+
+    /**
+     * Mark the noisy pixels and their direct neighbors, unless they already have the maximum number of samples.
+     *
+     * @return The number of pixels selected.
+     */
+    private int selectPixels(ImageFile imageFile, int xResolution, int yResolution, int[] passesPerPixel,
+                             boolean[] refine) {
+        final boolean[] noisy = new boolean[refine.length];
+        for (int y = 0; y < yResolution; y++) {
+            for (int x = 0; x < xResolution; x++) {
+                noisy[y * xResolution + x] = imageFile.getRelativeError(x, y) > errorThreshold;
+            }
+        }
+
+        int selected = 0;
+        for (int y = 0; y < yResolution; y++) {
+            for (int x = 0; x < xResolution; x++) {
+                final int pixel = y * xResolution + x;
+                refine[pixel] = (noisy[pixel]
+                        || x > 0 && noisy[pixel - 1]
+                        || x < xResolution - 1 && noisy[pixel + 1]
+                        || y > 0 && noisy[pixel - xResolution]
+                        || y < yResolution - 1 && noisy[pixel + xResolution])
+                        && passesPerPixel[pixel] < maxPasses;
+                if (refine[pixel]) {
+                    selected++;
+                }
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("basePasses", basePasses)
+                .add("errorThreshold", errorThreshold)
+                .add("maxPasses", maxPasses).toString();
+    }
+
+}
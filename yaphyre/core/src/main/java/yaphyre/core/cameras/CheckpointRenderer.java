@@ -0,0 +1,282 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.cameras;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Tile;
+import yaphyre.core.films.ImageFile;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Renders a camera while periodically saving the tiles rendered so far to a checkpoint file, so an interrupted
+ * rendering can be resumed without rendering these tiles again.<br/>
+ * A tile does not change anymore once it is rendered, so the checkpoints are written by a background thread while the
+ * render threads carry on: the render threads never wait for a checkpoint. Tiles still being rendered are left out
+ * and rendered again when resuming.<br/>
+ * A checkpoint contains the recorded data of the rendered tiles (see {@link ImageFile#writeRegion(Tile,
+ * java.io.DataOutput)}) and a checksum. It is written to a temporary file first, which then replaces the previous
+ * checkpoint, so a crash while writing never destroys the previous checkpoint.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class CheckpointRenderer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointRenderer.class);
+
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(1);
+
+    /**
+     * "YPCP": identifies checkpoint files.
+     */
+    private static final int MAGIC = 0x59504350;
+    private static final int VERSION = 1;
+
+    private static final int TRAILER_BYTES = Long.BYTES;
+
+    private final Path checkpointFile;
+    private final Duration interval;
+
+    /**
+     * Create a renderer saving checkpoints at the given interval.
+     *
+     * @param checkpointFile The file to write the checkpoints to.
+     * @param interval       The time between two checkpoints.
+     */
+    public CheckpointRenderer(@Nonnull Path checkpointFile, @Nonnull Duration interval) {
+        checkArgument(!interval.isNegative() && !interval.isZero(), "the interval must be positive");
+        this.checkpointFile = checkpointFile;
+        this.interval = interval;
+    }
+
+    @Nonnull
+    public Path getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Render the scene like {@link AbstractCamera#renderScene(Scene)}, saving checkpoints while rendering. If the
+     * rendering fails, a last checkpoint is saved before the exception is rethrown.
+     *
+     * @param camera The camera to render. Its film must be an {@link ImageFile} without any samples recorded.
+     * @param scene  The {@link Scene} to render.
+     * @param resume If <code>true</code> the tiles contained in an existing checkpoint are restored instead of being
+     *               rendered. An unusable checkpoint is ignored.
+     * @return The number of tiles rendered, not counting the restored ones.
+     */
+    public int render(@Nonnull AbstractCamera camera, @Nonnull Scene scene, boolean resume) {
+        checkArgument(camera.getFilm() instanceof ImageFile, "checkpoints need an image file as film");
+        final ImageFile film = (ImageFile) camera.getFilm();
+        final List<Tile> tiles = camera.getTileScheduler().createTiles(film.getNativeResolution().getFirst(),
+                film.getNativeResolution().getSecond());
+
+        // the flags are set after the tile is rendered, so reading a flag makes the data of its tile visible
+        final AtomicIntegerArray completed = new AtomicIntegerArray(tiles.size());
+        if (resume) {
+            restoreCheckpoint(film, tiles, completed);
+        }
+        final List<Tile> remainingTiles = new ArrayList<>();
+        for (Tile tile : tiles) {
+            if (completed.get(tile.getIndex()) == 0) {
+                remainingTiles.add(tile);
+            }
+        }
+        LOGGER.info("Rendering {} of {} tiles, saving checkpoints to {} every {}", remainingTiles.size(), tiles.size(),
+                checkpointFile, interval);
+
+        final ScheduledExecutorService checkpointExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("checkpoint-%d").setDaemon(true).build());
+        checkpointExecutor.scheduleWithFixedDelay(() -> saveCheckpoint(film, tiles, completed),
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        boolean success = false;
+        try {
+            camera.renderTiles(scene, remainingTiles, tile -> completed.set(tile.getIndex(), 1));
+            success = true;
+        } finally {
+            stop(checkpointExecutor);
+            if (!success) {
+                saveCheckpoint(film, tiles, completed);
+            }
+        }
+        return remainingTiles.size();
+    }
+
+    /**
+     * Delete the checkpoint file, e.g. once the rendered image is saved.
+     */
+    public void deleteCheckpoint() {
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to delete checkpoint " + checkpointFile, e);
+        }
+    }
+
+    private static void stop(ScheduledExecutorService checkpointExecutor) {
+        checkpointExecutor.shutdown();
+        try {
+            // a checkpoint being written is finished first, so it does not overwrite a later one
+            checkpointExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Save the rendered tiles. Failures are only logged: the rendering continues and the next checkpoint is tried
+     * at the next interval.
+     */
+    private void saveCheckpoint(ImageFile film, List<Tile> tiles, AtomicIntegerArray completed) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final List<Tile> completedTiles = new ArrayList<>();
+        for (Tile tile : tiles) {
+            if (completed.get(tile.getIndex()) != 0) {
+                completedTiles.add(tile);
+            }
+        }
+
+        final Path temporaryFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream fileOutput = new FileOutputStream(temporaryFile.toFile())) {
+                final CRC32 checksum = new CRC32();
+                final DataOutputStream output = new DataOutputStream(
+                        new CheckedOutputStream(new BufferedOutputStream(fileOutput), checksum));
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(film.getNativeResolution().getFirst());
+                output.writeInt(film.getNativeResolution().getSecond());
+                output.writeInt(tiles.size());
+                output.writeInt(completedTiles.size());
+                for (Tile tile : completedTiles) {
+                    output.writeInt(tile.getIndex());
+                    film.writeRegion(tile, output);
+                }
+                output.flush();
+                output.writeLong(checksum.getValue());
+                output.flush();
+                fileOutput.getFD().sync();
+            }
+            Files.move(temporaryFile, checkpointFile,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.debug("Saved checkpoint with {} of {} tiles in {}", completedTiles.size(), tiles.size(), stopwatch);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to save checkpoint " + checkpointFile, e);
+        }
+    }
+
+    /**
+     * Add the tiles of an existing checkpoint to the film and mark them as completed. The whole checkpoint is verified
+     * before anything is added, so an unusable checkpoint leaves the film unchanged.
+     */
+    private void restoreCheckpoint(ImageFile film, List<Tile> tiles, AtomicIntegerArray completed) {
+        if (!Files.exists(checkpointFile)) {
+            LOGGER.warn("No checkpoint {} to resume from, rendering everything", checkpointFile);
+            return;
+        }
+        try {
+            final byte[] data = Files.readAllBytes(checkpointFile);
+            if (data.length < TRAILER_BYTES) {
+                throw new IOException("Truncated checkpoint");
+            }
+            final CRC32 checksum = new CRC32();
+            checksum.update(data, 0, data.length - TRAILER_BYTES);
+            final DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+            input.skipBytes(data.length - TRAILER_BYTES);
+            if (input.readLong() != checksum.getValue()) {
+                throw new IOException("Checksum mismatch");
+            }
+
+            // validate the structure first, then add the tiles
+            input.reset();
+            final int completedCount = readHeader(input, film, tiles);
+            final boolean[] contained = new boolean[tiles.size()];
+            for (int i = 0; i < completedCount; i++) {
+                final int index = input.readInt();
+                if (index < 0 || index >= tiles.size() || contained[index]) {
+                    throw new IOException("Invalid tile index: " + index);
+                }
+                contained[index] = true;
+                input.skipBytes(tiles.get(index).getPixelCount() * ImageFile.BYTES_PER_PIXEL);
+            }
+            if (input.available() != TRAILER_BYTES) {
+                throw new IOException("Invalid checkpoint length");
+            }
+
+            input.reset();
+            readHeader(input, film, tiles);
+            for (int i = 0; i < completedCount; i++) {
+                final int index = input.readInt();
+                film.addRegion(tiles.get(index), input);
+                completed.set(index, 1);
+            }
+            LOGGER.info("Resumed {} of {} tiles from checkpoint {}", completedCount, tiles.size(), checkpointFile);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to resume from checkpoint " + checkpointFile + ", rendering everything", e);
+        }
+    }
+
+    private static int readHeader(DataInputStream input, ImageFile film, List<Tile> tiles) throws IOException {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            throw new IOException("Not a checkpoint");
+        }
+        if (input.readInt() != film.getNativeResolution().getFirst()
+                || input.readInt() != film.getNativeResolution().getSecond()
+                || input.readInt() != tiles.size()) {
+            throw new IOException("Checkpoint of a different film or tile size");
+        }
+        final int completedCount = input.readInt();
+        if (completedCount < 0 || completedCount > tiles.size()) {
+            throw new IOException("Invalid number of tiles: " + completedCount);
+        }
+        return completedCount;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("checkpointFile", checkpointFile)
+                .add("interval", interval).toString();
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.cameras;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.api.Scene;
+import yaphyre.core.films.ImageFile;
+import yaphyre.core.math.Point2D;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Renders a camera progressively: instead of rendering a fixed number of samples per pixel, passes of samples are
+ * rendered one after the other until either the time budget is used up or the image has converged. Each pass shifts
+ * the samples of the camera sampler by a different offset (a Cranley-Patterson rotation along the R2 low discrepancy
+ * sequence), so the samples of successive passes fill the pixels evenly.<br/>
+ * The {@link ImageFile} records the running mean and variance of each pixel. After each pass, the noise of the image
+ * is estimated as the root mean square of the relative errors of all pixels (see
+ * {@link ImageFile#getRelativeError(int, int)}).<br/>
+ * While rendering, the current state of the film is handed to a preview consumer at a configurable interval, e.g.
+ * to write intermediate images.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class ProgressiveRenderer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProgressiveRenderer.class);
+
+    /**
+     * The noise cannot be estimated with less passes.
+     */
+    private static final int MIN_PASSES = 2;
+
+    /**
+     * The plastic number, generating the R2 sequence.
+     */
+    private static final double PLASTIC_NUMBER = 1.32471795724474602596d;
+    private static final double R2_U = 1d / PLASTIC_NUMBER;
+    private static final double R2_V = 1d / (PLASTIC_NUMBER * PLASTIC_NUMBER);
+
+    private final Duration timeBudget;
+    private final double noiseThreshold;
+    private final Duration previewInterval;
+    private final int maxPasses;
+
+    /**
+     * Create a progressive renderer.
+     *
+     * @param timeBudget      The maximum time to render. No pass is started which is not expected to finish in time.
+     * @param noiseThreshold  The estimated noise below which the rendering stops. Use 0 to render for the whole time
+     *                        budget.
+     * @param previewInterval The minimal time between two previews.
+     * @param maxPasses       The maximum number of passes to render.
+     */
+    public ProgressiveRenderer(@Nonnull Duration timeBudget, @Nonnegative double noiseThreshold,
+                               @Nonnull Duration previewInterval, @Nonnegative int maxPasses) {
+        checkArgument(!timeBudget.isNegative(), "the time budget must not be negative");
+        checkArgument(noiseThreshold >= 0d, "the noise threshold must not be negative");
+        checkArgument(!previewInterval.isNegative(), "the preview interval must not be negative");
+        checkArgument(maxPasses > 0, "the maximum number of passes must be positive");
+        this.timeBudget = timeBudget;
+        this.noiseThreshold = noiseThreshold;
+        this.previewInterval = previewInterval;
+        this.maxPasses = maxPasses;
+    }
+
+    /**
+     * Render the scene progressively. At least one pass is always rendered.
+     *
+     * @param camera          The camera to render. Its film must be an {@link ImageFile}.
+     * @param scene           The {@link Scene} to render.
+     * @param previewConsumer Called with the film of the camera whenever the preview interval has passed since the
+     *                        last preview. It is not called for the final image.
+     * @return The number of passes rendered.
+     */
+    public int render(@Nonnull AbstractCamera camera, @Nonnull Scene scene,
+                      @Nonnull Consumer<ImageFile> previewConsumer) {
+        checkArgument(camera.getFilm() instanceof ImageFile, "progressive rendering needs an image file as film");
+        final ImageFile imageFile = (ImageFile) camera.getFilm();
+
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final long budgetNanos = timeBudget.toNanos();
+        long lastPreviewNanos = 0;
+        long lastPassNanos = 0;
+
+        int pass = 0;
+        while (true) {
+            camera.renderPass(scene, getSampleOffset(pass));
+            pass++;
+
+            final long elapsedNanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+            final long passNanos = elapsedNanos - lastPassNanos;
+            lastPassNanos = elapsedNanos;
+
+            if (pass >= MIN_PASSES) {
+                final double noise = estimateNoise(imageFile);
+                LOGGER.debug("Pass {} finished after {}, estimated noise: {}", pass, stopwatch, noise);
+                if (noise <= noiseThreshold) {
+                    LOGGER.info("Converged after {} passes in {}", pass, stopwatch);
+                    break;
+                }
+            }
+            if (pass >= maxPasses) {
+                LOGGER.info("Rendered the maximum of {} passes in {}", pass, stopwatch);
+                break;
+            }
+            if (elapsedNanos + passNanos > budgetNanos) {
+                LOGGER.info("Time budget used up after {} passes in {}", pass, stopwatch);
+                break;
+            }
+            if (elapsedNanos - lastPreviewNanos >= previewInterval.toNanos()) {
+                previewConsumer.accept(imageFile);
+                lastPreviewNanos = elapsedNanos;
+            }
+        }
+
+        return pass;
+    }
+
+    /**
+     * The offset of the samples for the given pass. The first pass uses the samples as they are.
+     */
+    @Nonnull
+    static Point2D getSampleOffset(@Nonnegative int pass) {
+        if (pass == 0) {
+            return Point2D.ZERO;
+        }
+        final double u = pass * R2_U;
+        final double v = pass * R2_V;
+        return new Point2D(u - Math.floor(u), v - Math.floor(v));
+    }
+
+    /**
+     * Estimate the noise of the image as root mean square of the relative standard errors of its pixels.
+     */
+    static double estimateNoise(@Nonnull ImageFile imageFile) {
+        final int xResolution = imageFile.getNativeResolution().getFirst();
+        final int yResolution = imageFile.getNativeResolution().getSecond();
+        double sum = 0d;
+        for (int y = 0; y < yResolution; y++) {
+            for (int x = 0; x < xResolution; x++) {
+                final double error = imageFile.getRelativeError(x, y);
+                sum += error * error;
+            }
+        }
+        return Math.sqrt(sum / (xResolution * yResolution));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("timeBudget", timeBudget)
+                .add("noiseThreshold", noiseThreshold)
+                .add("previewInterval", previewInterval)
+                .add("maxPasses", maxPasses).toString();
+    }
+
+}
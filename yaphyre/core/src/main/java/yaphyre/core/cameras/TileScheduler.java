@@ -0,0 +1,204 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package yaphyre.core.cameras;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.api.Tile;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Splits a film into rectangular {@link Tile}s (buckets) and renders them in parallel on a {@link ForkJoinPool}. The
+ * list of tiles is recursively split in halves, so idle worker threads steal the remaining halves of busy threads.
+ * This keeps all cores busy even if some tiles are much more expensive to render than others.<br/>
+ * A scheduler with a given number of threads keeps its own pool for all the passes it renders, so the worker threads
+ * stay warm between the passes of progressive and adaptive rendering. The pool is shut down by {@link #close()}. The
+ * default scheduler renders on the {@link ForkJoinPool#commonPool() common pool} and does not need to be closed. A
+ * scheduler with a single thread renders all tiles on the calling thread, which is useful for debugging.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class TileScheduler implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TileScheduler.class);
+
+    /**
+     * Default edge length of a tile in pixels.
+     */
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    private final int numberOfThreads;
+    private final int tileSize;
+
+    /**
+     * The pool rendering the tiles or <code>null</code> if they are rendered on the calling thread.
+     */
+    @Nullable
+    private final ForkJoinPool renderPool;
+
+    /**
+     * Creates a scheduler using the common pool, which uses all available processors, and the default tile size.
+     */
+    public TileScheduler() {
+        numberOfThreads = Runtime.getRuntime().availableProcessors();
+        tileSize = DEFAULT_TILE_SIZE;
+        renderPool = numberOfThreads > 1 ? ForkJoinPool.commonPool() : null;
+    }
+
+    /**
+     * Creates a scheduler with the given number of render threads and tile size.
+     *
+     * @param numberOfThreads The number of threads rendering tiles concurrently. Must be positive.
+     * @param tileSize        The edge length of the (square) tiles in pixels. Must be positive.
+     */
+    public TileScheduler(@Nonnegative int numberOfThreads, @Nonnegative int tileSize) {
+        checkArgument(numberOfThreads > 0, "the number of threads must be positive");
+        checkArgument(tileSize > 0, "the tile size must be positive");
+        this.numberOfThreads = numberOfThreads;
+        this.tileSize = tileSize;
+        // the worker threads are only started once the first tiles are rendered
+        renderPool = numberOfThreads > 1 ? new ForkJoinPool(numberOfThreads) : null;
+    }
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Splits a film of the given resolution into tiles. The tiles are ordered row by row, starting at the film
+     * coordinates 0/0. Tiles at the right and top border may be smaller than the configured tile size.
+     *
+     * @param xResolution The horizontal resolution of the film.
+     * @param yResolution The vertical resolution of the film.
+     * @return An unmodifiable list of tiles covering each pixel exactly once.
+     */
+    @Nonnull
+    public List<Tile> createTiles(@Nonnegative int xResolution, @Nonnegative int yResolution) {
+        return createTiles(new Tile(0, 0, 0, xResolution, yResolution));
+    }
+
+    /**
+     * Splits a region of a film into tiles. The tiles are ordered row by row, starting at the lower left corner of the
+     * region, and use film coordinates. Tiles at the right and top border of the region may be smaller than the
+     * configured tile size.
+     *
+     * @param region The region to split.
+     * @return An unmodifiable list of tiles covering each pixel of the region exactly once.
+     */
+    @Nonnull
+    public List<Tile> createTiles(@Nonnull Tile region) {
+        final List<Tile> tiles = new ArrayList<>();
+        for (int yStart = region.getYStart(); yStart < region.getYEnd(); yStart += tileSize) {
+            for (int xStart = region.getXStart(); xStart < region.getXEnd(); xStart += tileSize) {
+                tiles.add(new Tile(tiles.size(), xStart, yStart,
+                        Math.min(xStart + tileSize, region.getXEnd()), Math.min(yStart + tileSize, region.getYEnd())));
+            }
+        }
+        return Collections.unmodifiableList(tiles);
+    }
+
+    /**
+     * Render all the given tiles. This method blocks until every tile is rendered. If the rendering of a tile fails,
+     * the exception is rethrown on the calling thread.
+     *
+     * @param tiles        The tiles to render.
+     * @param tileRenderer The function rendering a single tile. It is called exactly once per tile and may be called
+     *                     concurrently for different tiles.
+     */
+    public void renderTiles(@Nonnull List<Tile> tiles, @Nonnull Consumer<Tile> tileRenderer) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        if (renderPool == null || tiles.size() < 2) {
+            tiles.forEach(tileRenderer);
+        } else {
+            renderPool.invoke(new RenderTilesAction(tiles, 0, tiles.size(), tileRenderer));
+        }
+
+        LOGGER.debug("Rendered {} tiles using {} threads in {}", tiles.size(), numberOfThreads, stopwatch);
+    }
+
+    /**
+     * Shut down the pool of this scheduler. Tiles still being rendered are completed, but no new tiles may be rendered
+     * afterwards. The common pool used by the default scheduler is left untouched.
+     */
+    @Override
+    public void close() {
+        if (renderPool != null && renderPool != ForkJoinPool.commonPool()) {
+            renderPool.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("numberOfThreads", numberOfThreads)
+                .add("tileSize", tileSize).toString();
+    }
+
+    /**
+     * Renders a range of tiles. Ranges with more than one tile are split in halves, each of which is a separate task
+     * which may be stolen by an idle worker thread.
+     */
+    private static class RenderTilesAction extends RecursiveAction {
+
+        private static final long serialVersionUID = -2591863218425717306L;
+
+        private final List<Tile> tiles;
+        private final int start;
+        private final int end;
+        private final Consumer<Tile> tileRenderer;
+
+        private RenderTilesAction(List<Tile> tiles, int start, int end, Consumer<Tile> tileRenderer) {
+            this.tiles = tiles;
+            this.start = start;
+            this.end = end;
+            this.tileRenderer = tileRenderer;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                tileRenderer.accept(tiles.get(start));
+            } else {
+                final int middle = (start + end) >>> 1;
+                invokeAll(new RenderTilesAction(tiles, start, middle, tileRenderer),
+                        new RenderTilesAction(tiles, middle, end, tileRenderer));
+            }
+        }
+    }
+}
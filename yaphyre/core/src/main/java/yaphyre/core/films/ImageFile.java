@@ -16,27 +16,47 @@
 
 package yaphyre.core.films;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
 import org.apache.commons.math3.util.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import yaphyre.core.api.CameraSample;
 import yaphyre.core.api.Film;
+import yaphyre.core.api.Tile;
 import yaphyre.core.math.Color;
 import yaphyre.core.math.Point2D;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Collection;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 
 /**
  * Film implementation representing an image file. The resulting image can be saved to a file using
  * {@link #safeAsImage(String, yaphyre.core.films.ImageFile.ImageFormat, double)}. A public enumeration contains
- * all valid file formats.
+ * all valid file formats.<br/>
+ * The samples are not stored individually. Instead, the sum of the sample colors and the number of samples are
+ * accumulated per pixel in flat arrays, so the memory used is constant per pixel, regardless of the number of samples.
+ * The sums of the squared luminances are recorded as well, which allows to estimate the noise of each pixel without
+ * keeping the individual samples (see {@link #getVariance(int, int)}).
+ * No locking takes place: samples for different pixels may be added concurrently, but all the samples of one pixel
+ * must be added by the same thread. This is guaranteed by the tile based rendering of the cameras, where each pixel
+ * belongs to exactly one tile.<br/>
+ * The recorded data of a region can be transferred to another film with {@link #writeRegion(Tile, DataOutput)} and
+ * {@link #addRegion(Tile, DataInput)}, which allows to render the regions of a film in different processes.<br/>
+ * The high dynamic range formats (see {@link ImageFormat#isHighDynamicRange()}) are written scanline by scanline
+ * directly from the recorded sums, so the colors are neither clipped nor gamma corrected and no intermediate image is
+ * created.
  *
  * @author Michael Bieri
  * @since 27.07.13
@@ -45,16 +65,40 @@ public class ImageFile implements Film {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ImageFile.class);
 
-    private final Multimap<Point2D, Color> samples;
+    private static final int CHANNELS = 3;
+
+    /**
+     * Differences below one step of an 8 bit image are invisible, so errors of darker pixels are taken relative to
+     * this value.
+     */
+    private static final double MIN_RELEVANT_LUMINANCE = 1d / 255d;
+
+    /**
+     * The sums of the red, green and blue components of all samples, three values per pixel.
+     */
+    private final double[] colorSums;
+
+    /**
+     * The number of samples per pixel.
+     */
+    private final int[] sampleCounts;
+
+    /**
+     * The sums of the squared luminance of all samples, one value per pixel.
+     */
+    private final double[] luminanceSquareSums;
 
     private final int xResolution;
     private final int yResolution;
 
     public ImageFile(int xResolution, int yResolution) {
+        checkArgument(xResolution > 0 && yResolution > 0, "the resolution must be positive");
         this.xResolution = xResolution;
         this.yResolution = yResolution;
 
-        samples = ArrayListMultimap.create(xResolution * yResolution, 1);
+        colorSums = new double[xResolution * yResolution * CHANNELS];
+        sampleCounts = new int[xResolution * yResolution];
+        luminanceSquareSums = new double[xResolution * yResolution];
     }
 
     /**
@@ -62,9 +106,20 @@ public class ImageFile implements Film {
      *
      * @param filename The name of the file. This must contain the extension.
      * @param format   The format in which to save the file in. {@link ImageFormat}
-     * @param gamma    An optional gamma correction. If this value equals 1, no correction is applied.
+     * @param gamma    An optional gamma correction. If this value equals 1, no correction is applied. High dynamic
+     *                 range formats always contain the linear colors.
      */
     public void safeAsImage(String filename, ImageFormat format, double gamma) {
+        if (format.isHighDynamicRange()) {
+            try (FileChannel imageFileChannel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeImage(imageFileChannel, format);
+            } catch (IOException ioe) {
+                LOGGER.error("Could not write image file: '" + filename + "' with format: '" + format + "'", ioe);
+            }
+            return;
+        }
+
         BufferedImage bufferedImage = createImageFromSamples(gamma);
 
         try (FileOutputStream imageFileStream = new FileOutputStream(filename)) {
@@ -79,25 +134,51 @@ public class ImageFile implements Film {
 
         BufferedImage image = new BufferedImage(xResolution, yResolution, BufferedImage.TYPE_INT_RGB);
 
-        samples.asMap().entrySet()
-                .forEach(
-                        entry -> {
-
-                            Collection<Color> colorSamples = entry.getValue();
-                            Color sampleColor = colorSamples.stream().reduce(Color.BLACK, Color::add).multiply(1d / colorSamples.size());
-                            sampleColor = ((gamma != 1d) ? sampleColor.pow(gamma) : sampleColor).clip();
+        for (int y = 0; y < yResolution; y++) {
+            for (int x = 0; x < xResolution; x++) {
+                if (sampleCounts[pixelIndex(x, y)] == 0) {
+                    continue;
+                }
+                Color sampleColor = getColor(x, y);
+                sampleColor = ((gamma != 1d) ? sampleColor.pow(gamma) : sampleColor).clip();
 
-                            // flip the image camera: 0,0 is bottom left, BufferedImage: 0,0 is top left
-                            Point2D samplePoint = entry.getKey();
-                            int imageX = (int) samplePoint.getU();
-                            int imageY = (yResolution - 1) - ((int) samplePoint.getV());
+                // flip the image camera: 0,0 is bottom left, BufferedImage: 0,0 is top left
+                image.setRGB(x, (yResolution - 1) - y, createARGBfromColor(sampleColor));
+            }
+        }
 
-                            image.setRGB(imageX, imageY, createARGBfromColor(sampleColor));
+        return image;
+    }
 
-                        }
-                );
+    /**
+     * Writes the image represented by the recorded data in a high dynamic range format, one scanline after the other.
+     *
+     * @param channel The channel to write to. It is not closed.
+     * @param format  The format to write, which must be a high dynamic range format.
+     * @throws IOException If writing fails.
+     */
+    public void writeImage(@Nonnull WritableByteChannel channel, @Nonnull ImageFormat format) throws IOException {
+        checkArgument(format.isHighDynamicRange(), "%s is not a high dynamic range format", format);
+        format.scanlineWriter.write(this, channel);
+    }
 
-        return image;
+    /**
+     * Reads the average colors of one row of pixels (see {@link #getColor(int, int)}), without creating any colors.
+     *
+     * @param y        The y coordinate of the row (0 is bottom).
+     * @param scanline Receives the red, green and blue components of each pixel of the row, from left to right.
+     */
+    void readScanline(int y, @Nonnull float[] scanline) {
+        checkArgument(scanline.length == xResolution * CHANNELS, "the scanline must hold %s values",
+                xResolution * CHANNELS);
+        final int rowStart = pixelIndex(0, y);
+        for (int x = 0; x < xResolution; x++) {
+            final int sampleCount = sampleCounts[rowStart + x];
+            final double weight = sampleCount == 0 ? 0d : 1d / sampleCount;
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                scanline[x * CHANNELS + channel] = (float) (colorSums[(rowStart + x) * CHANNELS + channel] * weight);
+            }
+        }
     }
 
     private int createARGBfromColor(Color color) {
@@ -114,9 +195,159 @@ public class ImageFile implements Film {
         return new Pair<>(xResolution, yResolution);
     }
 
+    /**
+     * Records the given sample by adding its color to the sums of the pixel it belongs to. Samples for different
+     * pixels may be added concurrently.
+     */
     @Override
     public void addCameraSample(@Nonnull CameraSample sample) {
-        samples.put(sample.getSamplePoint(), sample.getSampleColor());
+        final Point2D samplePoint = sample.getSamplePoint();
+        final int pixel = pixelIndex((int) samplePoint.getU(), (int) samplePoint.getV());
+        final Color color = sample.getSampleColor();
+
+        colorSums[pixel * CHANNELS] += color.getRed();
+        colorSums[pixel * CHANNELS + 1] += color.getGreen();
+        colorSums[pixel * CHANNELS + 2] += color.getBlue();
+        final double luminance = luminance(color.getRed(), color.getGreen(), color.getBlue());
+        luminanceSquareSums[pixel] += luminance * luminance;
+        sampleCounts[pixel]++;
+    }
+
+    /**
+     * Gets the average color of all samples recorded for the given pixel.
+     *
+     * @param x The x coordinate of the pixel (0 is left).
+     * @param y The y coordinate of the pixel (0 is bottom).
+     * @return The average sample color or {@link Color#BLACK} if no samples were recorded for the pixel.
+     */
+    @Nonnull
+    public Color getColor(int x, int y) {
+        final int pixel = pixelIndex(x, y);
+        final int sampleCount = sampleCounts[pixel];
+        if (sampleCount == 0) {
+            return Color.BLACK;
+        }
+        final double weight = 1d / sampleCount;
+        return new Color(colorSums[pixel * CHANNELS] * weight,
+                colorSums[pixel * CHANNELS + 1] * weight,
+                colorSums[pixel * CHANNELS + 2] * weight);
+    }
+
+    /**
+     * Gets the number of samples recorded for the given pixel.
+     *
+     * @param x The x coordinate of the pixel (0 is left).
+     * @param y The y coordinate of the pixel (0 is bottom).
+     * @return The number of samples recorded for the pixel.
+     */
+    public int getSampleCount(int x, int y) {
+        return sampleCounts[pixelIndex(x, y)];
+    }
+
+    /**
+     * Gets the sample variance of the luminance of all samples recorded for the given pixel. The luminance is
+     * calculated with the Rec. 709 weights of the color components.
+     *
+     * @param x The x coordinate of the pixel (0 is left).
+     * @param y The y coordinate of the pixel (0 is bottom).
+     * @return The unbiased variance of the luminance, {@link Double#POSITIVE_INFINITY} if less than two samples were
+     * recorded for the pixel.
+     */
+    public double getVariance(int x, int y) {
+        final int pixel = pixelIndex(x, y);
+        final int sampleCount = sampleCounts[pixel];
+        if (sampleCount < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final double mean = luminance(colorSums[pixel * CHANNELS], colorSums[pixel * CHANNELS + 1],
+                colorSums[pixel * CHANNELS + 2]) / sampleCount;
+        final double variance = (luminanceSquareSums[pixel] - sampleCount * mean * mean) / (sampleCount - 1);
+        // rounding may produce slightly negative values for constant samples
+        return Math.max(variance, 0d);
+    }
+
+    /**
+     * Gets the luminance of the average color of the given pixel (see {@link #getVariance(int, int)}).
+     *
+     * @param x The x coordinate of the pixel (0 is left).
+     * @param y The y coordinate of the pixel (0 is bottom).
+     * @return The mean luminance or 0 if no samples were recorded for the pixel.
+     */
+    public double getLuminance(int x, int y) {
+        final Color color = getColor(x, y);
+        return luminance(color.getRed(), color.getGreen(), color.getBlue());
+    }
+
+    /**
+     * Gets the estimated relative error of the color of the given pixel: the standard error of the mean luminance
+     * divided by the mean luminance (or by one step of an 8 bit image for darker pixels).
+     *
+     * @param x The x coordinate of the pixel (0 is left).
+     * @param y The y coordinate of the pixel (0 is bottom).
+     * @return The relative standard error, {@link Double#POSITIVE_INFINITY} if less than two samples were recorded
+     * for the pixel.
+     */
+    public double getRelativeError(int x, int y) {
+        final double luminance = Math.max(getLuminance(x, y), MIN_RELEVANT_LUMINANCE);
+        return Math.sqrt(getVariance(x, y) / getSampleCount(x, y)) / luminance;
+    }
+
+    /**
+     * Number of bytes written by {@link #writeRegion(Tile, DataOutput)} per pixel.
+     */
+    public static final int BYTES_PER_PIXEL = (CHANNELS + 1) * Double.BYTES + Integer.BYTES;
+
+    /**
+     * Writes the recorded data of the pixels of a region: the sums of the colors and of the squared luminance and the
+     * number of samples. The pixels are written row by row, each using {@link #BYTES_PER_PIXEL} bytes.
+     *
+     * @param region The region to write.
+     * @param output The {@link DataOutput} to write to.
+     * @throws IOException If writing fails.
+     */
+    public void writeRegion(@Nonnull Tile region, @Nonnull DataOutput output) throws IOException {
+        for (int y = region.getYStart(); y < region.getYEnd(); y++) {
+            for (int x = region.getXStart(); x < region.getXEnd(); x++) {
+                final int pixel = pixelIndex(x, y);
+                output.writeDouble(colorSums[pixel * CHANNELS]);
+                output.writeDouble(colorSums[pixel * CHANNELS + 1]);
+                output.writeDouble(colorSums[pixel * CHANNELS + 2]);
+                output.writeDouble(luminanceSquareSums[pixel]);
+                output.writeInt(sampleCounts[pixel]);
+            }
+        }
+    }
+
+    /**
+     * Reads the data of a region written by {@link #writeRegion(Tile, DataOutput)} and adds it to the data recorded by
+     * this film, as if the samples had been added to this film directly. Like samples, different regions may be added
+     * concurrently.
+     *
+     * @param region The region to read. It must be the same as the written one.
+     * @param input  The {@link DataInput} to read from.
+     * @throws IOException If reading fails. The data of the region may be incomplete in this case.
+     */
+    public void addRegion(@Nonnull Tile region, @Nonnull DataInput input) throws IOException {
+        for (int y = region.getYStart(); y < region.getYEnd(); y++) {
+            for (int x = region.getXStart(); x < region.getXEnd(); x++) {
+                final int pixel = pixelIndex(x, y);
+                colorSums[pixel * CHANNELS] += input.readDouble();
+                colorSums[pixel * CHANNELS + 1] += input.readDouble();
+                colorSums[pixel * CHANNELS + 2] += input.readDouble();
+                luminanceSquareSums[pixel] += input.readDouble();
+                sampleCounts[pixel] += input.readInt();
+            }
+        }
+    }
+
+    private static double luminance(double red, double green, double blue) {
+        return 0.2126d * red + 0.7152d * green + 0.0722d * blue;
+    }
+
+    private int pixelIndex(int x, int y) {
+        checkElementIndex(x, xResolution, "x");
+        checkElementIndex(y, yResolution, "y");
+        return y * xResolution + x;
     }
 
     /**
@@ -127,18 +358,36 @@ public class ImageFile implements Film {
     public enum ImageFormat {
         GIF("gif"),
         JPEG("jpg"),
-        PNG("png"),;
+        PNG("png"),
+        PFM("pfm", new PortableFloatMapWriter()),
+        HDR("hdr", new RadianceHdrWriter()),
+        EXR("exr", new OpenExrWriter()),;
 
         private final String defaultFileExtension;
 
+        @Nullable
+        private final ScanlineImageWriter scanlineWriter;
+
         ImageFormat(String defaultFileExtension) {
+            this(defaultFileExtension, null);
+        }
+
+        ImageFormat(String defaultFileExtension, @Nullable ScanlineImageWriter scanlineWriter) {
             this.defaultFileExtension = defaultFileExtension;
+            this.scanlineWriter = scanlineWriter;
         }
 
         public String getDefaultFileExtension() {
             return defaultFileExtension;
         }
 
+        /**
+         * @return <code>true</code> if images of this format keep the linear, unclipped colors of the film.
+         */
+        public boolean isHighDynamicRange() {
+            return scanlineWriter != null;
+        }
+
     }
 
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.films;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes single part OpenEXR scanline files with uncompressed 32 bit float channels B, G and R. Each scanline is one
+ * chunk, so the chunks all have the same size and the offset table can be written before the scanlines, which allows
+ * to stream the image without seeking back. EXR scanlines are stored top to bottom, little endian.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+class OpenExrWriter implements ScanlineImageWriter {
+
+    private static final int MAGIC = 20000630;
+
+    /**
+     * Version 2, single part scanline file without long names.
+     */
+    private static final int VERSION = 2;
+
+    private static final int PIXEL_TYPE_FLOAT = 2;
+    private static final byte NO_COMPRESSION = 0;
+    private static final byte INCREASING_Y = 0;
+
+    /**
+     * The channels in the order required by the format.
+     */
+    private static final String[] CHANNELS = {"B", "G", "R"};
+
+    @Override
+    public void write(@Nonnull ImageFile film, @Nonnull WritableByteChannel channel) throws IOException {
+        final int xResolution = film.getNativeResolution().getFirst();
+        final int yResolution = film.getNativeResolution().getSecond();
+
+        final ByteBuffer header = createHeader(xResolution, yResolution);
+        final long chunkSize = 2 * Integer.BYTES + (long) xResolution * CHANNELS.length * Float.BYTES;
+        final long firstChunk = header.position() + (long) yResolution * Long.BYTES;
+        ScanlineImageWriter.writeFully(header, channel);
+
+        final ByteBuffer offsets = ByteBuffer.allocate(yResolution * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int line = 0; line < yResolution; line++) {
+            offsets.putLong(firstChunk + line * chunkSize);
+        }
+        ScanlineImageWriter.writeFully(offsets, channel);
+
+        final float[] scanline = new float[xResolution * 3];
+        final ByteBuffer buffer = ByteBuffer.allocate((int) chunkSize).order(ByteOrder.LITTLE_ENDIAN);
+        for (int line = 0; line < yResolution; line++) {
+            film.readScanline(yResolution - 1 - line, scanline);
+            buffer.putInt(line).putInt(xResolution * CHANNELS.length * Float.BYTES);
+            // blue, green and red, each for all the pixels of the line
+            for (int component = 2; component >= 0; component--) {
+                for (int x = 0; x < xResolution; x++) {
+                    buffer.putFloat(scanline[x * 3 + component]);
+                }
+            }
+            ScanlineImageWriter.writeFully(buffer, channel);
+        }
+    }
+
+    /**
+     * @return The buffer containing the header, positioned after its end.
+     */
+    private static ByteBuffer createHeader(int xResolution, int yResolution) {
+        final ByteBuffer header = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION);
+
+        startAttribute(header, "channels", "chlist", CHANNELS.length * 18 + 1);
+        for (String name : CHANNELS) {
+            putString(header, name);
+            // pixel type, linear flag, three reserved bytes, x and y sampling
+            header.putInt(PIXEL_TYPE_FLOAT).put(new byte[4]).putInt(1).putInt(1);
+        }
+        header.put((byte) 0);
+
+        startAttribute(header, "compression", "compression", 1);
+        header.put(NO_COMPRESSION);
+        startAttribute(header, "dataWindow", "box2i", 4 * Integer.BYTES);
+        header.putInt(0).putInt(0).putInt(xResolution - 1).putInt(yResolution - 1);
+        startAttribute(header, "displayWindow", "box2i", 4 * Integer.BYTES);
+        header.putInt(0).putInt(0).putInt(xResolution - 1).putInt(yResolution - 1);
+        startAttribute(header, "lineOrder", "lineOrder", 1);
+        header.put(INCREASING_Y);
+        startAttribute(header, "pixelAspectRatio", "float", Float.BYTES);
+        header.putFloat(1f);
+        startAttribute(header, "screenWindowCenter", "v2f", 2 * Float.BYTES);
+        header.putFloat(0f).putFloat(0f);
+        startAttribute(header, "screenWindowWidth", "float", Float.BYTES);
+        header.putFloat(1f);
+
+        // the end of the header
+        return header.put((byte) 0);
+    }
+
+    private static void startAttribute(ByteBuffer header, String name, String type, int size) {
+        putString(header, name);
+        putString(header, type);
+        header.putInt(size);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        buffer.put(value.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+    }
+
+}
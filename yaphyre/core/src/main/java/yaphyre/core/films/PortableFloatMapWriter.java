@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.films;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes Portable Float Maps (PFM): a short text header followed by the raw 32 bit floats of the red, green and blue
+ * components of each pixel. The scanlines are stored bottom to top, like the pixels of the film, and the negative
+ * scale in the header marks the floats as little endian.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+class PortableFloatMapWriter implements ScanlineImageWriter {
+
+    @Override
+    public void write(@Nonnull ImageFile film, @Nonnull WritableByteChannel channel) throws IOException {
+        final int xResolution = film.getNativeResolution().getFirst();
+        final int yResolution = film.getNativeResolution().getSecond();
+
+        final String header = String.format("PF\n%d %d\n-1.0\n", xResolution, yResolution);
+        final byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+        ScanlineImageWriter.writeFully(ByteBuffer.allocate(headerBytes.length).put(headerBytes), channel);
+
+        final float[] scanline = new float[xResolution * 3];
+        final ByteBuffer buffer = ByteBuffer.allocate(scanline.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y < yResolution; y++) {
+            film.readScanline(y, scanline);
+            buffer.asFloatBuffer().put(scanline);
+            buffer.position(scanline.length * Float.BYTES);
+            ScanlineImageWriter.writeFully(buffer, channel);
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.films;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes Radiance HDR (RGBE) files: each pixel is stored as three 8 bit mantissas sharing an 8 bit exponent. The
+ * scanlines are written top to bottom and, where the format allows it, run length encoded one component after the
+ * other (the "new" RLE scheme of the Radiance file format).
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+class RadianceHdrWriter implements ScanlineImageWriter {
+
+    private static final int MIN_ENCODED_WIDTH = 8;
+    private static final int MAX_ENCODED_WIDTH = 0x7fff;
+    private static final int MIN_RUN_LENGTH = 4;
+    private static final int MAX_RUN_LENGTH = 127;
+    private static final int MAX_DUMP_LENGTH = 128;
+
+    /**
+     * Colors below this value are stored as black.
+     */
+    private static final double MIN_VALUE = 1e-32;
+
+    @Override
+    public void write(@Nonnull ImageFile film, @Nonnull WritableByteChannel channel) throws IOException {
+        final int xResolution = film.getNativeResolution().getFirst();
+        final int yResolution = film.getNativeResolution().getSecond();
+
+        final String header = String.format("#?RADIANCE\nFORMAT=32-bit_rle_rgbe\n\n-Y %d +X %d\n",
+                yResolution, xResolution);
+        final byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+        ScanlineImageWriter.writeFully(ByteBuffer.allocate(headerBytes.length).put(headerBytes), channel);
+
+        final boolean encoded = xResolution >= MIN_ENCODED_WIDTH && xResolution <= MAX_ENCODED_WIDTH;
+        final float[] scanline = new float[xResolution * 3];
+        final byte[][] components = new byte[4][xResolution];
+        // the run length encoding never needs more than one extra byte per 128 bytes
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + xResolution * 4 + 4 * (xResolution / MAX_DUMP_LENGTH + 1));
+        for (int y = yResolution - 1; y >= 0; y--) {
+            film.readScanline(y, scanline);
+            for (int x = 0; x < xResolution; x++) {
+                toRgbe(scanline[x * 3], scanline[x * 3 + 1], scanline[x * 3 + 2], components, x);
+            }
+            if (encoded) {
+                buffer.put((byte) 2).put((byte) 2).put((byte) (xResolution >> 8)).put((byte) xResolution);
+                for (byte[] component : components) {
+                    encode(component, buffer);
+                }
+            } else {
+                for (int x = 0; x < xResolution; x++) {
+                    buffer.put(components[0][x]).put(components[1][x]).put(components[2][x]).put(components[3][x]);
+                }
+            }
+            ScanlineImageWriter.writeFully(buffer, channel);
+        }
+    }
+
+    private static void toRgbe(double red, double green, double blue, byte[][] components, int x) {
+        final double max = Math.max(red, Math.max(green, blue));
+        if (max < MIN_VALUE) {
+            components[0][x] = components[1][x] = components[2][x] = components[3][x] = 0;
+            return;
+        }
+        // max = mantissa * 2^exponent with the mantissa within [0.5, 1)
+        final int exponent = Math.getExponent(max) + 1;
+        final double scale = Math.scalb(256d, -exponent);
+        components[0][x] = (byte) (Math.max(red, 0d) * scale);
+        components[1][x] = (byte) (Math.max(green, 0d) * scale);
+        components[2][x] = (byte) (Math.max(blue, 0d) * scale);
+        components[3][x] = (byte) (exponent + 128);
+    }
+
+    /**
+     * Run length encode one component of a scanline. Runs of at least {@link #MIN_RUN_LENGTH} equal bytes are stored
+     * as count (above 128) and value, everything else is dumped as count and bytes.
+     */
+    private static void encode(byte[] data, ByteBuffer buffer) {
+        int current = 0;
+        while (current < data.length) {
+            // find the next run which is long enough
+            int runStart = current;
+            int runLength = 0;
+            int previousRunLength = 0;
+            while (runLength < MIN_RUN_LENGTH && runStart < data.length) {
+                runStart += runLength;
+                previousRunLength = runLength;
+                runLength = 1;
+                while (runStart + runLength < data.length && runLength < MAX_RUN_LENGTH
+                        && data[runStart] == data[runStart + runLength]) {
+                    runLength++;
+                }
+            }
+            // a short run directly before the long one is cheaper as run as well
+            if (previousRunLength > 1 && previousRunLength == runStart - current) {
+                buffer.put((byte) (128 + previousRunLength)).put(data[current]);
+                current = runStart;
+            }
+            while (current < runStart) {
+                final int dumpLength = Math.min(MAX_DUMP_LENGTH, runStart - current);
+                buffer.put((byte) dumpLength).put(data, current, dumpLength);
+                current += dumpLength;
+            }
+            if (runLength >= MIN_RUN_LENGTH) {
+                buffer.put((byte) (128 + runLength)).put(data[runStart]);
+                current += runLength;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.films;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes the linear colors of an {@link ImageFile} to a channel in a high dynamic range format. The image is written
+ * scanline by scanline from the recorded sums of the film, so only one scanline is held in memory at a time.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+interface ScanlineImageWriter {
+
+    void write(@Nonnull ImageFile film, @Nonnull WritableByteChannel channel) throws IOException;
+
+    /**
+     * Write the remaining bytes of the buffer and clear it for the next scanline.
+     */
+    static void writeFully(@Nonnull ByteBuffer buffer, @Nonnull WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
@@ -23,14 +23,19 @@ import javax.annotation.Nonnull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Shape;
 import yaphyre.core.math.Color;
 import yaphyre.core.math.Point3D;
 import yaphyre.core.math.Ray;
+import yaphyre.core.statistics.RenderStatistics;
 
 /**
  * Point light implementation. A mathematical (delta) light source having no physical size and sending an
- * equal amount of light in all directions.
+ * equal amount of light in all directions.<br/>
+ * Each render thread remembers the shape which blocked its last shadow ray towards this light. Neighbouring shadow
+ * rays are very likely blocked by the same shape, so it is tested first, before the whole scene is searched. The
+ * remembered shape is forgotten as soon as shapes of the scene are replaced (see {@link Scene#getRevision()}).
  *
  * @author Michael Bieri
  * @since 08.07.13
@@ -41,6 +46,8 @@ public class PointLight extends AbstractLight {
 
     private final Point3D position;
 
+    private final ThreadLocal<Occluder> lastOccluder = ThreadLocal.withInitial(Occluder::new);
+
     public PointLight(double power, Color color, Point3D position) {
         super(power, color);
         this.position = position;
@@ -62,19 +69,34 @@ public class PointLight extends AbstractLight {
     @Override
     @Nonnull
     public Color calculateIntensityForShadowRay(@Nonnull Ray shadowRay) {
-        Optional<CollisionInformation> collisionInformationOptional = getScene().hitObjectForShadowRay(shadowRay);
+        if (isOccluded(shadowRay)) {
+            return Color.BLACK;
+        }
+        return getColor().multiply(calculateIntensityForDistance(getPosition().sub(shadowRay.getOrigin()).length()));
+    }
 
-        if (LOGGER.isTraceEnabled() && collisionInformationOptional.isPresent()) {
-            LOGGER.trace("shadowRay collision: {}", collisionInformationOptional);
+    /**
+     * Check if the shadow ray is blocked, trying the last occluder of the current thread first. The occluder is kept
+     * if the shadow ray is not blocked at all, since the next shadow ray may well be blocked by it again.
+     */
+    private boolean isOccluded(@Nonnull Ray shadowRay) {
+        RenderStatistics.countRays(RenderStatistics.RayType.SHADOW, 1);
+        final Scene scene = getScene();
+        final Occluder cachedOccluder = lastOccluder.get();
+        if (cachedOccluder.shape != null && cachedOccluder.sceneRevision == scene.getRevision()
+                && cachedOccluder.shape.occluded(shadowRay)) {
+            return true;
         }
 
-        return collisionInformationOptional
-                .map(
-                        coll -> Color.BLACK
-                )
-                .orElseGet(
-                        () -> getColor().multiply(calculateIntensityForDistance(getPosition().sub(shadowRay.getOrigin()).length()))
-                );
+        final int sceneRevision = scene.getRevision();
+        final Optional<Shape> occluder = scene.findOccluder(shadowRay);
+        if (occluder.isPresent()) {
+            LOGGER.trace("shadowRay occluded by: {}", occluder.get());
+            cachedOccluder.shape = occluder.get();
+            cachedOccluder.sceneRevision = sceneRevision;
+            return true;
+        }
+        return false;
     }
 
     @Nonnegative
@@ -82,4 +104,13 @@ public class PointLight extends AbstractLight {
         return attenuationForDistance(distance) * getPower();
     }
 
+    /**
+     * The last occluder found by a thread, updated in place.
+     */
+    private static class Occluder {
+
+        private Shape shape;
+        private int sceneRevision;
+    }
+
 }
@@ -59,6 +59,11 @@ public class BoundingBox implements Serializable {
             return true;
         }
 
+        @Override
+        public boolean isBounded() {
+            return false;
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj == this;
@@ -110,6 +115,18 @@ public class BoundingBox implements Serializable {
         return pointMax;
     }
 
+    /**
+     * Checks if this box has a finite extent along all the axes. Shapes without finite bounds, like infinite planes,
+     * cannot be put into a spatial index, since their boxes would enclose everything else.
+     *
+     * @return <code>true</code> if all the coordinates of this box are finite.
+     */
+    public boolean isBounded() {
+        return Double.isFinite(pointMin.getX()) && Double.isFinite(pointMin.getY()) && Double.isFinite(pointMin.getZ())
+                && Double.isFinite(pointMax.getX()) && Double.isFinite(pointMax.getY())
+                && Double.isFinite(pointMax.getZ());
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(getClass()).add("pMin", pointMin).add("pMax", pointMax).toString();
@@ -22,9 +22,6 @@ import javax.annotation.concurrent.Immutable;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 
-import static com.google.common.primitives.Doubles.max;
-import static com.google.common.primitives.Doubles.min;
-
 /**
  * Represents a color by its three components of red, green and blue with a value between zero and one. Each instance
  * of {@link yaphyre.math.Color} is immutable. Some simple operations are provided as for example adding two color, multiplying
@@ -171,7 +168,7 @@ public class Color implements Serializable {
      * @return A new instance of {@link yaphyre.math.Color} with the scaled values.
      */
     public Color rescale() {
-        double maxValue = max(red, green, blue);
+        double maxValue = MathUtils.max(red, green, blue);
         if (maxValue > Double.MIN_VALUE) {
             return multiply(1 / maxValue);
         }
@@ -179,7 +176,7 @@ public class Color implements Serializable {
     }
 
     private static double clipValue(double value) {
-        return max(0d, min(1d, value));
+        return Math.max(0d, Math.min(1d, value));
     }
 
     /**
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.math;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Mutable accumulator for {@link Color} values. Summing up the contributions of many light sources with
+ * {@link Color#add(Color)} creates a new instance for each step. This accumulator keeps the running sum in primitive
+ * fields instead and creates a single {@link Color} at the end using {@link #toColor()}.<br/>
+ * Instances must not be shared between threads.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@NotThreadSafe
+public class ColorAccumulator {
+
+    private double red;
+    private double green;
+    private double blue;
+
+    /**
+     * Creates a new accumulator initialized to black.
+     */
+    public ColorAccumulator() {
+        reset();
+    }
+
+    @Nonnull
+    public ColorAccumulator reset() {
+        red = 0d;
+        green = 0d;
+        blue = 0d;
+        return this;
+    }
+
+    @Nonnull
+    public ColorAccumulator add(@Nonnull Color color) {
+        red += color.getRed();
+        green += color.getGreen();
+        blue += color.getBlue();
+        return this;
+    }
+
+    /**
+     * Add the given color multiplied by a factor: <code>this += color * factor</code>.
+     */
+    @Nonnull
+    public ColorAccumulator addScaled(@Nonnull Color color, double factor) {
+        red += color.getRed() * factor;
+        green += color.getGreen() * factor;
+        blue += color.getBlue() * factor;
+        return this;
+    }
+
+    @Nonnull
+    public ColorAccumulator multiply(@Nonnull Color color) {
+        red *= color.getRed();
+        green *= color.getGreen();
+        blue *= color.getBlue();
+        return this;
+    }
+
+    @Nonnull
+    public ColorAccumulator multiply(double factor) {
+        red *= factor;
+        green *= factor;
+        blue *= factor;
+        return this;
+    }
+
+    public double getRed() {
+        return red;
+    }
+
+    public double getGreen() {
+        return green;
+    }
+
+    public double getBlue() {
+        return blue;
+    }
+
+    /**
+     * Creates an immutable {@link Color} from the accumulated values.
+     */
+    @Nonnull
+    public Color toColor() {
+        return new Color(red, green, blue);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("red", red).add("green", green).add("blue", blue).toString();
+    }
+
+}
@@ -171,12 +171,14 @@ public class Matrix implements Serializable {
 
     public Matrix transpose() {
         if (transposed == null) {
-            transposed = new Matrix();
+            // fill the values before publishing the instance: matrices are shared between render threads
+            final double[][] values = new double[DIMENSION][DIMENSION];
             for (int row = 0; row < DIMENSION; row++) {
                 for (int col = 0; col < DIMENSION; col++) {
-                    transposed.m[row][col] = m[col][row];
+                    values[row][col] = m[col][row];
                 }
             }
+            transposed = new Matrix(values);
         }
         return transposed;
     }
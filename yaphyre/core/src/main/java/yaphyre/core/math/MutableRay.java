@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.math;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Mutable counterpart of {@link Ray} for the hot paths of the renderer. The origin, the direction and the range of
+ * valid distances are stored as primitive fields, so a single instance can be reused as scratch buffer for any number
+ * of rays. For example, shapes transform a world space {@link Ray} into their object space using
+ * {@link Transformation#transform(Ray, MutableRay)} without creating any intermediate objects.<br/>
+ * Instances must not be shared between threads.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@NotThreadSafe
+@SuppressWarnings("PackageVisibleField")
+public class MutableRay {
+
+    double ox, oy, oz;
+    double dx, dy, dz;
+    double tMin, tMax;
+
+    /**
+     * Create a ray starting at the origin, pointing along the y axis and having the same default range as a
+     * {@link Ray}.
+     */
+    public MutableRay() {
+        set(0, 0, 0, 0, 1, 0, MathUtils.EPSILON, Double.MAX_VALUE);
+    }
+
+    public MutableRay(@Nonnull Ray ray) {
+        set(ray);
+    }
+
+    @Nonnull
+    public MutableRay set(double ox, double oy, double oz, double dx, double dy, double dz, double tMin, double tMax) {
+        this.ox = ox;
+        this.oy = oy;
+        this.oz = oz;
+        this.dx = dx;
+        this.dy = dy;
+        this.dz = dz;
+        this.tMin = tMin;
+        this.tMax = tMax;
+        return this;
+    }
+
+    @Nonnull
+    public MutableRay set(@Nonnull Ray ray) {
+        final Point3D origin = ray.getOrigin();
+        final Vector3D direction = ray.getDirection();
+        return set(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, ray.getTMin(), ray.getTMax());
+    }
+
+    public double getOriginX() {
+        return ox;
+    }
+
+    public double getOriginY() {
+        return oy;
+    }
+
+    public double getOriginZ() {
+        return oz;
+    }
+
+    public double getDirectionX() {
+        return dx;
+    }
+
+    public double getDirectionY() {
+        return dy;
+    }
+
+    public double getDirectionZ() {
+        return dz;
+    }
+
+    public double getTMin() {
+        return tMin;
+    }
+
+    public double getTMax() {
+        return tMax;
+    }
+
+    public void setTMax(double tMax) {
+        this.tMax = tMax;
+    }
+
+    /**
+     * Checks if the given distance lies within the (closed) range of valid distances of this ray.
+     *
+     * @param distance The distance to check.
+     * @return <code>true</code> if <code>tMin &le; distance &le; tMax</code>.
+     */
+    public boolean isInRange(double distance) {
+        return tMin <= distance && distance <= tMax;
+    }
+
+    /**
+     * Calculates the point at the given distance. Unlike the other methods, this creates a new instance.
+     *
+     * @param distance The distance along the ray.
+     * @return The point <code>origin + distance * direction</code>.
+     */
+    @Nonnull
+    public Point3D getPoint(double distance) {
+        return new Point3D(ox + distance * dx, oy + distance * dy, oz + distance * dz);
+    }
+
+    /**
+     * Creates an immutable {@link Ray} with the current values of this instance.
+     */
+    @Nonnull
+    public Ray toRay() {
+        return new Ray(new Point3D(ox, oy, oz), new Vector3D(dx, dy, dz), tMin, tMax);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("origin", new double[]{ox, oy, oz})
+                .add("direction", new double[]{dx, dy, dz})
+                .add("tMin", tMin)
+                .add("tMax", tMax).toString();
+    }
+
+}
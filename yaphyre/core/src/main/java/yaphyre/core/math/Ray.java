@@ -22,6 +22,7 @@ import javax.annotation.concurrent.Immutable;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Range;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static yaphyre.core.math.MathUtils.EPSILON;
 
 
@@ -32,6 +33,8 @@ import static yaphyre.core.math.MathUtils.EPSILON;
  * <pre>
  * p(distance) = origin + distance * direction
  * </pre>
+ * The valid range of the distance is stored as two primitive values, so checking a distance does not box any values.
+ * For calculations which must not create any garbage at all, see {@link MutableRay}.
  *
  * @author Michael Bieri
  * @author $LastChangedBy: mike0041@gmail.com $
@@ -46,22 +49,26 @@ public class Ray implements Serializable {
 
     private final Vector3D direction;
 
-    private final Range<Double> tRange;
+    private final double tMin;
+
+    private final double tMax;
 
     public Ray(Point3D origin, Vector3D direction) {
         this(origin, direction, EPSILON, Double.MAX_VALUE);
     }
 
     public Ray(Point3D origin, Vector3D direction, double tmin, double tmax) {
+        checkArgument(tmin <= tmax, "tmin must not be greater than tmax");
         this.origin = origin;
         this.direction = direction;
-        this.tRange = Range.closed(tmin, tmax);
+        this.tMin = tmin;
+        this.tMax = tmax;
     }
 
     public Ray(Point3D origin, Vector3D direction, Range<Double> tRange) {
-        this.origin = origin;
-        this.direction = direction;
-        this.tRange = tRange;
+        this(origin, direction,
+                tRange.hasLowerBound() ? tRange.lowerEndpoint() : Double.NEGATIVE_INFINITY,
+                tRange.hasUpperBound() ? tRange.upperEndpoint() : Double.POSITIVE_INFINITY);
     }
 
     public Ray(double ox, double oy, double oz, double dx, double dy, double dz, double tmin, double tmax) {
@@ -79,7 +86,10 @@ public class Ray implements Serializable {
         int result = 1;
         result = prime * result + direction.hashCode();
         result = prime * result + origin.hashCode();
-        result = prime * result + tRange.hashCode();
+        long temp = Double.doubleToLongBits(tMin);
+        result = prime * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(tMax);
+        result = prime * result + (int) (temp ^ (temp >>> 32));
         return result;
     }
 
@@ -98,14 +108,13 @@ public class Ray implements Serializable {
         if (!origin.equals(other.origin)) {
             return false;
         }
-        if (!tRange.equals(other.tRange)) {
-            return false;
-        }
-        return true;
+        return Double.compare(tMin, other.tMin) == 0 && Double.compare(tMax, other.tMax) == 0;
     }
 
     public Point3D getPoint(double distance) {
-        return origin.add(direction.scale(distance));
+        return new Point3D(origin.x + distance * direction.x,
+                origin.y + distance * direction.y,
+                origin.z + distance * direction.z);
     }
 
     public Point3D getOrigin() {
@@ -116,8 +125,33 @@ public class Ray implements Serializable {
         return direction;
     }
 
+    public double getTMin() {
+        return tMin;
+    }
+
+    public double getTMax() {
+        return tMax;
+    }
+
+    /**
+     * Checks if the given distance lies within the (closed) range of valid distances of this ray.
+     *
+     * @param distance The distance to check.
+     * @return <code>true</code> if <code>tMin &le; distance &le; tMax</code>.
+     */
+    public boolean isInRange(double distance) {
+        return tMin <= distance && distance <= tMax;
+    }
+
+    /**
+     * Gets the range of valid distances as a {@link Range}. This creates a new instance with boxed values on each
+     * call, so prefer {@link #getTMin()}, {@link #getTMax()} and {@link #isInRange(double)} in performance critical
+     * code.
+     *
+     * @return The closed range [tMin, tMax].
+     */
     public Range<Double> getTRange() {
-        return tRange;
+        return Range.closed(tMin, tMax);
     }
 
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.math;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.google.common.base.MoreObjects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A bundle of up to {@link #MAX_SIZE} rays, traced together. The components of the rays are stored in structure of
+ * arrays layout: one array per component with one entry per ray (a lane). Loops over the lanes of a packet therefore
+ * access memory sequentially and can be vectorized by the JIT, and an acceleration structure can test all the rays of
+ * a packet against a node while loading the node only once.<br/>
+ * The upper limits of the ranges are updated while the packet is traced, so they always contain the distance of the
+ * nearest hit found so far. The original {@link Ray}s are kept, since the collision information refers to them.<br/>
+ * Like the masks of vector instructions, a bit mask selects the active lanes. Acceleration structures deactivate the
+ * lanes which miss a shape before intersecting it with the packet, so shapes only have to handle the active lanes.
+ * All the lanes added are active.<br/>
+ * Like {@link MutableRay}, instances are meant to be reused and must not be shared between threads.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+@NotThreadSafe
+@SuppressWarnings("PackageVisibleField")
+public class RayPacket {
+
+    /**
+     * The maximum number of rays in a packet.
+     */
+    public static final int MAX_SIZE = 16;
+
+    final double[] ox;
+    final double[] oy;
+    final double[] oz;
+    final double[] dx;
+    final double[] dy;
+    final double[] dz;
+    final double[] tMin;
+    final double[] tMax;
+    private final Ray[] rays;
+
+    private final int capacity;
+    int size;
+    private int activeLanes;
+
+    /**
+     * Create an empty packet for up to {@link #MAX_SIZE} rays.
+     */
+    public RayPacket() {
+        this(MAX_SIZE);
+    }
+
+    /**
+     * Create an empty packet.
+     *
+     * @param capacity The maximum number of rays in the packet.
+     */
+    public RayPacket(@Nonnegative int capacity) {
+        checkArgument(capacity > 0 && capacity <= MAX_SIZE, "the capacity must be within [1, %s]", MAX_SIZE);
+        this.capacity = capacity;
+        ox = new double[capacity];
+        oy = new double[capacity];
+        oz = new double[capacity];
+        dx = new double[capacity];
+        dy = new double[capacity];
+        dz = new double[capacity];
+        tMin = new double[capacity];
+        tMax = new double[capacity];
+        rays = new Ray[capacity];
+    }
+
+    /**
+     * Add a ray as new lane.
+     *
+     * @param ray The {@link Ray} to add.
+     * @return The lane of the ray.
+     * @throws IllegalStateException If the packet is full.
+     */
+    public int add(@Nonnull Ray ray) {
+        checkState(size < capacity, "the packet is full");
+        final int lane = size++;
+        final Point3D origin = ray.getOrigin();
+        final Vector3D direction = ray.getDirection();
+        ox[lane] = origin.x;
+        oy[lane] = origin.y;
+        oz[lane] = origin.z;
+        dx[lane] = direction.x;
+        dy[lane] = direction.y;
+        dz[lane] = direction.z;
+        tMin[lane] = ray.getTMin();
+        tMax[lane] = ray.getTMax();
+        rays[lane] = ray;
+        activeLanes |= 1 << lane;
+        return lane;
+    }
+
+    /**
+     * Remove all the rays.
+     */
+    public void clear() {
+        for (int lane = 0; lane < size; lane++) {
+            rays[lane] = null;
+        }
+        size = 0;
+        activeLanes = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public boolean isActive(int lane) {
+        return (activeLanes & (1 << lane)) != 0;
+    }
+
+    /**
+     * @return The bit mask of the active lanes: bit <code>i</code> is set if lane <code>i</code> is active.
+     */
+    public int getActiveLanes() {
+        return activeLanes;
+    }
+
+    /**
+     * @param activeLanes The bit mask of the active lanes. Bits beyond the size of the packet are ignored.
+     */
+    public void setActiveLanes(int activeLanes) {
+        this.activeLanes = activeLanes & ((1 << size) - 1);
+    }
+
+    /**
+     * @return The original ray of the lane. Its range is not updated while the packet is traced.
+     */
+    @Nonnull
+    public Ray getRay(int lane) {
+        checkElementIndex(lane, size, "lane");
+        return rays[lane];
+    }
+
+    /**
+     * Copy a lane into a {@link MutableRay}, including its current range.
+     *
+     * @param lane   The lane to copy.
+     * @param target The {@link MutableRay} receiving the lane.
+     * @return The <code>target</code> instance.
+     */
+    @Nonnull
+    public MutableRay getRay(int lane, @Nonnull MutableRay target) {
+        return target.set(ox[lane], oy[lane], oz[lane], dx[lane], dy[lane], dz[lane], tMin[lane], tMax[lane]);
+    }
+
+    public double getOriginX(int lane) {
+        return ox[lane];
+    }
+
+    public double getOriginY(int lane) {
+        return oy[lane];
+    }
+
+    public double getOriginZ(int lane) {
+        return oz[lane];
+    }
+
+    public double getDirectionX(int lane) {
+        return dx[lane];
+    }
+
+    public double getDirectionY(int lane) {
+        return dy[lane];
+    }
+
+    public double getDirectionZ(int lane) {
+        return dz[lane];
+    }
+
+    public double getTMin(int lane) {
+        return tMin[lane];
+    }
+
+    public double getTMax(int lane) {
+        return tMax[lane];
+    }
+
+    /**
+     * Shorten the range of a lane, usually to the distance of a hit.
+     */
+    public void setTMax(int lane, double distance) {
+        tMax[lane] = distance;
+    }
+
+    /**
+     * Checks if the given distance lies within the (closed) range of valid distances of a lane.
+     */
+    public boolean isInRange(int lane, double distance) {
+        return tMin[lane] <= distance && distance <= tMax[lane];
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("size", size)
+                .add("activeLanes", Integer.toBinaryString(activeLanes))
+                .add("capacity", capacity).toString();
+    }
+
+}
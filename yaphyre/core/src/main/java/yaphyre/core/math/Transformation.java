@@ -348,9 +348,12 @@ public class Transformation implements Serializable {
      * @return The transformed instance.
      */
     public Point3D transform(Point3D p) {
-        double[] homogenousPoint = new double[]{p.x, p.y, p.z, 1};
-        double[] result = matrix.mul(homogenousPoint);
-        return new Point3D(div(result[0], result[3]), div(result[1], result[3]), div(result[2], result[3]));
+        final double[][] m = matrix.m;
+        final double w = m[3][0] * p.x + m[3][1] * p.y + m[3][2] * p.z + m[3][3];
+        return new Point3D(
+                div(m[0][0] * p.x + m[0][1] * p.y + m[0][2] * p.z + m[0][3], w),
+                div(m[1][0] * p.x + m[1][1] * p.y + m[1][2] * p.z + m[1][3], w),
+                div(m[2][0] * p.x + m[2][1] * p.y + m[2][2] * p.z + m[2][3], w));
     }
 
     /**
@@ -361,9 +364,9 @@ public class Transformation implements Serializable {
      * @return A transformed {@link yaphyre.core.math.Point2D} instance.
      */
     public Point2D transform(Point2D p) {
-        double[] homogeneousPoint = new double[]{p.u, p.v, 0, 1};
-        double[] result = matrix.mul(homogeneousPoint);
-        return new Point2D(div(result[0], result[3]), div(result[1], result[3]));
+        final double[][] m = matrix.m;
+        final double w = m[3][0] * p.u + m[3][1] * p.v + m[3][3];
+        return new Point2D(div(m[0][0] * p.u + m[0][1] * p.v + m[0][3], w), div(m[1][0] * p.u + m[1][1] * p.v + m[1][3], w));
     }
 
     /**
@@ -374,9 +377,11 @@ public class Transformation implements Serializable {
      * @return A new, transformed {@link yaphyre.core.math.Vector3D} instance.
      */
     public Vector3D transform(Vector3D v) {
-        double[] homogeneousVector = new double[]{v.x, v.y, v.z, 0};
-        double[] result = matrix.mul(homogeneousVector);
-        return new Vector3D(result[0], result[1], result[2]);
+        final double[][] m = matrix.m;
+        return new Vector3D(
+                m[0][0] * v.x + m[0][1] * v.y + m[0][2] * v.z,
+                m[1][0] * v.x + m[1][1] * v.y + m[1][2] * v.z,
+                m[2][0] * v.x + m[2][1] * v.y + m[2][2] * v.z);
     }
 
     /**
@@ -391,9 +396,12 @@ public class Transformation implements Serializable {
      * @see <a href="http://tog.acm.org/resources/RTNews/html/rtnews1a.html#art4">Abnormal Normals</a>
      */
     public Normal3D transform(Normal3D n) {
-        double[] homogeneousNormal = new double[]{n.x, n.y, n.z, 0};
-        double[] result = matrixInv.transpose().mul(homogeneousNormal);
-        return new Normal3D(result[0], result[1], result[2]);
+        // multiply with the transposed inverse matrix by swapping the indices
+        final double[][] mi = matrixInv.m;
+        return new Normal3D(
+                mi[0][0] * n.x + mi[1][0] * n.y + mi[2][0] * n.z,
+                mi[0][1] * n.x + mi[1][1] * n.y + mi[2][1] * n.z,
+                mi[0][2] * n.x + mi[1][2] * n.y + mi[2][2] * n.z);
     }
 
     /**
@@ -407,22 +415,109 @@ public class Transformation implements Serializable {
     public Ray transform(Ray r) {
         Point3D newOrigin = transform(r.getOrigin());
         Vector3D newDirection = transform(r.getDirection());
-        return new Ray(newOrigin, newDirection, r.getTRange());
+        return new Ray(newOrigin, newDirection, r.getTMin(), r.getTMax());
     }
 
     /**
-     * Transformation of a {@link BoundingBox}. The minimum and maximum points are taken, transformed and a
-     * new instance is created from these information.
-     * <p>
-     * TODO: Cover with test to make sure that this works
+     * Transforms a {@link yaphyre.core.math.Ray} into the given {@link MutableRay} without creating any new objects.
+     * The range of valid distances is copied unchanged.
+     *
+     * @param r      The {@link yaphyre.core.math.Ray} to transform.
+     * @param target The {@link MutableRay} receiving the transformed ray.
+     * @return The <code>target</code> instance.
+     */
+    public MutableRay transform(Ray r, MutableRay target) {
+        final Point3D o = r.getOrigin();
+        final Vector3D d = r.getDirection();
+        return transform(o.x, o.y, o.z, d.x, d.y, d.z, r.getTMin(), r.getTMax(), target);
+    }
+
+    /**
+     * Transforms a {@link MutableRay} into another (or the same) instance without creating any new objects.
+     *
+     * @param r      The {@link MutableRay} to transform.
+     * @param target The {@link MutableRay} receiving the transformed ray. May be the same instance as <code>r</code>.
+     * @return The <code>target</code> instance.
+     */
+    public MutableRay transform(MutableRay r, MutableRay target) {
+        return transform(r.ox, r.oy, r.oz, r.dx, r.dy, r.dz, r.tMin, r.tMax, target);
+    }
+
+    /**
+     * Transforms all the lanes of a {@link RayPacket} into another packet without creating any new objects. The rays
+     * are transformed in a single loop over the lanes, which keeps the matrix in registers. The ranges of valid
+     * distances and the active lanes are copied unchanged and the target keeps the original rays of the source.
+     *
+     * @param source The {@link RayPacket} to transform.
+     * @param target The {@link RayPacket} receiving the transformed rays. Its capacity must be at least the size of
+     *               the source and it must not be the source.
+     * @return The <code>target</code> instance.
+     */
+    public RayPacket transform(RayPacket source, RayPacket target) {
+        target.clear();
+        final double[][] m = matrix.m;
+        final double m00 = m[0][0], m01 = m[0][1], m02 = m[0][2], m03 = m[0][3];
+        final double m10 = m[1][0], m11 = m[1][1], m12 = m[1][2], m13 = m[1][3];
+        final double m20 = m[2][0], m21 = m[2][1], m22 = m[2][2], m23 = m[2][3];
+        final double m30 = m[3][0], m31 = m[3][1], m32 = m[3][2], m33 = m[3][3];
+        for (int lane = 0; lane < source.size; lane++) {
+            target.add(source.getRay(lane));
+            final double ox = source.ox[lane];
+            final double oy = source.oy[lane];
+            final double oz = source.oz[lane];
+            final double dx = source.dx[lane];
+            final double dy = source.dy[lane];
+            final double dz = source.dz[lane];
+            final double w = m30 * ox + m31 * oy + m32 * oz + m33;
+            target.ox[lane] = div(m00 * ox + m01 * oy + m02 * oz + m03, w);
+            target.oy[lane] = div(m10 * ox + m11 * oy + m12 * oz + m13, w);
+            target.oz[lane] = div(m20 * ox + m21 * oy + m22 * oz + m23, w);
+            target.dx[lane] = m00 * dx + m01 * dy + m02 * dz;
+            target.dy[lane] = m10 * dx + m11 * dy + m12 * dz;
+            target.dz[lane] = m20 * dx + m21 * dy + m22 * dz;
+            target.tMin[lane] = source.tMin[lane];
+            target.tMax[lane] = source.tMax[lane];
+        }
+        target.setActiveLanes(source.getActiveLanes());
+        return target;
+    }
+
+    private MutableRay transform(double ox, double oy, double oz, double dx, double dy, double dz,
+                                 double tMin, double tMax, MutableRay target) {
+        final double[][] m = matrix.m;
+        final double w = m[3][0] * ox + m[3][1] * oy + m[3][2] * oz + m[3][3];
+        return target.set(
+                div(m[0][0] * ox + m[0][1] * oy + m[0][2] * oz + m[0][3], w),
+                div(m[1][0] * ox + m[1][1] * oy + m[1][2] * oz + m[1][3], w),
+                div(m[2][0] * ox + m[2][1] * oy + m[2][2] * oz + m[2][3], w),
+                m[0][0] * dx + m[0][1] * dy + m[0][2] * dz,
+                m[1][0] * dx + m[1][1] * dy + m[1][2] * dz,
+                m[2][0] * dx + m[2][1] * dy + m[2][2] * dz,
+                tMin, tMax);
+    }
+
+    /**
+     * Transformation of a {@link BoundingBox}. All eight corners are transformed and the axis aligned box enclosing
+     * them is returned. Transforming only the minimum and maximum points is not enough as soon as rotations are
+     * involved. The {@link BoundingBox#INFINITE_BOUNDING_BOX} is returned unchanged.
      *
      * @param boundingBox The {@link BoundingBox} to transform
-     * @return A new {@link BoundingBox} instance from the transformed points.
+     * @return A new {@link BoundingBox} instance enclosing the transformed corners.
      */
     public BoundingBox transform(BoundingBox boundingBox) {
-        Point3D p1 = transform(boundingBox.getPointMin());
-        Point3D p2 = transform(boundingBox.getPointMax());
-        return new BoundingBox(p1, p2);
+        if (boundingBox == BoundingBox.INFINITE_BOUNDING_BOX) {
+            return boundingBox;
+        }
+        final Point3D pMin = boundingBox.getPointMin();
+        final Point3D pMax = boundingBox.getPointMax();
+        BoundingBox result = new BoundingBox(transform(pMin), transform(pMax));
+        result = BoundingBox.union(result, transform(new Point3D(pMax.getX(), pMin.getY(), pMin.getZ())));
+        result = BoundingBox.union(result, transform(new Point3D(pMin.getX(), pMax.getY(), pMin.getZ())));
+        result = BoundingBox.union(result, transform(new Point3D(pMin.getX(), pMin.getY(), pMax.getZ())));
+        result = BoundingBox.union(result, transform(new Point3D(pMax.getX(), pMax.getY(), pMin.getZ())));
+        result = BoundingBox.union(result, transform(new Point3D(pMax.getX(), pMin.getY(), pMax.getZ())));
+        result = BoundingBox.union(result, transform(new Point3D(pMin.getX(), pMax.getY(), pMax.getZ())));
+        return result;
     }
 
     public Matrix getMatrix() {
@@ -16,9 +16,9 @@
 
 package yaphyre.core.samplers;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -37,7 +37,7 @@ import static java.util.stream.Collectors.toList;
  */
 public class RegularSampler extends AbstractSampler {
 
-    private static final Map<Integer, List<Point2D>> SAMPLES = new HashMap<>();
+    private static final Map<Integer, List<Point2D>> SAMPLES = new ConcurrentHashMap<>();
 
     List<Point2D> samples = null;
 
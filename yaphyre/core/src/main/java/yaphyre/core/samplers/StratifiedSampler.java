@@ -16,10 +16,10 @@
 
 package yaphyre.core.samplers;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -37,8 +37,8 @@ public class StratifiedSampler extends AbstractSampler {
 
     private static final Random RANDOM = new Random();
 
-    private static final Map<Integer, double[]> STRATIFIED_SAMPLES = new HashMap<>();
-    private static final Map<Integer, List<Point2D>> STRATIFIED_POINT_SAMPLES = new HashMap<>();
+    private static final Map<Integer, double[]> STRATIFIED_SAMPLES = new ConcurrentHashMap<>();
+    private static final Map<Integer, List<Point2D>> STRATIFIED_POINT_SAMPLES = new ConcurrentHashMap<>();
 
     public StratifiedSampler(int numberOfSamples) {
         super(numberOfSamples);
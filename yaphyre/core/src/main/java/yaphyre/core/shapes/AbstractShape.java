@@ -24,7 +24,9 @@ import com.google.common.base.Preconditions;
 import yaphyre.core.api.Shader;
 import yaphyre.core.api.Shape;
 import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.MutableRay;
 import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
 import yaphyre.core.math.Transformation;
 
 /**
@@ -43,6 +45,11 @@ public abstract class AbstractShape implements Shape {
     @Deprecated
     protected static final double NO_INTERSECTION = Double.POSITIVE_INFINITY;
 
+    /**
+     * The scratch rays of the threads, see {@link #scratchRay()}.
+     */
+    private static final ThreadLocal<MutableRay> SCRATCH_RAYS = ThreadLocal.withInitial(MutableRay::new);
+
     private final Shader shader;
     private final Transformation worldToObject;
     private final Transformation objectToWorld;
@@ -106,6 +113,41 @@ public abstract class AbstractShape implements Shape {
         return worldToObject.transform(ray);
     }
 
+    /**
+     * Transform the given world space ray into the object space of this shape without creating any new objects.
+     *
+     * @param ray    The {@link yaphyre.core.math.Ray} in world space.
+     * @param target The {@link yaphyre.core.math.MutableRay} receiving the ray in object space.
+     * @return The <code>target</code> instance.
+     */
+    @Nonnull
+    protected MutableRay transformToObjectSpace(@Nonnull Ray ray, @Nonnull MutableRay target) {
+        return worldToObject.transform(ray, target);
+    }
+
+    /**
+     * The {@link MutableRay} of the current thread to transform rays into with {@link #transformToObjectSpace(Ray,
+     * MutableRay)}. It is shared by all the shapes, so its values have to be read before any other shape is asked for
+     * an intersection.
+     *
+     * @return The scratch ray of the current thread.
+     */
+    @Nonnull
+    protected static MutableRay scratchRay() {
+        return SCRATCH_RAYS.get();
+    }
+
+    /**
+     * Transform all the rays of the given world space packet into the object space of this shape.
+     *
+     * @param packet The {@link yaphyre.core.math.RayPacket} in world space.
+     * @return A new packet containing the rays in object space.
+     */
+    @Nonnull
+    protected RayPacket transformToObjectSpace(@Nonnull RayPacket packet) {
+        return worldToObject.transform(packet, new RayPacket(packet.getCapacity()));
+    }
+
     @Nonnull
     protected Ray transformToWorldSpace(@Nonnull Ray ray) {
         return objectToWorld.transform(ray);
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.shapes;
+
+import java.util.Collection;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.api.CollisionCache;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.NearestHit;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Matrix;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Solvers;
+
+import static java.lang.Double.POSITIVE_INFINITY;
+import static yaphyre.core.math.MathUtils.isZero;
+
+/**
+ * Immutable, flattened copy of the intersection data of a collection of {@link Shape}s. The shapes are compiled once,
+ * when a scene is frozen, into primitive arrays grouped by the type of the shape:
+ * <ul>
+ * <li>{@link SimpleSphere}: the rows of the world to object matrix, twelve doubles per sphere.</li>
+ * <li>{@link Plane}: the plane equation in world space, four doubles per plane.</li>
+ * </ul>
+ * The intersection tests dispatch on the type of the shape and work directly on these arrays, so no matrices need to
+ * be dereferenced and no virtual calls are made. Shapes of any other type, and shapes whose data can not be flattened
+ * (e.g. projective transformations), are intersected by calling the shapes themselves (see
+ * {@link Shape#intersectDistance(Ray, CollisionCache)}).<br/>
+ * The tests only calculate distances and keep the nearest one in a {@link NearestHit}, which creates the shading data
+ * only for the nearest intersection.<br/>
+ * The compiled tests give the same results as the shapes themselves: they use the same formulas in the same order.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class CompiledShapes {
+
+    private static final byte GENERIC = 0;
+    private static final byte SIMPLE_SPHERE = 1;
+    private static final byte PLANE = 2;
+
+    private static final int SPHERE_STRIDE = 12;
+    private static final int PLANE_STRIDE = 4;
+
+    private final Shape[] shapes;
+    private final byte[] types;
+
+    /**
+     * The index of each shape within the arrays of its type.
+     */
+    private final int[] slots;
+
+    private final double[] sphereTransformations;
+    private final double[] planeEquations;
+    private final int sphereCount;
+    private final int planeCount;
+
+    public CompiledShapes(@Nonnull Collection<Shape> shapes) {
+        this.shapes = shapes.toArray(new Shape[shapes.size()]);
+        types = new byte[this.shapes.length];
+        slots = new int[this.shapes.length];
+
+        int spheres = 0;
+        int planes = 0;
+        for (int i = 0; i < this.shapes.length; i++) {
+            types[i] = typeOf(this.shapes[i]);
+            if (types[i] == SIMPLE_SPHERE) {
+                slots[i] = spheres++;
+            } else if (types[i] == PLANE) {
+                slots[i] = planes++;
+            }
+        }
+        sphereCount = spheres;
+        planeCount = planes;
+
+        sphereTransformations = new double[sphereCount * SPHERE_STRIDE];
+        planeEquations = new double[planeCount * PLANE_STRIDE];
+        for (int i = 0; i < this.shapes.length; i++) {
+            if (types[i] == SIMPLE_SPHERE) {
+                final Matrix worldToObject = ((AbstractShape) this.shapes[i]).getWorldToObject().getMatrix();
+                for (int row = 0; row < 3; row++) {
+                    for (int col = 0; col < 4; col++) {
+                        sphereTransformations[slots[i] * SPHERE_STRIDE + row * 4 + col] = worldToObject.get(row, col);
+                    }
+                }
+            } else if (types[i] == PLANE) {
+                // the plane is y = 0 in object space, so only the y row of the world to object matrix is needed
+                final Matrix worldToObject = ((AbstractShape) this.shapes[i]).getWorldToObject().getMatrix();
+                for (int col = 0; col < 4; col++) {
+                    planeEquations[slots[i] * PLANE_STRIDE + col] = worldToObject.get(1, col);
+                }
+            }
+        }
+    }
+
+    private static byte typeOf(Shape shape) {
+        if (shape instanceof AbstractShape && !isAffine(((AbstractShape) shape).getWorldToObject().getMatrix())) {
+            return GENERIC;
+        }
+        if (shape.getClass() == SimpleSphere.class && ((SimpleSphere) shape).getSolver() == Solvers.Quadratic) {
+            return SIMPLE_SPHERE;
+        }
+        if (shape.getClass() == Plane.class) {
+            return PLANE;
+        }
+        return GENERIC;
+    }
+
+    /**
+     * Points transformed by an affine matrix need no homogeneous division, so only the first three rows are used.
+     */
+    private static boolean isAffine(Matrix matrix) {
+        return matrix.get(3, 0) == 0 && matrix.get(3, 1) == 0 && matrix.get(3, 2) == 0 && matrix.get(3, 3) == 1;
+    }
+
+    public int size() {
+        return shapes.length;
+    }
+
+    @Nonnull
+    public Shape getShape(int index) {
+        return shapes[index];
+    }
+
+    /**
+     * Intersect the shape with the given index with the ray of the given {@link NearestHit}, which keeps the
+     * intersection if it is nearer than <code>tMax</code>.
+     *
+     * @param index The index of the shape.
+     * @param hit   The nearest intersection of the ray found so far.
+     * @param tMax  The distance of the nearest intersection found so far.
+     * @return The distance of the intersection if it is nearer than <code>tMax</code>, {@link Double#POSITIVE_INFINITY}
+     * otherwise.
+     */
+    public double intersect(int index, @Nonnull NearestHit hit, double tMax) {
+        switch (types[index]) {
+            case SIMPLE_SPHERE:
+                return hit.offer(shapes[index], index, intersectSphere(slots[index] * SPHERE_STRIDE, hit.getRay()),
+                        tMax);
+            case PLANE:
+                return hit.offer(shapes[index], index, intersectPlane(slots[index] * PLANE_STRIDE, hit.getRay()),
+                        tMax);
+            default:
+                return hit.intersect(shapes[index], index, tMax);
+        }
+    }
+
+    /**
+     * Check if the shape with the given index blocks the ray within its range.
+     *
+     * @see Shape#occluded(Ray)
+     */
+    public boolean occluded(int index, @Nonnull Ray ray) {
+        switch (types[index]) {
+            case SIMPLE_SPHERE:
+                return intersectSphere(slots[index] * SPHERE_STRIDE, ray) != POSITIVE_INFINITY;
+            case PLANE:
+                return intersectPlane(slots[index] * PLANE_STRIDE, ray) != POSITIVE_INFINITY;
+            default:
+                return shapes[index].occluded(ray);
+        }
+    }
+
+    /**
+     * Same as {@link SimpleSphere#intersect(Ray)} with the quadratic solver inlined.
+     */
+    private double intersectSphere(int offset, Ray ray) {
+        final double[] m = sphereTransformations;
+        final double wx = ray.getOrigin().getX();
+        final double wy = ray.getOrigin().getY();
+        final double wz = ray.getOrigin().getZ();
+        final double wdx = ray.getDirection().getX();
+        final double wdy = ray.getDirection().getY();
+        final double wdz = ray.getDirection().getZ();
+
+        final double ox = m[offset] * wx + m[offset + 1] * wy + m[offset + 2] * wz + m[offset + 3];
+        final double oy = m[offset + 4] * wx + m[offset + 5] * wy + m[offset + 6] * wz + m[offset + 7];
+        final double oz = m[offset + 8] * wx + m[offset + 9] * wy + m[offset + 10] * wz + m[offset + 11];
+        final double dx = m[offset] * wdx + m[offset + 1] * wdy + m[offset + 2] * wdz;
+        final double dy = m[offset + 4] * wdx + m[offset + 5] * wdy + m[offset + 6] * wdz;
+        final double dz = m[offset + 8] * wdx + m[offset + 9] * wdy + m[offset + 10] * wdz;
+
+        final double a = dx * dx + dy * dy + dz * dz;
+        final double b = (ox * dx + oy * dy + oz * dz) * 2;
+        final double c = (ox * ox + oy * oy + oz * oz) - 1;
+
+        final double discriminant = b * b - 4 * a * c;
+        if (discriminant < 0 && !isZero(discriminant)) {
+            return POSITIVE_INFINITY;
+        }
+        if (isZero(a)) {
+            // degenerated direction, the solver falls back to a linear equation
+            final double[] solutions = Solvers.Quadratic.solve(c, b, a);
+            return solutions.length > 0 && ray.isInRange(solutions[0]) ? solutions[0] : POSITIVE_INFINITY;
+        }
+
+        if (isZero(discriminant)) {
+            final double root = div(-b, 2 * a);
+            return ray.isInRange(root) ? root : POSITIVE_INFINITY;
+        }
+        final double sqrtDiscriminant = Math.sqrt(discriminant);
+        final double near = div(-b - sqrtDiscriminant, 2 * a);
+        final double far = div(-b + sqrtDiscriminant, 2 * a);
+        final double first = Math.min(near, far);
+        if (ray.isInRange(first)) {
+            return first;
+        }
+        final double second = Math.max(near, far);
+        return ray.isInRange(second) ? second : POSITIVE_INFINITY;
+    }
+
+    /**
+     * Same as {@link yaphyre.core.math.MathUtils#div(double, double)} for a non zero denominator.
+     */
+    private static double div(double numerator, double denominator) {
+        return numerator == 0 ? 0 : numerator / denominator;
+    }
+
+    /**
+     * Same as {@link Plane#intersect(Ray)}, with the plane given by its equation in world space.
+     */
+    private double intersectPlane(int offset, Ray ray) {
+        final double[] e = planeEquations;
+        final double numerator = -(e[offset] * ray.getOrigin().getX() + e[offset + 1] * ray.getOrigin().getY()
+                + e[offset + 2] * ray.getOrigin().getZ() + e[offset + 3]);
+        final double denominator = e[offset] * ray.getDirection().getX() + e[offset + 1] * ray.getDirection().getY()
+                + e[offset + 2] * ray.getDirection().getZ();
+
+        if (numerator == 0 && denominator == 0) {
+            return ray.getTMin();
+        } else if (denominator == 0) {
+            return POSITIVE_INFINITY;
+        }
+
+        final double distance = numerator / denominator;
+        return ray.isInRange(distance) ? distance : POSITIVE_INFINITY;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("shapes", shapes.length)
+                .add("spheres", sphereCount)
+                .add("planes", planeCount).toString();
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package yaphyre.core.shapes;
+
+import java.util.Optional;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+import yaphyre.core.api.CollisionCache;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Shader;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.Normal3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+
+/**
+ * A copy of a shape placed somewhere else in the scene. The instance does not copy any data of its base shape, it
+ * only keeps a {@link Transformation} from the space of the base shape to world space. So an object used many times,
+ * like the trees of a forest, costs its memory only once, no matter how many instances are placed.<br/>
+ * The instances form a two level acceleration structure: the {@link yaphyre.core.api.Accelerator} of the scene is built
+ * over the bounds of the instances, the base shape keeps its own structure (e.g. the hierarchy of a
+ * {@link TriangleMesh}). Rays hitting the bounds of an instance are transformed into the space of the base shape and
+ * intersected with it. Moving an instance creates a new instance of the same base shape, so only the structure of the
+ * scene has to be updated (see {@link yaphyre.core.api.Accelerator#refit(java.util.List)}).<br/>
+ * The collision information is reported for the instance: in world space and with the {@link Shader} of the
+ * instance, so several instances of the same base shape may look differently.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class Instance extends AbstractShape {
+
+    private final Shape baseShape;
+    private final BoundingBox boundingBox;
+    private final BoundingBox axisAlignedBoundingBox;
+
+    /**
+     * Create an instance using the {@link Shader} of the base shape.
+     *
+     * @param objectToWorld The {@link Transformation} from the space of the base shape to world space.
+     * @param baseShape     The shape to place.
+     */
+    public Instance(@Nonnull Transformation objectToWorld, @Nonnull Shape baseShape) {
+        this(objectToWorld, baseShape.getShader(), baseShape);
+    }
+
+    /**
+     * Create an instance.
+     *
+     * @param objectToWorld The {@link Transformation} from the space of the base shape to world space.
+     * @param shader        The {@link Shader} of this instance.
+     * @param baseShape     The shape to place. It may be shared by any number of instances.
+     */
+    public Instance(@Nonnull Transformation objectToWorld, @Nonnull Shader shader, @Nonnull Shape baseShape) {
+        super(objectToWorld, shader);
+        this.baseShape = baseShape;
+        boundingBox = objectToWorld.transform(baseShape.getBoundingBox());
+        axisAlignedBoundingBox = objectToWorld.transform(baseShape.getAxisAlignedBoundingBox());
+    }
+
+    @Nonnull
+    public Shape getBaseShape() {
+        return baseShape;
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+        return baseShape.intersect(transformToObjectSpace(ray))
+                .map(collision -> transformToWorldSpace(ray, collision));
+    }
+
+    /**
+     * The base shape is asked for the distance only. Since the direction of the ray is transformed without being
+     * normalized, the distance is the same in both spaces.
+     */
+    @Override
+    public double intersectDistance(@Nonnull Ray ray, @Nonnull CollisionCache cache) {
+        return baseShape.intersectDistance(transformToObjectSpace(ray), cache);
+    }
+
+    @Nonnull
+    @Override
+    public CollisionInformation createCollisionInformation(@Nonnull Ray ray, double distance,
+                                                           @Nonnull CollisionCache cache) {
+        return transformToWorldSpace(ray,
+                baseShape.createCollisionInformation(transformToObjectSpace(ray), distance, cache));
+    }
+
+    @Override
+    public boolean occluded(@Nonnull Ray ray) {
+        return baseShape.occluded(transformToObjectSpace(ray));
+    }
+
+    /**
+     * Report a collision of the base shape as a collision of this instance in world space.
+     */
+    private CollisionInformation transformToWorldSpace(Ray ray, CollisionInformation collision) {
+        final Vector3D normal = getObjectToWorld().transform(collision.getNormal()).asVector().normalize();
+        return new CollisionInformation(
+                ray,
+                this,
+                collision.getDistance(),
+                ray.getPoint(collision.getDistance()),
+                new Normal3D(normal.getX(), normal.getY(), normal.getZ()),
+                collision.getUVCoordinate());
+    }
+
+    @Nonnull
+    @Override
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    @Nonnull
+    @Override
+    public BoundingBox getAxisAlignedBoundingBox() {
+        return axisAlignedBoundingBox;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || super.equals(obj) && baseShape.equals(((Instance) obj).baseShape);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(super.hashCode(), baseShape);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("objectToWorld", getObjectToWorld())
+                .add("baseShape", baseShape).toString();
+    }
+
+}
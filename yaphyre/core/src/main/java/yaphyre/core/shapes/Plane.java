@@ -18,16 +18,18 @@ package yaphyre.core.shapes;
 
 import java.text.MessageFormat;
 import java.util.Optional;
-import java.util.OptionalDouble;
 import javax.annotation.Nonnull;
 
+import yaphyre.core.api.CollisionCache;
 import yaphyre.core.api.CollisionInformation;
 import yaphyre.core.api.Shader;
 import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.MutableRay;
 import yaphyre.core.math.Normal3D;
 import yaphyre.core.math.Point2D;
 import yaphyre.core.math.Point3D;
 import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
 import yaphyre.core.math.Transformation;
 
 /**
@@ -48,11 +50,13 @@ public class Plane extends AbstractShape {
 
     private final Point3D origin;
     private final Normal3D normal;
+    private final Normal3D worldNormal;
 
     public Plane(Transformation planeToWorld, Shader shader) {
         super(planeToWorld, shader);
         origin = Point3D.ORIGIN;
         normal = Normal3D.NORMAL_Y;
+        worldNormal = planeToWorld.transform(normal);
     }
 
     @Override
@@ -68,26 +72,81 @@ public class Plane extends AbstractShape {
     @Nonnull
     @Override
     public Optional<CollisionInformation> intersect(@Nonnull final Ray ray) {
-        final OptionalDouble intersectionDistance = calculateIntersectDistance(ray);
+        final MutableRay objectRay = super.transformToObjectSpace(ray, scratchRay());
+        final double distance = calculateIntersectDistance(
+                objectRay.getOriginX(), objectRay.getOriginY(), objectRay.getOriginZ(),
+                objectRay.getDirectionX(), objectRay.getDirectionY(), objectRay.getDirectionZ(),
+                objectRay.getTMin(), objectRay.getTMax());
 
-        if (intersectionDistance.isPresent()) {
-
-            double distance = intersectionDistance.getAsDouble();
-            final Point3D intersectionPoint = ray.getPoint(distance);
-            return Optional.of(new CollisionInformation(
-                    ray,
-                    this,
-                    distance,
-                    intersectionPoint,
-                    getNormal(),
-                    getMappedSurfacePoint(intersectionPoint)));
+        if (!Double.isNaN(distance)) {
 
+            return Optional.of(createCollisionInformation(ray, distance));
 
         }
 
         return Optional.empty();
     }
 
+    @Override
+    public boolean occluded(@Nonnull Ray ray) {
+        final MutableRay objectRay = super.transformToObjectSpace(ray, scratchRay());
+        return !Double.isNaN(calculateIntersectDistance(
+                objectRay.getOriginX(), objectRay.getOriginY(), objectRay.getOriginZ(),
+                objectRay.getDirectionX(), objectRay.getDirectionY(), objectRay.getDirectionZ(),
+                objectRay.getTMin(), objectRay.getTMax()));
+    }
+
+    @Override
+    public double intersectDistance(@Nonnull Ray ray, @Nonnull CollisionCache cache) {
+        final MutableRay objectRay = super.transformToObjectSpace(ray, scratchRay());
+        final double distance = calculateIntersectDistance(
+                objectRay.getOriginX(), objectRay.getOriginY(), objectRay.getOriginZ(),
+                objectRay.getDirectionX(), objectRay.getDirectionY(), objectRay.getDirectionZ(),
+                objectRay.getTMin(), objectRay.getTMax());
+        return Double.isNaN(distance) ? Double.POSITIVE_INFINITY : distance;
+    }
+
+    @Nonnull
+    @Override
+    public CollisionInformation createCollisionInformation(@Nonnull Ray ray, double distance,
+                                                           @Nonnull CollisionCache cache) {
+        return createCollisionInformation(ray, distance);
+    }
+
+    /**
+     * Intersect the active rays of the packet at once. The packet is transformed into object space in one go and the
+     * distances of all the lanes are calculated in a loop over the lanes.
+     */
+    @Override
+    public void intersect(@Nonnull RayPacket packet, @Nonnull CollisionInformation[] collisions) {
+        final RayPacket objectPacket = super.transformToObjectSpace(packet);
+        for (int lane = 0; lane < objectPacket.size(); lane++) {
+            if (!objectPacket.isActive(lane)) {
+                continue;
+            }
+            final double distance = calculateIntersectDistance(
+                    objectPacket.getOriginX(lane), objectPacket.getOriginY(lane), objectPacket.getOriginZ(lane),
+                    objectPacket.getDirectionX(lane), objectPacket.getDirectionY(lane),
+                    objectPacket.getDirectionZ(lane),
+                    objectPacket.getTMin(lane), objectPacket.getTMax(lane));
+            if (!Double.isNaN(distance) && distance < packet.getTMax(lane)) {
+                packet.setTMax(lane, distance);
+                collisions[lane] = createCollisionInformation(packet.getRay(lane), distance);
+            }
+        }
+    }
+
+    private CollisionInformation createCollisionInformation(Ray ray, double distance) {
+        final Point3D intersectionPoint = ray.getPoint(distance);
+        return new CollisionInformation(
+                ray,
+                this,
+                distance,
+                intersectionPoint,
+                getNormal(),
+                getMappedSurfacePoint(intersectionPoint));
+    }
+
 
     @Nonnull
     @Override
@@ -115,27 +174,33 @@ public class Plane extends AbstractShape {
      * If the result is negative, the line intersects with the plane behind the origin of the ray, so there is no
      * visible intersection.
      *
-     * @param ray The {@link Ray} to intersect with this plane.
-     * @return The optional distance in which the ray intersects this plane. This may be empty to signal that no intersection takes place
+     * The ray is given by the components of its origin, direction and range in object space.
+     *
+     * @return The distance in which the ray intersects this plane. This is {@link Double#NaN} to signal that no
+     * intersection takes place
      */
-    private OptionalDouble calculateIntersectDistance(Ray ray) {
-        ray = super.transformToObjectSpace(ray);
-        double numerator = origin.sub(ray.getOrigin()).dot(normal);
-        double denominator = ray.getDirection().dot(normal);
+    private double calculateIntersectDistance(double ox, double oy, double oz, double dx, double dy, double dz,
+                                              double tMin, double tMax) {
+        double numerator = (origin.getX() - ox) * normal.getX()
+                + (origin.getY() - oy) * normal.getY()
+                + (origin.getZ() - oz) * normal.getZ();
+        double denominator = dx * normal.getX()
+                + dy * normal.getY()
+                + dz * normal.getZ();
 
         if (numerator == 0 && denominator == 0) {
             // The ray starts on the plane and is parallel to the plane, so it
             // intersects everywhere.
-            return OptionalDouble.of(ray.getTRange().lowerEndpoint());
+            return tMin;
         } else if (numerator != 0 && denominator == 0) {
             // The ray starts outside the plane and is parallel to the plane, so no
             // intersection, ever...
-            return OptionalDouble.empty();
+            return Double.NaN;
         }
 
         double distance = numerator / denominator;
 
-        return ray.getTRange().contains(distance) ? OptionalDouble.of(distance) : OptionalDouble.empty();
+        return tMin <= distance && distance <= tMax ? distance : Double.NaN;
 
     }
 
@@ -145,7 +210,7 @@ public class Plane extends AbstractShape {
      * @return The normal of the plane (position independent)
      */
     private Normal3D getNormal() {
-        return super.getObjectToWorld().transform(normal);
+        return worldNormal;
     }
 
     /**
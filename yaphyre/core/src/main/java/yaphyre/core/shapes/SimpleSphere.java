@@ -17,30 +17,31 @@
 package yaphyre.core.shapes;
 
 import java.text.MessageFormat;
-import java.util.Arrays;
 import java.util.Optional;
-import java.util.OptionalDouble;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 
-import com.google.common.collect.Range;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import yaphyre.core.api.CollisionCache;
 import yaphyre.core.api.CollisionInformation;
 import yaphyre.core.api.Shader;
 import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.MutableRay;
 import yaphyre.core.math.Normal3D;
 import yaphyre.core.math.Point2D;
 import yaphyre.core.math.Point3D;
 import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
 import yaphyre.core.math.Solver;
 import yaphyre.core.math.Transformation;
 import yaphyre.core.math.Vector3D;
 
+import static java.lang.Double.POSITIVE_INFINITY;
 import static yaphyre.core.math.MathUtils.INV_PI;
 import static yaphyre.core.math.MathUtils.INV_TWO_PI;
+import static yaphyre.core.math.MathUtils.isZero;
 import static yaphyre.core.math.Solver.Quadratic;
 
 /**
@@ -95,40 +96,23 @@ public class SimpleSphere extends AbstractShape {
         this.quadraticSolver = quadraticSolver;
     }
 
+    Solver getSolver() {
+        return quadraticSolver;
+    }
+
     @Override
     @Nonnull
     public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
-        final Ray objectSpaceRay = transformToObjectSpace(ray);
-        final Vector3D originPositionVector = objectSpaceRay.getOrigin().asVector();
-        final Vector3D direction = objectSpaceRay.getDirection();
-
-        final double a = direction.dot(direction);
-        final double b = originPositionVector.dot(direction) * 2;
-        final double c = originPositionVector.dot(originPositionVector) - (RADIUS * RADIUS);
-
-        final double[] solutions = quadraticSolver.solve(c, b, a);
-
-        final OptionalDouble minSolution = Arrays.stream(solutions)
-                .filter(distance -> {
-                    Range<Double> tRange = ray.getTRange();
-                    LOGGER.trace(String.format("testing solution %.3f against range %s", distance, tRange));
-                    return tRange.contains(distance);
-                })
-                .min();
-
-        LOGGER.trace("result: " + minSolution);
-
-        if (minSolution.isPresent() && !Double.isNaN(minSolution.getAsDouble())) {
-            final double distance = minSolution.getAsDouble();
-            final Point3D intersectionPoint = objectSpaceRay.getPoint(distance);
-
-            return Optional.of(new CollisionInformation(
-                    ray,
-                    this,
-                    distance,
-                    getObjectToWorld().transform(intersectionPoint),
-                    getObjectToWorld().transform(calculateNormal(intersectionPoint, objectSpaceRay)),
-                    mapToLocalUV(intersectionPoint)));
+        final MutableRay objectSpaceRay = transformToObjectSpace(ray, scratchRay());
+        final double distance = calculateIntersectDistance(objectSpaceRay);
+
+        LOGGER.trace("result: {}", distance != POSITIVE_INFINITY ? distance : "no hit");
+
+        if (distance != POSITIVE_INFINITY) {
+
+            return Optional.of(createCollisionInformation(ray, distance,
+                    objectSpaceRay.getOriginX(), objectSpaceRay.getOriginY(), objectSpaceRay.getOriginZ(),
+                    objectSpaceRay.getDirectionX(), objectSpaceRay.getDirectionY(), objectSpaceRay.getDirectionZ()));
 
         } else {
 
@@ -138,6 +122,106 @@ public class SimpleSphere extends AbstractShape {
 
     }
 
+    @Override
+    public double intersectDistance(@Nonnull Ray ray, @Nonnull CollisionCache cache) {
+        return calculateIntersectDistance(transformToObjectSpace(ray, scratchRay()));
+    }
+
+    @Nonnull
+    @Override
+    public CollisionInformation createCollisionInformation(@Nonnull Ray ray, double distance,
+                                                           @Nonnull CollisionCache cache) {
+        return createCollisionInformation(ray, distance);
+    }
+
+    @Override
+    public boolean occluded(@Nonnull Ray ray) {
+        return calculateIntersectDistance(transformToObjectSpace(ray, scratchRay())) != POSITIVE_INFINITY;
+    }
+
+    /**
+     * Calculate the distance of the nearest intersection of the given object space ray with the unit sphere.
+     *
+     * @return The distance of the intersection or {@link Double#POSITIVE_INFINITY} if the ray misses the sphere within
+     * its range.
+     */
+    private double calculateIntersectDistance(MutableRay objectSpaceRay) {
+        final double ox = objectSpaceRay.getOriginX();
+        final double oy = objectSpaceRay.getOriginY();
+        final double oz = objectSpaceRay.getOriginZ();
+        final double dx = objectSpaceRay.getDirectionX();
+        final double dy = objectSpaceRay.getDirectionY();
+        final double dz = objectSpaceRay.getDirectionZ();
+
+        final double a = dx * dx + dy * dy + dz * dz;
+        final double b = (ox * dx + oy * dy + oz * dz) * 2;
+        final double c = (ox * ox + oy * oy + oz * oz) - (RADIUS * RADIUS);
+
+        // most rays miss: reject them before the solver allocates its result
+        final double discriminant = b * b - 4 * a * c;
+        if (discriminant < 0 && !isZero(discriminant)) {
+            return POSITIVE_INFINITY;
+        }
+
+        double distance = POSITIVE_INFINITY;
+        for (double solution : quadraticSolver.solve(c, b, a)) {
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("testing solution {} against range [{}, {}]", solution,
+                        objectSpaceRay.getTMin(), objectSpaceRay.getTMax());
+            }
+            if (objectSpaceRay.isInRange(solution) && solution <= distance) {
+                distance = solution;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Intersect the active rays of the packet. The lanes are transformed into object space one after the other, reusing
+     * a single {@link MutableRay}, so no objects are created for lanes missing the sphere.
+     */
+    @Override
+    public void intersect(@Nonnull RayPacket packet, @Nonnull CollisionInformation[] collisions) {
+        final MutableRay objectSpaceRay = scratchRay();
+        for (int lanes = packet.getActiveLanes(); lanes != 0; lanes &= lanes - 1) {
+            final int lane = Integer.numberOfTrailingZeros(lanes);
+            getWorldToObject().transform(packet.getRay(lane, objectSpaceRay), objectSpaceRay);
+            final double distance = calculateIntersectDistance(objectSpaceRay);
+            if (distance < packet.getTMax(lane)) {
+                packet.setTMax(lane, distance);
+                collisions[lane] = createCollisionInformation(packet.getRay(lane), distance,
+                        objectSpaceRay.getOriginX(), objectSpaceRay.getOriginY(), objectSpaceRay.getOriginZ(),
+                        objectSpaceRay.getDirectionX(), objectSpaceRay.getDirectionY(), objectSpaceRay.getDirectionZ());
+            }
+        }
+    }
+
+    /**
+     * Create the collision information for an intersection found at the given distance along a world space ray.
+     */
+    private CollisionInformation createCollisionInformation(Ray ray, double distance) {
+        final MutableRay objectSpaceRay = transformToObjectSpace(ray, scratchRay());
+        return createCollisionInformation(ray, distance,
+                objectSpaceRay.getOriginX(), objectSpaceRay.getOriginY(), objectSpaceRay.getOriginZ(),
+                objectSpaceRay.getDirectionX(), objectSpaceRay.getDirectionY(), objectSpaceRay.getDirectionZ());
+    }
+
+    /**
+     * Create the collision information for an intersection found with the object space ray given by its components.
+     */
+    private CollisionInformation createCollisionInformation(Ray ray, double distance,
+                                                            double ox, double oy, double oz,
+                                                            double dx, double dy, double dz) {
+        final Point3D intersectionPoint = new Point3D(ox + distance * dx, oy + distance * dy, oz + distance * dz);
+        return new CollisionInformation(
+                ray,
+                this,
+                distance,
+                getObjectToWorld().transform(intersectionPoint),
+                getObjectToWorld().transform(calculateNormal(intersectionPoint, dx, dy, dz)),
+                mapToLocalUV(intersectionPoint));
+    }
+
     @Nonnull
     @Override
     public BoundingBox getBoundingBox() {
@@ -150,9 +234,12 @@ public class SimpleSphere extends AbstractShape {
         return axisAlignedBoundingBox;
     }
 
-    private Normal3D calculateNormal(Point3D intersectionPoint, Ray intersectionRay) {
-        Normal3D result = intersectionPoint.sub(Point3D.ORIGIN).asNormal();
-        if (intersectionRay.getDirection().isSameDirection(result)) {
+    private Normal3D calculateNormal(Point3D intersectionPoint, double dx, double dy, double dz) {
+        Normal3D result = intersectionPoint.asNormal();
+        final double cosine = intersectionPoint.getX() * dx
+                + intersectionPoint.getY() * dy
+                + intersectionPoint.getZ() * dz;
+        if (cosine >= 0d) {
             return result.neg();
         }
         return result;
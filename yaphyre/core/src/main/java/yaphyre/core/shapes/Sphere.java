@@ -19,19 +19,19 @@ package yaphyre.core.shapes;
 import java.text.MessageFormat;
 import java.util.Optional;
 import java.util.OptionalDouble;
-import java.util.stream.DoubleStream;
 import javax.annotation.Nonnull;
 
+import yaphyre.core.api.CollisionCache;
 import yaphyre.core.api.CollisionInformation;
 import yaphyre.core.api.Shader;
 import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.MutableRay;
 import yaphyre.core.math.Normal3D;
 import yaphyre.core.math.Point2D;
 import yaphyre.core.math.Point3D;
 import yaphyre.core.math.Ray;
 import yaphyre.core.math.Solvers;
 import yaphyre.core.math.Transformation;
-import yaphyre.core.math.Vector3D;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -43,6 +43,7 @@ import static java.lang.Math.min;
 import static yaphyre.core.math.MathUtils.EPSILON;
 import static yaphyre.core.math.MathUtils.TWO_PI;
 import static yaphyre.core.math.MathUtils.isInRangeWithTolerance;
+import static yaphyre.core.math.MathUtils.isZero;
 
 /**
  * A sphere in the three dimensional space is defined as:<br/> (p - p<sub>0</sub>) &sdot; (p - p<sub>0</sub>) =
@@ -102,7 +103,7 @@ public class Sphere extends AbstractShape {
         this.phiMax = max(phiMin, phiMax) / 360d * TWO_PI;
         this.thetaMin = min(thetaMin, thetaMax) / 180d * PI;
         this.thetaMax = max(thetaMin, thetaMax) / 180d * PI;
-        isPartial = phiMin == 0d && phiMax == 360d && thetaMin == 0d && thetaMax == 180d;
+        isPartial = !(this.phiMin == 0d && this.phiMax == TWO_PI && this.thetaMin == 0d && this.thetaMax == PI);
         boundingBox = objectToWorld.transform(new BoundingBox(new Point3D(1, 1, 1), new Point3D(-1, -1, -1)));
     }
 
@@ -187,11 +188,36 @@ public class Sphere extends AbstractShape {
             return Optional.empty();
         }
 
-        Point3D intersectionPoint = ray.getPoint(intersectDistance.getAsDouble());
+        return Optional.of(createCollisionInformation(ray, intersectDistance.getAsDouble()));
+    }
+
+    @Override
+    public double intersectDistance(@Nonnull Ray ray, @Nonnull CollisionCache cache) {
+        return getIntersectDistance(ray).orElse(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * The normal and the <em>u</em>/<em>v</em> coordinates are calculated from the intersection point, so they do not
+     * need anything from the first phase.
+     */
+    @Nonnull
+    @Override
+    public CollisionInformation createCollisionInformation(@Nonnull Ray ray, double distance,
+                                                           @Nonnull CollisionCache cache) {
+        return createCollisionInformation(ray, distance);
+    }
+
+    private CollisionInformation createCollisionInformation(Ray ray, double distance) {
+        Point3D intersectionPoint = ray.getPoint(distance);
 
-        return Optional.of(new CollisionInformation(ray, this,
-                intersectDistance.getAsDouble(), intersectionPoint,
-                getNormal(intersectionPoint), getMappedSurfacePoint(intersectionPoint)));
+        return new CollisionInformation(ray, this,
+                distance, intersectionPoint,
+                getNormal(intersectionPoint), getMappedSurfacePoint(intersectionPoint));
+    }
+
+    @Override
+    public boolean occluded(@Nonnull Ray ray) {
+        return getIntersectDistance(ray).isPresent();
     }
 
     @Nonnull
@@ -224,20 +250,38 @@ public class Sphere extends AbstractShape {
     OptionalDouble getIntersectDistance(Ray ray) {
 
         // Transform the incoming ray from the world space into the object space.
-        final Ray objectRay = super.getWorldToObject().transform(ray);
-
-        // Transform the origin of the ray into the object space of the sphere.
-        Vector3D oc = objectRay.getOrigin().asVector();
-
-        final double c2 = objectRay.getDirection().dot(objectRay.getDirection());
-        final double c1 = 2 * oc.dot(objectRay.getDirection());
-        final double c0 = oc.dot(oc) - RADIUS_SQUARED;
+        final MutableRay objectRay = super.transformToObjectSpace(ray, scratchRay());
+
+        // The origin of the ray in the object space of the sphere is the vector from the center to the origin.
+        final double ox = objectRay.getOriginX();
+        final double oy = objectRay.getOriginY();
+        final double oz = objectRay.getOriginZ();
+        final double dx = objectRay.getDirectionX();
+        final double dy = objectRay.getDirectionY();
+        final double dz = objectRay.getDirectionZ();
+
+        final double c2 = dx * dx + dy * dy + dz * dz;
+        final double c1 = 2 * (ox * dx + oy * dy + oz * dz);
+        final double c0 = (ox * ox + oy * oy + oz * oz) - RADIUS_SQUARED;
+
+        // reject misses before the solver allocates its result
+        final double discriminant = c1 * c1 - 4 * c2 * c0;
+        if (discriminant < 0 && !isZero(discriminant)) {
+            return OptionalDouble.empty();
+        }
 
         final double[] solutions = Solvers.Quadratic.solve(c0, c1, c2);
 
-        return DoubleStream.of(solutions)
-                .filter(d -> objectRay.getTRange().contains(d) && (!isPartial || isInAngularRange(objectRay.getPoint(d))))
-                .min();
+        boolean hit = false;
+        double distance = Double.POSITIVE_INFINITY;
+        for (double solution : solutions) {
+            if (objectRay.isInRange(solution) && solution <= distance
+                    && (!isPartial || isInAngularRange(objectRay.getPoint(solution)))) {
+                distance = solution;
+                hit = true;
+            }
+        }
+        return hit ? OptionalDouble.of(distance) : OptionalDouble.empty();
     }
 
     /**
@@ -0,0 +1,437 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.shapes;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Optional;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.accelerators.BoundingVolumeHierarchy;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Shader;
+import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.MutableRay;
+import yaphyre.core.math.Normal3D;
+import yaphyre.core.math.Point2D;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Double.POSITIVE_INFINITY;
+
+/**
+ * A mesh of triangles. Instead of one object per triangle, the mesh keeps its data in a few flat buffers:
+ * <ul>
+ * <li>the vertex positions (three floats per vertex)</li>
+ * <li>optional vertex normals (three floats per vertex) for smooth shading</li>
+ * <li>optional texture coordinates (two floats per vertex)</li>
+ * <li>the vertex indices of the triangles (three ints per triangle)</li>
+ * </ul>
+ * The triangles are organized in a {@link BoundingVolumeHierarchy} in object space, so a ray has to be transformed only
+ * once per mesh. The ray/triangle test is the watertight algorithm by Woop, Benthin and Wald: rays hitting an edge or
+ * a vertex shared by several triangles never slip through the mesh.<br/>
+ * The buffers are used as they are, without being copied, since meshes may be huge. They may wrap arrays or be views
+ * on a memory mapped file (see {@link TriangleMeshFile}) and must not be changed after the mesh has been created.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class TriangleMesh extends AbstractShape {
+
+    private final FloatBuffer positions;
+    private final FloatBuffer normals;
+    private final FloatBuffer uvs;
+    private final IntBuffer indices;
+
+    private final BoundingVolumeHierarchy hierarchy;
+    private final BoundingBox boundingBox;
+
+    /**
+     * Create a mesh with flat shaded triangles and barycentric texture coordinates.
+     *
+     * @param objectToWorld The {@link Transformation} from object to world space.
+     * @param shader        The {@link Shader} to use for the whole mesh.
+     * @param positions     The vertex positions: x, y, z per vertex.
+     * @param indices       The vertex indices of the corners of the triangles: three per triangle.
+     */
+    public TriangleMesh(@Nonnull Transformation objectToWorld, @Nonnull Shader shader,
+                        @Nonnull float[] positions, @Nonnull int[] indices) {
+        this(objectToWorld, shader, positions, null, null, indices);
+    }
+
+    /**
+     * Create a mesh.
+     *
+     * @param objectToWorld The {@link Transformation} from object to world space.
+     * @param shader        The {@link Shader} to use for the whole mesh.
+     * @param positions     The vertex positions: x, y, z per vertex.
+     * @param normals       The vertex normals: x, y, z per vertex. If <code>null</code> the geometric normal of the
+     *                      triangles is used.
+     * @param uvs           The texture coordinates: u, v per vertex. If <code>null</code> the barycentric coordinates
+     *                      of the hit point are used.
+     * @param indices       The vertex indices of the corners of the triangles: three per triangle.
+     * @throws IllegalArgumentException If the sizes of the arrays do not match or an index is out of range.
+     */
+    public TriangleMesh(@Nonnull Transformation objectToWorld, @Nonnull Shader shader,
+                        @Nonnull float[] positions, @Nullable float[] normals, @Nullable float[] uvs,
+                        @Nonnull int[] indices) {
+        this(objectToWorld, shader, FloatBuffer.wrap(positions), normals != null ? FloatBuffer.wrap(normals) : null,
+                uvs != null ? FloatBuffer.wrap(uvs) : null, IntBuffer.wrap(indices), null);
+    }
+
+    /**
+     * Create a mesh from buffers, optionally with a hierarchy built before. This is used to create meshes directly on
+     * the content of a {@link TriangleMeshFile} without building the hierarchy again.
+     *
+     * @param objectToWorld The {@link Transformation} from object to world space.
+     * @param shader        The {@link Shader} to use for the whole mesh.
+     * @param positions     The vertex positions: x, y, z per vertex.
+     * @param normals       The vertex normals: x, y, z per vertex. If <code>null</code> the geometric normal of the
+     *                      triangles is used.
+     * @param uvs           The texture coordinates: u, v per vertex. If <code>null</code> the barycentric coordinates
+     *                      of the hit point are used.
+     * @param indices       The vertex indices of the corners of the triangles: three per triangle.
+     * @param hierarchy     The hierarchy over the triangles in object space. If <code>null</code> it is built from the
+     *                      triangles.
+     * @throws IllegalArgumentException If the sizes of the buffers do not match or an index is out of range.
+     */
+    public TriangleMesh(@Nonnull Transformation objectToWorld, @Nonnull Shader shader,
+                        @Nonnull FloatBuffer positions, @Nullable FloatBuffer normals, @Nullable FloatBuffer uvs,
+                        @Nonnull IntBuffer indices, @Nullable BoundingVolumeHierarchy hierarchy) {
+        super(objectToWorld, shader);
+        checkArgument(positions.capacity() % 3 == 0, "three coordinates per vertex expected");
+        checkArgument(indices.capacity() % 3 == 0, "three indices per triangle expected");
+        final int vertexCount = positions.capacity() / 3;
+        checkArgument(normals == null || normals.capacity() == positions.capacity(), "one normal per vertex expected");
+        checkArgument(uvs == null || uvs.capacity() == vertexCount * 2, "one texture coordinate per vertex expected");
+        for (int i = 0; i < indices.capacity(); i++) {
+            final int index = indices.get(i);
+            checkArgument(index >= 0 && index < vertexCount, "vertex index out of range: %s", index);
+        }
+
+        this.positions = positions;
+        this.normals = normals;
+        this.uvs = uvs;
+        this.indices = indices;
+
+        final int triangleCount = indices.capacity() / 3;
+        if (hierarchy != null) {
+            checkArgument(hierarchy.getPrimitiveCount() == triangleCount, "hierarchy does not match the triangles");
+            final IntBuffer primitiveIndices = hierarchy.getPrimitiveIndices();
+            for (int i = 0; i < triangleCount; i++) {
+                checkArgument(primitiveIndices.get(i) < triangleCount, "triangle index out of range: %s", i);
+            }
+            this.hierarchy = hierarchy;
+        } else {
+            final double[] triangleBounds = new double[triangleCount * 6];
+            for (int triangle = 0; triangle < triangleCount; triangle++) {
+                calculateBounds(triangle, triangleBounds);
+            }
+            this.hierarchy = new BoundingVolumeHierarchy(triangleBounds);
+        }
+        boundingBox = calculateWorldBounds(objectToWorld);
+    }
+
+    private void calculateBounds(int triangle, double[] target) {
+        final int offset = triangle * 6;
+        for (int axis = 0; axis < 3; axis++) {
+            double min = POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int corner = 0; corner < 3; corner++) {
+                final double value = positions.get(indices.get(triangle * 3 + corner) * 3 + axis);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            target[offset + axis] = min;
+            target[offset + 3 + axis] = max;
+        }
+    }
+
+    /**
+     * The world bounds are calculated from the transformed vertices, which is tighter than transforming the object
+     * space bounds for rotated meshes.
+     */
+    private BoundingBox calculateWorldBounds(Transformation objectToWorld) {
+        if (indices.capacity() == 0) {
+            return new BoundingBox(objectToWorld.transform(Point3D.ORIGIN));
+        }
+        double minX = POSITIVE_INFINITY;
+        double minY = POSITIVE_INFINITY;
+        double minZ = POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        for (int vertex = 0; vertex < positions.capacity() / 3; vertex++) {
+            final Point3D p = objectToWorld.transform(
+                    new Point3D(positions.get(vertex * 3), positions.get(vertex * 3 + 1), positions.get(vertex * 3 + 2)));
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            minZ = Math.min(minZ, p.getZ());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+            maxZ = Math.max(maxZ, p.getZ());
+        }
+        return new BoundingBox(new Point3D(minX, minY, minZ), new Point3D(maxX, maxY, maxZ));
+    }
+
+    public int getTriangleCount() {
+        return indices.capacity() / 3;
+    }
+
+    public int getVertexCount() {
+        return positions.capacity() / 3;
+    }
+
+    public BoundingVolumeHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    @Nonnull
+    public FloatBuffer getPositions() {
+        return positions.asReadOnlyBuffer();
+    }
+
+    @Nullable
+    public FloatBuffer getNormals() {
+        return normals != null ? normals.asReadOnlyBuffer() : null;
+    }
+
+    @Nullable
+    public FloatBuffer getUVs() {
+        return uvs != null ? uvs.asReadOnlyBuffer() : null;
+    }
+
+    @Nonnull
+    public IntBuffer getIndices() {
+        return indices.asReadOnlyBuffer();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("triangles", getTriangleCount())
+                .add("vertices", getVertexCount())
+                .add("smooth", normals != null)
+                .add("hierarchy", hierarchy).toString();
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+        final MutableRay objectRay = transformToObjectSpace(ray, scratchRay());
+        final TriangleIntersector intersector = new TriangleIntersector(objectRay);
+
+        final double distance = hierarchy.traverse(objectRay.getOriginX(), objectRay.getOriginY(), objectRay.getOriginZ(),
+                objectRay.getDirectionX(), objectRay.getDirectionY(), objectRay.getDirectionZ(),
+                objectRay.getTMin(), objectRay.getTMax(), intersector, false);
+
+        if (distance == POSITIVE_INFINITY) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new CollisionInformation(
+                ray,
+                this,
+                distance,
+                ray.getPoint(distance),
+                calculateNormal(intersector, ray),
+                calculateUV(intersector)));
+    }
+
+    /**
+     * The hierarchy of the mesh is traversed until the first triangle hit, the shading data is never calculated.
+     */
+    @Override
+    public boolean occluded(@Nonnull Ray ray) {
+        final MutableRay objectRay = transformToObjectSpace(ray, scratchRay());
+        return hierarchy.traverse(objectRay.getOriginX(), objectRay.getOriginY(), objectRay.getOriginZ(),
+                objectRay.getDirectionX(), objectRay.getDirectionY(), objectRay.getDirectionZ(),
+                objectRay.getTMin(), objectRay.getTMax(), new TriangleIntersector(objectRay), true)
+                != POSITIVE_INFINITY;
+    }
+
+    /**
+     * Calculate the normal at the hit point. It is turned towards the incoming ray, so both sides of a triangle are
+     * lit the same way.
+     */
+    @Nonnull
+    private Normal3D calculateNormal(@Nonnull TriangleIntersector hit, @Nonnull Ray ray) {
+        final int i0 = indices.get(hit.triangle * 3) * 3;
+        final int i1 = indices.get(hit.triangle * 3 + 1) * 3;
+        final int i2 = indices.get(hit.triangle * 3 + 2) * 3;
+
+        final Normal3D objectNormal;
+        if (normals != null) {
+            objectNormal = new Normal3D(
+                    hit.b0 * normals.get(i0) + hit.b1 * normals.get(i1) + hit.b2 * normals.get(i2),
+                    hit.b0 * normals.get(i0 + 1) + hit.b1 * normals.get(i1 + 1) + hit.b2 * normals.get(i2 + 1),
+                    hit.b0 * normals.get(i0 + 2) + hit.b1 * normals.get(i1 + 2) + hit.b2 * normals.get(i2 + 2));
+        } else {
+            final double e1x = positions.get(i1) - positions.get(i0);
+            final double e1y = positions.get(i1 + 1) - positions.get(i0 + 1);
+            final double e1z = positions.get(i1 + 2) - positions.get(i0 + 2);
+            final double e2x = positions.get(i2) - positions.get(i0);
+            final double e2y = positions.get(i2 + 1) - positions.get(i0 + 1);
+            final double e2z = positions.get(i2 + 2) - positions.get(i0 + 2);
+            objectNormal = new Normal3D(e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x);
+        }
+
+        final Vector3D worldNormal = getObjectToWorld().transform(objectNormal).asVector().normalize();
+        final Vector3D oriented = worldNormal.dot(ray.getDirection()) > 0 ? worldNormal.neg() : worldNormal;
+        return new Normal3D(oriented.getX(), oriented.getY(), oriented.getZ());
+    }
+
+    @Nonnull
+    private Point2D calculateUV(@Nonnull TriangleIntersector hit) {
+        if (uvs == null) {
+            return new Point2D(hit.b1, hit.b2);
+        }
+        final int i0 = indices.get(hit.triangle * 3) * 2;
+        final int i1 = indices.get(hit.triangle * 3 + 1) * 2;
+        final int i2 = indices.get(hit.triangle * 3 + 2) * 2;
+        return new Point2D(
+                hit.b0 * uvs.get(i0) + hit.b1 * uvs.get(i1) + hit.b2 * uvs.get(i2),
+                hit.b0 * uvs.get(i0 + 1) + hit.b1 * uvs.get(i1 + 1) + hit.b2 * uvs.get(i2 + 1));
+    }
+
+    @Nonnull
+    @Override
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    /**
+     * Watertight ray/triangle intersection (Woop, Benthin, Wald: "Watertight Ray/Triangle Intersection", JCGT 2013).
+     * The ray dependent values (the permutation of the axes and the shear) are calculated once per ray, the triangles
+     * are then tested in a coordinate system where the ray starts at the origin and points along the z axis. Since the
+     * edge functions of neighboring triangles are evaluated on exactly the same values, a ray cannot pass between
+     * them.<br/>
+     * The intersector also records the nearest hit found so far.
+     */
+    private final class TriangleIntersector implements BoundingVolumeHierarchy.PrimitiveIntersector {
+
+        private final double ox;
+        private final double oy;
+        private final double oz;
+        private final double tMin;
+        private final int kx;
+        private final int ky;
+        private final int kz;
+        private final double sx;
+        private final double sy;
+        private final double sz;
+
+        private int triangle = -1;
+        private double b0;
+        private double b1;
+        private double b2;
+
+        TriangleIntersector(@Nonnull MutableRay ray) {
+            ox = ray.getOriginX();
+            oy = ray.getOriginY();
+            oz = ray.getOriginZ();
+            tMin = ray.getTMin();
+
+            final double dx = ray.getDirectionX();
+            final double dy = ray.getDirectionY();
+            final double dz = ray.getDirectionZ();
+
+            // the dimension where the ray direction is maximal becomes z, the winding is kept by swapping x and y
+            final double ax = Math.abs(dx);
+            final double ay = Math.abs(dy);
+            final double az = Math.abs(dz);
+            final int z = ax > ay ? (ax > az ? 0 : 2) : (ay > az ? 1 : 2);
+            int x = z == 2 ? 0 : z + 1;
+            int y = x == 2 ? 0 : x + 1;
+            final double directionZ = component(z, dx, dy, dz);
+            if (directionZ < 0) {
+                final int swap = x;
+                x = y;
+                y = swap;
+            }
+            kx = x;
+            ky = y;
+            kz = z;
+
+            sx = component(kx, dx, dy, dz) / directionZ;
+            sy = component(ky, dx, dy, dz) / directionZ;
+            sz = 1d / directionZ;
+        }
+
+        private double component(int axis, double x, double y, double z) {
+            return axis == 0 ? x : axis == 1 ? y : z;
+        }
+
+        @Override
+        public double intersect(int primitive, double tMax) {
+            final int v0 = indices.get(primitive * 3) * 3;
+            final int v1 = indices.get(primitive * 3 + 1) * 3;
+            final int v2 = indices.get(primitive * 3 + 2) * 3;
+
+            // vertices relative to the ray origin
+            final double ax = positions.get(v0 + kx) - component(kx, ox, oy, oz);
+            final double ay = positions.get(v0 + ky) - component(ky, ox, oy, oz);
+            final double az = positions.get(v0 + kz) - component(kz, ox, oy, oz);
+            final double bx = positions.get(v1 + kx) - component(kx, ox, oy, oz);
+            final double by = positions.get(v1 + ky) - component(ky, ox, oy, oz);
+            final double bz = positions.get(v1 + kz) - component(kz, ox, oy, oz);
+            final double cx = positions.get(v2 + kx) - component(kx, ox, oy, oz);
+            final double cy = positions.get(v2 + ky) - component(ky, ox, oy, oz);
+            final double cz = positions.get(v2 + kz) - component(kz, ox, oy, oz);
+
+            // shear and scale of the vertices
+            final double axs = ax - sx * az;
+            final double ays = ay - sy * az;
+            final double bxs = bx - sx * bz;
+            final double bys = by - sy * bz;
+            final double cxs = cx - sx * cz;
+            final double cys = cy - sy * cz;
+
+            // scaled barycentric coordinates, a hit needs all of them to have the same sign
+            final double u = cxs * bys - cys * bxs;
+            final double v = axs * cys - ays * cxs;
+            final double w = bxs * ays - bys * axs;
+            if ((u < 0 || v < 0 || w < 0) && (u > 0 || v > 0 || w > 0)) {
+                return POSITIVE_INFINITY;
+            }
+
+            final double determinant = u + v + w;
+            if (determinant == 0d) {
+                return POSITIVE_INFINITY;
+            }
+
+            final double scaledDistance = u * sz * az + v * sz * bz + w * sz * cz;
+            final double distance = scaledDistance / determinant;
+            if (!(distance > tMin && distance < tMax)) {
+                return POSITIVE_INFINITY;
+            }
+
+            triangle = primitive;
+            b0 = u / determinant;
+            b1 = v / determinant;
+            b2 = w / determinant;
+            return distance;
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.shapes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.accelerators.BoundingVolumeHierarchy;
+import yaphyre.core.api.Shader;
+import yaphyre.core.math.Transformation;
+
+/**
+ * Binary cache format for {@link TriangleMesh}es. The file contains everything a mesh needs, including its prebuilt
+ * {@link BoundingVolumeHierarchy}, in exactly the layout used in memory. Loading a mesh therefore does not parse
+ * anything: the file is mapped into memory and the mesh reads directly from the mapped buffers. The operating system
+ * loads the pages when they are touched and shares them between all processes mapping the same file.<br/>
+ * All values are stored little endian. The file starts with a header of eight ints:
+ * <ol>
+ * <li>the magic number {@link #MAGIC}</li>
+ * <li>the version of the format {@link #VERSION}</li>
+ * <li>flags: {@link #FLAG_NORMALS} if the file contains vertex normals, {@link #FLAG_UVS} if it contains texture
+ * coordinates</li>
+ * <li>the number of vertices</li>
+ * <li>the number of triangles</li>
+ * <li>the number of nodes of the hierarchy</li>
+ * <li>the depth of the hierarchy</li>
+ * <li>reserved, always 0</li>
+ * </ol>
+ * The header is followed by the sections (the doubles first, so every value is aligned to its size):
+ * <ol>
+ * <li>the bounds of the nodes: six doubles per node</li>
+ * <li>the bounds of the triangles in the order of the leaves: six doubles per triangle</li>
+ * <li>the nodes: two ints per node</li>
+ * <li>the triangle indices referenced by the leaves: one int per triangle</li>
+ * <li>the vertex indices: three ints per triangle</li>
+ * <li>the vertex positions: three floats per vertex</li>
+ * <li>the vertex normals if present: three floats per vertex</li>
+ * <li>the texture coordinates if present: two floats per vertex</li>
+ * </ol>
+ * Since a mapping is limited to 2GB, so are the files.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public final class TriangleMeshFile {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TriangleMeshFile.class);
+
+    /**
+     * "YPMC" read as a little endian int.
+     */
+    public static final int MAGIC = 0x434d5059;
+
+    public static final int VERSION = 1;
+
+    public static final int FLAG_NORMALS = 1;
+
+    public static final int FLAG_UVS = 1 << 1;
+
+    private static final int HEADER_SIZE = 8 * Integer.BYTES;
+
+    private TriangleMeshFile() {
+    }
+
+    /**
+     * Write the mesh with its hierarchy to a file. An existing file is overwritten.
+     *
+     * @param mesh The {@link TriangleMesh} to write. Its transformation and shader are not part of the file.
+     * @param path The file to write to.
+     * @throws IOException If the file cannot be written or the mesh is too large.
+     */
+    public static void write(@Nonnull TriangleMesh mesh, @Nonnull Path path) throws IOException {
+        final BoundingVolumeHierarchy hierarchy = mesh.getHierarchy();
+        final FloatBuffer normals = mesh.getNormals();
+        final FloatBuffer uvs = mesh.getUVs();
+        final int flags = (normals != null ? FLAG_NORMALS : 0) | (uvs != null ? FLAG_UVS : 0);
+        final long size = calculateSize(flags, mesh.getVertexCount(), mesh.getTriangleCount(),
+                hierarchy.getNodeCount());
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Mesh too large for a mesh file: " + size + " bytes");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(flags)
+                    .putInt(mesh.getVertexCount())
+                    .putInt(mesh.getTriangleCount())
+                    .putInt(hierarchy.getNodeCount())
+                    .putInt(hierarchy.getDepth())
+                    .putInt(0);
+
+            putDoubles(buffer, hierarchy.getNodeBounds());
+            putDoubles(buffer, hierarchy.getPrimitiveBounds());
+            putInts(buffer, hierarchy.getNodes());
+            putInts(buffer, hierarchy.getPrimitiveIndices());
+            putInts(buffer, mesh.getIndices());
+            putFloats(buffer, mesh.getPositions());
+            if (normals != null) {
+                putFloats(buffer, normals);
+            }
+            if (uvs != null) {
+                putFloats(buffer, uvs);
+            }
+            buffer.force();
+        }
+        LOGGER.debug("Wrote {} to {}", mesh, path);
+    }
+
+    /**
+     * Map a mesh file into memory and create a mesh reading directly from it.
+     *
+     * @param path          The file to map.
+     * @param objectToWorld The {@link Transformation} from object to world space of the mesh.
+     * @param shader        The {@link Shader} of the mesh.
+     * @return The mesh backed by the mapped file.
+     * @throws IOException If the file cannot be read or is not a valid mesh file.
+     */
+    @Nonnull
+    public static TriangleMesh map(@Nonnull Path path, @Nonnull Transformation objectToWorld, @Nonnull Shader shader)
+            throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Not a mesh file: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        final int magic = buffer.getInt();
+        final int version = buffer.getInt();
+        final int flags = buffer.getInt();
+        final int vertexCount = buffer.getInt();
+        final int triangleCount = buffer.getInt();
+        final int nodeCount = buffer.getInt();
+        final int depth = buffer.getInt();
+        buffer.getInt();
+
+        if (magic != MAGIC) {
+            throw new IOException("Not a mesh file: " + path);
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported mesh file version " + version + ": " + path);
+        }
+        if (vertexCount < 0 || triangleCount < 0 || nodeCount < 0
+                || calculateSize(flags, vertexCount, triangleCount, nodeCount) != buffer.capacity()) {
+            throw new IOException("Corrupt mesh file: " + path);
+        }
+
+        final DoubleBuffer nodeBounds = nextDoubles(buffer, nodeCount * 6);
+        final DoubleBuffer primitiveBounds = nextDoubles(buffer, triangleCount * 6);
+        final IntBuffer nodes = nextInts(buffer, nodeCount * 2);
+        final IntBuffer primitiveIndices = nextInts(buffer, triangleCount);
+        final IntBuffer indices = nextInts(buffer, triangleCount * 3);
+        final FloatBuffer positions = nextFloats(buffer, vertexCount * 3);
+        final FloatBuffer normals = (flags & FLAG_NORMALS) != 0 ? nextFloats(buffer, vertexCount * 3) : null;
+        final FloatBuffer uvs = (flags & FLAG_UVS) != 0 ? nextFloats(buffer, vertexCount * 2) : null;
+
+        try {
+            final BoundingVolumeHierarchy hierarchy = BoundingVolumeHierarchy.fromBuffers(
+                    nodeBounds, nodes, primitiveIndices, primitiveBounds, depth);
+            return new TriangleMesh(objectToWorld, shader, positions, normals, uvs, indices, hierarchy);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt mesh file: " + path, e);
+        }
+    }
+
+    private static long calculateSize(int flags, long vertexCount, long triangleCount, long nodeCount) {
+        final long floatsPerVertex = 3 + ((flags & FLAG_NORMALS) != 0 ? 3 : 0) + ((flags & FLAG_UVS) != 0 ? 2 : 0);
+        return HEADER_SIZE
+                + (nodeCount * 6 + triangleCount * 6) * Double.BYTES
+                + (nodeCount * 2 + triangleCount + triangleCount * 3) * Integer.BYTES
+                + vertexCount * floatsPerVertex * Float.BYTES;
+    }
+
+    private static void putDoubles(ByteBuffer target, DoubleBuffer source) {
+        target.asDoubleBuffer().put(source);
+        target.position(target.position() + source.capacity() * Double.BYTES);
+    }
+
+    private static void putInts(ByteBuffer target, IntBuffer source) {
+        target.asIntBuffer().put(source);
+        target.position(target.position() + source.capacity() * Integer.BYTES);
+    }
+
+    private static void putFloats(ByteBuffer target, FloatBuffer source) {
+        target.asFloatBuffer().put(source);
+        target.position(target.position() + source.capacity() * Float.BYTES);
+    }
+
+    private static ByteBuffer nextSection(ByteBuffer buffer, int bytes) {
+        final ByteBuffer section = buffer.slice();
+        section.limit(bytes);
+        buffer.position(buffer.position() + bytes);
+        return section.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static DoubleBuffer nextDoubles(ByteBuffer buffer, int count) {
+        return nextSection(buffer, count * Double.BYTES).asDoubleBuffer();
+    }
+
+    private static IntBuffer nextInts(ByteBuffer buffer, int count) {
+        return nextSection(buffer, count * Integer.BYTES).asIntBuffer();
+    }
+
+    private static FloatBuffer nextFloats(ByteBuffer buffer, int count) {
+        return nextSection(buffer, count * Float.BYTES).asFloatBuffer();
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.statistics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnull;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import yaphyre.core.api.Shape;
+
+/**
+ * Counters for the hot paths of the renderer: the rays traced by type, the nodes of the bounding volume hierarchies
+ * visited, the shapes intersected (by shape class) and the samples and render times of the tiles.<br/>
+ * The counters are {@link LongAdder}s, which keep a separate cell for each contending thread, so the render threads do
+ * not compete for a single memory location. Events occurring many times per ray (like the visited nodes) are summed
+ * up in local variables and added once per ray, the samples once per tile.<br/>
+ * Counting is switched on with the system property {@value #ENABLED_PROPERTY} and fixed once this class is loaded.
+ * The counting methods and the calls within the hot loops check {@link #ENABLED}, which is a constant to the just in
+ * time compiler, so the instrumentation is removed altogether if it is switched off.<br/>
+ * Ray packets are counted as camera rays and node visits, but the shapes intersected with packets are not counted.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public final class RenderStatistics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderStatistics.class);
+
+    /**
+     * The system property switching the counting on (<code>true</code>) or off (anything else, the default).
+     */
+    public static final String ENABLED_PROPERTY = "yaphyre.statistics";
+
+    public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    public static final String MBEAN_NAME = "yaphyre:type=RenderStatistics";
+
+    /**
+     * The kinds of rays counted.
+     */
+    public enum RayType {
+        CAMERA, SHADOW, SECONDARY
+    }
+
+    private static final Map<RayType, LongAdder> RAYS = new EnumMap<>(RayType.class);
+
+    static {
+        for (RayType rayType : RayType.values()) {
+            RAYS.put(rayType, new LongAdder());
+        }
+    }
+
+    private static final LongAdder TRAVERSALS = new LongAdder();
+    private static final LongAdder NODE_VISITS = new LongAdder();
+    private static final LongAdder PIXELS = new LongAdder();
+    private static final LongAdder SAMPLES = new LongAdder();
+    private static final LongAdder TILES = new LongAdder();
+    private static final LongAdder TILE_NANOS = new LongAdder();
+    private static final LongAccumulator MIN_TILE_NANOS = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private static final LongAccumulator MAX_TILE_NANOS = new LongAccumulator(Math::max, 0L);
+
+    private static final Map<Class<?>, ShapeCounters> SHAPES = new ConcurrentHashMap<>();
+
+    /**
+     * Looking up the counters of a class this way is much cheaper than a lookup in {@link #SHAPES}.
+     */
+    private static final ClassValue<ShapeCounters> SHAPE_COUNTERS = new ClassValue<ShapeCounters>() {
+        @Override
+        protected ShapeCounters computeValue(Class<?> shapeClass) {
+            return SHAPES.computeIfAbsent(shapeClass, key -> new ShapeCounters());
+        }
+    };
+
+    private RenderStatistics() {
+    }
+
+    public static void countRays(@Nonnull RayType rayType, int count) {
+        if (ENABLED) {
+            RAYS.get(rayType).add(count);
+        }
+    }
+
+    /**
+     * Count one traversal of a bounding volume hierarchy by a ray or a packet of rays.
+     *
+     * @param nodeVisits The number of nodes whose bounds were tested.
+     */
+    public static void countTraversal(int nodeVisits) {
+        if (ENABLED) {
+            TRAVERSALS.increment();
+            NODE_VISITS.add(nodeVisits);
+        }
+    }
+
+    /**
+     * Count the intersection of a shape with a ray.
+     *
+     * @param shape The shape intersected.
+     * @param hit   <code>true</code> if the ray hit the shape.
+     * @return The given hit flag, so the counting can wrap the intersection.
+     */
+    public static boolean countIntersection(@Nonnull Shape shape, boolean hit) {
+        if (ENABLED) {
+            final ShapeCounters counters = SHAPE_COUNTERS.get(shape.getClass());
+            counters.tests.increment();
+            if (hit) {
+                counters.hits.increment();
+            }
+        }
+        return hit;
+    }
+
+    /**
+     * Count a rendered tile. Each sample is traced as one camera ray.
+     *
+     * @param pixels  The number of pixels rendered.
+     * @param samples The number of samples recorded.
+     * @param nanos   The time used to render the tile.
+     */
+    public static void countTile(int pixels, long samples, long nanos) {
+        if (ENABLED) {
+            RAYS.get(RayType.CAMERA).add(samples);
+            PIXELS.add(pixels);
+            SAMPLES.add(samples);
+            TILES.increment();
+            TILE_NANOS.add(nanos);
+            MIN_TILE_NANOS.accumulate(nanos);
+            MAX_TILE_NANOS.accumulate(nanos);
+        }
+    }
+
+    /**
+     * Read the current values of the counters. Counters changed while reading may not be consistent with each other.
+     */
+    @Nonnull
+    public static StatisticsReport snapshot() {
+        final Map<RayType, Long> rays = new EnumMap<>(RayType.class);
+        RAYS.forEach((rayType, counter) -> rays.put(rayType, counter.sum()));
+        final Map<String, StatisticsReport.ShapeStatistics> shapes = new TreeMap<>();
+        SHAPES.forEach((shapeClass, counters) -> shapes.put(
+                shapeClass.getSimpleName().isEmpty() ? shapeClass.getName() : shapeClass.getSimpleName(),
+                new StatisticsReport.ShapeStatistics(counters.tests.sum(), counters.hits.sum())));
+        final long tiles = TILES.sum();
+        return new StatisticsReport(rays, TRAVERSALS.sum(), NODE_VISITS.sum(), shapes, PIXELS.sum(), SAMPLES.sum(),
+                tiles, TILE_NANOS.sum(), tiles > 0 ? MIN_TILE_NANOS.get() : 0L, MAX_TILE_NANOS.get());
+    }
+
+    /**
+     * Set all counters to zero, e.g. before the next frame of a sequence is rendered.
+     */
+    public static void reset() {
+        RAYS.values().forEach(LongAdder::reset);
+        TRAVERSALS.reset();
+        NODE_VISITS.reset();
+        PIXELS.reset();
+        SAMPLES.reset();
+        TILES.reset();
+        TILE_NANOS.reset();
+        MIN_TILE_NANOS.reset();
+        MAX_TILE_NANOS.reset();
+        SHAPES.values().forEach(counters -> {
+            counters.tests.reset();
+            counters.hits.reset();
+        });
+    }
+
+    /**
+     * Expose the counters as {@link RenderStatisticsMXBean} named {@value #MBEAN_NAME} on the platform MBean server, so
+     * they can be watched with JMX clients like JConsole while rendering. Registering more than once has no effect.
+     */
+    public static void registerMBean() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new StatisticsMXBean(), new ObjectName(MBEAN_NAME));
+            LOGGER.info("Render statistics available via JMX as {}", MBEAN_NAME);
+        } catch (InstanceAlreadyExistsException e) {
+            LOGGER.debug("Render statistics already registered as {}", MBEAN_NAME);
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register render statistics via JMX", e);
+        }
+    }
+
+    private static class ShapeCounters {
+
+        private final LongAdder tests = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+
+    }
+
+    private static class StatisticsMXBean implements RenderStatisticsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public long getCameraRays() {
+            return RAYS.get(RayType.CAMERA).sum();
+        }
+
+        @Override
+        public long getShadowRays() {
+            return RAYS.get(RayType.SHADOW).sum();
+        }
+
+        @Override
+        public long getSecondaryRays() {
+            return RAYS.get(RayType.SECONDARY).sum();
+        }
+
+        @Override
+        public double getNodeVisitsPerTraversal() {
+            return snapshot().getNodeVisitsPerTraversal();
+        }
+
+        @Override
+        public long getShapeIntersections() {
+            return snapshot().getShapeIntersections();
+        }
+
+        @Override
+        public Map<String, Double> getHitRatios() {
+            final Map<String, Double> hitRatios = new TreeMap<>();
+            snapshot().getShapes().forEach((name, shape) -> hitRatios.put(name, shape.getHitRatio()));
+            return hitRatios;
+        }
+
+        @Override
+        public double getSamplesPerPixel() {
+            return snapshot().getSamplesPerPixel();
+        }
+
+        @Override
+        public long getRenderedTiles() {
+            return TILES.sum();
+        }
+
+        @Override
+        public double getMeanTileMillis() {
+            return snapshot().getMeanTileMillis();
+        }
+
+        @Override
+        public String getReport() {
+            return snapshot().format();
+        }
+
+        @Override
+        public void reset() {
+            RenderStatistics.reset();
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.statistics;
+
+import java.util.Map;
+
+/**
+ * The management interface of the {@link RenderStatistics}, see {@link RenderStatistics#registerMBean()}. The values
+ * are read from the live counters on each call.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public interface RenderStatisticsMXBean {
+
+    boolean isEnabled();
+
+    long getCameraRays();
+
+    long getShadowRays();
+
+    long getSecondaryRays();
+
+    double getNodeVisitsPerTraversal();
+
+    long getShapeIntersections();
+
+    /**
+     * @return The fraction of the intersections hitting the shape by the simple name of the shape class.
+     */
+    Map<String, Double> getHitRatios();
+
+    double getSamplesPerPixel();
+
+    long getRenderedTiles();
+
+    double getMeanTileMillis();
+
+    /**
+     * @return The report also printed at the end of the rendering.
+     */
+    String getReport();
+
+    void reset();
+
+}
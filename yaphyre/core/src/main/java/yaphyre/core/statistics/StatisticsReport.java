@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.statistics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.MoreObjects;
+
+import yaphyre.core.statistics.RenderStatistics.RayType;
+
+/**
+ * The values of the {@link RenderStatistics} at one point in time, with the derived ratios. It can be formatted as
+ * human readable report or as JSON document.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class StatisticsReport {
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final Map<RayType, Long> rays;
+    private final long traversals;
+    private final long nodeVisits;
+    private final Map<String, ShapeStatistics> shapes;
+    private final long pixels;
+    private final long samples;
+    private final long tiles;
+    private final long tileNanos;
+    private final long minTileNanos;
+    private final long maxTileNanos;
+
+    public StatisticsReport(@Nonnull Map<RayType, Long> rays, long traversals, long nodeVisits,
+                            @Nonnull Map<String, ShapeStatistics> shapes, long pixels, long samples, long tiles,
+                            long tileNanos, long minTileNanos, long maxTileNanos) {
+        this.rays = new EnumMap<>(RayType.class);
+        for (RayType rayType : RayType.values()) {
+            this.rays.put(rayType, rays.getOrDefault(rayType, 0L));
+        }
+        this.traversals = traversals;
+        this.nodeVisits = nodeVisits;
+        this.shapes = Collections.unmodifiableMap(new TreeMap<>(shapes));
+        this.pixels = pixels;
+        this.samples = samples;
+        this.tiles = tiles;
+        this.tileNanos = tileNanos;
+        this.minTileNanos = minTileNanos;
+        this.maxTileNanos = maxTileNanos;
+    }
+
+    public long getRays(@Nonnull RayType rayType) {
+        return rays.get(rayType);
+    }
+
+    public long getTraversals() {
+        return traversals;
+    }
+
+    public long getNodeVisits() {
+        return nodeVisits;
+    }
+
+    public double getNodeVisitsPerTraversal() {
+        return ratio(nodeVisits, traversals);
+    }
+
+    /**
+     * @return The statistics of the intersected shapes by the simple name of their class, ordered by name.
+     */
+    @Nonnull
+    public Map<String, ShapeStatistics> getShapes() {
+        return shapes;
+    }
+
+    public long getShapeIntersections() {
+        return shapes.values().stream().mapToLong(ShapeStatistics::getTests).sum();
+    }
+
+    public long getPixels() {
+        return pixels;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public double getSamplesPerPixel() {
+        return ratio(samples, pixels);
+    }
+
+    public long getTiles() {
+        return tiles;
+    }
+
+    public double getMeanTileMillis() {
+        return ratio(tileNanos, tiles) / NANOS_PER_MILLI;
+    }
+
+    public double getMinTileMillis() {
+        return minTileNanos / NANOS_PER_MILLI;
+    }
+
+    public double getMaxTileMillis() {
+        return maxTileNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Format the statistics as a human readable, multi line report.
+     */
+    @Nonnull
+    public String format() {
+        final StringBuilder report = new StringBuilder("Render statistics");
+        appendLine(report, "Camera rays", "%,d", getRays(RayType.CAMERA));
+        appendLine(report, "Shadow rays", "%,d", getRays(RayType.SHADOW));
+        appendLine(report, "Secondary rays", "%,d", getRays(RayType.SECONDARY));
+        appendLine(report, "BVH traversals", "%,d", traversals);
+        appendLine(report, "BVH node visits", "%,d (%.2f per traversal)", nodeVisits, getNodeVisitsPerTraversal());
+        appendLine(report, "Shape intersections", "%,d", getShapeIntersections());
+        shapes.forEach((name, shape) -> appendLine(report, "  " + name, "%,d tests, %,d hits (%.1f%%)",
+                shape.getTests(), shape.getHits(), shape.getHitRatio() * 100));
+        appendLine(report, "Samples", "%,d (%.2f per pixel)", samples, getSamplesPerPixel());
+        appendLine(report, "Tiles", "%,d (%.3f ms mean, %.3f ms min, %.3f ms max)", tiles,
+                getMeanTileMillis(), getMinTileMillis(), getMaxTileMillis());
+        return report.toString();
+    }
+
+    /**
+     * Format the statistics as JSON document. The derived ratios are included, so the document can be read without
+     * knowing how they are calculated.
+     */
+    @Nonnull
+    public String toJson() {
+        final StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"rays\": {");
+        String separator = "";
+        for (RayType rayType : RayType.values()) {
+            json.append(separator).append('"').append(rayType.name().toLowerCase(Locale.ROOT)).append("\": ")
+                    .append(getRays(rayType));
+            separator = ", ";
+        }
+        json.append("},\n");
+        json.append("  \"bvh\": {\"traversals\": ").append(traversals)
+                .append(", \"nodeVisits\": ").append(nodeVisits)
+                .append(", \"nodeVisitsPerTraversal\": ").append(getNodeVisitsPerTraversal()).append("},\n");
+        json.append("  \"shapes\": {");
+        separator = "";
+        for (Map.Entry<String, ShapeStatistics> shape : shapes.entrySet()) {
+            json.append(separator).append("\n    \"").append(shape.getKey()).append("\": {")
+                    .append("\"tests\": ").append(shape.getValue().getTests())
+                    .append(", \"hits\": ").append(shape.getValue().getHits())
+                    .append(", \"hitRatio\": ").append(shape.getValue().getHitRatio()).append('}');
+            separator = ",";
+        }
+        json.append(shapes.isEmpty() ? "" : "\n  ").append("},\n");
+        json.append("  \"samples\": {\"pixels\": ").append(pixels)
+                .append(", \"samples\": ").append(samples)
+                .append(", \"samplesPerPixel\": ").append(getSamplesPerPixel()).append("},\n");
+        json.append("  \"tiles\": {\"count\": ").append(tiles)
+                .append(", \"meanMillis\": ").append(getMeanTileMillis())
+                .append(", \"minMillis\": ").append(getMinTileMillis())
+                .append(", \"maxMillis\": ").append(getMaxTileMillis()).append("}\n");
+        return json.append("}\n").toString();
+    }
+
+    private static void appendLine(StringBuilder report, String label, String format, Object... values) {
+        report.append(String.format("%n  %-22s", label + ':')).append(String.format(format, values));
+    }
+
+    private static double ratio(long dividend, long divisor) {
+        return divisor == 0 ? 0d : (double) dividend / divisor;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("rays", rays)
+                .add("nodeVisits", nodeVisits)
+                .add("shapeIntersections", getShapeIntersections())
+                .add("samples", samples)
+                .add("tiles", tiles).toString();
+    }
+
+    /**
+     * The intersections of one class of shapes.
+     */
+    public static class ShapeStatistics {
+
+        private final long tests;
+        private final long hits;
+
+        public ShapeStatistics(long tests, long hits) {
+            this.tests = tests;
+            this.hits = hits;
+        }
+
+        public long getTests() {
+            return tests;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public double getHitRatio() {
+            return ratio(hits, tests);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("tests", tests)
+                    .add("hits", hits).toString();
+        }
+    }
+
+}
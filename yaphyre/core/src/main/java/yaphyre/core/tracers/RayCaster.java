@@ -16,10 +16,9 @@
 
 package yaphyre.core.tracers;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Function;
-import java.util.function.Predicate;
 import javax.annotation.Nonnull;
 
 import org.slf4j.Logger;
@@ -30,9 +29,11 @@ import yaphyre.core.api.Light;
 import yaphyre.core.api.Scene;
 import yaphyre.core.api.Tracer;
 import yaphyre.core.math.Color;
+import yaphyre.core.math.ColorAccumulator;
 import yaphyre.core.math.MathUtils;
 import yaphyre.core.math.Point3D;
 import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
 import yaphyre.core.math.Vector3D;
 
 /**
@@ -61,12 +62,34 @@ public class RayCaster implements Tracer {
     @Override
     @Nonnull
     public Optional<Color> traceRay(@Nonnull Ray ray, @Nonnull Scene scene) {
-        LOGGER.trace("trace ray: " + ray);
+        LOGGER.trace("trace ray: {}", ray);
         return scene.hitObject(ray).map(collision -> calculateColorForCollision(scene, collision));
     }
 
     /**
-     * Calculate the emerging light for the given collision.
+     * Trace the active rays of a packet. The nearest intersections are searched for the whole packet at once, the shading
+     * (including the shadow rays) is done one ray after the other.
+     *
+     * @param packet The rays to calculate the shading for.
+     * @param scene  The scene holding the light sources and objects.
+     * @return The existence spectra for the rays in the order of the lanes.
+     */
+    @Override
+    @Nonnull
+    public List<Optional<Color>> traceRays(@Nonnull RayPacket packet, @Nonnull Scene scene) {
+        LOGGER.trace("trace packet: {}", packet);
+        final CollisionInformation[] collisions = new CollisionInformation[packet.size()];
+        scene.hitObjects(packet, collisions);
+        final List<Optional<Color>> result = new ArrayList<>(collisions.length);
+        for (CollisionInformation collision : collisions) {
+            result.add(Optional.ofNullable(collision).map(c -> calculateColorForCollision(scene, c)));
+        }
+        return result;
+    }
+
+    /**
+     * Calculate the emerging light for the given collision. The contributions of the lights are summed up in a
+     * {@link ColorAccumulator}, so only the final color is created as new instance.
      *
      * @param scene     The scene containing all the light information.
      * @param collision The collision to calculate the light information for.
@@ -74,42 +97,21 @@ public class RayCaster implements Tracer {
      */
     @Nonnull
     private Color calculateColorForCollision(@Nonnull Scene scene, @Nonnull CollisionInformation collision) {
-        List<Light> sceneLights = scene.getLights();
-
-        final Color deltaLightIntensity = calculateLightContribution(
-                sceneLights,
-                light -> light.isDelta() && !light.isOmnidirectional(),
-                light -> calculateDirectLightIntensity(collision, light)
-        );
+        final List<Light> sceneLights = scene.getLights();
+        final double cosPhi = collision.getIncidentRay().getDirection().normalize().neg().dot(collision.getNormal());
 
-        final Color omnidirectionalIntensity = calculateLightContribution(
-                sceneLights,
-                light -> light.isOmnidirectional() && !light.isDelta(),
-                light -> light.calculateIntensityForShadowRay(DUMMY_RAY)
-        );
+        final ColorAccumulator intensity = new ColorAccumulator();
+        for (Light light : sceneLights) {
+            if (light.isDelta() && !light.isOmnidirectional()) {
+                intensity.addScaled(calculateDirectLightIntensity(collision, light), cosPhi);
+            } else if (light.isOmnidirectional() && !light.isDelta()) {
+                intensity.add(light.calculateIntensityForShadowRay(DUMMY_RAY));
+            }
+        }
 
         final Color collisionColor = collision.getShape().getShader().getColor(collision.getUVCoordinate());
-        final double cosPhi = collision.getIncidentRay().getDirection().normalize().neg().dot(collision.getNormal());
-
-        return collisionColor.multiply(deltaLightIntensity.multiply(cosPhi).add(omnidirectionalIntensity));
-    }
 
-    /**
-     * Calculate the contribution of the selected collection of lights.
-     *
-     * @param lights             The collection of lights to consider.
-     * @param lightPredicate     Filter selecting the light collection to calculate the contribution for.
-     * @param lightColorFunction Mapping function calculating the contribution of a single light source.
-     * @return The contributed light.
-     */
-    @Nonnull
-    private Color calculateLightContribution(@Nonnull List<Light> lights,
-                                             @Nonnull Predicate<Light> lightPredicate,
-                                             @Nonnull Function<Light, Color> lightColorFunction) {
-        return lights.stream()
-                .filter(lightPredicate)
-                .map(lightColorFunction)
-                .reduce(Color.BLACK, Color::add);
+        return intensity.multiply(collisionColor).toColor();
     }
 
     private Color calculateDirectLightIntensity(CollisionInformation collision, Light light) {
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package yaphyre.core.accelerators;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Vector3D;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the parallel construction and the concurrent traversal of the {@link BoundingVolumeHierarchy}.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class BoundingVolumeHierarchyTest {
+
+    /**
+     * Large enough to build subtrees in parallel and to bin the upper nodes in parallel chunks.
+     */
+    private static final int PRIMITIVE_COUNT = 100000;
+
+    @Test
+    public void testHierarchyDoesNotDependOnThreadCount() {
+        final double[] bounds = createRandomBounds(PRIMITIVE_COUNT, new Random(4711));
+        final BoundingVolumeHierarchy expected = build(bounds, 1);
+
+        for (int parallelism : new int[] {2, 4}) {
+            final BoundingVolumeHierarchy actual = build(bounds, parallelism);
+            assertEquals(expected.getNodeCount(), actual.getNodeCount());
+            assertEquals(expected.getDepth(), actual.getDepth());
+            assertArrayEquals(toArray(expected.getNodes()), toArray(actual.getNodes()));
+            assertArrayEquals(toArray(expected.getNodeBounds()), toArray(actual.getNodeBounds()), 0d);
+            assertArrayEquals(toArray(expected.getPrimitiveIndices()), toArray(actual.getPrimitiveIndices()));
+        }
+    }
+
+    @Test
+    public void testParallelHierarchyIsValid() {
+        final double[] bounds = createRandomBounds(PRIMITIVE_COUNT, new Random(42));
+        final BoundingVolumeHierarchy hierarchy = build(bounds, 4);
+
+        // validates the layout of the flattened tree
+        BoundingVolumeHierarchy.fromBuffers(hierarchy.getNodeBounds(), hierarchy.getNodes(),
+                hierarchy.getPrimitiveIndices(), hierarchy.getPrimitiveBounds(), hierarchy.getDepth());
+
+        final boolean[] referenced = new boolean[PRIMITIVE_COUNT];
+        final IntBuffer indices = hierarchy.getPrimitiveIndices();
+        for (int i = 0; i < PRIMITIVE_COUNT; i++) {
+            referenced[indices.get(i)] = true;
+        }
+        for (boolean primitiveReferenced : referenced) {
+            assertTrue(primitiveReferenced);
+        }
+
+        final DoubleBuffer nodeBounds = hierarchy.getNodeBounds();
+        final IntBuffer nodes = hierarchy.getNodes();
+        final DoubleBuffer primitiveBounds = hierarchy.getPrimitiveBounds();
+        for (int node = 0; node < hierarchy.getNodeCount(); node++) {
+            final int offset = nodes.get(node * 2);
+            final int count = nodes.get(node * 2 + 1);
+            for (int i = offset; count > 0 && i < offset + count; i++) {
+                for (int axis = 0; axis < 3; axis++) {
+                    assertTrue(nodeBounds.get(node * 6 + axis) <= primitiveBounds.get(i * 6 + axis));
+                    assertTrue(nodeBounds.get(node * 6 + axis + 3) >= primitiveBounds.get(i * 6 + axis + 3));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentTraversalsDoNotShareState() throws Exception {
+        final double[] bounds = createRandomBounds(10000, new Random(4711));
+        final BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy(bounds);
+        final Random random = new Random(42);
+        final Ray[] rays = new Ray[2000];
+        for (int i = 0; i < rays.length; i++) {
+            rays[i] = new Ray(new Point3D(random.nextDouble() * 100d - 50d, random.nextDouble() * 100d - 50d, -60d),
+                    new Vector3D(random.nextGaussian() * 0.1, random.nextGaussian() * 0.1, 1d).normalize());
+        }
+        // the distances only depend on the primitive, so the traversal decides which primitive is found
+        final BoundingVolumeHierarchy.PrimitiveIntersector intersector = (primitive, tMax) -> 1d + primitive % 997;
+
+        final double[] expected = new double[rays.length];
+        for (int i = 0; i < rays.length; i++) {
+            expected[i] = hierarchy.traverse(rays[i], intersector, false);
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final double[] actual = pool.submit(() -> IntStream.range(0, rays.length).parallel()
+                    .mapToDouble(i -> hierarchy.traverse(rays[i], intersector, false))
+                    .toArray()).get();
+            assertArrayEquals(expected, actual, 0d);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static BoundingVolumeHierarchy build(double[] bounds, int parallelism) {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return new BoundingVolumeHierarchy(bounds, BoundingVolumeHierarchy.DEFAULT_MAX_LEAF_SIZE, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static double[] createRandomBounds(int count, Random random) {
+        final double[] bounds = new double[count * 6];
+        for (int primitive = 0; primitive < count; primitive++) {
+            final double radius = 0.01 + random.nextDouble() * 0.1;
+            for (int axis = 0; axis < 3; axis++) {
+                final double center = random.nextDouble() * 100d - 50d;
+                bounds[primitive * 6 + axis] = center - radius;
+                bounds[primitive * 6 + axis + 3] = center + radius;
+            }
+        }
+        return bounds;
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        final int[] array = new int[buffer.capacity()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+
+    private static double[] toArray(DoubleBuffer buffer) {
+        final double[] array = new double[buffer.capacity()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+
+}
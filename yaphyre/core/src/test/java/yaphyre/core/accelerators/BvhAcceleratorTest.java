@@ -0,0 +1,359 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.accelerators;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import javax.annotation.Nonnull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Shader;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.Plane;
+import yaphyre.core.shapes.SimpleSphere;
+import yaphyre.core.shapes.Sphere;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static yaphyre.core.math.MathUtils.EPSILON;
+
+/**
+ * Compares the results of the {@link BvhAccelerator} with the ones of the {@link LinearAccelerator}.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class BvhAcceleratorTest {
+
+    private static final int NUMBER_OF_RAYS = 2000;
+
+    private final Shader shader = new ColorShader(new Color(1, 1, 1));
+
+    private Random random;
+
+    @Before
+    public void setUp() {
+        random = new Random(4711);
+    }
+
+    @Test
+    public void testEmptyHierarchy() {
+        BvhAccelerator accelerator = new BvhAccelerator(new ArrayList<>());
+
+        assertEquals(0, accelerator.getHierarchy().getNodeCount());
+        assertFalse(accelerator.intersect(createRandomRay()).isPresent());
+        assertFalse(accelerator.intersectAny(createRandomRay()).isPresent());
+    }
+
+    @Test
+    public void testHierarchyIsBalanced() {
+        BvhAccelerator accelerator = new BvhAccelerator(createRandomSpheres(1000), 1);
+
+        assertEquals(1999, accelerator.getHierarchy().getNodeCount());
+        assertTrue(accelerator.getHierarchy().getDepth() < 40);
+    }
+
+    @Test
+    public void testIntersectMatchesLinearScan() {
+        List<Shape> shapes = createRandomSpheres(500);
+        verifySameResults(shapes);
+    }
+
+    @Test
+    public void testIntersectWithIdenticalShapes() {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            shapes.add(createSphere(new Point3D(0, 0, 0), 2));
+        }
+        verifySameResults(shapes);
+    }
+
+    @Test
+    public void testIntersectWithUnboundedShape() {
+        List<Shape> shapes = createRandomSpheres(200);
+        shapes.add(new Plane(Transformation.translate(0, -20, 0), shader));
+        verifySameResults(shapes);
+    }
+
+    @Test
+    public void testPacketIntersectMatchesSingleRays() {
+        List<Shape> shapes = createRandomSpheres(200);
+        shapes.add(new Plane(Transformation.translate(0, -20, 0), shader));
+        verifySamePacketResults(shapes, new BvhAccelerator(shapes));
+        verifySamePacketResults(shapes, new LinearAccelerator(shapes));
+    }
+
+    private void verifySamePacketResults(List<Shape> shapes, Accelerator accelerator) {
+        LinearAccelerator linearAccelerator = new LinearAccelerator(shapes);
+        RayPacket packet = new RayPacket();
+
+        int hits = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS / RayPacket.MAX_SIZE; i++) {
+            // every other packet contains coherent rays, like the camera rays of neighbouring pixels
+            Point3D origin = new Point3D(nextCoordinate(), nextCoordinate(), nextCoordinate());
+            Vector3D direction = new Vector3D(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            packet.clear();
+            while (!packet.isFull()) {
+                if (i % 2 == 0) {
+                    packet.add(createRandomRay());
+                } else {
+                    Vector3D jitter = new Vector3D(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+                    packet.add(new Ray(origin, direction.add(jitter.scale(0.05)).normalize()));
+                }
+            }
+
+            CollisionInformation[] collisions = new CollisionInformation[packet.size()];
+            accelerator.intersect(packet, collisions);
+
+            for (int lane = 0; lane < packet.size(); lane++) {
+                Optional<CollisionInformation> expected = linearAccelerator.intersect(packet.getRay(lane));
+                assertEquals(expected.isPresent(), collisions[lane] != null);
+                if (expected.isPresent()) {
+                    hits++;
+                    assertEquals(expected.get().getDistance(), collisions[lane].getDistance(), EPSILON);
+                    assertEquals(expected.get().getDistance(), packet.getTMax(lane), EPSILON);
+                    assertEquals(expected.get().getPoint(), collisions[lane].getPoint());
+                    assertEquals(expected.get().getNormal(), collisions[lane].getNormal());
+                    assertEquals(packet.getRay(lane), collisions[lane].getIncidentRay());
+                }
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    public void testCompiledAcceleratorMatchesLinearScan() {
+        List<Shape> shapes = createRandomSpheres(500);
+        shapes.add(new Plane(Transformation.translate(0, -20, 0), shader));
+        shapes.add(new Plane(Transformation.rotateZ(30).mul(Transformation.translate(0, 15, 0)), shader));
+        verifySameResults(new LinearAccelerator(shapes), new CompiledAccelerator(shapes));
+    }
+
+    @Test
+    public void testRefitMatchesLinearScan() {
+        List<Shape> shapes = createRandomSpheres(300);
+        shapes.add(new Plane(Transformation.translate(0, -20, 0), shader));
+        Accelerator bvhAccelerator = new BvhAccelerator(shapes);
+        Accelerator compiledAccelerator = new CompiledAccelerator(shapes);
+
+        List<Shape> movedShapes = new ArrayList<>(shapes);
+        for (int i = 0; i < movedShapes.size() - 1; i += 2) {
+            movedShapes.set(i, createSphere(
+                    new Point3D(nextCoordinate(), nextCoordinate(), nextCoordinate()), 0.1 + random.nextDouble()));
+        }
+        movedShapes.set(movedShapes.size() - 1, new Plane(Transformation.translate(0, -10, 0), shader));
+
+        Optional<Accelerator> refitBvhAccelerator = bvhAccelerator.refit(movedShapes);
+        Optional<Accelerator> refitCompiledAccelerator = compiledAccelerator.refit(movedShapes);
+        assertTrue(refitBvhAccelerator.isPresent());
+        assertTrue(refitCompiledAccelerator.isPresent());
+
+        LinearAccelerator linearAccelerator = new LinearAccelerator(movedShapes);
+        verifySameResults(linearAccelerator, refitBvhAccelerator.get());
+        verifySameResults(linearAccelerator, refitCompiledAccelerator.get());
+
+        assertFalse(bvhAccelerator.refit(movedShapes.subList(1, movedShapes.size())).isPresent());
+        assertFalse(new LinearAccelerator(shapes).refit(movedShapes).isPresent());
+    }
+
+    @Test
+    public void testDeferredCollisionInformationMatchesFullIntersection() {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Point3D center = new Point3D(nextCoordinate(), nextCoordinate(), nextCoordinate());
+            double radius = 0.1 + random.nextDouble();
+            shapes.add(createSphere(center, radius));
+            shapes.add(Sphere.createSphere(
+                    new Point3D(nextCoordinate(), nextCoordinate(), nextCoordinate()), radius, shader));
+            // shapes without a two phase intersection of their own store their full result
+            shapes.add(createFullyIntersectedShape(
+                    createSphere(new Point3D(nextCoordinate(), nextCoordinate(), nextCoordinate()), radius)));
+        }
+        shapes.add(new Plane(Transformation.translate(0, -20, 0), shader));
+
+        List<Accelerator> accelerators = new ArrayList<>();
+        accelerators.add(new LinearAccelerator(shapes));
+        accelerators.add(new BvhAccelerator(shapes));
+        accelerators.add(new CompiledAccelerator(shapes));
+        accelerators.add(new GridAccelerator(shapes));
+
+        int hits = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            Ray ray = createRandomRay();
+            Optional<CollisionInformation> expected = shapes.stream()
+                    .map(shape -> shape.intersect(ray))
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .min(Comparator.comparingDouble(CollisionInformation::getDistance));
+            for (Accelerator accelerator : accelerators) {
+                assertEquals(accelerator.toString(), expected, accelerator.intersect(ray));
+            }
+            if (expected.isPresent()) {
+                hits++;
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    private Shape createFullyIntersectedShape(Shape shape) {
+        return new Shape() {
+            @Nonnull
+            @Override
+            public Shader getShader() {
+                return shape.getShader();
+            }
+
+            @Nonnull
+            @Override
+            public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+                return shape.intersect(ray);
+            }
+
+            @Nonnull
+            @Override
+            public BoundingBox getBoundingBox() {
+                return shape.getBoundingBox();
+            }
+
+            @Nonnull
+            @Override
+            public BoundingBox getAxisAlignedBoundingBox() {
+                return shape.getAxisAlignedBoundingBox();
+            }
+        };
+    }
+
+    @Test
+    public void testFindOccluderRespectsRange() {
+        List<Shape> shapes = createRandomSpheres(200);
+        LinearAccelerator linearAccelerator = new LinearAccelerator(shapes);
+        BvhAccelerator bvhAccelerator = new BvhAccelerator(shapes);
+
+        int occluded = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            Ray ray = createRandomRay();
+            Ray shadowRay = new Ray(ray.getOrigin(), ray.getDirection(), 0d, 5d);
+
+            Optional<CollisionInformation> nearest = linearAccelerator.intersect(ray);
+            boolean expected = nearest.isPresent() && nearest.get().getDistance() <= 5d;
+
+            Optional<Shape> occluder = bvhAccelerator.findOccluder(shadowRay);
+            assertEquals(expected, occluder.isPresent());
+            assertEquals(expected, linearAccelerator.findOccluder(shadowRay).isPresent());
+            if (expected) {
+                occluded++;
+                assertTrue(occluder.get().occluded(shadowRay));
+            }
+        }
+        assertTrue(occluded > 0);
+    }
+
+    @Test
+    public void testFindOccluderWithUnlimitedAndEmptyRange() {
+        List<Shape> shapes = createRandomSpheres(200);
+        LinearAccelerator linearAccelerator = new LinearAccelerator(shapes);
+
+        for (Accelerators type : Accelerators.values()) {
+            Accelerator accelerator = type.create(shapes);
+            int occluded = 0;
+            for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+                Ray ray = createRandomRay();
+                Ray unlimitedRay = new Ray(ray.getOrigin(), ray.getDirection(), 0d, Double.POSITIVE_INFINITY);
+                Ray emptyRay = new Ray(ray.getOrigin(), ray.getDirection(), 0d, 0d);
+
+                boolean expected = linearAccelerator.intersect(ray).isPresent();
+                assertEquals(type.name(), expected, accelerator.findOccluder(unlimitedRay).isPresent());
+                assertEquals(type.name(), linearAccelerator.findOccluder(emptyRay).isPresent(),
+                        accelerator.findOccluder(emptyRay).isPresent());
+                if (expected) {
+                    occluded++;
+                }
+            }
+            assertTrue(occluded > 0);
+        }
+    }
+
+    private void verifySameResults(List<Shape> shapes) {
+        verifySameResults(new LinearAccelerator(shapes), new BvhAccelerator(shapes));
+    }
+
+    private void verifySameResults(Accelerator linearAccelerator, Accelerator bvhAccelerator) {
+
+        int hits = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            Ray ray = createRandomRay();
+
+            Optional<CollisionInformation> expected = linearAccelerator.intersect(ray);
+            Optional<CollisionInformation> result = bvhAccelerator.intersect(ray);
+
+            assertEquals(expected.isPresent(), result.isPresent());
+            assertEquals(expected.isPresent(), bvhAccelerator.intersectAny(ray).isPresent());
+            assertEquals(expected.isPresent(), linearAccelerator.findOccluder(ray).isPresent());
+            assertEquals(expected.isPresent(), bvhAccelerator.findOccluder(ray).isPresent());
+            if (expected.isPresent()) {
+                hits++;
+                assertEquals(expected.get().getDistance(), result.get().getDistance(), EPSILON);
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    private List<Shape> createRandomSpheres(int count) {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Point3D center = new Point3D(nextCoordinate(), nextCoordinate(), nextCoordinate());
+            shapes.add(createSphere(center, 0.1 + random.nextDouble()));
+        }
+        return shapes;
+    }
+
+    private Shape createSphere(Point3D center, double radius) {
+        SimpleSphere sphere = new SimpleSphere(
+                Transformation.translate(center.getX(), center.getY(), center.getZ())
+                        .mul(Transformation.scale(radius, radius, radius)), shader);
+        sphere.setSolver(Solvers.Quadratic);
+        return sphere;
+    }
+
+    private Ray createRandomRay() {
+        Point3D origin = new Point3D(nextCoordinate(), nextCoordinate(), nextCoordinate());
+        Vector3D direction = new Vector3D(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+        return new Ray(origin, direction.normalize());
+    }
+
+    private double nextCoordinate() {
+        return (random.nextDouble() - 0.5) * 40;
+    }
+
+}
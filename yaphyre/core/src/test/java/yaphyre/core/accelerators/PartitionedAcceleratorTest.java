@@ -0,0 +1,256 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.accelerators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Shader;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.Plane;
+import yaphyre.core.shapes.SimpleSphere;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static yaphyre.core.math.MathUtils.EPSILON;
+
+/**
+ * Compares the results of the {@link PartitionedAccelerator} over scenes with infinite planes with the ones of the
+ * {@link LinearAccelerator}.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class PartitionedAcceleratorTest {
+
+    private static final int NUMBER_OF_RAYS = 2000;
+
+    private final Shader shader = new ColorShader(new Color(1, 1, 1));
+
+    private Random random;
+
+    @Before
+    public void setUp() {
+        random = new Random(4711);
+    }
+
+    @Test
+    public void testOnlyBoundedShapesAreIndexed() {
+        List<Shape> shapes = createRandomSpheres(100);
+        shapes.add(new Plane(Transformation.translate(0, -20, 0), shader));
+        shapes.add(new Plane(Transformation.translate(0, 20, 0), shader));
+        List<Shape> indexedShapes = new ArrayList<>();
+
+        PartitionedAccelerator accelerator = new PartitionedAccelerator(shapes, boundedShapes -> {
+            indexedShapes.addAll(boundedShapes);
+            return Accelerators.Bvh.create(boundedShapes);
+        });
+
+        assertEquals(2, accelerator.getUnboundedShapeCount());
+        assertEquals(100, indexedShapes.size());
+        assertTrue(indexedShapes.stream().allMatch(PartitionedAccelerator::isBounded));
+    }
+
+    @Test
+    public void testIntersectMatchesLinearScan() {
+        List<Shape> shapes = createRandomSpheres(300);
+        shapes.add(new Plane(Transformation.translate(0, -10, 0), shader));
+        shapes.add(new Plane(Transformation.translate(0, 15, 0).mul(Transformation.rotateX(30)), shader));
+
+        for (Accelerators type : Accelerators.values()) {
+            verifySameResults(shapes, new PartitionedAccelerator(shapes, type::create));
+        }
+    }
+
+    @Test
+    public void testOnlyUnboundedShapes() {
+        List<Shape> shapes = new ArrayList<>();
+        shapes.add(new Plane(Transformation.translate(0, -10, 0), shader));
+
+        verifySameResults(shapes, new PartitionedAccelerator(shapes, Accelerators.Bvh::create));
+    }
+
+    @Test
+    public void testShapesBehindUnboundedShapeAreCulled() {
+        AtomicInteger intersections = new AtomicInteger();
+        List<Shape> shapes = createRandomSpheres(200);
+        shapes.add(createCountingShape(createSphere(new Point3D(0, -30, 0), 5), intersections));
+        shapes.add(new Plane(Transformation.translate(0, -20, 0), shader));
+        Accelerator accelerator = new PartitionedAccelerator(shapes, Accelerators.Bvh::create);
+
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            Ray ray = new Ray(new Point3D(nextCoordinate() / 10, 30, nextCoordinate() / 10), Vector3D.Y.neg());
+            Optional<CollisionInformation> collision = accelerator.intersect(ray);
+            assertTrue(collision.isPresent());
+            assertTrue(collision.get().getDistance() <= 50 + EPSILON);
+        }
+        assertEquals(0, intersections.get());
+    }
+
+    @Test
+    public void testIntersectPacket() {
+        List<Shape> shapes = createRandomSpheres(300);
+        shapes.add(new Plane(Transformation.translate(0, -10, 0), shader));
+        Accelerator accelerator = new PartitionedAccelerator(shapes, Accelerators.Compiled::create);
+        RayPacket packet = new RayPacket();
+
+        for (int i = 0; i < NUMBER_OF_RAYS / RayPacket.MAX_SIZE; i++) {
+            packet.clear();
+            while (!packet.isFull()) {
+                packet.add(createRandomRay());
+            }
+            CollisionInformation[] collisions = new CollisionInformation[packet.size()];
+            accelerator.intersect(packet, collisions);
+
+            for (int lane = 0; lane < packet.size(); lane++) {
+                Optional<CollisionInformation> expected = accelerator.intersect(packet.getRay(lane));
+                assertEquals(expected.isPresent(), collisions[lane] != null);
+                if (expected.isPresent()) {
+                    assertEquals(expected.get().getDistance(), collisions[lane].getDistance(), EPSILON);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRefit() {
+        List<Shape> shapes = createRandomSpheres(100);
+        shapes.add(new Plane(Transformation.translate(0, -10, 0), shader));
+        Accelerator accelerator = new PartitionedAccelerator(shapes, Accelerators.Bvh::create);
+
+        List<Shape> movedShapes = new ArrayList<>(shapes);
+        movedShapes.set(0, createSphere(new Point3D(100, 0, 0), 2));
+        movedShapes.set(100, new Plane(Transformation.translate(0, -5, 0), shader));
+        Optional<Accelerator> refitAccelerator = accelerator.refit(movedShapes);
+
+        assertTrue(refitAccelerator.isPresent());
+        verifySameResults(movedShapes, refitAccelerator.get());
+        Ray ray = new Ray(new Point3D(90, 0, 0), Vector3D.X);
+        assertSame(movedShapes.get(0), refitAccelerator.get().intersect(ray).get().getShape());
+    }
+
+    @Test
+    public void testRefitFailsIfShapeChangesPartition() {
+        List<Shape> shapes = createRandomSpheres(100);
+        shapes.add(new Plane(Transformation.translate(0, -10, 0), shader));
+        Accelerator accelerator = new PartitionedAccelerator(shapes, Accelerators.Bvh::create);
+
+        List<Shape> changedShapes = new ArrayList<>(shapes);
+        changedShapes.set(0, new Plane(Transformation.translate(0, 10, 0), shader));
+
+        assertFalse(accelerator.refit(changedShapes).isPresent());
+        assertFalse(accelerator.refit(shapes.subList(0, 100)).isPresent());
+    }
+
+    private void verifySameResults(List<Shape> shapes, Accelerator accelerator) {
+        Accelerator linearAccelerator = new LinearAccelerator(shapes);
+
+        int hits = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            Ray ray = createRandomRay();
+
+            Optional<CollisionInformation> expected = linearAccelerator.intersect(ray);
+            Optional<CollisionInformation> result = accelerator.intersect(ray);
+
+            assertEquals(expected.isPresent(), result.isPresent());
+            assertEquals(expected.isPresent(), accelerator.intersectAny(ray).isPresent());
+            assertEquals(expected.isPresent(), accelerator.findOccluder(ray).isPresent());
+            if (expected.isPresent()) {
+                hits++;
+                assertEquals(expected.get().getDistance(), result.get().getDistance(), EPSILON);
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    private Shape createCountingShape(Shape shape, AtomicInteger intersections) {
+        return new Shape() {
+            @Nonnull
+            @Override
+            public Shader getShader() {
+                return shape.getShader();
+            }
+
+            @Nonnull
+            @Override
+            public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+                intersections.incrementAndGet();
+                return shape.intersect(ray);
+            }
+
+            @Nonnull
+            @Override
+            public BoundingBox getBoundingBox() {
+                return shape.getBoundingBox();
+            }
+
+            @Nonnull
+            @Override
+            public BoundingBox getAxisAlignedBoundingBox() {
+                return shape.getAxisAlignedBoundingBox();
+            }
+        };
+    }
+
+    private List<Shape> createRandomSpheres(int count) {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Point3D center = new Point3D(nextCoordinate(), nextCoordinate(), nextCoordinate());
+            shapes.add(createSphere(center, 0.1 + random.nextDouble()));
+        }
+        return shapes;
+    }
+
+    private Shape createSphere(Point3D center, double radius) {
+        SimpleSphere sphere = new SimpleSphere(
+                Transformation.translate(center.getX(), center.getY(), center.getZ())
+                        .mul(Transformation.scale(radius, radius, radius)), shader);
+        sphere.setSolver(Solvers.Quadratic);
+        return sphere;
+    }
+
+    private Ray createRandomRay() {
+        Point3D origin = new Point3D(nextCoordinate(), nextCoordinate() / 2, nextCoordinate());
+        Vector3D direction = new Vector3D(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+        return new Ray(origin, direction.normalize());
+    }
+
+    private double nextCoordinate() {
+        return (random.nextDouble() - 0.5) * 40;
+    }
+
+}
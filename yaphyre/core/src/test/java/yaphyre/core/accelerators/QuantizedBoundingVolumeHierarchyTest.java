@@ -0,0 +1,182 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package yaphyre.core.accelerators;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.lang.Double.NEGATIVE_INFINITY;
+import static java.lang.Double.POSITIVE_INFINITY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the traversal of the {@link QuantizedBoundingVolumeHierarchy} with the one of the
+ * {@link BoundingVolumeHierarchy} it is created from, using spheres only known by their centers and radii.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class QuantizedBoundingVolumeHierarchyTest {
+
+    private static final int NUMBER_OF_RAYS = 2000;
+
+    private Random random;
+
+    private double[] spheres;
+
+    @Before
+    public void setUp() {
+        random = new Random(4711);
+    }
+
+    @Test
+    public void testEmptyHierarchy() {
+        final QuantizedBoundingVolumeHierarchy hierarchy =
+                new QuantizedBoundingVolumeHierarchy(new BoundingVolumeHierarchy(new double[0]));
+
+        assertEquals(0, hierarchy.getNodeCount());
+        assertEquals(POSITIVE_INFINITY, hierarchy.traverse(0, 0, 0, 1, 0, 0, 0, POSITIVE_INFINITY,
+                (primitive, tMax) -> 0d, false), 0d);
+    }
+
+    @Test
+    public void testSinglePrimitive() {
+        spheres = new double[] {0, 0, 0, 20};
+        verifySameResults(new double[] {-20, -20, -20, 20, 20, 20}, false);
+    }
+
+    @Test
+    public void testTraversalMatchesBinaryHierarchy() {
+        verifySameResults(createSpheres(5000), false);
+    }
+
+    @Test
+    public void testAnyHitMatchesBinaryHierarchy() {
+        verifySameResults(createSpheres(5000), true);
+    }
+
+    @Test
+    public void testTraversalWithUnboundedPrimitive() {
+        final double[] bounds = createSpheres(500);
+        // the last primitive stands for the plane z = 0
+        final double[] withPlane = new double[bounds.length + 6];
+        System.arraycopy(bounds, 0, withPlane, 0, bounds.length);
+        withPlane[bounds.length] = NEGATIVE_INFINITY;
+        withPlane[bounds.length + 1] = NEGATIVE_INFINITY;
+        withPlane[bounds.length + 3] = POSITIVE_INFINITY;
+        withPlane[bounds.length + 4] = POSITIVE_INFINITY;
+
+        verifySameResults(withPlane, false);
+    }
+
+    @Test
+    public void testMemorySize() {
+        final BoundingVolumeHierarchy binary = new BoundingVolumeHierarchy(createSpheres(10000));
+        final QuantizedBoundingVolumeHierarchy quantized = new QuantizedBoundingVolumeHierarchy(binary);
+
+        assertTrue(quantized.getNodeCount() * 2 < binary.getNodeCount());
+        assertTrue(quantized.getDepth() <= binary.getDepth());
+        assertTrue(quantized.getMemorySize() * 3 < binary.getMemorySize());
+    }
+
+    private void verifySameResults(double[] bounds, boolean anyHit) {
+        final BoundingVolumeHierarchy binary = new BoundingVolumeHierarchy(bounds);
+        final QuantizedBoundingVolumeHierarchy quantized = new QuantizedBoundingVolumeHierarchy(binary);
+
+        int hits = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            final double[] ray = createRandomRay();
+            final BoundingVolumeHierarchy.PrimitiveIntersector intersector = (primitive, tMax) -> {
+                final double distance = intersect(primitive, ray);
+                return distance < tMax ? distance : POSITIVE_INFINITY;
+            };
+            final double expected = binary.traverse(ray[0], ray[1], ray[2], ray[3], ray[4], ray[5], 0,
+                    POSITIVE_INFINITY, intersector, anyHit);
+            final double actual = quantized.traverse(ray[0], ray[1], ray[2], ray[3], ray[4], ray[5], 0,
+                    POSITIVE_INFINITY, intersector, anyHit);
+            if (anyHit) {
+                assertEquals(expected < POSITIVE_INFINITY, actual < POSITIVE_INFINITY);
+            } else {
+                assertEquals(expected, actual, 0d);
+            }
+            hits += expected < POSITIVE_INFINITY ? 1 : 0;
+        }
+        assertTrue(hits > 0);
+    }
+
+    /**
+     * The sphere of each primitive is stored in {@link #spheres}, except for an additional last primitive, which is
+     * the plane z = 0.
+     */
+    private double intersect(int primitive, double[] ray) {
+        if (primitive * 4 >= spheres.length) {
+            final double distance = -ray[2] / ray[5];
+            return distance > 0 ? distance : POSITIVE_INFINITY;
+        }
+        final double cx = ray[0] - spheres[primitive * 4];
+        final double cy = ray[1] - spheres[primitive * 4 + 1];
+        final double cz = ray[2] - spheres[primitive * 4 + 2];
+        final double radius = spheres[primitive * 4 + 3];
+        final double b = cx * ray[3] + cy * ray[4] + cz * ray[5];
+        final double c = cx * cx + cy * cy + cz * cz - radius * radius;
+        final double discriminant = b * b - c;
+        if (discriminant < 0) {
+            return POSITIVE_INFINITY;
+        }
+        final double near = -b - Math.sqrt(discriminant);
+        final double far = -b + Math.sqrt(discriminant);
+        return near > 0 ? near : far > 0 ? far : POSITIVE_INFINITY;
+    }
+
+    private double[] createSpheres(int count) {
+        spheres = new double[count * 4];
+        final double[] bounds = new double[count * 6];
+        for (int i = 0; i < count; i++) {
+            final double radius = 0.5 + random.nextDouble() * 2;
+            spheres[i * 4 + 3] = radius;
+            for (int axis = 0; axis < 3; axis++) {
+                spheres[i * 4 + axis] = nextCoordinate();
+                bounds[i * 6 + axis] = spheres[i * 4 + axis] - radius;
+                bounds[i * 6 + axis + 3] = spheres[i * 4 + axis] + radius;
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * @return The origin and the normalized direction of a ray from a random point towards another one.
+     */
+    private double[] createRandomRay() {
+        final double[] ray = {nextCoordinate(), nextCoordinate(), nextCoordinate(),
+                nextCoordinate(), nextCoordinate(), nextCoordinate()};
+        final double length = Math.sqrt((ray[3] - ray[0]) * (ray[3] - ray[0]) + (ray[4] - ray[1]) * (ray[4] - ray[1])
+                + (ray[5] - ray[2]) * (ray[5] - ray[2]));
+        for (int axis = 0; axis < 3; axis++) {
+            ray[axis + 3] = (ray[axis + 3] - ray[axis]) / length;
+        }
+        return ray;
+    }
+
+    private double nextCoordinate() {
+        return (random.nextDouble() - 0.5) * 100;
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.accelerators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Shader;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.Plane;
+import yaphyre.core.shapes.SimpleSphere;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static yaphyre.core.math.MathUtils.EPSILON;
+
+/**
+ * Compares the results of the {@link QuantizedBvhAccelerator} with the ones of the {@link LinearAccelerator}.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class QuantizedBvhAcceleratorTest {
+
+    private static final int NUMBER_OF_RAYS = 2000;
+
+    private final Shader shader = new ColorShader(new Color(1, 1, 1));
+
+    private Random random;
+
+    @Before
+    public void setUp() {
+        random = new Random(4711);
+    }
+
+    @Test
+    public void testEmptyHierarchy() {
+        QuantizedBvhAccelerator accelerator = new QuantizedBvhAccelerator(new ArrayList<>());
+
+        assertFalse(accelerator.intersect(createRandomRay()).isPresent());
+        assertFalse(accelerator.intersectAny(createRandomRay()).isPresent());
+        assertFalse(accelerator.findOccluder(createRandomRay()).isPresent());
+    }
+
+    @Test
+    public void testIntersectMatchesLinearScan() {
+        verifySameResults(createRandomSpheres(500));
+    }
+
+    @Test
+    public void testIntersectWithUnboundedShape() {
+        List<Shape> shapes = createRandomSpheres(200);
+        shapes.add(new Plane(Transformation.translate(0, -20, 0), shader));
+        verifySameResults(shapes);
+    }
+
+    @Test
+    public void testFindOccluderRespectsRange() {
+        List<Shape> shapes = createRandomSpheres(200);
+        LinearAccelerator linearAccelerator = new LinearAccelerator(shapes);
+        QuantizedBvhAccelerator quantizedAccelerator = new QuantizedBvhAccelerator(shapes);
+
+        int occluded = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            Ray ray = createRandomRay();
+            Ray shadowRay = new Ray(ray.getOrigin(), ray.getDirection(), 0d, 5d);
+
+            Optional<CollisionInformation> nearest = linearAccelerator.intersect(ray);
+            boolean expected = nearest.isPresent() && nearest.get().getDistance() <= 5d;
+
+            Optional<Shape> occluder = quantizedAccelerator.findOccluder(shadowRay);
+            assertEquals(expected, occluder.isPresent());
+            if (expected) {
+                occluded++;
+                assertTrue(occluder.get().occluded(shadowRay));
+            }
+        }
+        assertTrue(occluded > 0);
+    }
+
+    /**
+     * Each thread traverses the hierarchy with its own scratch state.
+     */
+    @Test
+    public void testConcurrentTraversal() {
+        List<Shape> shapes = createRandomSpheres(500);
+        Accelerator linearAccelerator = new LinearAccelerator(shapes);
+        Accelerator quantizedAccelerator = new QuantizedBvhAccelerator(shapes);
+        List<Ray> rays = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            rays.add(createRandomRay());
+        }
+
+        assertTrue(IntStream.range(0, NUMBER_OF_RAYS).parallel().allMatch(i -> {
+            Optional<CollisionInformation> expected = linearAccelerator.intersect(rays.get(i));
+            Optional<CollisionInformation> result = quantizedAccelerator.intersect(rays.get(i));
+            return expected.isPresent() == result.isPresent() && (!expected.isPresent()
+                    || Math.abs(expected.get().getDistance() - result.get().getDistance()) <= EPSILON);
+        }));
+    }
+
+    private void verifySameResults(List<Shape> shapes) {
+        Accelerator linearAccelerator = new LinearAccelerator(shapes);
+        Accelerator quantizedAccelerator = new QuantizedBvhAccelerator(shapes);
+
+        int hits = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            Ray ray = createRandomRay();
+
+            Optional<CollisionInformation> expected = linearAccelerator.intersect(ray);
+            Optional<CollisionInformation> result = quantizedAccelerator.intersect(ray);
+
+            assertEquals(expected.isPresent(), result.isPresent());
+            assertEquals(expected.isPresent(), quantizedAccelerator.intersectAny(ray).isPresent());
+            assertEquals(expected.isPresent(), quantizedAccelerator.findOccluder(ray).isPresent());
+            if (expected.isPresent()) {
+                hits++;
+                assertEquals(expected.get().getDistance(), result.get().getDistance(), EPSILON);
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    private List<Shape> createRandomSpheres(int count) {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Point3D center = new Point3D(nextCoordinate(), nextCoordinate(), nextCoordinate());
+            shapes.add(createSphere(center, 0.1 + random.nextDouble()));
+        }
+        return shapes;
+    }
+
+    private Shape createSphere(Point3D center, double radius) {
+        SimpleSphere sphere = new SimpleSphere(
+                Transformation.translate(center.getX(), center.getY(), center.getZ())
+                        .mul(Transformation.scale(radius, radius, radius)), shader);
+        sphere.setSolver(Solvers.Quadratic);
+        return sphere;
+    }
+
+    private Ray createRandomRay() {
+        Point3D origin = new Point3D(nextCoordinate(), nextCoordinate(), nextCoordinate());
+        Vector3D direction = new Vector3D(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+        return new Ray(origin, direction.normalize());
+    }
+
+    private double nextCoordinate() {
+        return (random.nextDouble() - 0.5) * 40;
+    }
+
+}
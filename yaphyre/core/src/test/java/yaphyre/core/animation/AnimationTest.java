@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.animation;
+
+import java.util.Optional;
+import java.util.Random;
+
+import com.google.inject.Injector;
+import org.junit.Before;
+import org.junit.Test;
+
+import yaphyre.core.api.Camera;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Shader;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.Plane;
+import yaphyre.core.shapes.SimpleSphere;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Verifies that a scene moved to a frame of an {@link Animation} gives the same results as a scene built for the frame.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class AnimationTest {
+
+    private static final int NUMBER_OF_RAYS = 2000;
+    private static final int STATIC_SPHERES = 8;
+
+    private final Shader shader = new ColorShader(Color.WHITE);
+    private final KeyframedTransformation bounce = new KeyframedTransformation(
+            new Keyframe(0, new Vector3D(0, 1, 0)),
+            new Keyframe(10, new Vector3D(3, 4, 0), new Vector3D(0, 0, 45), new Vector3D(1, 2, 1)));
+    private final KeyframedTransformation orbit = new KeyframedTransformation(
+            new Keyframe(0, Vector3D.NULL),
+            new Keyframe(10, Vector3D.NULL, new Vector3D(0, 90, 0), Keyframe.NO_SCALING));
+
+    private Injector injector;
+    private Scene scene;
+    private Animation animation;
+    private Shape animatedSphere;
+
+    @Before
+    public void setUp() {
+        injector = mock(Injector.class);
+        scene = new Scene(injector);
+        animation = new Animation();
+        animatedSphere = animation.addShape(scene, bounce, this::createSphere);
+        addStaticShapes(scene);
+        animation.addCamera(scene, orbit, cameraToWorld -> mock(Camera.class));
+    }
+
+    @Test
+    public void testFrames() {
+        assertEquals(0d, animation.getFirstFrame(), 0d);
+        assertEquals(10d, animation.getLastFrame(), 0d);
+    }
+
+    @Test
+    public void testOnlyAnimatedObjectsAreReplaced() {
+        scene.freeze();
+        final Shape staticShape = scene.getShapes().get(1);
+        final Camera camera = scene.getCameras().get(0);
+
+        animation.applyFrame(scene, 4);
+
+        assertTrue(scene.isFrozen());
+        assertNotSame(animatedSphere, scene.getShapes().get(0));
+        assertSame(staticShape, scene.getShapes().get(1));
+        assertNotSame(camera, scene.getCameras().get(0));
+    }
+
+    @Test
+    public void testShapesAreNotReplacedIfTheyDoNotMove() {
+        animation.applyFrame(scene, 12);
+        final Shape movedSphere = scene.getShapes().get(0);
+        final int revision = scene.getRevision();
+
+        animation.applyFrame(scene, 15);
+
+        assertSame(movedSphere, scene.getShapes().get(0));
+        assertEquals(revision, scene.getRevision());
+    }
+
+    @Test
+    public void testFrameMatchesNewScene() {
+        scene.freeze();
+        animation.applyFrame(scene, 3);
+        animation.applyFrame(scene, 7.5);
+
+        final Scene expectedScene = new Scene(injector);
+        expectedScene.addShape(createSphere(bounce.at(7.5)));
+        addStaticShapes(expectedScene);
+
+        final Random random = new Random(4711);
+        int hits = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            final Ray ray = new Ray(new Point3D(random.nextGaussian() * 5, random.nextGaussian() * 5, -20),
+                    new Vector3D(random.nextGaussian() * 0.3, random.nextGaussian() * 0.3, 1).normalize());
+            final Optional<CollisionInformation> expected = expectedScene.hitObject(ray);
+            final Optional<CollisionInformation> result = scene.hitObject(ray);
+            assertEquals(expected.isPresent(), result.isPresent());
+            if (expected.isPresent()) {
+                hits++;
+                assertEquals(expected.get().getDistance(), result.get().getDistance(), 0d);
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    private void addStaticShapes(Scene target) {
+        for (int i = 0; i < STATIC_SPHERES; i++) {
+            target.addShape(createSphere(Transformation.translate(i * 2.5 - 10, -1, 5)));
+        }
+        target.addShape(new Plane(Transformation.translate(0, -3, 0), shader));
+    }
+
+    private Shape createSphere(Transformation objectToWorld) {
+        final SimpleSphere sphere = new SimpleSphere(objectToWorld, shader);
+        sphere.setSolver(Solvers.Quadratic);
+        return sphere;
+    }
+
+}
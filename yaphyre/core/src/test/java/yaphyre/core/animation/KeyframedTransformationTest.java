@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.animation;
+
+import org.junit.Test;
+
+import yaphyre.core.math.Matrix;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the interpolation of {@link KeyframedTransformation}s.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class KeyframedTransformationTest {
+
+    private final KeyframedTransformation transformation = new KeyframedTransformation(
+            new Keyframe(10, new Vector3D(0, 0, 0), new Vector3D(0, 90, 0), new Vector3D(2, 2, 2)),
+            new Keyframe(0, new Vector3D(4, 0, 0)));
+
+    @Test
+    public void testKeyframesAreSorted() {
+        assertEquals(0d, transformation.getFirstFrame(), 0d);
+        assertEquals(10d, transformation.getLastFrame(), 0d);
+        assertFalse(transformation.isConstant());
+    }
+
+    @Test
+    public void testTransformationIsConstantOutsideOfKeyframes() {
+        assertEquals(new Point3D(5, 0, 0), transformation.at(-3).transform(new Point3D(1, 0, 0)));
+        assertEquals(new Point3D(0, 0, -2), transformation.at(12).transform(new Point3D(1, 0, 0)));
+    }
+
+    @Test
+    public void testValuesAreInterpolated() {
+        final Transformation expected = Transformation.translate(2, 0, 0)
+                .mul(Transformation.rotateY(45))
+                .mul(Transformation.scale(1.5, 1.5, 1.5));
+
+        assertEquals(expected, transformation.at(5));
+    }
+
+    @Test
+    public void testInverseIsComposed() {
+        final Transformation result = transformation.at(3.7);
+
+        assertEquals(Matrix.IDENTITY, result.getMatrix().mul(result.getInverseMatrix()));
+    }
+
+    @Test
+    public void testTranslationIsExact() {
+        final Transformation result = KeyframedTransformation
+                .constant(new Vector3D(0, 2, 0), Keyframe.NO_ROTATION, Keyframe.NO_SCALING)
+                .at(42);
+        final Transformation expected = Transformation.translate(0, 2, 0);
+
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                assertEquals(expected.getMatrix().get(row, col), result.getMatrix().get(row, col), 0d);
+                assertEquals(expected.getInverseMatrix().get(row, col), result.getInverseMatrix().get(row, col), 0d);
+            }
+        }
+    }
+
+    @Test
+    public void testConstant() {
+        assertTrue(KeyframedTransformation.constant(Vector3D.X, Keyframe.NO_ROTATION, Keyframe.NO_SCALING)
+                .isConstant());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyframesAtSameFrame() {
+        new KeyframedTransformation(new Keyframe(1, Vector3D.X), new Keyframe(1, Vector3D.Y));
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.api;
+
+import java.util.Optional;
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Normal3D;
+import yaphyre.core.math.Point2D;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.SimpleSphere;
+
+import static java.lang.Double.POSITIVE_INFINITY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the {@link NearestHit}.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class NearestHitTest {
+
+    private static final Shader SHADER = new ColorShader(Color.WHITE);
+
+    private final Ray ray = new Ray(new Point3D(0, 0, -5), Vector3D.Z);
+
+    @Test
+    public void testNothingHit() {
+        final NearestHit hit = new NearestHit(ray);
+
+        assertEquals(POSITIVE_INFINITY, hit.intersect(createShapeAt(Optional.empty()), 0, POSITIVE_INFINITY), 0d);
+
+        assertFalse(hit.isPresent());
+        assertEquals(-1, hit.getIndex());
+        assertFalse(hit.createCollisionInformation().isPresent());
+    }
+
+    @Test
+    public void testCollisionOfNearestShapeIsKept() {
+        final NearestHit hit = new NearestHit(ray);
+        final Shape nearShape = createShapeAt(Optional.of(3d));
+        final Shape farShape = createShapeAt(Optional.of(7d));
+
+        assertEquals(3d, hit.intersect(nearShape, 0, POSITIVE_INFINITY), 0d);
+        // the far shape stores its collision information before its distance is compared
+        assertEquals(POSITIVE_INFINITY, hit.intersect(farShape, 1, hit.getDistance()), 0d);
+
+        assertEquals(0, hit.getIndex());
+        assertEquals(3d, hit.getDistance(), 0d);
+        final CollisionInformation collision = hit.createCollisionInformation().get();
+        assertSame(nearShape, collision.getShape());
+        assertEquals(3d, collision.getDistance(), 0d);
+    }
+
+    @Test
+    public void testOfferedHitReplacesStoredCollision() {
+        final NearestHit hit = new NearestHit(ray);
+        final SimpleSphere sphere = new SimpleSphere(Transformation.IDENTITY, SHADER);
+        sphere.setSolver(Solvers.Quadratic);
+
+        hit.intersect(createShapeAt(Optional.of(7d)), 0, POSITIVE_INFINITY);
+        assertEquals(POSITIVE_INFINITY, hit.offer(sphere, 1, 9d, hit.getDistance()), 0d);
+        assertEquals(4d, hit.offer(sphere, 1, 4d, hit.getDistance()), 0d);
+
+        assertTrue(hit.isPresent());
+        assertEquals(1, hit.getIndex());
+        assertEquals(sphere.intersect(ray), hit.createCollisionInformation());
+    }
+
+    /**
+     * Creates a shape using the default two phase intersection, which is hit at the given distance.
+     */
+    private Shape createShapeAt(Optional<Double> distance) {
+        return new Shape() {
+            @Nonnull
+            @Override
+            public Shader getShader() {
+                return SHADER;
+            }
+
+            @Nonnull
+            @Override
+            public Optional<CollisionInformation> intersect(@Nonnull Ray ray) {
+                return distance.map(d -> new CollisionInformation(ray, this, d, ray.getPoint(d),
+                        new Normal3D(0, 0, -1), Point2D.ZERO));
+            }
+
+            @Nonnull
+            @Override
+            public BoundingBox getBoundingBox() {
+                return BoundingBox.INFINITE_BOUNDING_BOX;
+            }
+
+            @Nonnull
+            @Override
+            public BoundingBox getAxisAlignedBoundingBox() {
+                return BoundingBox.INFINITE_BOUNDING_BOX;
+            }
+        };
+    }
+
+}
@@ -27,18 +27,26 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.Point3D;
 import yaphyre.core.math.Ray;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shapes.Plane;
+import yaphyre.core.shapes.SimpleSphere;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static yaphyre.core.math.MathUtils.EPSILON;
 
 /**
  * Test class for verifying the different hit functions.
@@ -62,6 +70,8 @@ public class SceneTest {
     @Before
     public void setUp() throws Exception {
         when(shape.getBoundingBox()).thenReturn(boundingBox);
+        when(boundingBox.isBounded()).thenReturn(true);
+        useDefaultTwoPhaseIntersection(shape);
         scene = new Scene(injector);
         scene.addShape(shape);
     }
@@ -119,6 +129,7 @@ public class SceneTest {
         Shape mockShape = mock(Shape.class);
         scene.addShape(mockShape);
         when(mockShape.getBoundingBox()).thenReturn(mockBoundingBox);
+        useDefaultTwoPhaseIntersection(mockShape);
 
         when(collisionInformation.getDistance()).thenReturn(10d);
         when(boundingBox.isHitBy(any())).thenReturn(true);
@@ -135,6 +146,31 @@ public class SceneTest {
 
     }
 
+    @Test
+    public void testHitObjectWithUnboundedShape() throws Exception {
+
+        Shader shader = mock(Shader.class);
+        Scene planeScene = new Scene(injector);
+        Shape plane = new Plane(Transformation.IDENTITY, shader);
+        SimpleSphere sphere = new SimpleSphere(Transformation.translate(0, 2, 0), shader);
+        sphere.setSolver(Solvers.Quadratic);
+        planeScene.addShape(plane);
+        planeScene.addShape(sphere);
+
+        Optional<CollisionInformation> sphereHit = planeScene.hitObject(new Ray(new Point3D(0, 10, 0), Vector3D.Y.neg()));
+        Optional<CollisionInformation> planeHit = planeScene.hitObject(new Ray(new Point3D(5, 10, 0), Vector3D.Y.neg()));
+
+        assertTrue(sphereHit.isPresent());
+        assertEquals(sphere, sphereHit.get().getShape());
+        assertEquals(7d, sphereHit.get().getDistance(), EPSILON);
+        assertTrue(planeHit.isPresent());
+        assertEquals(plane, planeHit.get().getShape());
+        assertEquals(10d, planeHit.get().getDistance(), EPSILON);
+        assertTrue(planeScene.occluded(new Ray(new Point3D(5, 10, 0), Vector3D.Y.neg(), EPSILON, 20d)));
+        assertFalse(planeScene.occluded(new Ray(new Point3D(5, 10, 0), Vector3D.Y.neg(), EPSILON, 5d)));
+
+    }
+
     @Test
     public void testHitObjectForShadowRayAndMiss() throws Exception {
 
@@ -162,4 +198,87 @@ public class SceneTest {
         verify(boundingBox, times(1)).isHitBy(ray);
         verify(shape, times(1)).intersect(ray);
     }
+
+    @Test
+    public void testOccludedAndMissBoundingBox() throws Exception {
+
+        when(boundingBox.isHitBy(any())).thenReturn(false);
+
+        assertFalse(scene.occluded(ray));
+        verify(boundingBox).isHitBy(ray);
+        verify(shape, never()).occluded(ray);
+
+    }
+
+    @Test
+    public void testFindOccluder() throws Exception {
+
+        when(boundingBox.isHitBy(any())).thenReturn(true);
+        when(shape.occluded(any())).thenReturn(true);
+
+        Optional<Shape> occluder = scene.findOccluder(ray);
+
+        assertTrue(occluder.isPresent());
+        assertEquals(shape, occluder.get());
+        verify(shape).occluded(ray);
+        verify(shape, never()).intersect(ray);
+
+    }
+
+    @Test
+    public void testReplaceShapeOfFrozenScene() throws Exception {
+
+        Shape replacement = mock(Shape.class);
+        when(replacement.getBoundingBox()).thenReturn(boundingBox);
+        useDefaultTwoPhaseIntersection(replacement);
+        when(boundingBox.isHitBy(any())).thenReturn(true);
+        when(replacement.intersect(any())).thenReturn(Optional.of(collisionInformation));
+        scene.freeze();
+        int revision = scene.getRevision();
+
+        scene.replaceShape(0, replacement);
+
+        assertTrue(scene.isFrozen());
+        assertTrue(scene.getRevision() != revision);
+        assertEquals(replacement, scene.getShapes().get(0));
+        assertTrue(scene.hitObject(ray).isPresent());
+        verify(injector).injectMembers(replacement);
+        verify(shape, never()).intersect(ray);
+
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+
+        assertFalse(scene.isFrozen());
+        scene.hitObject(ray);
+        assertTrue(scene.isFrozen());
+
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddShapeToFrozenScene() throws Exception {
+
+        scene.freeze();
+        scene.addShape(mock(Shape.class));
+
+    }
+
+    /**
+     * The accelerators only ask for the distances first and then for the collision information of the nearest
+     * intersection. The mocked shapes behave like the default implementations, which are built on
+     * {@link Shape#intersect(Ray)}.
+     */
+    private static void useDefaultTwoPhaseIntersection(Shape shape) {
+        when(shape.intersectDistance(any(), any())).thenAnswer(invocation -> {
+            Optional<CollisionInformation> collision = shape.intersect((Ray) invocation.getArguments()[0]);
+            if (collision.isPresent()) {
+                ((CollisionCache) invocation.getArguments()[1]).set(collision.get());
+                return collision.get().getDistance();
+            }
+            return Double.POSITIVE_INFINITY;
+        });
+        when(shape.createCollisionInformation(any(), anyDouble(), any()))
+                .thenAnswer(invocation -> ((CollisionCache) invocation.getArguments()[2]).get());
+    }
 }
\ No newline at end of file
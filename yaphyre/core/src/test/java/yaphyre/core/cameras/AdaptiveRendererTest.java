@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.cameras;
+
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Tracer;
+import yaphyre.core.films.ImageFile;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Ray;
+import yaphyre.core.samplers.SingleValueSampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for the AdaptiveRenderer class.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class AdaptiveRendererTest {
+
+    private static final int X_SIZE = 16;
+
+    private static final int Y_SIZE = 4;
+
+    private static final int BASE_PASSES = 2;
+
+    private static final int MAX_PASSES = 16;
+
+    private ImageFile imageFile;
+
+    private Tracer tracer;
+
+    private OrthographicCamera camera;
+
+    @Before
+    public void setupCamera() {
+        imageFile = new ImageFile(X_SIZE, Y_SIZE);
+        tracer = mock(Tracer.class);
+        camera = new OrthographicCamera(imageFile, Color.BLACK, 1, 1, 1);
+        camera.setTracer(tracer);
+        camera.setSampler(new SingleValueSampler());
+        camera.setTileScheduler(new TileScheduler(1, 4));
+    }
+
+    @Test
+    public void testOnlyNoisyPixelsAreRefined() {
+        // the right quarter of the film is noisy, the rest is flat
+        final Random random = new Random(4711);
+        when(tracer.traceRay(any(Ray.class), any(Scene.class))).thenAnswer(invocation -> {
+            final Ray ray = (Ray) invocation.getArguments()[0];
+            return Optional.of(ray.getOrigin().getX() > 0.25 ? new Color(random.nextDouble(), 0, 0) : Color.WHITE);
+        });
+
+        final long pixelPasses = new AdaptiveRenderer(BASE_PASSES, 0.01, MAX_PASSES).render(camera, mock(Scene.class));
+
+        for (int y = 0; y < Y_SIZE; y++) {
+            assertEquals(BASE_PASSES, imageFile.getSampleCount(0, y));
+            assertEquals(MAX_PASSES, imageFile.getSampleCount(X_SIZE - 1, y));
+        }
+        long expectedPixelPasses = 0;
+        for (int y = 0; y < Y_SIZE; y++) {
+            for (int x = 0; x < X_SIZE; x++) {
+                expectedPixelPasses += imageFile.getSampleCount(x, y);
+            }
+        }
+        assertEquals(expectedPixelPasses, pixelPasses);
+        assertTrue(pixelPasses < (long) MAX_PASSES * X_SIZE * Y_SIZE / 2);
+    }
+
+    @Test
+    public void testFlatImageNeedsOnlyBasePasses() {
+        when(tracer.traceRay(any(Ray.class), any(Scene.class))).thenReturn(Optional.of(Color.WHITE));
+
+        final long pixelPasses = new AdaptiveRenderer(BASE_PASSES, 0.01, MAX_PASSES).render(camera, mock(Scene.class));
+
+        assertEquals(BASE_PASSES * X_SIZE * Y_SIZE, pixelPasses);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooFewBasePasses() {
+        new AdaptiveRenderer(1, 0.01, MAX_PASSES);
+    }
+
+}
@@ -28,6 +28,7 @@ import static org.junit.runners.Suite.SuiteClasses;
  * @since 10.03.14
  */
 @RunWith(Suite.class)
-@SuiteClasses({OrthographicCameraTest.class, PerspectiveCameraTest.class})
+@SuiteClasses({AdaptiveRendererTest.class, CheckpointRendererTest.class, OrthographicCameraTest.class,
+        PerspectiveCameraTest.class, ProgressiveRendererTest.class, TileSchedulerTest.class})
 public class CameraTests {
 }
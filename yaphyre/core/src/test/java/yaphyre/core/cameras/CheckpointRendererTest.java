@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.cameras;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Tracer;
+import yaphyre.core.films.ImageFile;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Ray;
+import yaphyre.core.samplers.SingleValueSampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for the CheckpointRenderer class.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class CheckpointRendererTest {
+
+    private static final int X_SIZE = 8;
+
+    private static final int Y_SIZE = 6;
+
+    private static final int TILES = 4;
+
+    private static final Duration ONE_MINUTE = Duration.ofMinutes(1);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path checkpointFile;
+
+    private Scene scene;
+
+    @Before
+    public void setUp() throws IOException {
+        checkpointFile = temporaryFolder.getRoot().toPath().resolve("color_0.checkpoint");
+        scene = mock(Scene.class);
+    }
+
+    @Test
+    public void testResumeAfterFailure() {
+        // the first rendering fails within the second tile
+        final AtomicInteger calls = new AtomicInteger();
+        final Tracer failingTracer = mock(Tracer.class);
+        when(failingTracer.traceRay(any(Ray.class), any(Scene.class))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() > 20) {
+                throw new IllegalStateException("render failure");
+            }
+            return Optional.of(Color.WHITE);
+        });
+        final CheckpointRenderer renderer = new CheckpointRenderer(checkpointFile, ONE_MINUTE);
+        try {
+            renderer.render(createCamera(new ImageFile(X_SIZE, Y_SIZE), failingTracer), scene, false);
+            fail("failure expected");
+        } catch (IllegalStateException e) {
+            assertTrue(Files.exists(checkpointFile));
+        }
+
+        // the resumed rendering only renders the missing tiles
+        final AtomicInteger resumedCalls = new AtomicInteger();
+        final ImageFile resumedFilm = new ImageFile(X_SIZE, Y_SIZE);
+        final int renderedTiles = renderer.render(createCamera(resumedFilm, createTracer(Color.BLACK, resumedCalls)),
+                scene, true);
+
+        assertEquals(TILES - 1, renderedTiles);
+        assertEquals(X_SIZE * Y_SIZE - 16, resumedCalls.get());
+        for (int y = 0; y < Y_SIZE; y++) {
+            for (int x = 0; x < X_SIZE; x++) {
+                assertEquals(1, resumedFilm.getSampleCount(x, y));
+                assertEquals(x < 4 && y < 4 ? Color.WHITE : Color.BLACK, resumedFilm.getColor(x, y));
+            }
+        }
+
+        renderer.deleteCheckpoint();
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    @Test
+    public void testCheckpointsAreSavedWhileRendering() {
+        final Tracer slowTracer = mock(Tracer.class);
+        when(slowTracer.traceRay(any(Ray.class), any(Scene.class))).thenAnswer(invocation -> {
+            Thread.sleep(2);
+            return Optional.of(Color.WHITE);
+        });
+
+        new CheckpointRenderer(checkpointFile, Duration.ofMillis(10))
+                .render(createCamera(new ImageFile(X_SIZE, Y_SIZE), slowTracer), scene, false);
+
+        assertTrue(Files.exists(checkpointFile));
+    }
+
+    @Test
+    public void testMissingCheckpointIsIgnored() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final int renderedTiles = new CheckpointRenderer(checkpointFile, ONE_MINUTE)
+                .render(createCamera(new ImageFile(X_SIZE, Y_SIZE), createTracer(Color.WHITE, calls)), scene, true);
+
+        assertEquals(TILES, renderedTiles);
+        assertEquals(X_SIZE * Y_SIZE, calls.get());
+    }
+
+    @Test
+    public void testCorruptCheckpointIsIgnored() throws IOException {
+        Files.write(checkpointFile, new byte[]{0x59, 0x50, 0x43, 0x50, 0, 0, 0, 1, 0, 0, 0, 8, 42, 42, 42, 42, 42});
+        final ImageFile film = new ImageFile(X_SIZE, Y_SIZE);
+
+        final int renderedTiles = new CheckpointRenderer(checkpointFile, ONE_MINUTE)
+                .render(createCamera(film, createTracer(Color.WHITE, new AtomicInteger())), scene, true);
+
+        assertEquals(TILES, renderedTiles);
+        assertEquals(1, film.getSampleCount(0, 0));
+    }
+
+    @Test
+    public void testCheckpointOfOtherFilmIsIgnored() {
+        final CheckpointRenderer renderer = new CheckpointRenderer(checkpointFile, ONE_MINUTE);
+        final Tracer failingTracer = mock(Tracer.class);
+        when(failingTracer.traceRay(any(Ray.class), any(Scene.class))).thenThrow(new IllegalStateException());
+        try {
+            renderer.render(createCamera(new ImageFile(X_SIZE, Y_SIZE), failingTracer), scene, false);
+            fail("failure expected");
+        } catch (IllegalStateException e) {
+            assertTrue(Files.exists(checkpointFile));
+        }
+
+        final AtomicInteger calls = new AtomicInteger();
+        final int renderedTiles = renderer.render(
+                createCamera(new ImageFile(X_SIZE, Y_SIZE + 1), createTracer(Color.WHITE, calls)), scene, true);
+
+        assertEquals(TILES, renderedTiles);
+        assertEquals(X_SIZE * (Y_SIZE + 1), calls.get());
+    }
+
+    private static Tracer createTracer(Color color, AtomicInteger calls) {
+        final Tracer tracer = mock(Tracer.class);
+        when(tracer.traceRay(any(Ray.class), any(Scene.class))).thenAnswer(invocation -> {
+            calls.incrementAndGet();
+            return Optional.of(color);
+        });
+        return tracer;
+    }
+
+    private static AbstractCamera createCamera(ImageFile film, Tracer tracer) {
+        final OrthographicCamera camera = new OrthographicCamera(film, Color.BLACK, 1, 1, 1);
+        camera.setTracer(tracer);
+        camera.setSampler(new SingleValueSampler());
+        camera.setTileScheduler(new TileScheduler(1, 4));
+        return camera;
+    }
+
+}
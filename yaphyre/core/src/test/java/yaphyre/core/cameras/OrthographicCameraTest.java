@@ -16,6 +16,7 @@
 
 package yaphyre.core.cameras;
 
+import java.util.Collections;
 import java.util.Optional;
 
 import org.apache.commons.math3.util.Pair;
@@ -29,12 +30,14 @@ import yaphyre.core.api.Tracer;
 import yaphyre.core.math.Color;
 import yaphyre.core.math.Point2D;
 import yaphyre.core.math.Ray;
+import yaphyre.core.math.RayPacket;
 import yaphyre.core.math.Vector3D;
 import yaphyre.core.samplers.SingleValueSampler;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -132,4 +135,22 @@ public class OrthographicCameraTest {
         verify(tracer, times(X_SIZE * Y_SIZE)).traceRay(any(Ray.class), any(Scene.class));
         verify(film, times(X_SIZE * Y_SIZE)).addCameraSample(any(CameraSample.class));
     }
+
+    @Test
+    public void testRenderSceneInPackets() throws Exception {
+        when(tracer.traceRays(any(RayPacket.class), any(Scene.class))).thenAnswer(invocation ->
+                Collections.nCopies(((RayPacket) invocation.getArguments()[0]).size(), Optional.of(Color.BLACK)));
+        Scene scene = mock(Scene.class);
+        testCamera.setPacketSize(5);
+        testCamera.renderScene(scene);
+        // the twelve pixels fit into one tile: two full packets and one with the remaining two rays
+        verify(tracer, times(3)).traceRays(any(RayPacket.class), any(Scene.class));
+        verify(tracer, never()).traceRay(any(Ray.class), any(Scene.class));
+        verify(film, times(X_SIZE * Y_SIZE)).addCameraSample(any(CameraSample.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPacketSizeTooLarge() throws Exception {
+        testCamera.setPacketSize(RayPacket.MAX_SIZE + 1);
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.cameras;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Tracer;
+import yaphyre.core.films.ImageFile;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point2D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.samplers.SingleValueSampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for the ProgressiveRenderer class.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class ProgressiveRendererTest {
+
+    private static final int X_SIZE = 8;
+
+    private static final int Y_SIZE = 6;
+
+    private static final Duration ONE_MINUTE = Duration.ofMinutes(1);
+
+    private ImageFile imageFile;
+
+    private Tracer tracer;
+
+    private OrthographicCamera camera;
+
+    private Scene scene;
+
+    @Before
+    public void setupCamera() {
+        imageFile = new ImageFile(X_SIZE, Y_SIZE);
+        tracer = mock(Tracer.class);
+        camera = new OrthographicCamera(imageFile, Color.BLACK, 1, 1, 1);
+        camera.setTracer(tracer);
+        camera.setSampler(new SingleValueSampler());
+        camera.setTileScheduler(new TileScheduler(1, 4));
+        scene = mock(Scene.class);
+    }
+
+    @Test
+    public void testStopsWhenConverged() {
+        when(tracer.traceRay(any(Ray.class), any(Scene.class))).thenReturn(Optional.of(Color.WHITE));
+
+        final int passes = new ProgressiveRenderer(ONE_MINUTE, 0.01, ONE_MINUTE, 100).render(camera, scene, f -> {
+        });
+
+        assertEquals(2, passes);
+        assertEquals(2, imageFile.getSampleCount(0, 0));
+        assertEquals(0d, ProgressiveRenderer.estimateNoise(imageFile), 0d);
+    }
+
+    @Test
+    public void testNoisyImageRendersUpToMaxPasses() {
+        final Random random = new Random(4711);
+        when(tracer.traceRay(any(Ray.class), any(Scene.class)))
+                .thenAnswer(invocation -> Optional.of(new Color(random.nextDouble(), 0, 0)));
+        final AtomicInteger previews = new AtomicInteger();
+
+        final int passes = new ProgressiveRenderer(ONE_MINUTE, 0d, Duration.ZERO, 8)
+                .render(camera, scene, f -> previews.incrementAndGet());
+
+        assertEquals(8, passes);
+        assertEquals(7, previews.get());
+        for (int y = 0; y < Y_SIZE; y++) {
+            for (int x = 0; x < X_SIZE; x++) {
+                assertEquals(8, imageFile.getSampleCount(x, y));
+            }
+        }
+        assertTrue(ProgressiveRenderer.estimateNoise(imageFile) > 0d);
+    }
+
+    @Test
+    public void testStopsWhenTimeBudgetIsUsedUp() {
+        when(tracer.traceRay(any(Ray.class), any(Scene.class)))
+                .thenAnswer(invocation -> Optional.of(new Color(Math.random(), 0, 0)));
+
+        final int passes = new ProgressiveRenderer(Duration.ZERO, 0d, ONE_MINUTE, 100).render(camera, scene, f -> {
+        });
+
+        assertEquals(1, passes);
+    }
+
+    @Test
+    public void testSampleOffsets() {
+        assertEquals(Point2D.ZERO, ProgressiveRenderer.getSampleOffset(0));
+        Point2D previous = Point2D.ZERO;
+        for (int pass = 1; pass < 100; pass++) {
+            final Point2D offset = ProgressiveRenderer.getSampleOffset(pass);
+            assertTrue(offset.getU() >= 0d && offset.getU() < 1d);
+            assertTrue(offset.getV() >= 0d && offset.getV() < 1d);
+            assertNotEquals(previous, offset);
+            previous = offset;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxPasses() {
+        new ProgressiveRenderer(ONE_MINUTE, 0d, ONE_MINUTE, 0);
+    }
+
+}
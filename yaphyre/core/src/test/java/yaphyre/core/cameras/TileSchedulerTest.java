@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.cameras;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+import yaphyre.core.api.Tile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for the TileScheduler class.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class TileSchedulerTest {
+
+    private static final int X_RESOLUTION = 100;
+
+    private static final int Y_RESOLUTION = 70;
+
+    @Test
+    public void testCreateTilesCoversEveryPixelOnce() {
+        final TileScheduler scheduler = new TileScheduler(1, 32);
+        final List<Tile> tiles = scheduler.createTiles(X_RESOLUTION, Y_RESOLUTION);
+
+        assertEquals(4 * 3, tiles.size());
+        for (int y = 0; y < Y_RESOLUTION; y++) {
+            for (int x = 0; x < X_RESOLUTION; x++) {
+                final int px = x;
+                final int py = y;
+                assertEquals(1, tiles.stream().filter(tile -> tile.contains(px, py)).count());
+            }
+        }
+    }
+
+    @Test
+    public void testCreateTilesBorderTiles() {
+        final TileScheduler scheduler = new TileScheduler(1, 32);
+        final List<Tile> tiles = scheduler.createTiles(X_RESOLUTION, Y_RESOLUTION);
+
+        final Tile lastTile = tiles.get(tiles.size() - 1);
+        assertEquals(tiles.size() - 1, lastTile.getIndex());
+        assertEquals(X_RESOLUTION - 96, lastTile.getWidth());
+        assertEquals(Y_RESOLUTION - 64, lastTile.getHeight());
+    }
+
+    @Test
+    public void testCreateTilesOfRegion() {
+        final TileScheduler scheduler = new TileScheduler(1, 32);
+        final Tile region = new Tile(3, 40, 20, 100, 60);
+        final List<Tile> tiles = scheduler.createTiles(region);
+
+        assertEquals(4, tiles.size());
+        assertEquals(new Tile(0, 40, 20, 72, 52), tiles.get(0));
+        assertEquals(new Tile(3, 72, 52, 100, 60), tiles.get(3));
+        assertEquals(region.getPixelCount(), tiles.stream().mapToInt(Tile::getPixelCount).sum());
+    }
+
+    @Test
+    public void testRenderTilesVisitsEachTileOnce() {
+        try (TileScheduler scheduler = new TileScheduler(4, 8)) {
+            final List<Tile> tiles = scheduler.createTiles(X_RESOLUTION, Y_RESOLUTION);
+            final AtomicIntegerArray visits = new AtomicIntegerArray(tiles.size());
+
+            scheduler.renderTiles(tiles, tile -> visits.incrementAndGet(tile.getIndex()));
+
+            for (int i = 0; i < tiles.size(); i++) {
+                assertEquals(1, visits.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testPassesShareThePool() {
+        final TileScheduler scheduler = new TileScheduler(4, 8);
+        final List<Tile> tiles = scheduler.createTiles(X_RESOLUTION, Y_RESOLUTION);
+        final AtomicIntegerArray visits = new AtomicIntegerArray(tiles.size());
+
+        for (int pass = 0; pass < 3; pass++) {
+            scheduler.renderTiles(tiles, tile -> visits.incrementAndGet(tile.getIndex()));
+        }
+        for (int i = 0; i < tiles.size(); i++) {
+            assertEquals(3, visits.get(i));
+        }
+
+        scheduler.close();
+        try {
+            scheduler.renderTiles(tiles, tile -> visits.incrementAndGet(tile.getIndex()));
+            fail("a closed scheduler must not render tiles");
+        } catch (RejectedExecutionException expected) {
+            // the pool is shut down
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRenderTilesPropagatesExceptions() {
+        try (TileScheduler scheduler = new TileScheduler(2, 8)) {
+            scheduler.renderTiles(scheduler.createTiles(X_RESOLUTION, Y_RESOLUTION), tile -> {
+                if (tile.getIndex() == 3) {
+                    throw new IllegalStateException("failed tile");
+                }
+            });
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTileSize() {
+        new TileScheduler(1, 0);
+    }
+
+    @Test
+    public void testDefaults() {
+        final TileScheduler scheduler = new TileScheduler();
+        assertEquals(TileScheduler.DEFAULT_TILE_SIZE, scheduler.getTileSize());
+        assertTrue(scheduler.getNumberOfThreads() > 0);
+    }
+}
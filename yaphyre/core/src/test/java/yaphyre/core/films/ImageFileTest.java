@@ -0,0 +1,370 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.films;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+import yaphyre.core.api.CameraSample;
+import yaphyre.core.api.Tile;
+import yaphyre.core.cameras.TileScheduler;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point2D;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static yaphyre.core.math.MathUtils.EPSILON;
+
+/**
+ * Test cases for the ImageFile class.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class ImageFileTest {
+
+    private static final int X_SIZE = 40;
+
+    private static final int Y_SIZE = 30;
+
+    @Test
+    public void testAverageOfSamples() {
+        ImageFile imageFile = new ImageFile(X_SIZE, Y_SIZE);
+
+        imageFile.addCameraSample(new CameraSample(new Point2D(3, 2), new Color(1, 0, 0.5)));
+        imageFile.addCameraSample(new CameraSample(new Point2D(3, 2), new Color(0, 1, 0.5)));
+
+        assertEquals(2, imageFile.getSampleCount(3, 2));
+        assertEquals(new Color(0.5, 0.5, 0.5), imageFile.getColor(3, 2));
+    }
+
+    @Test
+    public void testVariance() {
+        ImageFile imageFile = new ImageFile(X_SIZE, Y_SIZE);
+
+        assertEquals(Double.POSITIVE_INFINITY, imageFile.getVariance(3, 2), 0d);
+        imageFile.addCameraSample(new CameraSample(new Point2D(3, 2), Color.WHITE));
+        assertEquals(Double.POSITIVE_INFINITY, imageFile.getVariance(3, 2), 0d);
+        imageFile.addCameraSample(new CameraSample(new Point2D(3, 2), Color.BLACK));
+        imageFile.addCameraSample(new CameraSample(new Point2D(3, 2), Color.WHITE));
+        imageFile.addCameraSample(new CameraSample(new Point2D(3, 2), Color.BLACK));
+
+        // luminances 1, 0, 1, 0: mean 0.5, unbiased variance 4 * 0.25 / 3
+        assertEquals(0.5, imageFile.getLuminance(3, 2), EPSILON);
+        assertEquals(1d / 3d, imageFile.getVariance(3, 2), EPSILON);
+    }
+
+    @Test
+    public void testVarianceOfConstantSamples() {
+        ImageFile imageFile = new ImageFile(X_SIZE, Y_SIZE);
+
+        for (int sample = 0; sample < 10; sample++) {
+            imageFile.addCameraSample(new CameraSample(new Point2D(0, 0), new Color(0.3, 0.6, 0.9)));
+        }
+
+        assertEquals(0d, imageFile.getVariance(0, 0), EPSILON);
+    }
+
+    @Test
+    public void testPixelWithoutSamplesIsBlack() {
+        ImageFile imageFile = new ImageFile(X_SIZE, Y_SIZE);
+
+        assertEquals(0, imageFile.getSampleCount(0, 0));
+        assertEquals(Color.BLACK, imageFile.getColor(0, 0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSampleOutsideOfFilm() {
+        ImageFile imageFile = new ImageFile(X_SIZE, Y_SIZE);
+
+        imageFile.addCameraSample(new CameraSample(new Point2D(X_SIZE, 0), Color.WHITE));
+    }
+
+    @Test
+    public void testTransferRegion() throws IOException {
+        ImageFile source = new ImageFile(X_SIZE, Y_SIZE);
+        ImageFile target = new ImageFile(X_SIZE, Y_SIZE);
+        Tile region = new Tile(0, 10, 5, 20, 8);
+
+        source.addCameraSample(new CameraSample(new Point2D(12, 6), new Color(1, 0, 0.5)));
+        source.addCameraSample(new CameraSample(new Point2D(12, 6), new Color(0, 1, 0.5)));
+        source.addCameraSample(new CameraSample(new Point2D(0, 0), Color.WHITE));
+        target.addCameraSample(new CameraSample(new Point2D(12, 6), Color.WHITE));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        source.writeRegion(region, new DataOutputStream(bytes));
+        assertEquals(region.getPixelCount() * ImageFile.BYTES_PER_PIXEL, bytes.size());
+        target.addRegion(region, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // same as if all the samples had been added to the target
+        ImageFile expected = new ImageFile(X_SIZE, Y_SIZE);
+        expected.addCameraSample(new CameraSample(new Point2D(12, 6), Color.WHITE));
+        expected.addCameraSample(new CameraSample(new Point2D(12, 6), new Color(1, 0, 0.5)));
+        expected.addCameraSample(new CameraSample(new Point2D(12, 6), new Color(0, 1, 0.5)));
+        assertEquals(3, target.getSampleCount(12, 6));
+        assertEquals(expected.getColor(12, 6), target.getColor(12, 6));
+        assertEquals(expected.getVariance(12, 6), target.getVariance(12, 6), EPSILON);
+        assertEquals(0, target.getSampleCount(0, 0));
+    }
+
+    @Test
+    public void testParallelTileRendering() {
+        final int samplesPerPixel = 16;
+        ImageFile imageFile = new ImageFile(X_SIZE, Y_SIZE);
+        try (TileScheduler scheduler = new TileScheduler(4, 8)) {
+            List<Tile> tiles = scheduler.createTiles(X_SIZE, Y_SIZE);
+
+            scheduler.renderTiles(tiles, tile -> {
+                for (int y = tile.getYStart(); y < tile.getYEnd(); y++) {
+                    for (int x = tile.getXStart(); x < tile.getXEnd(); x++) {
+                        for (int sample = 0; sample < samplesPerPixel; sample++) {
+                            double value = (sample % 2 == 0) ? 1d : 0d;
+                            imageFile.addCameraSample(
+                                    new CameraSample(new Point2D(x, y), new Color(value, value, value)));
+                        }
+                    }
+                }
+            });
+        }
+
+        for (int y = 0; y < Y_SIZE; y++) {
+            for (int x = 0; x < X_SIZE; x++) {
+                assertEquals(samplesPerPixel, imageFile.getSampleCount(x, y));
+                assertEquals(0.5, imageFile.getColor(x, y).getRed(), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void testHighDynamicRangeFormats() {
+        assertFalse(ImageFile.ImageFormat.PNG.isHighDynamicRange());
+        assertTrue(ImageFile.ImageFormat.PFM.isHighDynamicRange());
+        assertTrue(ImageFile.ImageFormat.HDR.isHighDynamicRange());
+        assertTrue(ImageFile.ImageFormat.EXR.isHighDynamicRange());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLowDynamicRangeImageCannotBeStreamed() throws IOException {
+        new ImageFile(X_SIZE, Y_SIZE).writeImage(Channels.newChannel(new ByteArrayOutputStream()),
+                ImageFile.ImageFormat.PNG);
+    }
+
+    @Test
+    public void testWritePortableFloatMap() throws IOException {
+        final ByteBuffer data = writeImage(createHighDynamicRangeImage(), ImageFile.ImageFormat.PFM)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        final String header = "PF\n40 30\n-1.0\n";
+        assertEquals(header, readAscii(data, header.length()));
+        assertEquals(header.length() + X_SIZE * Y_SIZE * 3 * Float.BYTES, data.limit());
+        // bottom to top
+        data.position(header.length() + (2 * X_SIZE + 3) * 3 * Float.BYTES);
+        assertEquals(2.5f, data.getFloat(), 0f);
+        assertEquals(0.25f, data.getFloat(), 0f);
+        assertEquals(10f, data.getFloat(), 0f);
+        assertEquals(0f, data.getFloat(), 0f);
+    }
+
+    @Test
+    public void testWriteRadianceHdr() throws IOException {
+        final ByteBuffer data = writeImage(createHighDynamicRangeImage(), ImageFile.ImageFormat.HDR);
+
+        final String header = "#?RADIANCE\nFORMAT=32-bit_rle_rgbe\n\n-Y 30 +X 40\n";
+        assertEquals(header, readAscii(data, header.length()));
+        final float[][] scanlines = new float[Y_SIZE][];
+        for (int line = 0; line < Y_SIZE; line++) {
+            scanlines[line] = readEncodedRgbeScanline(data, X_SIZE);
+        }
+        assertFalse(data.hasRemaining());
+
+        // top to bottom, the precision of all components depends on the largest one
+        final float[] scanline = scanlines[Y_SIZE - 1 - 2];
+        assertEquals(2.5f, scanline[3 * 3], 10f / 128);
+        assertEquals(0.25f, scanline[3 * 3 + 1], 10f / 128);
+        assertEquals(10f, scanline[3 * 3 + 2], 10f / 128);
+        assertEquals(0f, scanline[4 * 3], 0f);
+        assertEquals(0.5f, scanlines[0][0], 0.5f / 128);
+    }
+
+    @Test
+    public void testWriteNarrowRadianceHdr() throws IOException {
+        final ImageFile imageFile = new ImageFile(4, 2);
+        imageFile.addCameraSample(new CameraSample(new Point2D(1, 1), new Color(1, 0.5, 0)));
+
+        final ByteBuffer data = writeImage(imageFile, ImageFile.ImageFormat.HDR);
+
+        final String header = "#?RADIANCE\nFORMAT=32-bit_rle_rgbe\n\n-Y 2 +X 4\n";
+        assertEquals(header, readAscii(data, header.length()));
+        // too narrow to be run length encoded: flat RGBE pixels, top line first
+        assertEquals(header.length() + 4 * 2 * 4, data.limit());
+        data.position(header.length() + 4);
+        assertEquals(128, data.get() & 0xff);
+        assertEquals(64, data.get() & 0xff);
+        assertEquals(0, data.get() & 0xff);
+        assertEquals(129, data.get() & 0xff);
+    }
+
+    @Test
+    public void testWriteOpenExr() throws IOException {
+        final ByteBuffer data = writeImage(createHighDynamicRangeImage(), ImageFile.ImageFormat.EXR)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(20000630, data.getInt());
+        assertEquals(2, data.getInt());
+        String attribute = readNullTerminated(data);
+        int attributes = 0;
+        while (!attribute.isEmpty()) {
+            readNullTerminated(data);
+            data.position(data.position() + data.getInt() + Integer.BYTES);
+            attribute = readNullTerminated(data);
+            attributes++;
+        }
+        assertEquals(8, attributes);
+
+        final long[] offsets = new long[Y_SIZE];
+        for (int line = 0; line < Y_SIZE; line++) {
+            offsets[line] = data.getLong();
+        }
+        assertEquals(data.position(), offsets[0]);
+        final int chunkSize = 2 * Integer.BYTES + X_SIZE * 3 * Float.BYTES;
+        assertEquals(offsets[Y_SIZE - 1] + chunkSize, data.limit());
+
+        // top to bottom, blue, green and red of all pixels
+        final int line = Y_SIZE - 1 - 2;
+        data.position((int) offsets[line]);
+        assertEquals(line, data.getInt());
+        assertEquals(X_SIZE * 3 * Float.BYTES, data.getInt());
+        final int lineData = data.position();
+        assertEquals(10f, data.getFloat(lineData + 3 * Float.BYTES), 0f);
+        assertEquals(0.25f, data.getFloat(lineData + (X_SIZE + 3) * Float.BYTES), 0f);
+        assertEquals(2.5f, data.getFloat(lineData + (2 * X_SIZE + 3) * Float.BYTES), 0f);
+    }
+
+    @Test
+    public void testPartialWritesAreCompleted() throws IOException {
+        final ImageFile imageFile = createHighDynamicRangeImage();
+        for (ImageFile.ImageFormat format : new ImageFile.ImageFormat[] {
+                ImageFile.ImageFormat.PFM, ImageFile.ImageFormat.HDR, ImageFile.ImageFormat.EXR}) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            imageFile.writeImage(createTricklingChannel(output), format);
+
+            assertArrayEquals(format.name(), writeImage(imageFile, format).array(), output.toByteArray());
+        }
+    }
+
+    private static ImageFile createHighDynamicRangeImage() {
+        ImageFile imageFile = new ImageFile(X_SIZE, Y_SIZE);
+        imageFile.addCameraSample(new CameraSample(new Point2D(3, 2), new Color(2.5, 0.25, 10)));
+        imageFile.addCameraSample(new CameraSample(new Point2D(0, Y_SIZE - 1), new Color(0.5, 0.5, 0.5)));
+        return imageFile;
+    }
+
+    private static ByteBuffer writeImage(ImageFile imageFile, ImageFile.ImageFormat format) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        imageFile.writeImage(Channels.newChannel(output), format);
+        return ByteBuffer.wrap(output.toByteArray());
+    }
+
+    /**
+     * Creates a channel writing at most a few bytes per call, like a slow network connection may do.
+     */
+    private static WritableByteChannel createTricklingChannel(ByteArrayOutputStream output) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) {
+                final int length = Math.min(source.remaining(), 7);
+                for (int i = 0; i < length; i++) {
+                    output.write(source.get());
+                }
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static String readAscii(ByteBuffer data, int length) {
+        final byte[] bytes = new byte[length];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static String readNullTerminated(ByteBuffer data) {
+        final StringBuilder value = new StringBuilder();
+        for (byte next = data.get(); next != 0; next = data.get()) {
+            value.append((char) next);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Decodes a run length encoded scanline of a Radiance HDR file.
+     */
+    private static float[] readEncodedRgbeScanline(ByteBuffer data, int width) {
+        assertEquals(2, data.get());
+        assertEquals(2, data.get());
+        assertEquals(width, ((data.get() & 0xff) << 8) | (data.get() & 0xff));
+        final int[][] components = new int[4][width];
+        for (int[] component : components) {
+            int x = 0;
+            while (x < width) {
+                final int count = data.get() & 0xff;
+                if (count > 128) {
+                    final int value = data.get() & 0xff;
+                    for (int i = 0; i < count - 128; i++) {
+                        component[x++] = value;
+                    }
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        component[x++] = data.get() & 0xff;
+                    }
+                }
+            }
+            assertEquals(width, x);
+        }
+        final float[] scanline = new float[width * 3];
+        for (int x = 0; x < width; x++) {
+            if (components[3][x] != 0) {
+                final double scale = Math.scalb(1d, components[3][x] - 128 - 8);
+                for (int channel = 0; channel < 3; channel++) {
+                    scanline[x * 3 + channel] = (float) ((components[channel][x] + 0.5) * scale);
+                }
+            }
+        }
+        return scanline;
+    }
+
+}
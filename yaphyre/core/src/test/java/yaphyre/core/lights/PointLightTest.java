@@ -21,8 +21,8 @@ import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
 
-import yaphyre.core.api.CollisionInformation;
 import yaphyre.core.api.Scene;
+import yaphyre.core.api.Shape;
 import yaphyre.core.math.Color;
 import yaphyre.core.math.Point3D;
 import yaphyre.core.math.Ray;
@@ -30,6 +30,9 @@ import yaphyre.core.math.Ray;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -41,7 +44,7 @@ import static org.mockito.Mockito.when;
 public class PointLightTest {
 
     // mocks
-    private CollisionInformation collisionInformation;
+    private Shape occluder;
     private Ray ray;
     private Scene scene;
 
@@ -53,7 +56,7 @@ public class PointLightTest {
 
         // Setup some mocks
         scene = mock(Scene.class);
-        collisionInformation = mock(CollisionInformation.class);
+        occluder = mock(Shape.class);
         ray = mock(Ray.class);
 
         // Init the subject under test
@@ -66,7 +69,7 @@ public class PointLightTest {
     public void testCalculateIntensityForShadowRayWithCollision() throws Exception {
 
         // Given: a shadow ray with no collision
-        when(scene.hitObjectForShadowRay(ray)).thenReturn(Optional.empty());
+        when(scene.findOccluder(ray)).thenReturn(Optional.empty());
         when(ray.getOrigin()).thenReturn(Point3D.ORIGIN);
 
         // When: calculating the light intensity
@@ -81,7 +84,7 @@ public class PointLightTest {
     public void testCalculateIntensityForShadowRayWithoutCollision() throws Exception {
 
         // Given: a shadow ray with a collision
-        when(scene.hitObjectForShadowRay(ray)).thenReturn(Optional.of(collisionInformation));
+        when(scene.findOccluder(ray)).thenReturn(Optional.of(occluder));
 
         // When: calculating the light intensity
         Color color = light.calculateIntensityForShadowRay(ray);
@@ -90,4 +93,57 @@ public class PointLightTest {
         assertEquals(Color.BLACK, color);
 
     }
+
+    @Test
+    public void testLastOccluderIsTriedFirst() throws Exception {
+
+        // Given: a shadow ray blocked by a shape, which still blocks the next shadow ray
+        when(scene.findOccluder(ray)).thenReturn(Optional.of(occluder));
+        when(occluder.occluded(ray)).thenReturn(true);
+
+        // When: calculating the light intensity twice
+        assertEquals(Color.BLACK, light.calculateIntensityForShadowRay(ray));
+        assertEquals(Color.BLACK, light.calculateIntensityForShadowRay(ray));
+
+        // Then: the scene is only searched for the first shadow ray
+        verify(scene, times(1)).findOccluder(ray);
+        verify(occluder, times(1)).occluded(ray);
+
+    }
+
+    @Test
+    public void testSceneIsSearchedIfLastOccluderMisses() throws Exception {
+
+        // Given: a shadow ray blocked by a shape, which does not block the next shadow ray
+        when(scene.findOccluder(ray)).thenReturn(Optional.of(occluder)).thenReturn(Optional.empty());
+        when(occluder.occluded(ray)).thenReturn(false);
+        when(ray.getOrigin()).thenReturn(Point3D.ORIGIN);
+
+        // When: calculating the light intensity twice
+        assertEquals(Color.BLACK, light.calculateIntensityForShadowRay(ray));
+        assertNotEquals(Color.BLACK, light.calculateIntensityForShadowRay(ray));
+
+        // Then: the scene is searched for both shadow rays
+        verify(scene, times(2)).findOccluder(ray);
+
+    }
+
+    @Test
+    public void testLastOccluderIsForgottenIfShapesAreReplaced() throws Exception {
+
+        // Given: a shadow ray blocked by a shape, which is replaced before the next shadow ray
+        when(scene.findOccluder(ray)).thenReturn(Optional.of(occluder)).thenReturn(Optional.empty());
+        when(scene.getRevision()).thenReturn(0, 1);
+        when(occluder.occluded(ray)).thenReturn(true);
+        when(ray.getOrigin()).thenReturn(Point3D.ORIGIN);
+
+        // When: calculating the light intensity twice
+        assertEquals(Color.BLACK, light.calculateIntensityForShadowRay(ray));
+        assertNotEquals(Color.BLACK, light.calculateIntensityForShadowRay(ray));
+
+        // Then: the replaced shape is not asked again
+        verify(scene, times(2)).findOccluder(ray);
+        verify(occluder, never()).occluded(ray);
+
+    }
 }
\ No newline at end of file
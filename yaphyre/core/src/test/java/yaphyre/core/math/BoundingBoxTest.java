@@ -210,4 +210,12 @@ public class BoundingBoxTest {
 
     }
 
+    @Test
+    public void testIsBounded() {
+        assertTrue(new BoundingBox(new Point3D(-1, -1, -1), new Point3D(1, 1, 1)).isBounded());
+        assertFalse(BoundingBox.INFINITE_BOUNDING_BOX.isBounded());
+        assertFalse(new BoundingBox(new Point3D(-1, -1, -1), new Point3D(1, 1, Double.POSITIVE_INFINITY)).isBounded());
+        assertFalse(BoundingBox.union(new BoundingBox(Point3D.ORIGIN), BoundingBox.INFINITE_BOUNDING_BOX).isBounded());
+    }
+
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.math;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cases for the ColorAccumulator class.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class ColorAccumulatorTest {
+
+    @Test
+    public void testNewAccumulatorIsBlack() {
+        assertEquals(Color.BLACK, new ColorAccumulator().toColor());
+    }
+
+    @Test
+    public void testAccumulate() {
+        ColorAccumulator accumulator = new ColorAccumulator()
+                .add(new Color(0.1, 0.2, 0.3))
+                .addScaled(new Color(1, 1, 1), 0.5)
+                .multiply(new Color(2, 1, 0))
+                .multiply(0.5);
+
+        Color expected = new Color(0.1, 0.2, 0.3).add(new Color(1, 1, 1).multiply(0.5))
+                .multiply(new Color(2, 1, 0)).multiply(0.5);
+        assertEquals(expected.getRed(), accumulator.getRed(), MathUtils.EPSILON);
+        assertEquals(expected.getGreen(), accumulator.getGreen(), MathUtils.EPSILON);
+        assertEquals(expected.getBlue(), accumulator.getBlue(), MathUtils.EPSILON);
+    }
+
+    @Test
+    public void testReset() {
+        ColorAccumulator accumulator = new ColorAccumulator().add(Color.WHITE);
+
+        assertEquals(Color.BLACK, accumulator.reset().toColor());
+    }
+
+}
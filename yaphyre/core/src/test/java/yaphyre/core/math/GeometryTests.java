@@ -24,7 +24,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
         Point2DTest.class, VectorTest.class, MatrixTest.class, TransformationTest.class, RayTest.class,
         FovCalculatorTest.class, BezierCurveTest.class, BoundingBoxTest.class, MathUtilsTest.class,
-        VectorMathTest.class, ColorTest.class})
+        VectorMathTest.class, ColorTest.class, ColorAccumulatorTest.class})
 public class GeometryTests {
 
 }
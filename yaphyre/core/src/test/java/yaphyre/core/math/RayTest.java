@@ -19,7 +19,9 @@ package yaphyre.core.math;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class RayTest {
 
@@ -60,4 +62,30 @@ public class RayTest {
 
     }
 
+    @Test
+    public void testIsInRange() {
+        Ray r = new Ray(Point3D.ORIGIN, Vector3D.X, 1d, 2d);
+
+        assertEquals(1d, r.getTMin(), 0d);
+        assertEquals(2d, r.getTMax(), 0d);
+        assertTrue(r.isInRange(1d));
+        assertTrue(r.isInRange(1.5d));
+        assertTrue(r.isInRange(2d));
+        assertFalse(r.isInRange(0.5d));
+        assertFalse(r.isInRange(2.5d));
+        assertFalse(r.isInRange(Double.NaN));
+    }
+
+    @Test
+    public void testGetPoint() {
+        Ray r = new Ray(new Point3D(1, 1, 1), new Vector3D(0, 2, 0));
+
+        assertEquals(new Point3D(1, 5, 1), r.getPoint(2d));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        new Ray(Point3D.ORIGIN, Vector3D.X, 2d, 1d);
+    }
+
 }
@@ -20,6 +20,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class TransformationTest {
 
@@ -196,4 +197,75 @@ public class TransformationTest {
         assertEquals(box.getPointMin(), new Point3D(-1, -1, -1));
         assertEquals(box.getPointMax(), Point3D.ORIGIN);
     }
+
+    @Test
+    public void testTransformRotatedBoundingBox() {
+        BoundingBox box = new BoundingBox(Point3D.ORIGIN, new Point3D(1, 1, 1));
+        box = Transformation.rotateY(45).transform(box);
+
+        assertEquals(-Math.sqrt(0.5), Math.min(box.getPointMin().getX(), box.getPointMin().getZ()), MathUtils.EPSILON);
+        assertEquals(Math.sqrt(2), Math.max(box.getPointMax().getX(), box.getPointMax().getZ()), MathUtils.EPSILON);
+    }
+
+    @Test
+    public void testTransformRayIntoMutableRay() {
+        Transformation t = Transformation.translate(1, 2, 3).mul(Transformation.rotateZ(30)).mul(Transformation.scale(2, 2, 2));
+        Ray ray = new Ray(new Point3D(1, -2, 5), new Vector3D(0.5, 0.5, -1), 0.5, 10);
+
+        Ray expected = t.transform(ray);
+        MutableRay result = t.transform(ray, new MutableRay());
+
+        assertEquals(expected.getOrigin().getX(), result.getOriginX(), MathUtils.EPSILON);
+        assertEquals(expected.getOrigin().getY(), result.getOriginY(), MathUtils.EPSILON);
+        assertEquals(expected.getOrigin().getZ(), result.getOriginZ(), MathUtils.EPSILON);
+        assertEquals(expected.getDirection().getX(), result.getDirectionX(), MathUtils.EPSILON);
+        assertEquals(expected.getDirection().getY(), result.getDirectionY(), MathUtils.EPSILON);
+        assertEquals(expected.getDirection().getZ(), result.getDirectionZ(), MathUtils.EPSILON);
+        assertEquals(0.5, result.getTMin(), 0d);
+        assertEquals(10, result.getTMax(), 0d);
+
+        // transforming in place and back again yields the original ray
+        t.inverse().transform(result, result);
+        assertEquals(ray.getOrigin().getX(), result.getOriginX(), MathUtils.EPSILON);
+        assertEquals(ray.getOrigin().getY(), result.getOriginY(), MathUtils.EPSILON);
+        assertEquals(ray.getOrigin().getZ(), result.getOriginZ(), MathUtils.EPSILON);
+        assertEquals(ray.getDirection().getZ(), result.getDirectionZ(), MathUtils.EPSILON);
+    }
+
+    @Test
+    public void testTransformRayPacket() {
+        Transformation t = Transformation.translate(1, 2, 3).mul(Transformation.rotateZ(30)).mul(Transformation.scale(2, 2, 2));
+        RayPacket packet = new RayPacket(3);
+        packet.add(new Ray(new Point3D(1, -2, 5), new Vector3D(0.5, 0.5, -1), 0.5, 10));
+        packet.add(new Ray(new Point3D(0, 0, 0), new Vector3D(0, 1, 0)));
+        packet.add(new Ray(new Point3D(-3, 4, 1), new Vector3D(1, 0, 1), 1, 2));
+        assertTrue(packet.isFull());
+        packet.setTMax(2, 1.5);
+
+        RayPacket result = t.transform(packet, new RayPacket(3));
+
+        assertEquals(3, result.size());
+        for (int lane = 0; lane < packet.size(); lane++) {
+            Ray expected = t.transform(packet.getRay(lane));
+            assertEquals(packet.getRay(lane), result.getRay(lane));
+            assertEquals(expected.getOrigin().getX(), result.getOriginX(lane), MathUtils.EPSILON);
+            assertEquals(expected.getOrigin().getY(), result.getOriginY(lane), MathUtils.EPSILON);
+            assertEquals(expected.getOrigin().getZ(), result.getOriginZ(lane), MathUtils.EPSILON);
+            assertEquals(expected.getDirection().getX(), result.getDirectionX(lane), MathUtils.EPSILON);
+            assertEquals(expected.getDirection().getY(), result.getDirectionY(lane), MathUtils.EPSILON);
+            assertEquals(expected.getDirection().getZ(), result.getDirectionZ(lane), MathUtils.EPSILON);
+            assertEquals(packet.getTMin(lane), result.getTMin(lane), 0d);
+            assertEquals(packet.getTMax(lane), result.getTMax(lane), 0d);
+        }
+
+        result.clear();
+        assertEquals(0, result.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRayPacketOverflow() {
+        RayPacket packet = new RayPacket(1);
+        packet.add(new Ray(Point3D.ORIGIN, Vector3D.X));
+        packet.add(new Ray(Point3D.ORIGIN, Vector3D.Y));
+    }
 }
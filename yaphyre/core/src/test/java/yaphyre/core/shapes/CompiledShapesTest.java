@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.shapes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Test;
+
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.NearestHit;
+import yaphyre.core.api.Shader;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+
+import static java.lang.Double.POSITIVE_INFINITY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies that the {@link CompiledShapes} give exactly the same results as the shapes they were compiled from.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class CompiledShapesTest {
+
+    private static final int NUMBER_OF_RAYS = 2000;
+
+    private final Shader shader = new ColorShader(Color.WHITE);
+
+    @Test
+    public void testCompiledShapesMatchShapes() {
+        final Random random = new Random(4711);
+        final List<Shape> shapes = new ArrayList<>();
+        shapes.add(createSphere(Transformation.IDENTITY));
+        shapes.add(createSphere(Transformation.translate(2, 1, -3).mul(Transformation.scale(1.5, 0.5, 2))));
+        shapes.add(createSphere(Transformation.rotate(35, new Vector3D(1, 2, 3)).mul(Transformation.scale(3, 1, 1))));
+        shapes.add(new Plane(Transformation.translate(0, -4, 0), shader));
+        shapes.add(new Plane(Transformation.rotateX(60).mul(Transformation.translate(1, 2, 3)), shader));
+        shapes.add(Sphere.createSphere(new Point3D(-3, 0, 2), 1.5, shader));
+        final CompiledShapes compiledShapes = new CompiledShapes(shapes);
+
+        int hits = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            final Point3D origin = new Point3D(
+                    (random.nextDouble() - 0.5) * 16, (random.nextDouble() - 0.5) * 16, (random.nextDouble() - 0.5) * 16);
+            final Vector3D direction =
+                    new Vector3D(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize();
+            final Ray ray = new Ray(origin, direction, 0d, 4 + random.nextDouble() * 8);
+
+            for (int index = 0; index < shapes.size(); index++) {
+                final Shape shape = shapes.get(index);
+                final Optional<CollisionInformation> expected = shape.intersect(ray);
+                final NearestHit hit = new NearestHit(ray);
+                final double distance = compiledShapes.intersect(index, hit, POSITIVE_INFINITY);
+
+                assertEquals(expected.isPresent(), distance != POSITIVE_INFINITY);
+                assertEquals(shape.occluded(ray), compiledShapes.occluded(index, ray));
+                assertEquals(expected, hit.createCollisionInformation());
+                if (expected.isPresent()) {
+                    hits++;
+                    assertEquals(index, hit.getIndex());
+                }
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    public void testNearerIntersectionIsKept() {
+        final CompiledShapes compiledShapes = new CompiledShapes(createSphereList());
+        final Ray ray = new Ray(new Point3D(0, 0, -5), Vector3D.Z);
+
+        assertEquals(4d, compiledShapes.intersect(0, new NearestHit(ray), POSITIVE_INFINITY), 0d);
+        assertEquals(POSITIVE_INFINITY, compiledShapes.intersect(0, new NearestHit(ray), 3d), 0d);
+    }
+
+    private List<Shape> createSphereList() {
+        final List<Shape> shapes = new ArrayList<>();
+        shapes.add(createSphere(Transformation.IDENTITY));
+        return shapes;
+    }
+
+    private SimpleSphere createSphere(Transformation objectToWorld) {
+        final SimpleSphere sphere = new SimpleSphere(objectToWorld, shader);
+        sphere.setSolver(Solvers.Quadratic);
+        return sphere;
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package yaphyre.core.shapes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import yaphyre.core.accelerators.BvhAccelerator;
+import yaphyre.core.accelerators.LinearAccelerator;
+import yaphyre.core.api.Accelerator;
+import yaphyre.core.api.CollisionCache;
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Shader;
+import yaphyre.core.api.Shape;
+import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Normal3D;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static yaphyre.core.math.MathUtils.EPSILON;
+
+public class InstanceTest {
+
+    private static final Shader SHADER = new ColorShader(Color.WHITE);
+    private static final Shader INSTANCE_SHADER = new ColorShader(new Color(1, 0, 0));
+
+    private static final int NUMBER_OF_RAYS = 2000;
+
+    /**
+     * A pyramid with its square base in the xz plane and its apex at (0, 2, 0).
+     */
+    private static final float[] PYRAMID_POSITIONS = {-1, 0, -1, 1, 0, -1, 1, 0, 1, -1, 0, 1, 0, 2, 0};
+    private static final int[] PYRAMID_INDICES = {0, 1, 4, 1, 2, 4, 2, 3, 4, 3, 0, 4, 0, 2, 1, 0, 3, 2};
+
+    private Random random;
+
+    @Before
+    public void setUp() {
+        random = new Random(4711);
+    }
+
+    @Test
+    public void testInstanceMatchesTransformedShape() {
+        final Transformation transformation = Transformation.translate(1, 2, 3)
+                .mul(Transformation.rotateY(30))
+                .mul(Transformation.scale(2, 1, 0.5));
+        final SimpleSphere baseSphere = createSphere(Transformation.IDENTITY);
+        final SimpleSphere transformedSphere = createSphere(transformation);
+        final Instance instance = new Instance(transformation, INSTANCE_SHADER, baseSphere);
+
+        int hits = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            final Ray ray = createRandomRay(6);
+            final Optional<CollisionInformation> expected = transformedSphere.intersect(ray);
+            final Optional<CollisionInformation> result = instance.intersect(ray);
+
+            assertEquals(expected.isPresent(), result.isPresent());
+            assertEquals(expected.isPresent(), instance.occluded(ray));
+            if (expected.isPresent()) {
+                hits++;
+                assertEquals(expected.get().getDistance(), result.get().getDistance(), EPSILON);
+                assertEquals(expected.get().getPoint(), result.get().getPoint());
+                assertSameDirection(expected.get().getNormal(), result.get().getNormal());
+                assertEquals(expected.get().getUVCoordinate(), result.get().getUVCoordinate());
+                assertSame(instance, result.get().getShape());
+                assertSame(INSTANCE_SHADER, result.get().getShape().getShader());
+                assertSame(ray, result.get().getIncidentRay());
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    public void testTwoPhaseIntersection() {
+        final TriangleMesh mesh = new TriangleMesh(Transformation.IDENTITY, SHADER, PYRAMID_POSITIONS, PYRAMID_INDICES);
+        final Instance instance = new Instance(Transformation.translate(0, 0, 5), mesh);
+
+        final Ray ray = new Ray(new Point3D(0.1, 0.5, 0), Vector3D.Z);
+        final CollisionCache collision = new CollisionCache();
+        final double distance = instance.intersectDistance(ray, collision);
+
+        assertEquals(instance.intersect(ray).get().getDistance(), distance, 0d);
+        assertEquals(instance.intersect(ray).get(), instance.createCollisionInformation(ray, distance, collision));
+        assertSame(SHADER, instance.getShader());
+
+        assertEquals(Double.POSITIVE_INFINITY,
+                instance.intersectDistance(new Ray(new Point3D(0, 5, 0), Vector3D.Z), collision), 0d);
+    }
+
+    @Test
+    public void testBoundingBox() {
+        final TriangleMesh mesh = new TriangleMesh(Transformation.IDENTITY, SHADER, PYRAMID_POSITIONS, PYRAMID_INDICES);
+        final Instance instance = new Instance(Transformation.translate(10, 0, 0).mul(Transformation.scale(2, 2, 2)),
+                mesh);
+
+        assertEquals(new BoundingBox(new Point3D(8, 0, -2), new Point3D(12, 4, 2)), instance.getBoundingBox());
+        assertSame(BoundingBox.INFINITE_BOUNDING_BOX,
+                new Instance(Transformation.translate(1, 0, 0), new Plane(Transformation.IDENTITY, SHADER))
+                        .getBoundingBox());
+    }
+
+    @Test
+    public void testNestedInstances() {
+        final SimpleSphere baseSphere = createSphere(Transformation.IDENTITY);
+        final Instance nested = new Instance(Transformation.translate(0, 0, 5),
+                new Instance(Transformation.translate(5, 0, 0), baseSphere));
+
+        final Optional<CollisionInformation> collision = nested.intersect(new Ray(new Point3D(5, 0, -10), Vector3D.Z));
+
+        assertTrue(collision.isPresent());
+        assertEquals(14d, collision.get().getDistance(), EPSILON);
+        assertEquals(new Point3D(5, 0, 4), collision.get().getPoint());
+        assertSame(nested, collision.get().getShape());
+        assertFalse(nested.occluded(new Ray(new Point3D(0, 0, -10), Vector3D.Z)));
+    }
+
+    @Test
+    public void testInstancesShareTheBaseShape() {
+        final TriangleMesh mesh = new TriangleMesh(Transformation.IDENTITY, SHADER, PYRAMID_POSITIONS, PYRAMID_INDICES);
+        final List<Shape> instances = createRandomInstances(mesh, 500);
+        for (Shape instance : instances) {
+            assertSame(mesh, ((Instance) instance).getBaseShape());
+        }
+        verifySameResults(new LinearAccelerator(instances), new BvhAccelerator(instances));
+    }
+
+    @Test
+    public void testMovedInstancesOnlyRefitTheTopLevel() {
+        final TriangleMesh mesh = new TriangleMesh(Transformation.IDENTITY, SHADER, PYRAMID_POSITIONS, PYRAMID_INDICES);
+        final List<Shape> instances = createRandomInstances(mesh, 300);
+        final Accelerator accelerator = new BvhAccelerator(instances);
+
+        final List<Shape> movedInstances = createRandomInstances(mesh, 300);
+        final Optional<Accelerator> refitAccelerator = accelerator.refit(movedInstances);
+
+        assertTrue(refitAccelerator.isPresent());
+        verifySameResults(new LinearAccelerator(movedInstances), refitAccelerator.get());
+    }
+
+    private void verifySameResults(Accelerator expectedAccelerator, Accelerator accelerator) {
+        int hits = 0;
+        for (int i = 0; i < NUMBER_OF_RAYS; i++) {
+            final Ray ray = createRandomRay(20);
+            final Optional<CollisionInformation> expected = expectedAccelerator.intersect(ray);
+            final Optional<CollisionInformation> result = accelerator.intersect(ray);
+
+            assertEquals(expected.isPresent(), result.isPresent());
+            assertEquals(expected.isPresent(), accelerator.findOccluder(ray).isPresent());
+            if (expected.isPresent()) {
+                hits++;
+                assertEquals(expected.get().getDistance(), result.get().getDistance(), EPSILON);
+                assertSame(expected.get().getShape(), result.get().getShape());
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    private List<Shape> createRandomInstances(Shape baseShape, int count) {
+        final List<Shape> instances = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final double scale = 0.2 + random.nextDouble();
+            instances.add(new Instance(
+                    Transformation.translate(nextCoordinate(20), nextCoordinate(20), nextCoordinate(20))
+                            .mul(Transformation.rotateY(random.nextDouble() * 360))
+                            .mul(Transformation.scale(scale, scale, scale)),
+                    baseShape));
+        }
+        return instances;
+    }
+
+    private SimpleSphere createSphere(Transformation transformation) {
+        final SimpleSphere sphere = new SimpleSphere(transformation, SHADER);
+        sphere.setSolver(Solvers.Quadratic);
+        return sphere;
+    }
+
+    private Ray createRandomRay(double size) {
+        final Point3D origin = new Point3D(nextCoordinate(size), nextCoordinate(size), nextCoordinate(size));
+        final Vector3D direction = new Vector3D(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+        return new Ray(origin, direction.normalize());
+    }
+
+    private double nextCoordinate(double size) {
+        return (random.nextDouble() - 0.5) * size;
+    }
+
+    private static void assertSameDirection(Normal3D expected, Normal3D actual) {
+        final Vector3D expectedDirection = expected.asVector().normalize();
+        assertEquals(expectedDirection.getX(), actual.getX(), EPSILON);
+        assertEquals(expectedDirection.getY(), actual.getY(), EPSILON);
+        assertEquals(expectedDirection.getZ(), actual.getZ(), EPSILON);
+    }
+
+}
@@ -24,6 +24,7 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import yaphyre.core.api.CollisionCache;
 import yaphyre.core.api.CollisionInformation;
 import yaphyre.core.api.Shader;
 import yaphyre.core.math.Point3D;
@@ -99,4 +100,36 @@ public class SimpleSphereTest {
 
     }
 
+    @Test
+    public void testTwoPhaseIntersection() throws Exception {
+
+        SimpleSphere sphere = new SimpleSphere(Transformation.translate(5, 0, 0), shader);
+        sphere.setSolver(Solvers.Quadratic);
+        CollisionCache collision = new CollisionCache();
+
+        Ray testRay = new Ray(new Point3D(0, 0.5, 0), Vector3D.X);
+        double distance = sphere.intersectDistance(testRay, collision);
+        assertEquals("Distance of the full intersection expected",
+                sphere.intersect(testRay).get().getDistance(), distance, 0d);
+        assertEquals("Same collision information as the full intersection expected",
+                sphere.intersect(testRay).get(), sphere.createCollisionInformation(testRay, distance, collision));
+
+        assertEquals("No intersection expected", Double.POSITIVE_INFINITY,
+                sphere.intersectDistance(new Ray(Point3D.ORIGIN, Vector3D.Y), collision), 0d);
+
+    }
+
+    @Test
+    public void testOccluded() throws Exception {
+
+        SimpleSphere sphere = new SimpleSphere(Transformation.translate(5, 0, 0), shader);
+        sphere.setSolver(Solvers.Quadratic);
+
+        assertTrue("Occlusion expected", sphere.occluded(new Ray(Point3D.ORIGIN, Vector3D.X, 0d, 10d)));
+        assertFalse("Sphere behind the end of the ray", sphere.occluded(new Ray(Point3D.ORIGIN, Vector3D.X, 0d, 3d)));
+        assertFalse("Ray passes the sphere", sphere.occluded(new Ray(Point3D.ORIGIN, Vector3D.Y, 0d, 10d)));
+        assertTrue("Ray starts inside the sphere", sphere.occluded(new Ray(new Point3D(5, 0, 0), Vector3D.Y, 0d, 10d)));
+
+    }
+
 }
\ No newline at end of file
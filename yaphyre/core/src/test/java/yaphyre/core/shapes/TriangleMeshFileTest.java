@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.shapes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Shader;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static yaphyre.core.math.MathUtils.EPSILON;
+
+public class TriangleMeshFileTest {
+
+    private static final Shader SHADER = new ColorShader(Color.WHITE);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndMap() throws IOException {
+        final TriangleMesh mesh = createTerrain(32);
+        final Path path = temporaryFolder.newFile("terrain.mesh").toPath();
+
+        TriangleMeshFile.write(mesh, path);
+        final TriangleMesh mappedMesh = TriangleMeshFile.map(path, Transformation.IDENTITY, SHADER);
+
+        assertEquals(mesh.getTriangleCount(), mappedMesh.getTriangleCount());
+        assertEquals(mesh.getVertexCount(), mappedMesh.getVertexCount());
+        assertEquals(mesh.getHierarchy().getNodeCount(), mappedMesh.getHierarchy().getNodeCount());
+        assertEquals(mesh.getHierarchy().getDepth(), mappedMesh.getHierarchy().getDepth());
+        assertEquals(mesh.getBoundingBox(), mappedMesh.getBoundingBox());
+
+        final Random random = new Random(4711);
+        for (int i = 0; i < 1000; i++) {
+            final Ray ray = new Ray(new Point3D(random.nextDouble(), random.nextDouble(), -1), Vector3D.Z);
+            final Optional<CollisionInformation> expected = mesh.intersect(ray);
+            final Optional<CollisionInformation> actual = mappedMesh.intersect(ray);
+            assertEquals(expected.isPresent(), actual.isPresent());
+            if (expected.isPresent()) {
+                assertEquals(expected.get().getDistance(), actual.get().getDistance(), EPSILON);
+                assertEquals(expected.get().getNormal(), actual.get().getNormal());
+                assertEquals(expected.get().getUVCoordinate(), actual.get().getUVCoordinate());
+            }
+        }
+    }
+
+    @Test
+    public void testMappedMeshIsTransformed() throws IOException {
+        final Path path = temporaryFolder.newFile("terrain.mesh").toPath();
+        TriangleMeshFile.write(createTerrain(4), path);
+
+        final TriangleMesh mesh = TriangleMeshFile.map(path, Transformation.translate(0, 0, 10), SHADER);
+
+        final Optional<CollisionInformation> collision = mesh.intersect(
+                new Ray(new Point3D(0.5, 0.5, 0), Vector3D.Z));
+        assertTrue(collision.isPresent());
+        assertTrue(collision.get().getDistance() > 9);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMapInvalidFile() throws IOException {
+        final File file = temporaryFolder.newFile("invalid.mesh");
+        Files.write(file.toPath(), "this is not a mesh file, just some text".getBytes());
+
+        TriangleMeshFile.map(file.toPath(), Transformation.IDENTITY, SHADER);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMapTruncatedFile() throws IOException {
+        final File file = temporaryFolder.newFile("truncated.mesh");
+        TriangleMeshFile.write(createTerrain(4), file.toPath());
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 4);
+        }
+
+        TriangleMeshFile.map(file.toPath(), Transformation.IDENTITY, SHADER);
+    }
+
+    /**
+     * Create a grid over the unit square with random heights, vertex normals and texture coordinates.
+     */
+    private static TriangleMesh createTerrain(int size) {
+        final Random random = new Random(size);
+        final int verticesPerRow = size + 1;
+        final int vertexCount = verticesPerRow * verticesPerRow;
+        final float[] positions = new float[vertexCount * 3];
+        final float[] normals = new float[vertexCount * 3];
+        final float[] uvs = new float[vertexCount * 2];
+        for (int j = 0; j <= size; j++) {
+            for (int i = 0; i <= size; i++) {
+                final int vertex = j * verticesPerRow + i;
+                positions[vertex * 3] = (float) i / size;
+                positions[vertex * 3 + 1] = (float) j / size;
+                positions[vertex * 3 + 2] = random.nextFloat() * 0.1f;
+                normals[vertex * 3] = random.nextFloat() * 0.2f;
+                normals[vertex * 3 + 2] = -1;
+                uvs[vertex * 2] = (float) i / size;
+                uvs[vertex * 2 + 1] = (float) j / size;
+            }
+        }
+        final int[] indices = new int[size * size * 6];
+        int index = 0;
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                final int v0 = j * verticesPerRow + i;
+                indices[index++] = v0;
+                indices[index++] = v0 + 1;
+                indices[index++] = v0 + 1 + verticesPerRow;
+                indices[index++] = v0;
+                indices[index++] = v0 + 1 + verticesPerRow;
+                indices[index++] = v0 + verticesPerRow;
+            }
+        }
+        return new TriangleMesh(Transformation.IDENTITY, SHADER, positions, normals, uvs, indices);
+    }
+
+}
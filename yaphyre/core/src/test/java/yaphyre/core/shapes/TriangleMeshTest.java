@@ -0,0 +1,213 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.shapes;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import yaphyre.core.api.CollisionInformation;
+import yaphyre.core.api.Shader;
+import yaphyre.core.math.BoundingBox;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Normal3D;
+import yaphyre.core.math.Point2D;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.shaders.ColorShader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static yaphyre.core.math.MathUtils.EPSILON;
+
+public class TriangleMeshTest {
+
+    private static final Shader SHADER = new ColorShader(Color.WHITE);
+
+    /**
+     * The unit square in the xy plane made of two triangles sharing the diagonal from (0, 0) to (1, 1).
+     */
+    private static final float[] SQUARE_POSITIONS = {0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0};
+    private static final int[] SQUARE_INDICES = {0, 1, 2, 0, 2, 3};
+
+    @Test
+    public void testIntersect() {
+        final TriangleMesh mesh = new TriangleMesh(Transformation.IDENTITY, SHADER, SQUARE_POSITIONS, SQUARE_INDICES);
+
+        final Optional<CollisionInformation> collision = mesh.intersect(
+                new Ray(new Point3D(0.75, 0.25, -1), Vector3D.Z));
+
+        assertTrue(collision.isPresent());
+        assertEquals(1d, collision.get().getDistance(), EPSILON);
+        assertEquals(new Point3D(0.75, 0.25, 0), collision.get().getPoint());
+        assertEquals(new Normal3D(0, 0, -1), collision.get().getNormal());
+        assertEquals(mesh, collision.get().getShape());
+    }
+
+    @Test
+    public void testNormalFacesTheRay() {
+        final TriangleMesh mesh = new TriangleMesh(Transformation.IDENTITY, SHADER, SQUARE_POSITIONS, SQUARE_INDICES);
+
+        final Optional<CollisionInformation> collision = mesh.intersect(
+                new Ray(new Point3D(0.25, 0.75, 1), Vector3D.Z.neg()));
+
+        assertTrue(collision.isPresent());
+        assertEquals(new Normal3D(0, 0, 1), collision.get().getNormal());
+    }
+
+    @Test
+    public void testMiss() {
+        final TriangleMesh mesh = new TriangleMesh(Transformation.IDENTITY, SHADER, SQUARE_POSITIONS, SQUARE_INDICES);
+
+        assertFalse(mesh.intersect(new Ray(new Point3D(1.5, 0.5, -1), Vector3D.Z)).isPresent());
+        assertFalse(mesh.intersect(new Ray(new Point3D(0.5, 0.5, -1), Vector3D.Z.neg())).isPresent());
+        assertFalse(mesh.intersect(new Ray(new Point3D(0.5, 0.5, -1), Vector3D.Z, 0d, 0.5d)).isPresent());
+        assertFalse(mesh.intersect(new Ray(new Point3D(0.5, 0.5, -1), Vector3D.X)).isPresent());
+    }
+
+    @Test
+    public void testOccluded() {
+        final TriangleMesh mesh = createGrid(8);
+
+        assertTrue(mesh.occluded(new Ray(new Point3D(0.3, 0.6, -1), Vector3D.Z)));
+        assertFalse(mesh.occluded(new Ray(new Point3D(0.3, 0.6, -1), Vector3D.Z, 0d, 0.5d)));
+        assertFalse(mesh.occluded(new Ray(new Point3D(1.3, 0.6, -1), Vector3D.Z)));
+    }
+
+    @Test
+    public void testRaysThroughSharedEdgesAndVerticesHit() {
+        final int size = 16;
+        final TriangleMesh mesh = createGrid(size);
+
+        // rays through every vertex and along every diagonal of the grid
+        for (int i = 0; i <= size; i++) {
+            for (int j = 0; j <= size; j++) {
+                final double x = (double) i / size;
+                final double y = (double) j / size;
+                if (i > 0 && j > 0 && i < size && j < size) {
+                    assertTrue("vertex " + i + "/" + j,
+                            mesh.intersect(new Ray(new Point3D(x, y, -1), Vector3D.Z)).isPresent());
+                }
+                if (i < size && j < size) {
+                    final double d = 0.37d / size;
+                    assertTrue("diagonal " + i + "/" + j,
+                            mesh.intersect(new Ray(new Point3D(x + d, y + d, -1), Vector3D.Z)).isPresent());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransformedMesh() {
+        final Transformation objectToWorld = Transformation.translate(0, 0, 5).mul(Transformation.rotateX(90));
+        final TriangleMesh mesh = new TriangleMesh(objectToWorld, SHADER, SQUARE_POSITIONS, SQUARE_INDICES);
+
+        final BoundingBox boundingBox = mesh.getBoundingBox();
+        assertEquals(0d, boundingBox.getPointMin().getX(), EPSILON);
+        assertEquals(1d, boundingBox.getPointMax().getX(), EPSILON);
+        assertEquals(0d, boundingBox.getPointMax().getY() - boundingBox.getPointMin().getY(), EPSILON);
+
+        final Optional<CollisionInformation> collision = mesh.intersect(
+                new Ray(new Point3D(0.5, -3, boundingBox.getPointMin().getZ() + 0.5), Vector3D.Y));
+        assertTrue(collision.isPresent());
+        assertEquals(3d + boundingBox.getPointMin().getY(), collision.get().getDistance(), EPSILON);
+        assertEquals(new Normal3D(0, -1, 0), collision.get().getNormal());
+    }
+
+    @Test
+    public void testSmoothNormalsAndTextureCoordinates() {
+        final float[] normals = {0, 0, -1, 0, 0, -1, 0, 1, 0, 0, 1, 0};
+        final float[] uvs = {0, 0, 1, 0, 1, 1, 0, 1};
+        final TriangleMesh mesh = new TriangleMesh(Transformation.IDENTITY, SHADER,
+                SQUARE_POSITIONS, normals, uvs, SQUARE_INDICES);
+
+        final CollisionInformation collision = mesh.intersect(
+                new Ray(new Point3D(0.75, 0.25, -1), Vector3D.Z)).get();
+
+        assertEquals(new Point2D(0.75, 0.25), collision.getUVCoordinate());
+        final Normal3D normal = collision.getNormal();
+        assertEquals(1d, normal.length(), EPSILON);
+        assertTrue(normal.getY() > 0);
+        assertTrue(normal.getZ() < 0);
+    }
+
+    @Test
+    public void testBarycentricTextureCoordinates() {
+        final TriangleMesh mesh = new TriangleMesh(Transformation.IDENTITY, SHADER, SQUARE_POSITIONS, SQUARE_INDICES);
+
+        final CollisionInformation collision = mesh.intersect(
+                new Ray(new Point3D(0.75, 0.25, -1), Vector3D.Z)).get();
+
+        // (0.75, 0.25) = 0.25 * (0, 0) + 0.5 * (1, 0) + 0.25 * (1, 1)
+        assertEquals(new Point2D(0.5, 0.25), collision.getUVCoordinate());
+    }
+
+    @Test
+    public void testCounts() {
+        final TriangleMesh mesh = createGrid(8);
+        assertEquals(128, mesh.getTriangleCount());
+        assertEquals(81, mesh.getVertexCount());
+        assertEquals(128, mesh.getHierarchy().getPrimitiveCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexOutOfRange() {
+        new TriangleMesh(Transformation.IDENTITY, SHADER, SQUARE_POSITIONS, new int[]{0, 1, 4});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncompleteTriangle() {
+        new TriangleMesh(Transformation.IDENTITY, SHADER, SQUARE_POSITIONS, new int[]{0, 1});
+    }
+
+    /**
+     * Create a grid of <code>size</code> by <code>size</code> squares covering the unit square, each split along its
+     * diagonal.
+     */
+    private static TriangleMesh createGrid(int size) {
+        final int verticesPerRow = size + 1;
+        final float[] positions = new float[verticesPerRow * verticesPerRow * 3];
+        for (int j = 0; j <= size; j++) {
+            for (int i = 0; i <= size; i++) {
+                final int vertex = j * verticesPerRow + i;
+                positions[vertex * 3] = (float) i / size;
+                positions[vertex * 3 + 1] = (float) j / size;
+            }
+        }
+        final int[] indices = new int[size * size * 6];
+        int index = 0;
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                final int v0 = j * verticesPerRow + i;
+                final int v1 = v0 + 1;
+                final int v2 = v1 + verticesPerRow;
+                final int v3 = v0 + verticesPerRow;
+                indices[index++] = v0;
+                indices[index++] = v1;
+                indices[index++] = v2;
+                indices[index++] = v0;
+                indices[index++] = v2;
+                indices[index++] = v3;
+            }
+        }
+        return new TriangleMesh(Transformation.IDENTITY, SHADER, positions, indices);
+    }
+
+}
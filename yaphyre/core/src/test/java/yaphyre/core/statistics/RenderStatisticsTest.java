@@ -0,0 +1,191 @@
+/*
+ * Copyright 2014 Michael Bieri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yaphyre.core.statistics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import javax.management.ObjectName;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import yaphyre.core.accelerators.BvhAccelerator;
+import yaphyre.core.api.Scene;
+import yaphyre.core.api.Shape;
+import yaphyre.core.api.Tracer;
+import yaphyre.core.cameras.OrthographicCamera;
+import yaphyre.core.cameras.TileScheduler;
+import yaphyre.core.films.ImageFile;
+import yaphyre.core.math.Color;
+import yaphyre.core.math.Point2D;
+import yaphyre.core.math.Point3D;
+import yaphyre.core.math.Ray;
+import yaphyre.core.math.Solvers;
+import yaphyre.core.math.Transformation;
+import yaphyre.core.math.Vector3D;
+import yaphyre.core.samplers.SingleValueSampler;
+import yaphyre.core.shaders.ColorShader;
+import yaphyre.core.shapes.SimpleSphere;
+import yaphyre.core.statistics.RenderStatistics.RayType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static yaphyre.core.math.MathUtils.EPSILON;
+
+/**
+ * Test cases for the RenderStatistics class. The counting tests need the system property
+ * {@value RenderStatistics#ENABLED_PROPERTY}, which the build sets for a second run of the statistics tests only. The
+ * default run checks that nothing is counted without it.
+ *
+ * @author Michael Bieri
+ * @since 17.10.26
+ */
+public class RenderStatisticsTest {
+
+    @Before
+    public void setUp() {
+        RenderStatistics.reset();
+    }
+
+    @Test
+    public void testRenderedTilesAreCounted() {
+        assumeTrue(RenderStatistics.ENABLED);
+        final Tracer tracer = mock(Tracer.class);
+        when(tracer.traceRay(any(Ray.class), any(Scene.class))).thenReturn(Optional.of(Color.WHITE));
+        final OrthographicCamera camera = new OrthographicCamera(new ImageFile(8, 6), Color.BLACK, 1, 1, 1);
+        camera.setTracer(tracer);
+        camera.setSampler(new SingleValueSampler());
+        try (TileScheduler tileScheduler = new TileScheduler(2, 4)) {
+            camera.setTileScheduler(tileScheduler);
+            camera.renderPass(mock(Scene.class), Point2D.ZERO, (x, y) -> x < 4);
+        }
+
+        final StatisticsReport report = RenderStatistics.snapshot();
+        assertEquals(24, report.getRays(RayType.CAMERA));
+        assertEquals(24, report.getSamples());
+        assertEquals(24, report.getPixels());
+        assertEquals(1d, report.getSamplesPerPixel(), EPSILON);
+        assertEquals(4, report.getTiles());
+        assertTrue(report.getMaxTileMillis() >= report.getMinTileMillis());
+    }
+
+    @Test
+    public void testTraversalsAndIntersectionsAreCounted() {
+        assumeTrue(RenderStatistics.ENABLED);
+        final BvhAccelerator accelerator = new BvhAccelerator(
+                Arrays.asList(createSphere(Transformation.IDENTITY), createSphere(Transformation.translate(10, 0, 0))),
+                1);
+
+        // the first ray hits the sphere, the second one only its bounding box
+        accelerator.intersect(new Ray(new Point3D(0, 0, -10), Vector3D.Z));
+        accelerator.intersect(new Ray(new Point3D(0.9, 0.9, -10), Vector3D.Z));
+
+        final StatisticsReport report = RenderStatistics.snapshot();
+        assertEquals(2, report.getTraversals());
+        assertTrue(report.getNodeVisits() >= 4);
+        assertEquals(2, report.getShapeIntersections());
+        final StatisticsReport.ShapeStatistics spheres = report.getShapes().get("SimpleSphere");
+        assertEquals(2, spheres.getTests());
+        assertEquals(1, spheres.getHits());
+        assertEquals(0.5, spheres.getHitRatio(), EPSILON);
+    }
+
+    @Test
+    public void testNothingIsCountedIfDisabled() {
+        assumeFalse(RenderStatistics.ENABLED);
+        final BvhAccelerator accelerator = new BvhAccelerator(
+                Arrays.asList(createSphere(Transformation.IDENTITY), createSphere(Transformation.translate(10, 0, 0))),
+                1);
+
+        accelerator.intersect(new Ray(new Point3D(0, 0, -10), Vector3D.Z));
+        RenderStatistics.countRays(RayType.SHADOW, 3);
+        RenderStatistics.countTile(16, 64, 1000);
+
+        final StatisticsReport report = RenderStatistics.snapshot();
+        assertEquals(0, report.getRays(RayType.SHADOW));
+        assertEquals(0, report.getTraversals());
+        assertEquals(0, report.getShapeIntersections());
+        assertTrue(report.getShapes().isEmpty());
+        assertEquals(0, report.getTiles());
+    }
+
+    @Test
+    public void testReset() {
+        RenderStatistics.countRays(RayType.SHADOW, 3);
+        RenderStatistics.countTraversal(7);
+        RenderStatistics.countTile(16, 64, 1000);
+
+        RenderStatistics.reset();
+
+        final StatisticsReport report = RenderStatistics.snapshot();
+        assertEquals(0, report.getRays(RayType.SHADOW));
+        assertEquals(0, report.getNodeVisits());
+        assertEquals(0, report.getTiles());
+        assertEquals(0d, report.getMinTileMillis(), EPSILON);
+    }
+
+    @Test
+    public void testReportFormats() {
+        final Map<RayType, Long> rays = new EnumMap<>(RayType.class);
+        rays.put(RayType.CAMERA, 400L);
+        rays.put(RayType.SHADOW, 100L);
+        final StatisticsReport report = new StatisticsReport(rays, 500, 2000,
+                ImmutableMap.of("Plane", new StatisticsReport.ShapeStatistics(10, 5)), 100, 400, 4, 8_000_000,
+                1_000_000, 3_000_000);
+
+        assertEquals(0, report.getRays(RayType.SECONDARY));
+        assertEquals(4d, report.getNodeVisitsPerTraversal(), EPSILON);
+        assertEquals(2d, report.getMeanTileMillis(), EPSILON);
+
+        final String json = report.toJson();
+        assertTrue(json, json.contains("\"rays\": {\"camera\": 400, \"shadow\": 100, \"secondary\": 0}"));
+        assertTrue(json, json.contains("\"Plane\": {\"tests\": 10, \"hits\": 5, \"hitRatio\": 0.5}"));
+        assertTrue(json, json.contains("\"samplesPerPixel\": 4.0"));
+        assertTrue(json, json.contains("\"maxMillis\": 3.0"));
+
+        final String text = report.format();
+        assertTrue(text, text.contains("BVH node visits"));
+        assertTrue(text, text.contains("Plane"));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        RenderStatistics.registerMBean();
+        RenderStatistics.registerMBean();
+        RenderStatistics.countRays(RayType.SHADOW, 3);
+
+        final Object shadowRays = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(RenderStatistics.MBEAN_NAME), "ShadowRays");
+
+        assertEquals(RenderStatistics.ENABLED ? 3L : 0L, shadowRays);
+    }
+
+    private static Shape createSphere(Transformation objectToWorld) {
+        final SimpleSphere sphere = new SimpleSphere(objectToWorld, new ColorShader(Color.WHITE));
+        sphere.setSolver(Solvers.Quadratic);
+        return sphere;
+    }
+
+}